@@ -0,0 +1,37 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas;
+
+/**
+ * Exception thrown when a script goes past one of the resource limits of
+ * its {@link SalinasConfig settings}, such as the number of characters it
+ * may write, or the number of records it may visit.
+ */
+public class ResourceLimitException extends SalinasException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new resource limit exception with the given detail message.
+     *
+     * @param message the detail message
+     */
+    public ResourceLimitException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new resource limit exception with the given detail message,
+     * and the location of the script where the limit was passed.
+     *
+     * @param message the detail message
+     * @param filename the filename that contains the script being executed
+     * @param lineNumber the line number within the file
+     * @param columnNumber the column number within the file
+     */
+    public ResourceLimitException(String message, String filename, int lineNumber,
+            int columnNumber) {
+        super(message, filename, lineNumber, columnNumber);
+    }
+}
@@ -5,12 +5,15 @@ package com.idataconnect.salinas;
 
 import com.idataconnect.salinas.function.CallStack;
 import com.idataconnect.salinas.function.FunctionContext;
+import com.idataconnect.salinas.interpreter.ResourceMeter;
 import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
 import com.idataconnect.salinas.interpreter.SalinasInterpreter;
 import com.idataconnect.salinas.parser.ParseException;
 import com.idataconnect.salinas.parser.SalinasNode;
 import com.idataconnect.salinas.parser.SalinasParser;
 import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkAreaManager;
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import javax.script.CompiledScript;
@@ -108,10 +111,19 @@ public class SalinasCompiledScript extends CompiledScript {
         }
         if (context.getAttribute("salinasWorkAreaManager") == null) {
             context.setAttribute("salinasWorkAreaManager",
-                    new com.idataconnect.salinas.data.WorkAreaManager(),
+                    new WorkAreaManager(),
                     ScriptContext.ENGINE_SCOPE);
         }
 
+        ResourceMeter meter = (ResourceMeter) context.getAttribute("salinasResourceMeter");
+        if (meter == null) {
+            meter = new ResourceMeter();
+            context.setAttribute("salinasResourceMeter", meter, ScriptContext.ENGINE_SCOPE);
+        }
+        meter.start((SalinasConfig) context.getAttribute("salinasConfig"));
+        ((WorkAreaManager) context.getAttribute("salinasWorkAreaManager"))
+                .setRecordMeter(meter);
+
         SalinasExecutionContext execContext = new SalinasExecutionContext(context);
         importFunctions(node, execContext);
 
@@ -119,10 +131,29 @@ public class SalinasCompiledScript extends CompiledScript {
             SalinasValue val = (SalinasValue) SalinasInterpreter.interpret(node, execContext);
             return val == null ? null : val.getValue();
         } catch (SalinasException ex) {
+            updateDeferredIndexes(execContext, ex);
             ScriptException se = new ScriptException(ex.getMessage(), ex.getFilename(),
                     ex.getBeginLine(), ex.getBeginColumn());
             se.addSuppressed(ex);
             throw se;
+        } catch (RuntimeException ex) {
+            updateDeferredIndexes(execContext, ex);
+            throw ex;
+        } finally {
+            meter.finish();
+        }
+    }
+
+    /**
+     * Updates the indexes whose updates were deferred when the script is
+     * aborted, so that they are not left out of date.
+     */
+    private static void updateDeferredIndexes(SalinasExecutionContext context,
+            Exception failure) {
+        try {
+            context.getWorkAreaManager().updateDeferredIndexes();
+        } catch (IOException ex) {
+            failure.addSuppressed(ex);
         }
     }
 
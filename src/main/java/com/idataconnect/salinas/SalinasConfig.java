@@ -20,7 +20,43 @@ public class SalinasConfig implements Serializable {
     private File currentDirectory;
     private long currentRandomSeed = 179757L;
     private Random currentRandom = new Random(currentRandomSeed);
+    private boolean near;
+    private boolean exact;
+    private boolean deleted;
+    private long lockTimeout = 5000;
+    private int maxArrayElements;
+    private int maxStringLength;
+    private long maxOutputChars;
+    private long maxRecordAccesses;
+    private int maxJobOutputChars = 65_536;
+    private int parallelism;
 
+    /**
+     * Creates a copy of the settings, which can be changed without changing
+     * these settings. The copy has its own random number generator, which
+     * starts from the current seed.
+     *
+     * @return the copy
+     */
+    public SalinasConfig copy() {
+        final SalinasConfig copy = new SalinasConfig();
+        copy.decimals = decimals;
+        copy.precision = precision;
+        copy.currentDirectory = currentDirectory;
+        copy.currentRandomSeed = currentRandomSeed;
+        copy.currentRandom = currentRandomSeed < 0 ? new Random() : new Random(currentRandomSeed);
+        copy.near = near;
+        copy.exact = exact;
+        copy.deleted = deleted;
+        copy.lockTimeout = lockTimeout;
+        copy.maxArrayElements = maxArrayElements;
+        copy.maxStringLength = maxStringLength;
+        copy.maxOutputChars = maxOutputChars;
+        copy.maxRecordAccesses = maxRecordAccesses;
+        copy.maxJobOutputChars = maxJobOutputChars;
+        copy.parallelism = parallelism;
+        return copy;
+    }
 
     /**
      * Gets the number of decimal places used when displaying numeric values.
@@ -99,6 +135,219 @@ public class SalinasConfig implements Serializable {
         }
     }
 
+    /**
+     * Gets whether an unsuccessful <code>SEEK</code> leaves the record
+     * pointer on the record with the next higher key, instead of at the end
+     * of the file.
+     *
+     * @return whether <code>SET NEAR</code> is on
+     */
+    public boolean isNear() {
+        return near;
+    }
+
+    /**
+     * Sets whether an unsuccessful <code>SEEK</code> leaves the record
+     * pointer on the record with the next higher key, instead of at the end
+     * of the file.
+     *
+     * @param near whether <code>SET NEAR</code> is on
+     */
+    public void setNear(boolean near) {
+        this.near = near;
+    }
+
+    /**
+     * Gets whether character keys must match in their entirety when seeking,
+     * rather than matching on the leading characters of the key.
+     *
+     * @return whether <code>SET EXACT</code> is on
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Sets whether character keys must match in their entirety when seeking,
+     * rather than matching on the leading characters of the key.
+     *
+     * @param exact whether <code>SET EXACT</code> is on
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Gets whether records which are marked as deleted are skipped when the
+     * record pointer is moved.
+     *
+     * @return whether <code>SET DELETED</code> is on
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Sets whether records which are marked as deleted are skipped when the
+     * record pointer is moved.
+     *
+     * @param deleted whether <code>SET DELETED</code> is on
+     */
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * Gets the time to wait for a record or file lock which is held by
+     * another session or process.
+     *
+     * @return the time in milliseconds, or a negative number to wait for as
+     * long as it takes
+     */
+    public long getLockTimeout() {
+        return lockTimeout;
+    }
+
+    /**
+     * Sets the time to wait for a record or file lock which is held by
+     * another session or process, as set by <code>SET REPROCESS TO</code>
+     * in seconds. A lock which is not taken by then fails.
+     *
+     * @param lockTimeout the time in milliseconds, zero to try once, or a
+     * negative number to wait for as long as it takes
+     */
+    public void setLockTimeout(long lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Gets the number of elements which a script may add to its arrays.
+     *
+     * @return the number of elements, or zero if there is no limit
+     */
+    public int getMaxArrayElements() {
+        return maxArrayElements;
+    }
+
+    /**
+     * Sets the number of elements which a script may add to its arrays,
+     * counted across all of them. A script which adds more elements fails.
+     *
+     * @param maxArrayElements the number of elements, or zero for no limit
+     */
+    public void setMaxArrayElements(int maxArrayElements) {
+        this.maxArrayElements = maxArrayElements;
+    }
+
+    /**
+     * Gets the number of characters which a string built by concatenation
+     * may hold.
+     *
+     * @return the number of characters, or zero if there is no limit
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Sets the number of characters which a string built by concatenation
+     * may hold. A script which builds a longer string fails.
+     *
+     * @param maxStringLength the number of characters, or zero for no limit
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * Gets the number of characters which a script may write, to its writer
+     * or to files written by <code>LIST ... TO FILE</code>.
+     *
+     * @return the number of characters, or zero if there is no limit
+     */
+    public long getMaxOutputChars() {
+        return maxOutputChars;
+    }
+
+    /**
+     * Sets the number of characters which a script may write, to its writer
+     * or to files written by <code>LIST ... TO FILE</code>. A script which
+     * writes more fails, without writing the output which would pass the
+     * limit.
+     *
+     * @param maxOutputChars the number of characters, or zero for no limit
+     */
+    public void setMaxOutputChars(long maxOutputChars) {
+        this.maxOutputChars = maxOutputChars;
+    }
+
+    /**
+     * Gets the number of records which a script may move the record pointer
+     * to.
+     *
+     * @return the number of records, or zero if there is no limit
+     */
+    public long getMaxRecordAccesses() {
+        return maxRecordAccesses;
+    }
+
+    /**
+     * Sets the number of records which a script may move the record pointer
+     * to, counting each record each time it is visited by a command, or by
+     * <code>SKIP</code>, <code>GOTO</code> or <code>SEEK</code>. A script
+     * which visits more fails.
+     *
+     * @param maxRecordAccesses the number of records, or zero for no limit
+     */
+    public void setMaxRecordAccesses(long maxRecordAccesses) {
+        this.maxRecordAccesses = maxRecordAccesses;
+    }
+
+    /**
+     * Gets the number of characters of output which are kept for each
+     * background job.
+     *
+     * @return the number of characters, or zero if there is no limit
+     */
+    public int getMaxJobOutputChars() {
+        return maxJobOutputChars;
+    }
+
+    /**
+     * Sets the number of characters of output which are kept for each
+     * background job, started by <code>DO ... ASYNC</code>. When a job
+     * writes more, its earliest output is dropped, so that
+     * <code>JOBOUTPUT()</code> gives the last of it.
+     *
+     * @param maxJobOutputChars the number of characters, or zero for no
+     * limit
+     */
+    public void setMaxJobOutputChars(int maxJobOutputChars) {
+        this.maxJobOutputChars = maxJobOutputChars;
+    }
+
+    /**
+     * Gets the number of threads which run the iterations of a
+     * <code>PARALLEL FOR</code> loop.
+     *
+     * @return the number of threads, or zero for one for each processor
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads which run the iterations of a
+     * <code>PARALLEL FOR</code> loop. The threads are kept in a pool for each
+     * number of threads, which the scripts with the same setting share.
+     *
+     * @param parallelism the number of threads, or zero for one for each
+     * processor
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public Random getCurrentRandom() {
         return currentRandom;
     }
@@ -0,0 +1,260 @@
+package com.idataconnect.salinas;
+
+import com.idataconnect.salinas.interpreter.Cancellation;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+
+/**
+ * Runs compiled scripts concurrently, each on its own thread, and gives
+ * their results as futures. On a runtime which has virtual threads, each
+ * script runs on a virtual thread, so that many scripts which are waiting
+ * for their tables use few platform threads. Otherwise, the scripts run on
+ * a pool of daemon threads.
+ * <p>
+ * A script may name the tables it uses, and no more than
+ * <code>maxPerFile</code> scripts which name the same table run at once.
+ * The others wait for their turn, in the order they were submitted,
+ * without holding a thread: a script which gives back its turn hands it to
+ * the next script in line, which is then started.
+ * <p>
+ * A script is cancelled by cancelling its future, which stops the script
+ * soon after, when one of its loops goes round or it calls a function. A
+ * future which times out, such as by {@link CompletableFuture#orTimeout},
+ * cancels its script in the same way. Closing the executor cancels every
+ * script which has not finished.
+ * <p>
+ * The script runs with the {@link Cancellation} its context already has, if
+ * any, so that a deadline set on the context is kept, and the host may also
+ * cancel the script through the context. Cancelling the future cancels the
+ * context, which stays cancelled until its cancellation is cleared.
+ */
+public class SalinasExecutor implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(SalinasExecutor.class.getName());
+
+    /**
+     * The turns of the scripts which use a table. A script which has to
+     * wait is queued, and its future is completed when a turn is given
+     * back, so that no thread waits for it.
+     */
+    private static final class Turns {
+        private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int available;
+
+        private Turns(int available) {
+            this.available = available;
+        }
+
+        /**
+         * Takes a turn, or queues for one.
+         *
+         * @return a future which is completed when the turn is taken, and
+         * which may be cancelled to leave the queue
+         */
+        synchronized CompletableFuture<Void> take() {
+            if (available > 0 && waiting.isEmpty()) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            final CompletableFuture<Void> turn = new CompletableFuture<>();
+            waiting.add(turn);
+            return turn;
+        }
+
+        /**
+         * Gives back a turn, to the first script in line which still waits.
+         */
+        void giveBack() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                do {
+                    next = waiting.poll();
+                } while (next != null && next.isDone());
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // Completed outside the lock, since it starts the next script
+            if (!next.complete(null)) {
+                // Cancelled in the meantime
+                giveBack();
+            }
+        }
+    }
+
+    private final ExecutorService threads;
+    private final boolean virtual;
+    private final int maxPerFile;
+    private final ConcurrentHashMap<String, Turns> files = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<Object>> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an executor.
+     *
+     * @param maxPerFile the number of scripts which may use the same table
+     * at once
+     */
+    public SalinasExecutor(int maxPerFile) {
+        if (maxPerFile < 1) {
+            throw new IllegalArgumentException("maxPerFile must be at least 1");
+        }
+        this.maxPerFile = maxPerFile;
+        ExecutorService service = null;
+        try {
+            service = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            LOGGER.log(Level.FINE, "Virtual threads are not available", ex);
+        }
+        this.virtual = service != null;
+        if (service == null) {
+            final AtomicInteger count = new AtomicInteger();
+            service = Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task, "salinas-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.threads = service;
+    }
+
+    /**
+     * Gets whether the scripts run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Runs a compiled script against a context. The context must not be
+     * used by another thread until the script has finished.
+     *
+     * @param script the compiled script
+     * @param context the context to run the script against
+     * @param tables the tables which the script uses
+     * @return the value of the script, or the <code>ScriptException</code>
+     * it failed with
+     * @throws IOException if the path of a table could not be resolved
+     */
+    public CompletableFuture<Object> submit(CompiledScript script, ScriptContext context,
+            File... tables) throws IOException {
+        // Sorted, so that scripts which use the same tables take them in the
+        // same order
+        final TreeSet<String> keys = new TreeSet<>();
+        for (File table : tables) {
+            keys.add(table.getCanonicalPath());
+        }
+
+        Cancellation existing = (Cancellation) context.getAttribute("salinasCancellation");
+        if (existing == null) {
+            existing = new Cancellation();
+            context.setAttribute("salinasCancellation", existing, ScriptContext.ENGINE_SCOPE);
+        }
+        final Cancellation cancellation = existing;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        // The turn the script is waiting for, which is cancelled with it
+        final AtomicReference<CompletableFuture<Void>> waiting = new AtomicReference<>();
+        result.whenComplete((value, ex) -> {
+            if (ex instanceof CancellationException || ex instanceof TimeoutException) {
+                cancellation.cancel();
+                final CompletableFuture<Void> turn = waiting.get();
+                if (turn != null) {
+                    turn.cancel(false);
+                }
+            }
+            running.remove(result);
+        });
+        running.add(result);
+
+        // The turns are taken one after another, and the script is started
+        // once it has all of them
+        final List<Turns> held = new ArrayList<>(keys.size());
+        CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+        for (String key : keys) {
+            final Turns turns = files.computeIfAbsent(key, k -> new Turns(maxPerFile));
+            ready = ready.thenCompose(v -> {
+                final CompletableFuture<Void> turn = turns.take();
+                waiting.set(turn);
+                if (result.isDone()) {
+                    turn.cancel(false);
+                }
+                return turn.thenRun(() -> held.add(turns));
+            });
+        }
+        ready.whenCompleteAsync((v, waitEx) -> {
+            try {
+                if (waitEx != null) {
+                    result.completeExceptionally(waitEx);
+                } else if (!result.isDone()) {
+                    result.complete(script.eval(context));
+                }
+            } catch (Exception | Error ex) {
+                result.completeExceptionally(ex);
+            } finally {
+                for (Turns turns : held) {
+                    turns.giveBack();
+                }
+            }
+        }, threads);
+        return result;
+    }
+
+    /**
+     * Runs a compiled script in a session. The session must not be used by
+     * another thread until the script has finished.
+     *
+     * @param script the compiled script
+     * @param session the session to run the script in
+     * @param tables the tables which the script uses
+     * @return the value of the script, or the <code>ScriptException</code>
+     * it failed with
+     * @throws IOException if the path of a table could not be resolved
+     */
+    public CompletableFuture<Object> submit(CompiledScript script, SalinasSession session,
+            File... tables) throws IOException {
+        return submit(script, session.getScriptContext(), tables);
+    }
+
+    /**
+     * Gets the number of scripts which have not finished.
+     */
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Cancels the scripts which have not finished, and waits for them to
+     * stop.
+     */
+    @Override
+    public void close() {
+        for (CompletableFuture<Object> future : new ArrayList<>(running)) {
+            future.cancel(false);
+        }
+        threads.shutdown();
+        try {
+            threads.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
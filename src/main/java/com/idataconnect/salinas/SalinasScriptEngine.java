@@ -13,13 +13,24 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
 
 /**
  * JSR-233 ScriptEngine implementation for Salinas.
+ * <p>
+ * The engine is <code>THREAD-ISOLATED</code>: it may be shared by any number
+ * of threads, and each thread has its own default context, which is created
+ * when the thread first uses the engine, and shares only the global scope
+ * bindings of the engine. Compiled scripts are never changed by running
+ * them, and may be run by several threads at once, against different
+ * contexts. All of the state of a run, such as its variables and work
+ * areas, is held by the context it is run against.
  */
 public class SalinasScriptEngine extends AbstractScriptEngine implements Compilable {
     
     private final SalinasScriptEngineFactory factory;
+    private final ThreadLocal<ScriptContext> threadContext = new ThreadLocal<>();
+    private volatile Bindings globalBindings;
 
     /**
      * Creates a new Salinas Script Engine instance using the singleton
@@ -47,6 +58,94 @@ public class SalinasScriptEngine extends AbstractScriptEngine implements Compila
         return compile(script).eval(context);
     }
 
+    @Override
+    public Object eval(String script) throws ScriptException {
+        return eval(script, getContext());
+    }
+
+    @Override
+    public Object eval(Reader script) throws ScriptException {
+        return eval(script, getContext());
+    }
+
+    @Override
+    public Object eval(String script, Bindings bindings) throws ScriptException {
+        return eval(script, getScriptContext(bindings));
+    }
+
+    @Override
+    public Object eval(Reader script, Bindings bindings) throws ScriptException {
+        return eval(script, getScriptContext(bindings));
+    }
+
+    /**
+     * Gets the default context of the current thread, creating it when the
+     * thread first uses the engine.
+     *
+     * @return the default context of the current thread
+     */
+    @Override
+    public ScriptContext getContext() {
+        ScriptContext ctxt = threadContext.get();
+        if (ctxt == null) {
+            ctxt = new SimpleScriptContext();
+            ctxt.setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+            ctxt.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+            threadContext.set(ctxt);
+        }
+        return ctxt;
+    }
+
+    /**
+     * Sets the default context of the current thread. The default contexts
+     * of other threads are not changed.
+     *
+     * @param ctxt the default context
+     */
+    @Override
+    public void setContext(ScriptContext ctxt) {
+        if (ctxt == null) {
+            throw new NullPointerException("null context");
+        }
+        threadContext.set(ctxt);
+    }
+
+    @Override
+    public Bindings getBindings(int scope) {
+        if (scope == ScriptContext.GLOBAL_SCOPE) {
+            return globalBindings;
+        }
+        return getContext().getBindings(scope);
+    }
+
+    /**
+     * Sets the bindings of a scope. The global scope is shared by every
+     * thread, while the engine scope is set in the default context of the
+     * current thread.
+     *
+     * @param bindings the bindings
+     * @param scope the scope
+     */
+    @Override
+    public void setBindings(Bindings bindings, int scope) {
+        if (scope == ScriptContext.GLOBAL_SCOPE) {
+            globalBindings = bindings;
+        }
+        getContext().setBindings(bindings, scope);
+    }
+
+    @Override
+    protected ScriptContext getScriptContext(Bindings nn) {
+        final ScriptContext ctxt = new SimpleScriptContext();
+        final ScriptContext defaultContext = getContext();
+        ctxt.setBindings(nn, ScriptContext.ENGINE_SCOPE);
+        ctxt.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+        ctxt.setReader(defaultContext.getReader());
+        ctxt.setWriter(defaultContext.getWriter());
+        ctxt.setErrorWriter(defaultContext.getErrorWriter());
+        return ctxt;
+    }
+
     @Override
     public Bindings createBindings() {
         return new SimpleBindings();
@@ -81,7 +81,7 @@ public class SalinasScriptEngineFactory implements ScriptEngineFactory {
             case ScriptEngine.LANGUAGE_VERSION:
                 return getLanguageVersion();
             case "THREADING":
-                return null;//"MULTITHREADED";
+                return "THREAD-ISOLATED";
 
             default:
                 return null;
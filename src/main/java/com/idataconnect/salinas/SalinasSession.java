@@ -1,38 +1,62 @@
 package com.idataconnect.salinas;
 
+import com.idataconnect.salinas.data.WorkArea;
 import com.idataconnect.salinas.data.WorkAreaManager;
 import com.idataconnect.salinas.function.CallStack;
 import com.idataconnect.salinas.function.FunctionContext;
+import com.idataconnect.salinas.interpreter.JobTable;
 import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
 
+import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 
 /**
  * Encapsulates the headless state and engine of a Salinas workspace.
  * This class is independent of any UI implementation.
+ * <p>
+ * The state of the session is held by its own script context, rather than
+ * by the default context of the engine, so that the session may be used by
+ * any thread, one thread at a time. Scripts are run against it with
+ * {@link #eval(String)} and {@link #eval(CompiledScript)}.
  */
-public class SalinasSession {
+public class SalinasSession implements Closeable {
 
     private final WorkAreaManager workAreaManager = new WorkAreaManager();
     private final SalinasScriptEngine engine = new SalinasScriptEngine();
-    private final SalinasExecutionContext execContext;
+    private final ScriptContext scriptContext = new SimpleScriptContext();
+    private SalinasExecutionContext execContext;
+    private WorkAreaManager.State initializedState;
     private String currentPath;
 
     public SalinasSession() {
-        SalinasConfig config = new SalinasConfig();
         this.currentPath = new File(".").getAbsolutePath();
-        config.setCurrentDirectory(new File(currentPath));
 
         // Initialize persistent execution context
-        ScriptContext sc = engine.getContext();
-        sc.setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
-        sc.setAttribute("salinasCallStack", new CallStack(), ScriptContext.ENGINE_SCOPE);
-        sc.setAttribute("salinasFunctionContext", new FunctionContext(sc), ScriptContext.ENGINE_SCOPE);
-        sc.setAttribute("salinasWorkAreaManager", workAreaManager, ScriptContext.ENGINE_SCOPE);
-        sc.setAttribute("salinasCurrentPath", currentPath, ScriptContext.ENGINE_SCOPE);
+        engine.setContext(scriptContext);
+        scriptContext.setBindings(engine.getBindings(ScriptContext.GLOBAL_SCOPE),
+                ScriptContext.GLOBAL_SCOPE);
+        scriptContext.setAttribute("salinasWorkAreaManager", workAreaManager, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setAttribute("salinasCurrentPath", currentPath, ScriptContext.ENGINE_SCOPE);
         // User should set "salinasApp" or other UI-specific attributes externally
-        this.execContext = new SalinasExecutionContext(sc);
+        initialize();
+    }
+
+    private void initialize() {
+        final SalinasConfig config = new SalinasConfig();
+        config.setCurrentDirectory(new File(currentPath));
+        scriptContext.setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setAttribute("salinasCallStack", new CallStack(), ScriptContext.ENGINE_SCOPE);
+        scriptContext.setAttribute("salinasFunctionContext", new FunctionContext(scriptContext),
+                ScriptContext.ENGINE_SCOPE);
+        this.execContext = new SalinasExecutionContext(scriptContext);
     }
 
     public WorkAreaManager getWorkAreaManager() {
@@ -47,6 +71,38 @@ public class SalinasSession {
         return execContext;
     }
 
+    /**
+     * Gets the script context which holds the state of the session.
+     *
+     * @return the script context
+     */
+    public ScriptContext getScriptContext() {
+        return scriptContext;
+    }
+
+    /**
+     * Runs a script in the session.
+     *
+     * @param script the script
+     * @return the value of the script
+     * @throws ScriptException if the script could not be compiled, or failed
+     */
+    public Object eval(String script) throws ScriptException {
+        return engine.eval(script, scriptContext);
+    }
+
+    /**
+     * Runs a compiled script in the session. The script may have been
+     * compiled by any Salinas engine.
+     *
+     * @param script the compiled script
+     * @return the value of the script
+     * @throws ScriptException if the script failed
+     */
+    public Object eval(CompiledScript script) throws ScriptException {
+        return script.eval(scriptContext);
+    }
+
     public String getCurrentPath() {
         return currentPath;
     }
@@ -56,6 +112,75 @@ public class SalinasSession {
         if (execContext != null && execContext.getConfig() != null) {
             execContext.getConfig().setCurrentDirectory(new File(currentPath));
         }
-        engine.getContext().setAttribute("salinasCurrentPath", currentPath, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setAttribute("salinasCurrentPath", currentPath, ScriptContext.ENGINE_SCOPE);
+    }
+
+    /**
+     * Records the tables which are open, with their order, filter and
+     * relations, as the state which {@link #reset(boolean)} returns to when
+     * it keeps the tables open. A {@link SalinasSessionPool} marks each
+     * session once its initializer has run.
+     */
+    public void markInitialized() {
+        initializedState = workAreaManager.saveState();
+    }
+
+    /**
+     * Returns the session to the state of a new session, without creating a
+     * new engine. The variables and functions of the scripts which were run
+     * are dropped, and the settings, call stack and standard streams are
+     * replaced. The background jobs which the scripts started are cancelled,
+     * and the cancellation and deadline of the session are removed.
+     * Other attributes whose names start with <code>salinas</code> are kept.
+     * <p>
+     * The tables which are open may be kept open, in which case pending
+     * changes are discarded, deferred index updates are made, the first work
+     * area is selected, and each table is moved to its first record. If the
+     * session was {@link #markInitialized() marked}, the tables which were
+     * opened since are closed, and the order, filter and relations of the
+     * others are restored to the marked state. Otherwise, the order, filter
+     * and relations of the tables are kept.
+     *
+     * @param keepWorkAreas whether the open tables are kept open
+     * @throws IOException if a table could not be closed or updated
+     * @throws SalinasException if a table could not be moved to its first
+     * record, or a table of the marked state was closed
+     */
+    public void reset(boolean keepWorkAreas) throws IOException, SalinasException {
+        JobTable.cancelAll(scriptContext);
+        scriptContext.removeAttribute("salinasCancellation", ScriptContext.ENGINE_SCOPE);
+        final Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+        bindings.keySet().removeIf(name -> !name.startsWith("salinas"));
+        scriptContext.setReader(new InputStreamReader(System.in));
+        scriptContext.setWriter(new PrintWriter(System.out, true));
+        scriptContext.setErrorWriter(new PrintWriter(System.err, true));
+        initialize();
+
+        if (!keepWorkAreas) {
+            workAreaManager.closeAll();
+            workAreaManager.select(1);
+            return;
+        }
+        workAreaManager.updateDeferredIndexes();
+        if (initializedState != null) {
+            workAreaManager.restoreState(initializedState);
+        }
+        for (WorkArea workArea : workAreaManager.getWorkAreas()) {
+            workArea.discardBuffer();
+            workArea.goTop();
+        }
+        workAreaManager.select(1);
+    }
+
+    /**
+     * Closes the tables which are open in the session, and cancels its
+     * background jobs.
+     *
+     * @throws IOException if a table could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        JobTable.cancelAll(scriptContext);
+        workAreaManager.closeAll();
     }
 }
@@ -0,0 +1,255 @@
+package com.idataconnect.salinas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of {@link SalinasSession sessions}, so that a server which runs a
+ * script for each request does not create a session, and open its tables,
+ * for each request.
+ * <p>
+ * A session is got with {@link #borrow()}, and given back with
+ * {@link #release(SalinasSession)}, which {@link SalinasSession#reset resets}
+ * it. The tables opened by the initializer, when the session is created,
+ * may be kept open across resets, with the order, filter and relations the
+ * initializer gave them. Tables opened by the borrower are closed. At most <code>maxIdle</code> sessions are
+ * kept, and a session which has been idle for longer than the idle timeout
+ * is closed when the pool is next used, or by {@link #evictIdle()}.
+ * <p>
+ * The pool may be used by any number of threads.
+ */
+public class SalinasSessionPool implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(SalinasSessionPool.class.getName());
+
+    /**
+     * Prepares a new session before it is first borrowed, such as by opening
+     * its tables.
+     */
+    @FunctionalInterface
+    public interface Initializer {
+        void initialize(SalinasSession session) throws Exception;
+    }
+
+    /**
+     * A session which is waiting in the pool.
+     */
+    private static final class Idle {
+        private final SalinasSession session;
+        private final long since;
+
+        private Idle(SalinasSession session, long since) {
+            this.session = session;
+            this.since = since;
+        }
+    }
+
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final int maxIdle;
+    private final long idleTimeoutNanos;
+    private volatile Initializer initializer;
+    private volatile boolean keepWorkAreas = true;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxIdle the number of idle sessions which are kept
+     * @param idleTimeout the time after which an idle session is closed
+     * @param unit the unit of the idle timeout
+     */
+    public SalinasSessionPool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        if (maxIdle < 0 || idleTimeout < 0) {
+            throw new IllegalArgumentException("maxIdle and idleTimeout must not be negative");
+        }
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * Sets the initializer of new sessions.
+     *
+     * @param initializer the initializer, or <code>null</code> for none
+     */
+    public void setInitializer(Initializer initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Sets whether the tables of a session are kept open when it is
+     * released. When they are not, the tables are closed, and the
+     * initializer is run again.
+     *
+     * @param keepWorkAreas whether the tables are kept open
+     */
+    public void setKeepWorkAreas(boolean keepWorkAreas) {
+        this.keepWorkAreas = keepWorkAreas;
+    }
+
+    /**
+     * Gets an idle session, or creates a session if none is idle.
+     *
+     * @return the session, which must be given back with
+     * {@link #release(SalinasSession)}
+     * @throws SalinasException if a new session could not be initialized
+     */
+    public SalinasSession borrow() throws SalinasException {
+        if (closed) {
+            throw new IllegalStateException("The session pool is closed");
+        }
+        evictIdle();
+        // The session given back last is taken first, so that the sessions
+        // which are not needed become idle for long enough to be evicted
+        final Idle entry = idle.pollFirst();
+        final SalinasSession session;
+        if (entry != null) {
+            idleCount.decrementAndGet();
+            session = entry.session;
+        } else {
+            session = create();
+        }
+        active.incrementAndGet();
+        borrowed.increment();
+        return session;
+    }
+
+    /**
+     * Gives back a borrowed session, which is reset, and kept for the next
+     * borrower unless enough sessions are idle already. A session which
+     * cannot be reset is closed.
+     *
+     * @param session the session
+     */
+    public void release(SalinasSession session) {
+        active.decrementAndGet();
+        try {
+            session.reset(keepWorkAreas);
+            if (!keepWorkAreas) {
+                initialize(session);
+                session.markInitialized();
+            }
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Session could not be reset, and is closed", ex);
+            discard(session);
+            return;
+        }
+        if (closed || idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            discard(session);
+            return;
+        }
+        idle.offerFirst(new Idle(session, System.nanoTime()));
+        evictIdle();
+    }
+
+    /**
+     * Closes the sessions which have been idle for longer than the idle
+     * timeout.
+     */
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        // The sessions given back last are at the head, so the oldest are
+        // at the tail
+        for (Iterator<Idle> it = idle.descendingIterator(); it.hasNext(); ) {
+            final Idle entry = it.next();
+            if (now - entry.since <= idleTimeoutNanos) {
+                break;
+            }
+            if (idle.removeLastOccurrence(entry)) {
+                idleCount.decrementAndGet();
+                discard(entry.session);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of sessions which are waiting in the pool.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Gets the number of sessions which are borrowed.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Gets the number of sessions the pool has created.
+     */
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    /**
+     * Gets the number of times a session was borrowed.
+     */
+    public long getBorrowedCount() {
+        return borrowed.sum();
+    }
+
+    /**
+     * Gets the number of sessions which were closed by the pool, because
+     * they were idle for too long, enough sessions were idle, or they could
+     * not be reset.
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * Closes the idle sessions. Sessions which are borrowed are closed when
+     * they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Idle entry; (entry = idle.pollFirst()) != null; ) {
+            idleCount.decrementAndGet();
+            discard(entry.session);
+        }
+    }
+
+    private SalinasSession create() throws SalinasException {
+        final SalinasSession session = new SalinasSession();
+        try {
+            initialize(session);
+            session.markInitialized();
+        } catch (Exception ex) {
+            discard(session);
+            throw new SalinasException("Session could not be initialized: "
+                    + ex.getMessage(), ex);
+        }
+        created.increment();
+        return session;
+    }
+
+    private void initialize(SalinasSession session) throws Exception {
+        final Initializer init = initializer;
+        if (init != null) {
+            init.initialize(session);
+        }
+    }
+
+    private void discard(SalinasSession session) {
+        evicted.increment();
+        try {
+            session.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Session could not be closed", ex);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.idataconnect.salinas.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The physical layout of the records in a DBF file, as described by the
+ * file header. Fields are numbered from 1, in the same way as the driver
+ * numbers them.
+ */
+public final class DbfLayout {
+
+    private static final int HEADER_SIZE = 32;
+    private static final int FIELD_DESCRIPTOR_SIZE = 32;
+    private static final byte HEADER_TERMINATOR = 0x0D;
+    private static final int CODE_PAGE_OFFSET = 29;
+
+    /**
+     * The character sets of the code page marks (language driver IDs) which
+     * may be stored in the header.
+     */
+    private static final Map<Integer, String> CODE_PAGES = new HashMap<>();
+
+    static {
+        CODE_PAGES.put(0x01, "IBM437");
+        CODE_PAGES.put(0x02, "IBM850");
+        CODE_PAGES.put(0x03, "windows-1252");
+        CODE_PAGES.put(0x04, "x-MacRoman");
+        CODE_PAGES.put(0x13, "Shift_JIS");
+        CODE_PAGES.put(0x57, "windows-1252");
+        CODE_PAGES.put(0x58, "windows-1252");
+        CODE_PAGES.put(0x59, "windows-1252");
+        CODE_PAGES.put(0x64, "IBM852");
+        CODE_PAGES.put(0x65, "IBM866");
+        CODE_PAGES.put(0x66, "IBM865");
+        CODE_PAGES.put(0x67, "IBM861");
+        CODE_PAGES.put(0x6A, "x-IBM737");
+        CODE_PAGES.put(0x6B, "IBM857");
+        CODE_PAGES.put(0x78, "Big5");
+        CODE_PAGES.put(0x79, "x-windows-949");
+        CODE_PAGES.put(0x7A, "GBK");
+        CODE_PAGES.put(0x7B, "Shift_JIS");
+        CODE_PAGES.put(0x7C, "x-windows-874");
+        CODE_PAGES.put(0x7D, "windows-1255");
+        CODE_PAGES.put(0x7E, "windows-1256");
+        CODE_PAGES.put(0xC8, "windows-1250");
+        CODE_PAGES.put(0xC9, "windows-1251");
+        CODE_PAGES.put(0xCA, "windows-1254");
+        CODE_PAGES.put(0xCB, "windows-1253");
+    }
+
+    private final int headerLength;
+    private final int recordLength;
+    private final String[] names;
+    private final char[] types;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] decimals;
+    private final Charset charset;
+
+    private DbfLayout(int headerLength, int recordLength, String[] names, char[] types,
+            int[] offsets, int[] lengths, int[] decimals, Charset charset) {
+        this.charset = charset;
+        this.headerLength = headerLength;
+        this.recordLength = recordLength;
+        this.names = names;
+        this.types = types;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.decimals = decimals;
+    }
+
+    /**
+     * Reads the layout from the header of a DBF file.
+     *
+     * @param channel a channel of the DBF file
+     * @return the layout
+     * @throws IOException if the header could not be read, or is invalid
+     */
+    public static DbfLayout read(FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        final int headerLength = header.getShort(8) & 0xffff;
+        final int recordLength = header.getShort(10) & 0xffff;
+        if (headerLength < HEADER_SIZE + 1 || recordLength < 1) {
+            throw new IOException("Invalid DBF header");
+        }
+
+        final ByteBuffer descriptors = ByteBuffer.allocate(headerLength - HEADER_SIZE);
+        readFully(channel, descriptors, HEADER_SIZE);
+
+        final List<String> names = new ArrayList<>();
+        final List<int[]> info = new ArrayList<>();
+        int offset = 1; // The deleted flag comes first
+        for (int pos = 0; pos + FIELD_DESCRIPTOR_SIZE <= descriptors.limit()
+                && descriptors.get(pos) != HEADER_TERMINATOR; pos += FIELD_DESCRIPTOR_SIZE) {
+            int end = pos;
+            while (end < pos + 11 && descriptors.get(end) != 0) {
+                end++;
+            }
+            final byte[] name = new byte[end - pos];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = descriptors.get(pos + i);
+            }
+            names.add(new String(name, StandardCharsets.US_ASCII).trim());
+
+            final int length = descriptors.get(pos + 16) & 0xff;
+            info.add(new int[] {descriptors.get(pos + 11) & 0xff, offset, length,
+                descriptors.get(pos + 17) & 0xff});
+            offset += length;
+        }
+
+        final int count = names.size();
+        final char[] types = new char[count];
+        final int[] offsets = new int[count];
+        final int[] lengths = new int[count];
+        final int[] decimals = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int[] field = info.get(i);
+            types[i] = Character.toUpperCase((char) field[0]);
+            offsets[i] = field[1];
+            lengths[i] = field[2];
+            decimals[i] = field[3];
+        }
+
+        return new DbfLayout(headerLength, recordLength, names.toArray(new String[0]),
+                types, offsets, lengths, decimals, charset(header.get(CODE_PAGE_OFFSET) & 0xff));
+    }
+
+    /**
+     * Reads the number of records from the header of a DBF file. The count is
+     * read each time, since records may have been appended.
+     *
+     * @param channel a channel of the DBF file
+     * @return the number of records
+     * @throws IOException if the header could not be read
+     */
+    public static int readRecordCount(FileChannel channel) throws IOException {
+        final ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, count, 4);
+        return count.getInt(0);
+    }
+
+    /**
+     * Gets the character set of the code page mark in the header. When the
+     * header has no mark, or the mark is not known, the bytes are taken as
+     * ISO-8859-1, in which every byte is a character.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    /**
+     * Gets the position of a record in the file.
+     *
+     * @param recno the record number, starting from 1
+     * @return the position of the first byte of the record
+     */
+    public long getRecordPosition(int recno) {
+        return headerLength + (long) (recno - 1) * recordLength;
+    }
+
+    public String getFieldName(int field) {
+        return names[field - 1];
+    }
+
+    public char getFieldType(int field) {
+        return types[field - 1];
+    }
+
+    /**
+     * Gets the offset of a field within a record.
+     */
+    public int getFieldOffset(int field) {
+        return offsets[field - 1];
+    }
+
+    public int getFieldLength(int field) {
+        return lengths[field - 1];
+    }
+
+    public int getDecimalLength(int field) {
+        return decimals[field - 1];
+    }
+
+    /**
+     * Gets the number of a field by name, ignoring case.
+     *
+     * @return the field number, or zero if there is no such field
+     */
+    public int getFieldNumber(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static Charset charset(int codePage) {
+        final String name = CODE_PAGES.get(codePage);
+        if (name != null && Charset.isSupported(name)) {
+            return Charset.forName(name);
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of DBF file");
+            }
+        }
+        buffer.flip();
+    }
+}
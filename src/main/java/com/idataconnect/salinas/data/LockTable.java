@@ -0,0 +1,524 @@
+package com.idataconnect.salinas.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The record and file locks which the work areas of every session in the
+ * process hold on tables. A lock is held by an owner, which is the work
+ * area that took it, and keeps the work areas of other owners from taking
+ * the same record, or the whole table, until it is released.
+ * <p>
+ * The record locks of a table are kept in {@value #STRIPES} stripes, chosen
+ * by record number, each with its own monitor, so that sessions locking
+ * different records of the same table seldom wait for each other. A file
+ * lock waits until no other owner holds a record of the table, and keeps
+ * other owners from locking records until it is released.
+ * <p>
+ * The locks keep sessions from each other only within one process. Tables
+ * which are changed by more than one process must be changed by the
+ * sessions of one process, such as through a {@code SalinasSessionPool},
+ * or be locked by other means.
+ * <p>
+ * Each lock which is taken in the process is also taken as a byte-range
+ * lock of the file, past the end of the data at offset
+ * {@value #LOCK_OFFSET} plus the record number, as other xBase programs
+ * lock tables, and the byte-range locks of other programs are polled until
+ * the timeout passes. These are advisory only: on some systems the
+ * operating system drops every byte-range lock which a process holds on a
+ * file when the process closes any handle of the file, which the driver,
+ * the readers of the tables and other sessions do as they open and close
+ * the table, so a lock may be lost to other processes while it is still
+ * held within this one. A table whose file cannot be opened for writing is
+ * locked within the process only.
+ * <p>
+ * Record number 0 is the header of the table, which is locked while
+ * records are appended.
+ */
+public final class LockTable {
+    private static final Logger LOGGER = Logger.getLogger(LockTable.class.getName());
+
+    /** The offset of the byte-range lock of record 0. */
+    static final long LOCK_OFFSET = 1_000_000_000L;
+    /** The number of stripes of the record locks of each table. */
+    static final int STRIPES = 64;
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final LockTable INSTANCE = new LockTable();
+
+    private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
+
+    public static LockTable getInstance() {
+        return INSTANCE;
+    }
+
+    private LockTable() {}
+
+    /**
+     * A table which has locks, or a lock being taken. The table is removed
+     * when its last lock is released.
+     */
+    private static final class Table {
+        private final String key;
+        private final FileChannel channel;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        private volatile Object fileOwner;
+        private FileLock fileLock;
+        private int users;
+
+        private Table(String key, FileChannel channel) {
+            this.key = key;
+            this.channel = channel;
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        private Stripe stripe(int recno) {
+            return stripes[recno & (STRIPES - 1)];
+        }
+    }
+
+    /**
+     * The record locks of the records whose numbers fall in a stripe, which
+     * are guarded by the monitor of the stripe.
+     */
+    private static final class Stripe {
+        private final Map<Integer, Claim> claims = new HashMap<>();
+    }
+
+    /**
+     * A record lock, whose byte-range lock is set once it has been taken.
+     */
+    private static final class Claim {
+        private final Object owner;
+        private FileLock lock;
+
+        private Claim(Object owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Locks a record of a table. A record which the owner has locked, or
+     * whose table the owner has locked, is locked already.
+     *
+     * @param file the DBF file
+     * @param recno the record number, or 0 for the header
+     * @param owner the owner of the lock
+     * @param timeout the time to wait for the lock in milliseconds, or a
+     * negative number to wait for as long as it takes
+     * @return whether the lock was taken
+     * @throws IOException if the byte-range lock could not be taken, or the
+     * thread was interrupted
+     */
+    public boolean lockRecord(File file, int recno, Object owner, long timeout)
+            throws IOException {
+        final long start = System.nanoTime();
+        final long timeoutNanos = nanos(timeout);
+        final Table table = acquire(file);
+        final Stripe stripe = table.stripe(recno);
+        final Claim claim = new Claim(owner);
+        boolean held = false;
+        try {
+            synchronized (stripe) {
+                while (true) {
+                    final Object fileOwner = table.fileOwner;
+                    final Claim existing = stripe.claims.get(recno);
+                    if (fileOwner == owner || existing != null && existing.owner == owner) {
+                        return true;
+                    }
+                    if (fileOwner == null && existing == null) {
+                        stripe.claims.put(recno, claim);
+                        break;
+                    }
+                    if (!await(stripe, start, timeoutNanos)) {
+                        return false;
+                    }
+                }
+            }
+
+            // No other thread of the process locks the range while the
+            // record is claimed, so only other processes can hold it
+            FileLock lock = null;
+            try {
+                lock = lockRange(table, LOCK_OFFSET + recno, 1, start, timeoutNanos);
+            } finally {
+                synchronized (stripe) {
+                    if (lock != null || table.channel == null) {
+                        claim.lock = lock;
+                        held = true;
+                    } else {
+                        stripe.claims.remove(recno);
+                        stripe.notifyAll();
+                    }
+                }
+            }
+            return held;
+        } finally {
+            if (!held) {
+                release(table);
+            }
+        }
+    }
+
+    /**
+     * Locks a table, so that no other owner may lock its records until the
+     * lock is released. The record locks which the owner holds on the table
+     * are released, as they are covered by the file lock.
+     *
+     * @param file the DBF file
+     * @param owner the owner of the lock
+     * @param timeout the time to wait for the lock in milliseconds, or a
+     * negative number to wait for as long as it takes
+     * @return whether the lock was taken
+     * @throws IOException if the byte-range lock could not be taken, or the
+     * thread was interrupted
+     */
+    public boolean lockFile(File file, Object owner, long timeout) throws IOException {
+        final long start = System.nanoTime();
+        final long timeoutNanos = nanos(timeout);
+        final Table table = acquire(file);
+        boolean claimed = false;
+        boolean held = false;
+        try {
+            synchronized (table) {
+                while (table.fileOwner != null && table.fileOwner != owner) {
+                    if (!await(table, start, timeoutNanos)) {
+                        return false;
+                    }
+                }
+                if (table.fileOwner == owner) {
+                    return true;
+                }
+                table.fileOwner = owner;
+                claimed = true;
+            }
+
+            for (Stripe stripe : table.stripes) {
+                synchronized (stripe) {
+                    while (releaseOwn(table, stripe, owner)) {
+                        if (!await(stripe, start, timeoutNanos)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+
+            final FileLock lock = lockRange(table, LOCK_OFFSET, LOCK_OFFSET, start, timeoutNanos);
+            if (lock != null || table.channel == null) {
+                synchronized (table) {
+                    table.fileLock = lock;
+                }
+                held = true;
+            }
+            return held;
+        } finally {
+            if (claimed && !held) {
+                clearFileOwner(table);
+            }
+            if (!held) {
+                release(table);
+            }
+        }
+    }
+
+    /**
+     * Releases the lock which an owner holds on a record. A record which the
+     * owner has not locked is left as it is.
+     *
+     * @param file the DBF file
+     * @param recno the record number, or 0 for the header
+     * @param owner the owner of the lock
+     * @throws IOException if the byte-range lock could not be released
+     */
+    public void unlockRecord(File file, int recno, Object owner) throws IOException {
+        final Table table = find(file);
+        if (table == null) {
+            return;
+        }
+        final Stripe stripe = table.stripe(recno);
+        synchronized (stripe) {
+            final Claim claim = stripe.claims.get(recno);
+            if (claim == null || claim.owner != owner) {
+                return;
+            }
+            try {
+                // The range is released before the record is, so that the
+                // next owner does not find it held by the process
+                if (claim.lock != null) {
+                    claim.lock.release();
+                }
+            } finally {
+                stripe.claims.remove(recno);
+                stripe.notifyAll();
+            }
+        }
+        release(table);
+    }
+
+    /**
+     * Releases the file lock and the record locks which an owner holds on a
+     * table.
+     *
+     * @param file the DBF file
+     * @param owner the owner of the locks
+     * @throws IOException if a byte-range lock could not be released
+     */
+    public void unlockAll(File file, Object owner) throws IOException {
+        final Table table = find(file);
+        if (table == null) {
+            return;
+        }
+        IOException failure = null;
+        for (Stripe stripe : table.stripes) {
+            synchronized (stripe) {
+                try {
+                    releaseOwn(table, stripe, owner);
+                } catch (IOException ex) {
+                    failure = ex;
+                }
+            }
+        }
+        if (table.fileOwner == owner) {
+            try {
+                final FileLock lock;
+                synchronized (table) {
+                    lock = table.fileLock;
+                    table.fileLock = null;
+                }
+                if (lock != null) {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                failure = ex;
+            } finally {
+                clearFileOwner(table);
+                release(table);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Gets whether an owner holds the lock of a record, or of its table.
+     *
+     * @param file the DBF file
+     * @param recno the record number, or 0 for the header
+     * @param owner the owner
+     * @return whether the record is locked by the owner
+     */
+    public boolean isLocked(File file, int recno, Object owner) {
+        final Table table = find(file);
+        if (table == null) {
+            return false;
+        } else if (table.fileOwner == owner) {
+            return true;
+        }
+        final Stripe stripe = table.stripe(recno);
+        synchronized (stripe) {
+            final Claim claim = stripe.claims.get(recno);
+            return claim != null && claim.owner == owner;
+        }
+    }
+
+    /**
+     * Gets whether an owner holds the lock of a table.
+     *
+     * @param file the DBF file
+     * @param owner the owner
+     * @return whether the table is locked by the owner
+     */
+    public boolean isFileLocked(File file, Object owner) {
+        final Table table = find(file);
+        return table != null && table.fileOwner == owner;
+    }
+
+    /**
+     * Releases the record locks which an owner holds in a stripe, and gets
+     * whether any other owner holds a record lock in it. Called with the
+     * monitor of the stripe held.
+     */
+    private boolean releaseOwn(Table table, Stripe stripe, Object owner) throws IOException {
+        boolean others = false;
+        boolean released = false;
+        try {
+            for (Iterator<Claim> i = stripe.claims.values().iterator(); i.hasNext();) {
+                final Claim claim = i.next();
+                if (claim.owner != owner) {
+                    others = true;
+                    continue;
+                }
+                try {
+                    if (claim.lock != null) {
+                        claim.lock.release();
+                    }
+                } finally {
+                    i.remove();
+                    released = true;
+                    release(table);
+                }
+            }
+        } finally {
+            if (released) {
+                stripe.notifyAll();
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Removes the owner of the file lock of a table, and wakes the threads
+     * which wait to lock the table or its records.
+     */
+    private static void clearFileOwner(Table table) {
+        synchronized (table) {
+            table.fileOwner = null;
+            table.notifyAll();
+        }
+        for (Stripe stripe : table.stripes) {
+            synchronized (stripe) {
+                stripe.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes a byte-range lock of a table, polling until the lock is free or
+     * the timeout passes.
+     *
+     * @return the lock, or <code>null</code> if it was not taken, or the
+     * table is only locked within the process
+     */
+    private static FileLock lockRange(Table table, long position, long size, long start,
+            long timeoutNanos) throws IOException {
+        if (table.channel == null) {
+            return null;
+        }
+        while (true) {
+            final FileLock lock = table.channel.tryLock(position, size, false);
+            if (lock != null) {
+                return lock;
+            }
+            final long remaining = remaining(start, timeoutNanos);
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(POLL_NANOS, remaining));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a lock");
+            }
+        }
+    }
+
+    /**
+     * Waits on a monitor, which is held, until it is notified or the timeout
+     * passes.
+     *
+     * @return whether there is time left to try again
+     */
+    private static boolean await(Object monitor, long start, long timeoutNanos)
+            throws InterruptedIOException {
+        final long remaining = remaining(start, timeoutNanos);
+        if (remaining <= 0) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a lock");
+        }
+        return true;
+    }
+
+    private static long nanos(long timeout) {
+        return timeout < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    private static long remaining(long start, long timeoutNanos) {
+        return timeoutNanos < 0 ? Long.MAX_VALUE : timeoutNanos - (System.nanoTime() - start);
+    }
+
+    /**
+     * Adds a user to a table, opening it if it has no locks. Each lock which
+     * is held, or being taken, is a user of the table.
+     */
+    private Table acquire(File file) throws IOException {
+        return tables.compute(key(file), (key, table) -> {
+            if (table == null) {
+                table = new Table(key, open(key));
+            }
+            table.users++;
+            return table;
+        });
+    }
+
+    /**
+     * Removes a user from a table, and closes the table when no user
+     * remains.
+     */
+    private void release(Table table) {
+        tables.computeIfPresent(table.key, (key, open) -> {
+            if (open != table || --open.users > 0) {
+                return open;
+            }
+            if (open.channel != null) {
+                try {
+                    open.channel.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Cannot close lock channel of " + key, ex);
+                }
+            }
+            return null;
+        });
+    }
+
+    private Table find(File file) {
+        if (tables.isEmpty() || file == null) {
+            return null;
+        }
+        try {
+            return tables.get(key(file));
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot resolve " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the channel through which the byte-range locks of a table are
+     * taken.
+     *
+     * @return the channel, or <code>null</code> if the file cannot be
+     * opened for writing
+     */
+    private static FileChannel open(String key) {
+        try {
+            return FileChannel.open(new File(key).toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot open " + key + " for byte-range locks", ex);
+            return null;
+        }
+    }
+
+    private static String key(File file) throws IOException {
+        return file.getCanonicalPath();
+    }
+}
@@ -0,0 +1,20 @@
+package com.idataconnect.salinas.data;
+
+/**
+ * How much of a condition could be resolved through indexes.
+ */
+public enum OptimizationLevel {
+    /**
+     * Every comparison in the condition was resolved through an index.
+     */
+    FULL,
+    /**
+     * Some of the comparisons in the condition were resolved through an
+     * index, and the rest are tested against the candidate records.
+     */
+    PARTIAL,
+    /**
+     * No index could be used, so every record is tested.
+     */
+    NONE
+}
@@ -0,0 +1,255 @@
+package com.idataconnect.salinas.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cache of blocks of records of the tables in the {@link TableRegistry},
+ * which holds a fixed number of blocks and evicts them by the CLOCK
+ * algorithm. Blocks are found without locking, and only mark themselves as
+ * referenced, while blocks are added and dropped under a lock.
+ * <p>
+ * A block is only added if no record of its table was changed while it was
+ * read, so that a block which was read before a change is never cached
+ * after the change is reported.
+ */
+final class PageCache {
+
+    /**
+     * A block of records, which is never changed once it is read.
+     */
+    static final class Page {
+        private final TableRegistry.SharedTable table;
+        private final long key;
+        private final int index;
+        private final int first;
+        private final int count;
+        private final ByteBuffer data;
+        private volatile boolean referenced;
+        private int slot;
+
+        private Page(TableRegistry.SharedTable table, int index, int first, int count,
+                ByteBuffer data) {
+            this.table = table;
+            this.key = key(table, index);
+            this.index = index;
+            this.first = first;
+            this.count = count;
+            this.data = data;
+        }
+
+        /**
+         * Reads a block of records from the channel of a table.
+         */
+        static Page read(TableRegistry.SharedTable table, int index, int first, int count)
+                throws IOException {
+            final DbfLayout layout = table.getLayout();
+            final ByteBuffer data = ByteBuffer.allocate(count * layout.getRecordLength());
+            final long position = layout.getRecordPosition(first);
+            while (data.hasRemaining()) {
+                if (table.getChannel().read(data, position + data.position()) < 0) {
+                    break;
+                }
+            }
+            return new Page(table, index, first, data.position() / layout.getRecordLength(),
+                    data);
+        }
+
+        /**
+         * Reads consecutive blocks of records from the channel of a table,
+         * by a single read. The blocks share the buffer they are read into.
+         *
+         * @param index the index of the first block
+         * @param first the number of the first record of the first block
+         * @param count the number of records to read
+         * @param pageRecords the number of records in each block
+         * @return the blocks which hold at least one record
+         */
+        static Page[] read(TableRegistry.SharedTable table, int index, int first, int count,
+                int pageRecords) throws IOException {
+            final Page run = read(table, index, first, count);
+            final int recordLength = table.getLayout().getRecordLength();
+            final Page[] pages = new Page[(run.count + pageRecords - 1) / pageRecords];
+            for (int i = 0; i < pages.length; i++) {
+                final int records = Math.min(pageRecords, run.count - i * pageRecords);
+                final ByteBuffer data = ByteBuffer.wrap(run.data.array(),
+                        i * pageRecords * recordLength, records * recordLength).slice();
+                pages[i] = new Page(table, index + i, first + i * pageRecords, records, data);
+            }
+            return pages;
+        }
+
+        /**
+         * Gets the index of the block, starting from 0.
+         */
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the number of the first record of the block.
+         */
+        int getFirst() {
+            return first;
+        }
+
+        /**
+         * Gets the number of records in the block.
+         */
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the records of the block, which must not be changed.
+         */
+        ByteBuffer getData() {
+            return data;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Page> pages = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private Page[] slots;
+    private int hand;
+
+    PageCache(int capacity) {
+        this.slots = new Page[capacity];
+    }
+
+    /**
+     * Gets a cached block.
+     *
+     * @return the block, or <code>null</code> if it is not cached
+     */
+    Page get(TableRegistry.SharedTable table, int index) {
+        final Page page = pages.get(key(table, index));
+        if (page == null) {
+            misses.increment();
+            return null;
+        }
+        page.referenced = true;
+        hits.increment();
+        return page;
+    }
+
+    /**
+     * Adds a block, unless a record of its table was changed since the
+     * block was read.
+     *
+     * @param page the block
+     * @param version the version of the table before the block was read
+     */
+    void put(Page page, long version) {
+        lock.lock();
+        try {
+            if (slots.length == 0 || page.table.getVersion() != version) {
+                return;
+            }
+            final Page old = pages.get(page.key);
+            if (old != null && slots[old.slot] == old) {
+                page.slot = old.slot;
+            } else {
+                page.slot = evict();
+            }
+            slots[page.slot] = page;
+            pages.put(page.key, page);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a block of a table, and makes the readers of the table read
+     * their current block again.
+     */
+    void invalidate(TableRegistry.SharedTable table, int index) {
+        lock.lock();
+        try {
+            table.changed();
+            pages.remove(key(table, index));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every block of a table, and makes the readers of the table read
+     * their current block again.
+     */
+    void invalidateAll(TableRegistry.SharedTable table) {
+        lock.lock();
+        try {
+            table.changed();
+            pages.values().removeIf(page -> page.table == table);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the number of blocks the cache holds, keeping the blocks which
+     * fit.
+     */
+    void resize(int capacity) {
+        lock.lock();
+        try {
+            final Page[] kept = Arrays.stream(slots)
+                    .filter(page -> page != null && pages.get(page.key) == page)
+                    .toArray(Page[]::new);
+            slots = new Page[capacity];
+            hand = 0;
+            for (Page page : kept) {
+                if (hand < capacity) {
+                    page.slot = hand;
+                    slots[hand++] = page;
+                } else {
+                    pages.remove(page.key, page);
+                }
+            }
+            hand = capacity == 0 ? 0 : hand % capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Finds a free slot, or the first slot from the hand whose block has not
+     * been referenced since the hand last passed it, and drops its block.
+     * Must be called with the lock held.
+     */
+    private int evict() {
+        for (int step = 0; ; step++) {
+            final int slot = hand;
+            hand = (hand + 1) % slots.length;
+            final Page page = slots[slot];
+            if (page == null || pages.get(page.key) != page) {
+                return slot;
+            }
+            // After two turns, the block is evicted even if it is in use
+            if (!page.referenced || step >= 2 * slots.length) {
+                pages.remove(page.key, page);
+                return slot;
+            }
+            page.referenced = false;
+        }
+    }
+
+    private static long key(TableRegistry.SharedTable table, int index) {
+        return (long) table.getId() << 32 | index;
+    }
+}
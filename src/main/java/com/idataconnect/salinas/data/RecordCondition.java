@@ -0,0 +1,40 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.salinas.SalinasException;
+import java.util.BitSet;
+
+/**
+ * A condition which is tested against the current record of a work area,
+ * such as the filter of the work area.
+ */
+public interface RecordCondition {
+
+    /**
+     * Tests the condition against the current record.
+     * @return whether the current record satisfies the condition
+     * @throws SalinasException if the condition could not be evaluated
+     */
+    boolean test() throws SalinasException;
+
+    /**
+     * Gets whether the condition only reads the fields of the record, so
+     * that it can be tested while records are read ahead of the record
+     * pointer, through {@link WorkArea#getFieldValue(int)}.
+     * @return <code>true</code> if the condition does not call functions
+     * or have side effects
+     */
+    default boolean readsOnlyFields() {
+        return false;
+    }
+
+    /**
+     * Finds the records which may satisfy the condition, through the
+     * indexes of the work area. The record pointer may be moved.
+     * @return the record numbers of the candidates, or <code>null</code> if
+     * every record is a candidate
+     * @throws SalinasException if an index could not be read
+     */
+    default BitSet candidates() throws SalinasException {
+        return null;
+    }
+}
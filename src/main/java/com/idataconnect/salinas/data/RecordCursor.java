@@ -0,0 +1,18 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.salinas.SalinasException;
+
+/**
+ * Positions a work area on the records selected by a command, one record
+ * at a time.
+ */
+public interface RecordCursor {
+
+    /**
+     * Moves the record pointer to the next selected record.
+     * @return <code>true</code> if the record pointer is on a selected
+     * record, or <code>false</code> if there are no more selected records
+     * @throws SalinasException if an error occurs while selecting records
+     */
+    boolean next() throws SalinasException;
+}
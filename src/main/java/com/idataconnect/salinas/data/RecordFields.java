@@ -0,0 +1,17 @@
+package com.idataconnect.salinas.data;
+
+import java.io.IOException;
+
+/**
+ * The fields of a record, by field number.
+ */
+public interface RecordFields {
+
+    /**
+     * Gets the value of a field of the record.
+     * @param field the field number, starting from 1
+     * @return the value of the field
+     * @throws IOException if the record could not be read
+     */
+    Object getFieldValue(int field) throws IOException;
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.salinas.SalinasException;
+
+/**
+ * Counts the records which a work area reads on its own while it positions
+ * the record pointer, such as the records passed over by a filter, or the
+ * records a relation moves its child to, against the limits of the script.
+ */
+public interface RecordMeter {
+
+    /**
+     * Counts records which were read.
+     *
+     * @param count the number of records
+     * @throws SalinasException if the script has read more records than it
+     * may
+     */
+    void recordsAccessed(int count) throws SalinasException;
+}
@@ -0,0 +1,466 @@
+package com.idataconnect.salinas.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reads the records of a DBF file directly, a block of records at a time,
+ * so that conditions can be tested against many records without a read
+ * for each record, and without moving the record pointer of the driver.
+ * <p>
+ * Field values are decoded from the raw record, and must be identical to
+ * the values the driver returns for the same record. Since the driver's
+ * conventions (such as trailing spaces of character fields, or the value of
+ * a blank number) are not known up front, each field starts with all of
+ * the decodings which are possible for its type, and the decodings which
+ * do not match a value read through the driver are removed by
+ * {@link #calibrate(int, Object)}. A field can be decoded when all of its
+ * remaining decodings agree on the value of the current record. Otherwise,
+ * {@link #canDecode(int)} returns <code>false</code> and the field must be
+ * read through the driver.
+ * <p>
+ * Text is decoded with the character set of the code page in the header of
+ * the table. Since the driver may decode text in another way, text which is
+ * not plain ASCII is not decoded until the decoding of such text has been
+ * seen to match the driver. Until then, a field of a record with such text
+ * is read through the driver, whichever record it is in.
+ * <p>
+ * The file is read through the channel of the {@link TableRegistry}, and
+ * the blocks are shared with the other readers of the table through its
+ * cache. A block holds the records of a fixed range, and is read again when
+ * a record of the table has been changed. While the blocks are read in
+ * sequence, the blocks after the current one are read ahead with it, by a
+ * single read, and kept by the reader until they are reached. The number of
+ * blocks read ahead doubles with each block reached in sequence, up to
+ * {@value #MAX_READ_AHEAD}, and drops to none when a block is read out of
+ * sequence.
+ * <p>
+ * A reader of a table which is not changed while it is read may map the file
+ * instead, in which case a block is a read-only region of the mapped file,
+ * of up to {@value #MAPPED_BLOCK_SIZE} bytes, and fields are decoded from the
+ * operating system's page cache without reading them into the heap first.
+ */
+public class RecordReader implements Closeable {
+
+    private static final int MAPPED_BLOCK_SIZE = 1 << 30;
+    private static final int MAX_READ_AHEAD = 16;
+    private static final byte DELETED_FLAG = '*';
+
+    /**
+     * The ways in which a field may be decoded.
+     */
+    private enum Decoding {
+        STRING, STRING_TRIMMED,
+        NUMBER_OR_NULL, NUMBER_OR_ZERO,
+        LOGICAL_OR_NULL, LOGICAL_OR_FALSE,
+        DATE, SQL_DATE, LOCAL_DATE
+    }
+
+    private static final Decoding[] CHARACTER_DECODINGS = {Decoding.STRING, Decoding.STRING_TRIMMED};
+    private static final Decoding[] NUMBER_DECODINGS = {Decoding.NUMBER_OR_NULL, Decoding.NUMBER_OR_ZERO};
+    private static final Decoding[] LOGICAL_DECODINGS = {Decoding.LOGICAL_OR_NULL, Decoding.LOGICAL_OR_FALSE};
+    private static final Decoding[] DATE_DECODINGS = {Decoding.DATE, Decoding.SQL_DATE,
+        Decoding.LOCAL_DATE};
+
+    private final File file;
+    private final TableRegistry.SharedTable table;
+    private final FileChannel channel;
+    private final DbfLayout layout;
+    private final boolean mapped;
+    private final int blockRecords;
+    private final Decoding[][] decodings;
+    private final Charset charset;
+    private boolean textVerified;
+    private ByteBuffer block;
+    private byte[] text;
+    private int blockFirst;
+    private int blockCount;
+    private long blockVersion;
+    private int blockIndex = -2;
+    private PageCache.Page[] window = new PageCache.Page[0];
+    private long windowVersion;
+    private int readAhead;
+    private int recordOffset = -1;
+    private boolean closed;
+
+    /**
+     * Opens a reader for the given DBF file.
+     *
+     * @param file the DBF file
+     * @throws IOException if the file could not be opened, or its header is
+     * invalid
+     */
+    public RecordReader(File file) throws IOException {
+        this(file, false, null, false);
+    }
+
+    /**
+     * Opens a reader for the given DBF file, which may map the file rather
+     * than read it. A mapped file must not be truncated while it is read.
+     *
+     * @param file the DBF file
+     * @param mapped whether the file is mapped
+     * @throws IOException if the file could not be opened, or its header is
+     * invalid
+     */
+    public RecordReader(File file, boolean mapped) throws IOException {
+        this(file, mapped, null, false);
+    }
+
+    private RecordReader(File file, boolean mapped, Decoding[][] decodings, boolean textVerified)
+            throws IOException {
+        this.file = file;
+        this.mapped = mapped;
+        this.table = TableRegistry.getInstance().acquire(file);
+        this.channel = table.getChannel();
+        this.layout = table.getLayout();
+        this.charset = layout.getCharset();
+        this.textVerified = textVerified;
+        if (mapped) {
+            this.blockRecords = Math.max(1, MAPPED_BLOCK_SIZE / layout.getRecordLength());
+            this.text = new byte[256];
+        } else {
+            this.blockRecords = table.getPageRecords();
+        }
+        if (decodings != null) {
+            this.decodings = decodings.clone();
+            return;
+        }
+        this.decodings = new Decoding[layout.getFieldCount()][];
+        for (int i = 0; i < this.decodings.length; i++) {
+            switch (layout.getFieldType(i + 1)) {
+                case 'C':
+                    this.decodings[i] = CHARACTER_DECODINGS;
+                    break;
+                case 'N':
+                case 'F':
+                    this.decodings[i] = NUMBER_DECODINGS;
+                    break;
+                case 'L':
+                    this.decodings[i] = LOGICAL_DECODINGS;
+                    break;
+                case 'D':
+                    this.decodings[i] = DATE_DECODINGS;
+                    break;
+                default:
+                    this.decodings[i] = new Decoding[0];
+            }
+        }
+    }
+
+    public DbfLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets whether the reader maps the file rather than reading it.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Opens another reader of the same file, with its own current block,
+     * which decodes fields in the way this reader has verified.
+     *
+     * @return the new reader
+     * @throws IOException if the file could not be opened
+     */
+    public RecordReader copy() throws IOException {
+        return new RecordReader(file, mapped, decodings, textVerified);
+    }
+
+    /**
+     * Positions the reader on a record. If the record is not in the current
+     * block, or a record of the table has been changed since the block was
+     * read, the block which contains the record is got from the cache, or
+     * read. A mapped reader maps a new region which contains the record and
+     * the records after it, or before it when reading backwards.
+     *
+     * @param recno the record number
+     * @param backward whether the records are being read backwards
+     * @return <code>false</code> if the record is not in the file
+     * @throws IOException if the records could not be read
+     */
+    public boolean position(int recno, boolean backward) throws IOException {
+        if (recno < 1) {
+            recordOffset = -1;
+            return false;
+        }
+        if (recno < blockFirst || recno >= blockFirst + blockCount
+                || (!mapped && blockVersion != table.getVersion())) {
+            final int count = DbfLayout.readRecordCount(channel);
+            if (recno > count) {
+                recordOffset = -1;
+                return false;
+            }
+            if (mapped) {
+                final int first = backward ? Math.max(1, recno - blockRecords + 1) : recno;
+                map(first, Math.min(blockRecords, count - first + 1));
+            } else {
+                readPage(recno, count);
+            }
+        }
+        recordOffset = (recno - blockFirst) * layout.getRecordLength();
+        return true;
+    }
+
+    /**
+     * Discards the records which have been read, so that changes to the file
+     * are seen.
+     */
+    public void invalidate() {
+        blockCount = 0;
+        recordOffset = -1;
+    }
+
+    /**
+     * Gets whether the current record is marked as deleted.
+     */
+    public boolean isDeleted() {
+        return block.get(recordOffset) == DELETED_FLAG;
+    }
+
+    /**
+     * Gets whether the given field of the current record can be decoded in
+     * the same way as the driver decodes it.
+     *
+     * @param field the field number
+     * @return whether {@link #getValue(int)} may be used for the field
+     */
+    public boolean canDecode(int field) {
+        final Decoding[] remaining = decodings[field - 1];
+        if (!textVerified && remaining.length > 0 && !isAscii(field)) {
+            return false;
+        } else if (remaining.length == 1) {
+            return true;
+        } else if (remaining.length == 0) {
+            return false;
+        }
+
+        final Object value = decode(remaining[0], field);
+        for (int i = 1; i < remaining.length; i++) {
+            if (!same(decode(remaining[i], field), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets whether the way the given field is decoded is known, so that
+     * {@link #canDecode(int)} is the same for every record.
+     *
+     * @param field the field number
+     * @return whether a single decoding, or none, remains for the field
+     */
+    public boolean isCalibrated(int field) {
+        return decodings[field - 1].length < 2;
+    }
+
+    /**
+     * Gets the value of a field of the current record.
+     *
+     * @param field the field number, which must be decodable
+     * @return the value, which is identical to the value the driver returns
+     */
+    public Object getValue(int field) {
+        return decode(decodings[field - 1][0], field);
+    }
+
+    /**
+     * Removes the decodings of a field which do not match the value the
+     * driver returned for the current record. A value with text which is not
+     * plain ASCII tells whether text is decoded in the same way as the
+     * driver, and removes no decodings when it is not.
+     *
+     * @param field the field number
+     * @param driverValue the value of the field as read by the driver
+     */
+    public void calibrate(int field, Object driverValue) {
+        final Decoding[] remaining = decodings[field - 1];
+        final boolean checkText = !textVerified && remaining.length > 0 && !isAscii(field);
+        if ((remaining.length < 2 && !checkText) || recordOffset < 0) {
+            return;
+        }
+
+        int matches = 0;
+        final Decoding[] matching = new Decoding[remaining.length];
+        for (Decoding candidate : remaining) {
+            try {
+                if (same(decode(candidate, field), driverValue)) {
+                    matching[matches++] = candidate;
+                }
+            } catch (RuntimeException ex) {
+                // The raw value is invalid for this decoding
+            }
+        }
+        if (checkText) {
+            if (matches == 0) {
+                // The driver decodes the text in another way
+                return;
+            }
+            textVerified = true;
+        }
+        decodings[field - 1] = Arrays.copyOf(matching, matches);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            TableRegistry.getInstance().release(table);
+        }
+    }
+
+    private void readPage(int recno, int count) throws IOException {
+        // Read first, so that a change made while the block is got is seen
+        final long version = table.getVersion();
+        final TableRegistry registry = TableRegistry.getInstance();
+        final int index = (recno - 1) / blockRecords;
+        final int records = (recno - 1) % blockRecords + 1;
+        PageCache.Page page = null;
+        if (index == blockIndex + 1) {
+            readAhead = Math.min(MAX_READ_AHEAD, Math.max(1, readAhead * 2));
+            page = fromWindow(index, records, version);
+        } else {
+            readAhead = 0;
+        }
+        if (page == null && readAhead > 0) {
+            window = registry.readAhead(table, index, readAhead, records, count);
+            windowVersion = version;
+            page = window[0];
+        } else if (page == null) {
+            page = registry.page(table, index, records, count);
+        }
+        block = page.getData();
+        blockIndex = index;
+        blockFirst = page.getFirst();
+        blockCount = page.getCount();
+        blockVersion = version;
+    }
+
+    /**
+     * Gets a block which was read ahead, unless a record of the table has
+     * been changed since.
+     */
+    private PageCache.Page fromWindow(int index, int records, long version) {
+        if (windowVersion != version) {
+            window = new PageCache.Page[0];
+            return null;
+        }
+        for (PageCache.Page page : window) {
+            if (page.getIndex() == index && page.getCount() >= records) {
+                TableRegistry.getInstance().readAheadHit();
+                return page;
+            }
+        }
+        return null;
+    }
+
+    private void map(int first, int count) throws IOException {
+        // The previous region is unmapped once it is garbage collected
+        block = channel.map(FileChannel.MapMode.READ_ONLY, layout.getRecordPosition(first),
+                Math.max(0, Math.min((long) count * layout.getRecordLength(),
+                        channel.size() - layout.getRecordPosition(first))));
+        blockFirst = first;
+        blockCount = block.capacity() / layout.getRecordLength();
+    }
+
+    private Object decode(Decoding decoding, int field) {
+        final int start = recordOffset + layout.getFieldOffset(field);
+        final int length = layout.getFieldLength(field);
+        switch (decoding) {
+            case STRING:
+                return text(start, length);
+            case STRING_TRIMMED: {
+                int end = length;
+                while (end > 0 && block.get(start + end - 1) == ' ') {
+                    end--;
+                }
+                return text(start, end);
+            }
+            case NUMBER_OR_NULL:
+            case NUMBER_OR_ZERO: {
+                final String s = text(start, length).trim();
+                if (s.isEmpty()) {
+                    return decoding == Decoding.NUMBER_OR_ZERO ? BigDecimal.ZERO : null;
+                }
+                return new BigDecimal(s);
+            }
+            case LOGICAL_OR_NULL:
+            case LOGICAL_OR_FALSE: {
+                final char c = Character.toUpperCase((char) block.get(start));
+                if (c == 'T' || c == 'Y') {
+                    return Boolean.TRUE;
+                } else if (c == 'F' || c == 'N' || decoding == Decoding.LOGICAL_OR_FALSE) {
+                    return Boolean.FALSE;
+                }
+                return null;
+            }
+            case DATE:
+            case SQL_DATE:
+            case LOCAL_DATE: {
+                final String s = text(start, length).trim();
+                if (s.isEmpty()) {
+                    return null;
+                }
+                final LocalDate date = LocalDate.of(Integer.parseInt(s.substring(0, 4)),
+                        Integer.parseInt(s.substring(4, 6)), Integer.parseInt(s.substring(6, 8)));
+                if (decoding == Decoding.SQL_DATE) {
+                    return java.sql.Date.valueOf(date);
+                } else if (decoding == Decoding.LOCAL_DATE) {
+                    return date;
+                }
+                return java.util.Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+            }
+            default:
+                throw new IllegalStateException("Unknown decoding " + decoding);
+        }
+    }
+
+    /**
+     * Gets whether the given field of the current record is plain ASCII,
+     * which every code page decodes in the same way.
+     */
+    private boolean isAscii(int field) {
+        if (layout.getFieldType(field) != 'C') {
+            return true;
+        }
+        final int start = recordOffset + layout.getFieldOffset(field);
+        final int end = start + layout.getFieldLength(field);
+        for (int i = start; i < end; i++) {
+            if (block.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean same(Object value, Object driverValue) {
+        return Objects.equals(value, driverValue)
+                && (value == null || value.getClass() == driverValue.getClass());
+    }
+
+    private String text(int start, int length) {
+        if (!mapped) {
+            return new String(block.array(), block.arrayOffset() + start, length, charset);
+        }
+        if (length > text.length) {
+            text = new byte[length];
+        }
+        for (int i = 0; i < length; i++) {
+            text[i] = block.get(start + i);
+        }
+        return new String(text, 0, length, charset);
+    }
+}
@@ -0,0 +1,22 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.salinas.SalinasException;
+import java.io.IOException;
+
+/**
+ * Supplies the records which are appended to a table, one record at a time.
+ */
+@FunctionalInterface
+public interface RecordSource {
+
+    /**
+     * Reads the next record.
+     *
+     * @param values receives the values of the fields of the table, indexed
+     * from zero. A <code>null</code> value leaves the field blank.
+     * @return <code>false</code> if there are no more records
+     * @throws IOException if the record could not be read
+     * @throws SalinasException if the record could not be selected
+     */
+    boolean next(Object[] values) throws IOException, SalinasException;
+}
@@ -0,0 +1,207 @@
+package com.idataconnect.salinas.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Appends records to the end of a DBF file directly, a block of records at
+ * a time, instead of appending and replacing each field through the driver.
+ * The record count in the header is only written when the writer is
+ * flushed or closed.
+ * <p>
+ * The file must not be open in a work area while it is being written, since
+ * the driver would not see the appended records.
+ */
+public class RecordWriter implements Closeable {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final byte END_OF_FILE = 0x1A;
+
+    private final FileChannel channel;
+    private final DbfLayout layout;
+    private final ByteBuffer block;
+    private final byte[] record;
+    private int recordCount;
+    private int writtenCount;
+
+    /**
+     * Opens a writer which appends to the given DBF file.
+     *
+     * @param file the DBF file
+     * @throws IOException if the file could not be opened, or its header is
+     * invalid
+     */
+    public RecordWriter(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            this.layout = DbfLayout.read(channel);
+            this.recordCount = DbfLayout.readRecordCount(channel);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.writtenCount = recordCount;
+        final int recordLength = layout.getRecordLength();
+        this.block = ByteBuffer.allocate(Math.max(1, BLOCK_SIZE / recordLength) * recordLength);
+        this.record = new byte[recordLength];
+    }
+
+    public DbfLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets the number of records in the file, including the records which
+     * have been appended but not written yet.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param values the values of the fields, indexed from zero. A
+     * <code>null</code> value, or a value of a type which the field cannot
+     * hold, leaves the field blank.
+     * @throws IOException if a block of records could not be written
+     */
+    public void append(Object[] values) throws IOException {
+        Arrays.fill(record, (byte) ' ');
+        for (int field = 1; field <= layout.getFieldCount() && field <= values.length; field++) {
+            encode(field, values[field - 1]);
+        }
+        if (block.remaining() < record.length) {
+            writeBlock();
+        }
+        block.put(record);
+        recordCount++;
+    }
+
+    /**
+     * Writes the appended records, and the record count, to the file.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public void flush() throws IOException {
+        writeBlock();
+
+        final ByteBuffer marker = ByteBuffer.wrap(new byte[] {END_OF_FILE});
+        writeFully(marker, layout.getRecordPosition(writtenCount + 1));
+
+        final LocalDate today = LocalDate.now();
+        final ByteBuffer header = ByteBuffer.allocate(7).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) (today.getYear() - 1900));
+        header.put((byte) today.getMonthValue());
+        header.put((byte) today.getDayOfMonth());
+        header.putInt(writtenCount);
+        header.flip();
+        writeFully(header, 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (block.position() == 0) {
+            return;
+        }
+        block.flip();
+        writeFully(block, layout.getRecordPosition(writtenCount + 1));
+        writtenCount += block.limit() / record.length;
+        block.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void encode(int field, Object value) {
+        if (value == null) {
+            return;
+        }
+        final int offset = layout.getFieldOffset(field);
+        final int length = layout.getFieldLength(field);
+        switch (layout.getFieldType(field)) {
+            case 'C': {
+                final byte[] bytes = value.toString().getBytes(StandardCharsets.ISO_8859_1);
+                System.arraycopy(bytes, 0, record, offset, Math.min(length, bytes.length));
+                break;
+            }
+            case 'N':
+            case 'F': {
+                final BigDecimal number;
+                if (value instanceof BigDecimal) {
+                    number = (BigDecimal) value;
+                } else if (value instanceof Number) {
+                    number = new BigDecimal(value.toString());
+                } else {
+                    return;
+                }
+                final String text = number.setScale(layout.getDecimalLength(field),
+                        RoundingMode.HALF_UP).toPlainString();
+                if (text.length() > length) {
+                    // A number which does not fit is shown as overflow
+                    Arrays.fill(record, offset, offset + length, (byte) '*');
+                } else {
+                    final int start = offset + length - text.length();
+                    for (int i = 0; i < text.length(); i++) {
+                        record[start + i] = (byte) text.charAt(i);
+                    }
+                }
+                break;
+            }
+            case 'L':
+                if (value instanceof Boolean) {
+                    record[offset] = (byte) ((Boolean) value ? 'T' : 'F');
+                }
+                break;
+            case 'D': {
+                final LocalDate date;
+                if (value instanceof LocalDate) {
+                    date = (LocalDate) value;
+                } else if (value instanceof java.sql.Date) {
+                    date = ((java.sql.Date) value).toLocalDate();
+                } else if (value instanceof java.util.Date) {
+                    date = ((java.util.Date) value).toInstant()
+                            .atZone(ZoneId.systemDefault()).toLocalDate();
+                } else {
+                    return;
+                }
+                putDigits(offset, 4, date.getYear());
+                putDigits(offset + 4, 2, date.getMonthValue());
+                putDigits(offset + 6, 2, date.getDayOfMonth());
+                break;
+            }
+            default:
+                // Memo and other fields are left blank
+        }
+    }
+
+    private void putDigits(int offset, int count, int value) {
+        for (int i = count - 1; i >= 0; i--) {
+            record[offset + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.salinas.SalinasException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A relation from a parent work area into a child work area, as set by
+ * <code>SET RELATION TO &lt;key&gt; INTO &lt;alias&gt;</code>. When the record
+ * pointer of the parent moves, the child is positioned on the first record
+ * whose key in the active order of the child matches the key of the parent
+ * record. If the child is in natural order, the key is a record number.
+ * <p>
+ * The child is not positioned when the parent moves, but when the child is
+ * next used, by {@link #synchronize()}. The record numbers which recent keys
+ * were found at are kept, so that a key which is repeated in the parent
+ * does not search the index of the child again. If the child cannot be
+ * positioned, it is left at the end of the file, and is positioned again
+ * when it is next used.
+ */
+public final class Relation {
+
+    /**
+     * The number of keys whose record numbers are kept.
+     */
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Evaluates the key of the current record of the parent. It is called
+     * while the parent is the current work area.
+     */
+    @FunctionalInterface
+    public interface KeyFunction {
+        Object evaluate() throws SalinasException;
+    }
+
+    private final WorkArea parent;
+    private final WorkArea child;
+    private final KeyFunction key;
+    private final Map<Object, Integer> recnos = new LinkedHashMap<Object, Integer>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Integer> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private boolean synced;
+    private int parentRecno;
+    private boolean parentEof;
+    private long parentChanges;
+    private long childChanges;
+    private boolean synchronizing;
+    private long cacheHits;
+    private long cacheMisses;
+
+    /**
+     * Creates a relation.
+     *
+     * @param parent the work area whose record pointer is followed
+     * @param child the work area which is positioned
+     * @param key evaluates the key of the parent record
+     * @throws SalinasException if the child is ordered by an index which
+     * cannot be searched
+     */
+    public Relation(WorkArea parent, WorkArea child, KeyFunction key)
+            throws SalinasException {
+        if (child.getOrder() != null && !child.hasIndex()) {
+            throw new SalinasException("The order of work area " + child.getAlias()
+                    + " cannot be searched");
+        }
+        this.parent = parent;
+        this.child = child;
+        this.key = key;
+        this.childChanges = child.getChangeCount();
+    }
+
+    public WorkArea getParent() {
+        return parent;
+    }
+
+    public WorkArea getChild() {
+        return child;
+    }
+
+    /**
+     * Gets whether the child is positioned for the current record of the
+     * parent.
+     */
+    public boolean isSynchronized() {
+        final DBF dbf = parent.getDbf();
+        return synchronizing || (synced && parentRecno == dbf.recno() && parentEof == dbf.eof()
+                && parentChanges == parent.getChangeCount());
+    }
+
+    /**
+     * Positions the child for the current record of the parent. The parent
+     * must be the current work area. If the child cannot be positioned, it
+     * is moved to the end of the file, with <code>FOUND()</code> false, and
+     * the relation is not synchronized.
+     *
+     * @throws SalinasException if the key could not be evaluated, or the
+     * index of the child could not be searched
+     * @throws IOException if the record pointer of the child could not be
+     * moved
+     */
+    public void synchronize() throws SalinasException, IOException {
+        if (synchronizing) {
+            return;
+        }
+        synchronizing = true;
+        try {
+            final DBF dbf = parent.getDbf();
+            parentRecno = dbf.recno();
+            parentEof = dbf.eof();
+            parentChanges = parent.getChangeCount();
+            synced = true;
+            if (childChanges != child.getChangeCount()) {
+                // The keys may have moved
+                recnos.clear();
+                childChanges = child.getChangeCount();
+            }
+
+            if (parentEof) {
+                child.gotoEof();
+                child.setFound(false);
+                return;
+            }
+
+            final Object value = key.evaluate();
+            child.recordsAccessed(1);
+            if (child.getOrder() == null) {
+                final int recno = value instanceof Number ? ((Number) value).intValue() : 0;
+                final boolean found = recno > 0
+                        && recno <= child.getDbf().getStructure().getNumberOfRecords();
+                if (found) {
+                    child.getDbf().gotoRecord(recno);
+                } else {
+                    child.gotoEof();
+                }
+                child.setFound(found);
+                return;
+            }
+
+            final Object cacheKey = value instanceof BigDecimal
+                    ? ((BigDecimal) value).stripTrailingZeros() : value;
+            final Integer recno = cacheKey == null ? null : recnos.get(cacheKey);
+            if (recno != null) {
+                cacheHits++;
+                if (recno == DBF.RECORD_NUMBER_EOF) {
+                    child.gotoEof();
+                    child.setFound(false);
+                } else {
+                    child.getDbf().gotoRecord(recno);
+                    child.setFound(true);
+                }
+                return;
+            }
+
+            cacheMisses++;
+            final boolean found = child.seek(value, false);
+            if (cacheKey != null) {
+                recnos.put(cacheKey, found ? child.getDbf().recno() : DBF.RECORD_NUMBER_EOF);
+            }
+        } catch (SalinasException | IOException | RuntimeException ex) {
+            // Rather than leave the child on the record of another key
+            synced = false;
+            try {
+                child.gotoEof();
+            } catch (IOException eofEx) {
+                ex.addSuppressed(eofEx);
+            }
+            child.setFound(false);
+            throw ex;
+        } finally {
+            synchronizing = false;
+        }
+    }
+
+    /**
+     * Gets the number of times the child was positioned from a record number
+     * which was kept for the key.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the number of times the index of the child was searched.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+}
@@ -50,4 +50,20 @@ public class SalinasArrayMap extends LinkedHashMap<Object, SalinasValue> {
     public void setCurrentIndex(int currentIndex) {
         this.currentIndex = currentIndex;
     }
+
+    /**
+     * Creates a copy of the array, whose elements are copies of the elements
+     * of this array, so that neither array is changed by changes to the
+     * other.
+     *
+     * @return the copy
+     */
+    public SalinasArrayMap copy() {
+        final SalinasArrayMap copy = new SalinasArrayMap(Math.max(16, size() * 4 / 3 + 1));
+        for (Entry<Object, SalinasValue> entry : entrySet()) {
+            copy.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().copy());
+        }
+        copy.currentIndex = currentIndex;
+        return copy;
+    }
 }
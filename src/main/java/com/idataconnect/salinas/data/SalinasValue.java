@@ -381,6 +381,24 @@ public class SalinasValue {
         return (String) asType(SalinasType.STRING);
     }
 
+    /**
+     * Creates a copy of this holder, which can be changed without changing
+     * this holder. The elements of an array are copied too. The constant
+     * values, which cannot be changed, are not copied.
+     *
+     * @return the copy
+     */
+    public SalinasValue copy() {
+        if (getClass() != SalinasValue.class) {
+            return this;
+        }
+        final SalinasValue copy = new SalinasValue();
+        copy.strongType = strongType;
+        copy.currentType = currentType;
+        copy.value = value instanceof SalinasArrayMap ? ((SalinasArrayMap) value).copy() : value;
+        return copy;
+    }
+
     /**
      * Returns an appropriate salinas value based on the given value. This
      * method is generally preferred over the constructor because it may
@@ -0,0 +1,362 @@
+package com.idataconnect.salinas.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The tables which are read directly by the work areas of every session in
+ * the process. Each table is opened once, by a channel which is shared by
+ * all of the {@link RecordReader readers} of the table, and is closed when
+ * the last of them is closed. The blocks of records which are read through
+ * the channel are kept in a {@link PageCache} of bounded size, which is
+ * shared by all of the tables, so that sessions reading the same table read
+ * each block once.
+ * <p>
+ * A work area which writes a record through the driver reports it with
+ * {@link #recordChanged(File, int)} once it is written, which drops the
+ * block holding the record, and makes the readers of the table read their
+ * current block again. A work area resolves the key of its table with
+ * {@link #key(File)} once, when the table is opened, so that reporting a
+ * record does not resolve the path of the file again. Changes made by other processes are not seen in
+ * cached blocks, other than records appended to the table.
+ * <p>
+ * The size of the cache is given in bytes by the system property
+ * <code>salinas.pageCacheSize</code>, and may be changed with
+ * {@link #setCacheSize(long)}. A size of zero disables the cache.
+ */
+public final class TableRegistry {
+    private static final Logger LOGGER = Logger.getLogger(TableRegistry.class.getName());
+
+    /** The size of a block of records, which is the unit of the cache. */
+    static final int PAGE_SIZE = 64 * 1024;
+    private static final long DEFAULT_CACHE_SIZE = 32L * 1024 * 1024;
+
+    private static final TableRegistry INSTANCE = new TableRegistry(
+            Long.getLong("salinas.pageCacheSize", DEFAULT_CACHE_SIZE));
+
+    private final ConcurrentHashMap<String, SharedTable> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final PageCache cache;
+    private final LongAdder readAheadPages = new LongAdder();
+    private final LongAdder readAheadHits = new LongAdder();
+
+    public static TableRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private TableRegistry(long cacheSize) {
+        this.cache = new PageCache(pages(cacheSize));
+    }
+
+    /**
+     * A table which is open in the registry.
+     */
+    static final class SharedTable {
+        private final int id;
+        private final String key;
+        private final FileChannel channel;
+        private final DbfLayout layout;
+        private final int pageRecords;
+        private final AtomicLong version = new AtomicLong();
+        private volatile int references;
+
+        private SharedTable(int id, String key, FileChannel channel, DbfLayout layout) {
+            this.id = id;
+            this.key = key;
+            this.channel = channel;
+            this.layout = layout;
+            this.pageRecords = Math.max(1, PAGE_SIZE / layout.getRecordLength());
+        }
+
+        int getId() {
+            return id;
+        }
+
+        FileChannel getChannel() {
+            return channel;
+        }
+
+        DbfLayout getLayout() {
+            return layout;
+        }
+
+        /**
+         * Gets the number of records in each block of the table. The first
+         * block starts with record 1.
+         */
+        int getPageRecords() {
+            return pageRecords;
+        }
+
+        /**
+         * Gets the number of times records of the table have been changed,
+         * so that a reader can tell whether its current block is still
+         * valid.
+         */
+        long getVersion() {
+            return version.get();
+        }
+
+        void changed() {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a table, or adds a reference to it if it is open already.
+     *
+     * @param file the DBF file
+     * @return the table, which must be released by {@link #release}
+     * @throws IOException if the file could not be opened, or its header is
+     * invalid
+     */
+    SharedTable acquire(File file) throws IOException {
+        try {
+            return tables.compute(key(file), (key, table) -> {
+                if (table == null) {
+                    table = open(key);
+                }
+                table.references++;
+                return table;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Removes a reference to a table, and closes the table when no reference
+     * remains.
+     *
+     * @param table the table
+     * @throws IOException if the channel of the table could not be closed
+     */
+    void release(SharedTable table) throws IOException {
+        final IOException[] failure = new IOException[1];
+        tables.computeIfPresent(table.key, (key, open) -> {
+            if (open != table || --open.references > 0) {
+                return open;
+            }
+            cache.invalidateAll(open);
+            try {
+                open.channel.close();
+            } catch (IOException ex) {
+                failure[0] = ex;
+            }
+            return null;
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Gets the block of records with the given index, from the cache, or
+     * from the file if it is not cached, or does not hold enough records.
+     *
+     * @param table the table
+     * @param index the index of the block, starting from 0
+     * @param records the number of records which the block must hold
+     * @param recordCount the number of records in the table
+     * @return the block
+     * @throws IOException if the records could not be read
+     */
+    PageCache.Page page(SharedTable table, int index, int records, int recordCount)
+            throws IOException {
+        PageCache.Page page = cache.get(table, index);
+        if (page != null && page.getCount() >= records) {
+            return page;
+        }
+
+        final long version = table.getVersion();
+        final int first = index * table.pageRecords + 1;
+        page = PageCache.Page.read(table, index, first,
+                Math.min(table.pageRecords, recordCount - first + 1));
+        cache.put(page, version);
+        return page;
+    }
+
+    /**
+     * Gets the block of records with the given index together with the
+     * blocks after it, which are read by a single read when the block is not
+     * cached. Each block which is read is added to the cache.
+     *
+     * @param table the table
+     * @param index the index of the block, starting from 0
+     * @param ahead the number of blocks to read after the block
+     * @param records the number of records which the block must hold
+     * @param recordCount the number of records in the table
+     * @return the block, followed by the blocks which were read after it
+     * @throws IOException if the records could not be read
+     */
+    PageCache.Page[] readAhead(SharedTable table, int index, int ahead, int records,
+            int recordCount) throws IOException {
+        final PageCache.Page cached = cache.get(table, index);
+        if (cached != null && cached.getCount() >= records) {
+            return new PageCache.Page[] {cached};
+        }
+
+        final long version = table.getVersion();
+        final int first = index * table.pageRecords + 1;
+        final PageCache.Page[] pages = PageCache.Page.read(table, index, first,
+                (int) Math.min((long) (ahead + 1) * table.pageRecords, recordCount - first + 1),
+                table.pageRecords);
+        for (PageCache.Page page : pages) {
+            cache.put(page, version);
+        }
+        readAheadPages.add(pages.length - 1);
+        return pages;
+    }
+
+    void readAheadHit() {
+        readAheadHits.increment();
+    }
+
+    /**
+     * Reports that a record of a table was written, once it is written. The
+     * block holding the record is dropped from the cache.
+     *
+     * @param file the DBF file
+     * @param recno the record number
+     */
+    public void recordChanged(File file, int recno) {
+        invalidate(find(file), recno);
+    }
+
+    /**
+     * Reports that a record of a table was written, once it is written.
+     *
+     * @param key the key of the table, as given by {@link #key(File)}
+     * @param recno the record number
+     */
+    void recordChanged(String key, int recno) {
+        if (key != null && !tables.isEmpty()) {
+            invalidate(tables.get(key), recno);
+        }
+    }
+
+    private void invalidate(SharedTable table, int recno) {
+        if (table != null) {
+            cache.invalidate(table, Math.max(0, recno - 1) / table.pageRecords);
+        }
+    }
+
+    /**
+     * Reports that any records of a table may have been written, such as
+     * after records are appended to the file directly. Every block of the
+     * table is dropped from the cache.
+     *
+     * @param file the DBF file
+     */
+    public void tableChanged(File file) {
+        final SharedTable table = find(file);
+        if (table != null) {
+            cache.invalidateAll(table);
+        }
+    }
+
+    /**
+     * Gets the number of readers which have a table open.
+     *
+     * @param file the DBF file
+     * @return the number of readers, or zero if the table is not open
+     */
+    public int getReferences(File file) {
+        final SharedTable table = find(file);
+        return table == null ? 0 : table.references;
+    }
+
+    /**
+     * Sets the size of the cache. Blocks are evicted if the cache is made
+     * smaller.
+     *
+     * @param bytes the size in bytes, or zero to disable the cache
+     */
+    public void setCacheSize(long bytes) {
+        cache.resize(pages(bytes));
+    }
+
+    /**
+     * Gets the number of times a block was found in the cache.
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Gets the number of times a block was read because it was not found in
+     * the cache.
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Gets the number of blocks which were read ahead of the block a reader
+     * needed, while the blocks of a table were read in sequence.
+     */
+    public long getReadAheadPages() {
+        return readAheadPages.sum();
+    }
+
+    /**
+     * Gets the number of times a reader reached a block which it had read
+     * ahead.
+     */
+    public long getReadAheadHits() {
+        return readAheadHits.sum();
+    }
+
+    private SharedTable find(File file) {
+        if (tables.isEmpty() || file == null) {
+            return null;
+        }
+        try {
+            return tables.get(key(file));
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot resolve " + file, ex);
+            return null;
+        }
+    }
+
+    private SharedTable open(String key) {
+        try {
+            final FileChannel channel = FileChannel.open(new File(key).toPath(),
+                    StandardOpenOption.READ);
+            try {
+                return new SharedTable(nextId.incrementAndGet(), key, channel,
+                        DbfLayout.read(channel));
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Gets the key by which a table is open in the registry, which is the
+     * canonical path of its file.
+     *
+     * @param file the DBF file
+     * @return the key
+     * @throws IOException if the path could not be resolved
+     */
+    static String key(File file) throws IOException {
+        return file.getCanonicalPath();
+    }
+
+    private static int pages(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, bytes / PAGE_SIZE));
+    }
+}
@@ -0,0 +1,138 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The text formats in which records are read from and written to files,
+ * one record per line. Records are written by {@link TextRecordWriter}.
+ */
+public enum TextFormat {
+
+    /**
+     * Fields separated by commas, with character fields enclosed in double
+     * quotes. A double quote within a character field is doubled.
+     */
+    DELIMITED,
+
+    /**
+     * System data format, in which each field takes the width of the field
+     * of the table, without separators.
+     */
+    SDF,
+
+    /**
+     * JSON Lines, in which each record is a JSON object whose members are
+     * named after the fields. Records can only be written in this format.
+     */
+    JSONL;
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    /**
+     * Reads the values of a record from a line. The values are taken in the
+     * order of the fields of the table, and are converted to the types of
+     * the fields. A value which is missing or blank is <code>null</code>.
+     *
+     * @param line the line, without its line terminator
+     * @param fields the fields of the table
+     * @param values receives the values, indexed from zero
+     * @throws UnsupportedOperationException if records cannot be read in
+     * this format
+     */
+    public void parse(String line, List<DBFField> fields, Object[] values) {
+        if (this == JSONL) {
+            throw new UnsupportedOperationException("Records cannot be read as " + this);
+        }
+        Arrays.fill(values, null);
+        if (this == SDF) {
+            int position = 0;
+            for (int i = 0; i < fields.size() && i < values.length && position < line.length(); i++) {
+                final int end = Math.min(line.length(), position + fields.get(i).getFieldLength());
+                values[i] = convert(line.substring(position, end), fields.get(i));
+                position = end;
+            }
+            return;
+        }
+
+        final StringBuilder text = new StringBuilder();
+        int position = 0;
+        for (int i = 0; i < fields.size() && i < values.length && position <= line.length(); i++) {
+            text.setLength(0);
+            if (position < line.length() && line.charAt(position) == QUOTE) {
+                position++;
+                while (position < line.length()) {
+                    final char c = line.charAt(position++);
+                    if (c != QUOTE) {
+                        text.append(c);
+                    } else if (position < line.length() && line.charAt(position) == QUOTE) {
+                        text.append(QUOTE);
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+                while (position < line.length() && line.charAt(position) != DELIMITER) {
+                    position++;
+                }
+            } else {
+                final int end = line.indexOf(DELIMITER, position);
+                text.append(line, position, end < 0 ? line.length() : end);
+                position = end < 0 ? line.length() : end;
+            }
+            position++;
+            values[i] = convert(text.toString(), fields.get(i));
+        }
+    }
+
+    /**
+     * Converts the text of a field to the type of the field. Dates are
+     * written as <code>YYYYMMDD</code>, and logical values as
+     * <code>T</code> or <code>F</code>.
+     *
+     * @param text the text of the field
+     * @param field the field
+     * @return the value, or <code>null</code> if the text is blank or is
+     * not valid for the type of the field
+     */
+    public static Object convert(String text, DBFField field) {
+        final String trimmed = text.trim();
+        switch (field.getFieldType()) {
+            case C:
+                return text;
+            case N:
+            case F:
+                if (trimmed.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return new BigDecimal(trimmed);
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+            case L:
+                if (trimmed.isEmpty()) {
+                    return null;
+                }
+                final char c = Character.toUpperCase(trimmed.charAt(0));
+                return c == 'T' || c == 'Y';
+            case D:
+                if (trimmed.length() < 8) {
+                    return null;
+                }
+                try {
+                    return LocalDate.of(Integer.parseInt(trimmed.substring(0, 4)),
+                            Integer.parseInt(trimmed.substring(4, 6)),
+                            Integer.parseInt(trimmed.substring(6, 8)));
+                } catch (RuntimeException ex) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.idataconnect.salinas.data;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes records to a text file in one of the {@link TextFormat formats},
+ * one record per line, through a channel a block at a time.
+ * <p>
+ * Each field is written by an encoder which is chosen once, from the type of
+ * the field and the format, and which writes the value into a buffer that
+ * is reused for every record.
+ */
+public class TextRecordWriter implements Closeable {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator()
+            .getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    /**
+     * Writes the value of a field.
+     */
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(Object value);
+    }
+
+    private final FileChannel channel;
+    private final TextFormat format;
+    private final Encoder[] encoders;
+    private final byte[][] names;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private byte[] line = new byte[256];
+    private int length;
+    private int recordCount;
+    private long byteCount;
+
+    /**
+     * Creates a text file, replacing any file of the same name.
+     *
+     * @param file the file
+     * @param format the format of the records
+     * @param fields the fields which are written, in order
+     * @throws IOException if the file could not be created
+     */
+    public TextRecordWriter(File file, TextFormat format, List<DBFField> fields)
+            throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.encoders = new Encoder[fields.size()];
+        this.names = new byte[fields.size()][];
+        for (int i = 0; i < encoders.length; i++) {
+            final DBFField field = fields.get(i);
+            encoders[i] = encoder(field);
+            // The name of the field as a JSON member, with its colon
+            names[i] = ('"' + field.getFieldName().trim() + "\":")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Gets the number of records which have been written.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the number of bytes of the records which have been written.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param values the values of the fields, in the order of the fields
+     * @throws IOException if a block of records could not be written
+     */
+    public void write(Object[] values) throws IOException {
+        length = 0;
+        if (format == TextFormat.JSONL) {
+            put((byte) '{');
+        }
+        for (int i = 0; i < encoders.length; i++) {
+            if (i > 0 && format != TextFormat.SDF) {
+                put((byte) ',');
+            }
+            if (format == TextFormat.JSONL) {
+                put(names[i], names[i].length);
+            }
+            encoders[i].encode(values[i]);
+        }
+        if (format == TextFormat.JSONL) {
+            put((byte) '}');
+        }
+        put(LINE_SEPARATOR, LINE_SEPARATOR.length);
+        byteCount += length;
+
+        if (block.remaining() < length) {
+            writeBlock();
+            if (length > block.capacity()) {
+                writeFully(ByteBuffer.wrap(line, 0, length));
+                recordCount++;
+                return;
+            }
+        }
+        block.put(line, 0, length);
+        recordCount++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        block.flip();
+        writeFully(block);
+        block.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private Encoder encoder(DBFField field) {
+        final int width = field.getFieldLength();
+        final int decimals = field.getDecimalLength();
+        switch (field.getFieldType()) {
+            case N:
+            case F:
+                return value -> number(value, width, decimals);
+            case L:
+                return this::logical;
+            case D:
+                return this::date;
+            case C:
+                return value -> character(value, width);
+            default:
+                // Memo fields have no width of their own
+                return value -> character(value, 0);
+        }
+    }
+
+    private void character(Object value, int width) {
+        final String s = value == null ? "" : value.toString();
+        switch (format) {
+            case SDF: {
+                final int start = length;
+                putText(s, width);
+                pad(start + width);
+                break;
+            }
+            case DELIMITED:
+                put((byte) '"');
+                putText(stripTrailing(s), -1);
+                put((byte) '"');
+                break;
+            default:
+                if (value == null) {
+                    put(NULL, NULL.length);
+                } else {
+                    putJsonString(stripTrailing(s));
+                }
+        }
+    }
+
+    private void number(Object value, int width, int decimals) {
+        final BigDecimal number;
+        if (value instanceof BigDecimal) {
+            number = (BigDecimal) value;
+        } else if (value instanceof Number) {
+            number = new BigDecimal(value.toString());
+        } else {
+            number = null;
+        }
+
+        if (number == null) {
+            if (format == TextFormat.SDF) {
+                pad(length + width);
+            } else if (format == TextFormat.JSONL) {
+                put(NULL, NULL.length);
+            }
+            return;
+        }
+        final String text = number.setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+        if (format == TextFormat.SDF) {
+            if (text.length() > width) {
+                for (int i = 0; i < width; i++) {
+                    put((byte) '*');
+                }
+            } else {
+                pad(length + width - text.length());
+                putText(text, -1);
+            }
+        } else {
+            putText(text, -1);
+        }
+    }
+
+    private void logical(Object value) {
+        if (!(value instanceof Boolean)) {
+            if (format == TextFormat.JSONL) {
+                put(NULL, NULL.length);
+            } else if (format == TextFormat.SDF) {
+                put((byte) ' ');
+            }
+        } else if (format == TextFormat.JSONL) {
+            put((Boolean) value ? TRUE : FALSE, (Boolean) value ? TRUE.length : FALSE.length);
+        } else {
+            put((byte) ((Boolean) value ? 'T' : 'F'));
+        }
+    }
+
+    private void date(Object value) {
+        final LocalDate date;
+        if (value instanceof LocalDate) {
+            date = (LocalDate) value;
+        } else if (value instanceof java.sql.Date) {
+            date = ((java.sql.Date) value).toLocalDate();
+        } else if (value instanceof java.util.Date) {
+            date = ((java.util.Date) value).toInstant()
+                    .atZone(ZoneId.systemDefault()).toLocalDate();
+        } else {
+            date = null;
+        }
+
+        if (date == null) {
+            if (format == TextFormat.JSONL) {
+                put(NULL, NULL.length);
+            } else if (format == TextFormat.SDF) {
+                pad(length + 8);
+            }
+        } else if (format == TextFormat.JSONL) {
+            // ISO 8601, as JSON has no date type
+            put((byte) '"');
+            putDigits(date.getYear(), 4);
+            put((byte) '-');
+            putDigits(date.getMonthValue(), 2);
+            put((byte) '-');
+            putDigits(date.getDayOfMonth(), 2);
+            put((byte) '"');
+        } else {
+            putDigits(date.getYear(), 4);
+            putDigits(date.getMonthValue(), 2);
+            putDigits(date.getDayOfMonth(), 2);
+        }
+    }
+
+    /**
+     * Puts the characters of a string, up to a maximum, doubling the double
+     * quotes of delimited fields.
+     */
+    private void putText(String s, int max) {
+        final int count = max < 0 ? s.length() : Math.min(max, s.length());
+        ensure(count * 2);
+        for (int i = 0; i < count; i++) {
+            final char c = s.charAt(i);
+            if (c == '"' && format == TextFormat.DELIMITED) {
+                line[length++] = '"';
+            }
+            line[length++] = (byte) (c <= 0xFF ? c : '?');
+        }
+    }
+
+    private void putJsonString(String s) {
+        ensure(s.length() * 6 + 2);
+        line[length++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                line[length++] = '\\';
+                line[length++] = (byte) c;
+            } else if (c < 0x20 || c > 0x7E) {
+                // Written as an escape, so that the line is valid UTF-8
+                line[length++] = '\\';
+                line[length++] = 'u';
+                line[length++] = HEX[(c >> 12) & 0xF];
+                line[length++] = HEX[(c >> 8) & 0xF];
+                line[length++] = HEX[(c >> 4) & 0xF];
+                line[length++] = HEX[c & 0xF];
+            } else {
+                line[length++] = (byte) c;
+            }
+        }
+        line[length++] = '"';
+    }
+
+    private void putDigits(int value, int count) {
+        ensure(count);
+        for (int i = count - 1; i >= 0; i--) {
+            line[length + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += count;
+    }
+
+    private void pad(int end) {
+        if (end > length) {
+            ensure(end - length);
+            Arrays.fill(line, length, end, (byte) ' ');
+            length = end;
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        line[length++] = b;
+    }
+
+    private void put(byte[] bytes, int count) {
+        ensure(count);
+        System.arraycopy(bytes, 0, line, length, count);
+        length += count;
+    }
+
+    private void ensure(int count) {
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+    }
+
+    private static String stripTrailing(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return s.substring(0, end);
+    }
+}
@@ -1,17 +1,118 @@
 package com.idataconnect.salinas.data;
 
 import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.jdbfdriver.index.MDX;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.parser.IndexOptions;
+import com.idataconnect.salinas.parser.SalinasNode;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.AccessDeniedException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * A work area which holds a DBF instance and its alias.
+ * <p>
+ * The record pointer is moved through the work area, rather than through
+ * the DBF instance, so that records hidden by the filter or by
+ * <code>SET DELETED ON</code> are skipped. In natural order, the records
+ * are tested ahead of the record pointer by a {@link RecordReader}, a
+ * block of records at a time, and the driver is only positioned on the
+ * records which are visible.
+ * <p>
+ * A table which is opened read-only cannot be changed through the work
+ * area. Its reader maps the file, and the fields of the current record are
+ * also decoded by the reader, so that they are read from the operating
+ * system's page cache, which is shared by every session reading the table.
+ * <p>
+ * The fields of the current record are also decoded by the reader once the
+ * records are read in sequence, such as by a loop of <code>SKIP</code>, so
+ * that a scan of the table reads many records at a time rather than one.
+ * Records which are read out of sequence are read through the driver.
  */
-public class WorkArea {
+public class WorkArea implements RecordFields {
+    private static final Logger LOGGER = Logger.getLogger(WorkArea.class.getName());
+    private static final int CALIBRATION_RECORDS = 64;
+    private static final int SEQUENTIAL_RECORDS = 4;
+
     private final String alias;
+    private final boolean readOnly;
     private final DBF dbf;
+    private final String tableKey;
+    private final Map<String, IndexOptions> indexes = new LinkedHashMap<>();
+    private Object order;
+    private boolean found;
+    private SalinasNode locateStatement;
+    private RecordCondition filter;
+    private RecordMeter recordMeter;
+    private BitSet filterCandidates;
+    private boolean filterPlanned;
+    private OptimizationLevel optimizationLevel = OptimizationLevel.NONE;
+    private boolean deletedHidden;
+    private boolean bof;
+    private RecordReader reader;
+    private boolean readerUnavailable;
+    private int scanRecno;
+    private int lastRecno;
+    private int sequentialRecords;
+    private boolean backward;
+    private long readAheadHits;
+    private long readAheadMisses;
+    private long changeCount;
+    private Object[] buffer;
+    private BitSet buffered;
+    private boolean indexUpdateDeferred;
+    private boolean indexDetachable;
+    private MDX detachedIndex;
+    private BitSet changedFields;
+    private boolean appended;
 
     public WorkArea(String alias, DBF dbf) {
+        this(alias, dbf, false);
+    }
+
+    /**
+     * Creates a work area for an open table.
+     *
+     * @param alias the alias of the work area
+     * @param dbf the table
+     * @param readOnly whether the table is opened read-only, as with
+     * <code>USE ... NOUPDATE</code>
+     */
+    public WorkArea(String alias, DBF dbf, boolean readOnly) {
         this.alias = alias;
         this.dbf = dbf;
+        this.readOnly = readOnly;
+        this.tableKey = tableKey(dbf.getFile());
+    }
+
+    /**
+     * Resolves the key of the table in the {@link TableRegistry} once, so
+     * that each record which is written is reported without resolving the
+     * path of the file again.
+     */
+    private static String tableKey(File file) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return TableRegistry.key(file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot resolve " + file, ex);
+            return null;
+        }
     }
 
     public String getAlias() {
@@ -21,4 +122,1103 @@ public class WorkArea {
     public DBF getDbf() {
         return dbf;
     }
+
+    /**
+     * Gets whether the table is opened read-only.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Gets the active order, as it was passed to {@link #setOrder}.
+     *
+     * @return the tag name or index file of the active order, or
+     * <code>null</code> if the table is in natural order
+     */
+    public Object getOrder() {
+        return order;
+    }
+
+    /**
+     * Sets the active order of the table.
+     *
+     * @param order the tag name or index file to order by, or
+     * <code>null</code> for natural order
+     * @throws IOException if the driver could not switch to the order
+     */
+    public void setOrder(Object order) throws IOException {
+        indexNeeded();
+        dbf.setOrder(order);
+        this.order = order;
+        changeCount++;
+    }
+
+    /**
+     * Registers the definition of an index which was created for this
+     * table, so that its key expression is known when the index is used.
+     *
+     * @param options the options the index was created with
+     */
+    public void addIndex(IndexOptions options) {
+        indexes.put(indexName(options), options);
+        filterPlanned = false;
+    }
+
+    /**
+     * Gets the definitions of the indexes which are known for this table.
+     *
+     * @return the index definitions, in the order they were added
+     */
+    public Collection<IndexOptions> getIndexes() {
+        return Collections.unmodifiableCollection(indexes.values());
+    }
+
+    /**
+     * Gets the definition of the active order, if the order is known.
+     *
+     * @return the index definition of the active order, or empty if the
+     * table is in natural order or the index was not created in this
+     * work area
+     */
+    public Optional<IndexOptions> getActiveIndex() {
+        if (order == null) {
+            return Optional.empty();
+        }
+        final String name = order.toString();
+        for (IndexOptions options : indexes.values()) {
+            if (name.equalsIgnoreCase(getOrderName(options))) {
+                return Optional.of(options);
+            }
+        }
+        return Optional.ofNullable(indexes.get(name.toUpperCase()));
+    }
+
+    /**
+     * Gets whether the last <code>SEEK</code>, <code>FIND</code> or
+     * <code>LOCATE</code> in this work area found a record.
+     *
+     * @return whether a record was found
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    /**
+     * Gets the last <code>LOCATE</code> statement in this work area, whose
+     * conditions <code>CONTINUE</code> searches for. Only the statement is
+     * kept, so that <code>CONTINUE</code> evaluates the conditions in the
+     * context which runs it.
+     *
+     * @return the statement, or <code>null</code> if no <code>LOCATE</code>
+     * has been performed
+     */
+    public SalinasNode getLocateStatement() {
+        return locateStatement;
+    }
+
+    public void setLocateStatement(SalinasNode locateStatement) {
+        this.locateStatement = locateStatement;
+    }
+
+    /**
+     * Gets the filter of this work area.
+     *
+     * @return the filter, or <code>null</code> if no filter is set
+     */
+    public RecordCondition getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the filter of this work area. Records which do not satisfy the
+     * filter are skipped when the record pointer is moved. The record
+     * pointer itself is not moved.
+     *
+     * @param filter the filter, or <code>null</code> to clear it
+     */
+    public void setFilter(RecordCondition filter) {
+        this.filter = filter;
+        filterCandidates = null;
+        filterPlanned = false;
+    }
+
+    /**
+     * Sets the meter which counts the records this work area reads on its
+     * own while positioning the record pointer, such as the records passed
+     * over by the filter. The records a command moves the record pointer to
+     * are counted by the command.
+     *
+     * @param recordMeter the meter, or <code>null</code> not to count
+     */
+    public void setRecordMeter(RecordMeter recordMeter) {
+        this.recordMeter = recordMeter;
+    }
+
+    /**
+     * Counts records which were read while positioning the record pointer.
+     */
+    void recordsAccessed(int count) throws SalinasException {
+        if (recordMeter != null) {
+            recordMeter.recordsAccessed(count);
+        }
+    }
+
+    /**
+     * Gets how much of the last condition planned in this work area, by a
+     * command or by the filter, could be resolved through indexes.
+     *
+     * @return the optimization level
+     */
+    public OptimizationLevel getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public void setOptimizationLevel(OptimizationLevel optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Gets whether records which are marked as deleted are skipped.
+     */
+    public boolean isDeletedHidden() {
+        return deletedHidden;
+    }
+
+    public void setDeletedHidden(boolean deletedHidden) {
+        this.deletedHidden = deletedHidden;
+    }
+
+    /**
+     * Gets the value of a field of the current record. While records are
+     * being tested ahead of the record pointer, the value is read from the
+     * record being tested. A value which has been buffered for the current
+     * record, but not written yet, is returned instead of the stored value.
+     *
+     * @param field the field number, starting from 1
+     * @return the value of the field
+     * @throws IOException if the record could not be read
+     */
+    @Override
+    public Object getFieldValue(int field) throws IOException {
+        if (buffered != null && buffered.get(field)) {
+            return buffer[field - 1];
+        }
+        if (scanRecno > 0) {
+            if (reader.canDecode(field)) {
+                return reader.getValue(field);
+            }
+
+            // The driver must read the field, and its value tells the
+            // reader how to decode the field next time
+            dbf.gotoRecord(scanRecno);
+            final Object value = dbf.getValue(field).getValue();
+            reader.calibrate(field, value);
+            return value;
+        }
+        if (!dbf.eof() && (isSequential(dbf.recno()) || readOnly) && getReader() != null
+                && reader.position(dbf.recno(), backward)) {
+            if (reader.canDecode(field)) {
+                readAheadHits++;
+                return reader.getValue(field);
+            }
+            final Object value = dbf.getValue(field).getValue();
+            reader.calibrate(field, value);
+            readAheadMisses++;
+            return value;
+        }
+
+        readAheadMisses++;
+        return dbf.getValue(field).getValue();
+    }
+
+    /**
+     * Tracks the records whose fields are read, and gets whether they are
+     * being read one after another, in either direction, such as by a loop
+     * of <code>SKIP</code>.
+     *
+     * @param recno the current record
+     * @return whether the last {@value #SEQUENTIAL_RECORDS} records read
+     * were adjacent
+     */
+    private boolean isSequential(int recno) {
+        if (recno != lastRecno) {
+            if (Math.abs(recno - lastRecno) == 1) {
+                sequentialRecords++;
+                backward = recno < lastRecno;
+            } else {
+                sequentialRecords = 0;
+            }
+            lastRecno = recno;
+        }
+        return sequentialRecords >= SEQUENTIAL_RECORDS;
+    }
+
+    /**
+     * Gets the number of field values which were decoded from the records
+     * read ahead, rather than read through the driver.
+     */
+    public long getReadAheadHits() {
+        return readAheadHits;
+    }
+
+    /**
+     * Gets the number of field values which were read through the driver,
+     * because the records were not read in sequence, or a value could not
+     * be decoded.
+     */
+    public long getReadAheadMisses() {
+        return readAheadMisses;
+    }
+
+    /**
+     * Gets whether the current record is visible through the filter and
+     * <code>SET DELETED</code>.
+     *
+     * @return whether the current record is visible
+     * @throws SalinasException if the filter could not be evaluated
+     */
+    public boolean isVisible() throws SalinasException {
+        return !(deletedHidden && dbf.deleted()) && (filter == null || filter.test());
+    }
+
+    /**
+     * Gets whether the record pointer was moved before the first record.
+     */
+    public boolean bof() {
+        return bof || dbf.bof();
+    }
+
+    public boolean eof() {
+        return dbf.eof();
+    }
+
+    /**
+     * Moves the record pointer to the first visible record in the active
+     * order.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws SalinasException if the filter could not be evaluated
+     */
+    public void goTop() throws IOException, SalinasException {
+        bof = false;
+        if (order == null) {
+            if (!isFiltered()) {
+                dbf.gotoRecord(1);
+            } else if (!scan(1, false)) {
+                gotoEof();
+            }
+        } else {
+            // Selecting an order positions the driver on its first key
+            indexNeeded();
+            dbf.setOrder(order);
+            if (isFiltered() && !dbf.eof() && !isOrderedVisible()) {
+                step(false);
+            }
+        }
+    }
+
+    /**
+     * Moves the record pointer to the last visible record in the active
+     * order.
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws SalinasException if the filter could not be evaluated
+     */
+    public void goBottom() throws IOException, SalinasException {
+        bof = false;
+        final int count = dbf.getStructure().getNumberOfRecords();
+        if (order == null) {
+            if (!isFiltered()) {
+                dbf.gotoRecord(count);
+            } else if (!scan(count, true)) {
+                gotoEof();
+            }
+        } else {
+            indexNeeded();
+            gotoEof();
+            dbf.skip(-1);
+            if (dbf.bof()) {
+                gotoEof();
+            } else if (isFiltered() && !isOrderedVisible()) {
+                if (!step(true)) {
+                    gotoEof();
+                }
+                bof = false;
+            }
+        }
+    }
+
+    /**
+     * Moves the record pointer by the given number of visible records, in
+     * the active order. Moving backwards past the first visible record
+     * leaves the record pointer on it, with <code>BOF()</code> set.
+     *
+     * @param count the number of records to move, which is negative to move
+     * backwards
+     * @throws IOException if an I/O error occurs
+     * @throws SalinasException if the filter could not be evaluated
+     */
+    public void skip(int count) throws IOException, SalinasException {
+        bof = false;
+        if (order != null) {
+            indexNeeded();
+        }
+        if (!isFiltered()) {
+            dbf.skip(count);
+            return;
+        }
+
+        for (int remaining = Math.abs(count); remaining > 0; remaining--) {
+            if (!step(count < 0)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Moves the record pointer to the next visible record in the given
+     * direction. When there is none, the record pointer is left at the end
+     * of file, or on the first visible record with <code>BOF()</code> set.
+     *
+     * @return whether a visible record was found
+     */
+    private boolean step(boolean backward) throws IOException, SalinasException {
+        if (order == null) {
+            if (dbf.eof() && !backward) {
+                return false;
+            }
+            final int from = dbf.eof()
+                    ? dbf.getStructure().getNumberOfRecords() : dbf.recno() + (backward ? -1 : 1);
+            if (scan(from, backward)) {
+                return true;
+            }
+            if (backward) {
+                goTop();
+                bof = true;
+            } else {
+                gotoEof();
+            }
+            return false;
+        }
+
+        while (true) {
+            dbf.skip(backward ? -1 : 1);
+            if (dbf.eof()) {
+                return false;
+            } else if (dbf.bof()) {
+                goTop();
+                bof = true;
+                return false;
+            } else if (isOrderedVisible()) {
+                return true;
+            }
+            recordsAccessed(1);
+        }
+    }
+
+    /**
+     * Finds the first visible record in natural order, starting from the
+     * given record, and positions the driver on it. The driver is not moved
+     * if no record is found.
+     *
+     * @return whether a visible record was found
+     */
+    private boolean scan(int recno, boolean backward) throws IOException, SalinasException {
+        final BitSet candidates = getFilterCandidates();
+        final RecordReader reader = getReader();
+        final boolean raw = reader != null && (filter == null || filter.readsOnlyFields());
+        final int count = dbf.getStructure().getNumberOfRecords();
+        for (; recno >= 1 && recno <= count; recno += backward ? -1 : 1) {
+            if (candidates != null) {
+                recno = backward ? candidates.previousSetBit(recno) : candidates.nextSetBit(recno);
+                if (recno < 1 || recno > count) {
+                    break;
+                }
+            }
+            if (raw && reader.position(recno, backward)) {
+                final boolean visible;
+                scanRecno = recno;
+                try {
+                    visible = !(deletedHidden && reader.isDeleted())
+                            && (filter == null || filter.test());
+                } finally {
+                    scanRecno = 0;
+                }
+                if (visible) {
+                    if (dbf.recno() != recno || dbf.eof()) {
+                        dbf.gotoRecord(recno);
+                    }
+                    return true;
+                }
+            } else {
+                dbf.gotoRecord(recno);
+                if (isVisible()) {
+                    return true;
+                }
+            }
+            recordsAccessed(1);
+        }
+        return false;
+    }
+
+    /**
+     * Gets whether the current record is visible, when moving in an order.
+     * The candidates of the filter are checked first, so that records which
+     * cannot satisfy the filter are not read.
+     */
+    private boolean isOrderedVisible() throws IOException, SalinasException {
+        final int recno = dbf.recno();
+        final BitSet candidates = getFilterCandidates();
+        return (candidates == null || candidates.get(recno)) && isVisible();
+    }
+
+    /**
+     * Gets the records which may satisfy the filter, planning the filter
+     * against the indexes when first needed. The record pointer is
+     * preserved.
+     */
+    private BitSet getFilterCandidates() throws IOException, SalinasException {
+        if (!filterPlanned && filter != null) {
+            final int recno = dbf.recno();
+            final boolean atEof = dbf.eof();
+            try {
+                filterCandidates = filter.candidates();
+            } finally {
+                if (atEof) {
+                    gotoEof();
+                } else {
+                    dbf.gotoRecord(recno);
+                }
+            }
+            filterPlanned = true;
+        }
+        return filterCandidates;
+    }
+
+    /**
+     * Opens a reader of the records of the table, which reads independently
+     * of the record pointer, and can be used by another thread. The way
+     * each field is decoded is first verified against the driver, using
+     * the leading records of the table. The record pointer is preserved.
+     *
+     * @return the reader, or <code>null</code> if the file cannot be read
+     * directly
+     * @throws IOException if an I/O error occurs
+     */
+    public RecordReader openReader() throws IOException {
+        final RecordReader reader = getReader();
+        if (reader == null) {
+            return null;
+        }
+
+        final int recno = dbf.recno();
+        final boolean atEof = dbf.eof();
+        try {
+            final int fieldCount = reader.getLayout().getFieldCount();
+            final int count = dbf.getStructure().getNumberOfRecords();
+            for (int r = 1; r <= Math.min(count, CALIBRATION_RECORDS); r++) {
+                for (int field = 1; field <= fieldCount; field++) {
+                    if (!reader.isCalibrated(field) && reader.position(r, false)) {
+                        dbf.gotoRecord(r);
+                        reader.calibrate(field, dbf.getValue(field).getValue());
+                    }
+                }
+            }
+        } finally {
+            if (atEof) {
+                gotoEof();
+            } else {
+                dbf.gotoRecord(recno);
+            }
+        }
+        return reader.copy();
+    }
+
+    private boolean isFiltered() {
+        return filter != null || deletedHidden;
+    }
+
+    /**
+     * Gets the reader of the records of the table, opening it when first
+     * needed.
+     *
+     * @return the reader, or <code>null</code> if the file cannot be read
+     * directly
+     */
+    private RecordReader getReader() {
+        if (reader == null && !readerUnavailable) {
+            try {
+                reader = new RecordReader(dbf.getFile(), readOnly);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.FINE, "Records of work area " + alias
+                        + " cannot be read ahead", ex);
+                readerUnavailable = true;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Replaces the value of a field of the current record.
+     *
+     * @param fieldName the name of the field
+     * @param value the new value
+     * @throws IOException if the record could not be written, or the table
+     * is opened read-only
+     */
+    public void replace(String fieldName, Object value) throws IOException {
+        checkWritable();
+        detachIndex();
+        invalidateReader();
+        fieldChanged(dbf.getFieldNumberByName(fieldName));
+        try {
+            dbf.replace(fieldName, value);
+        } finally {
+            recordChanged(dbf.recno());
+        }
+    }
+
+    /**
+     * Buffers a new value for a field of the current record. The value is
+     * returned by {@link #getFieldValue(int)} until the buffer is written by
+     * {@link #writeBuffer()}, or discarded by {@link #discardBuffer()}.
+     *
+     * @param field the field number, starting from 1
+     * @param value the new value
+     */
+    public void bufferValue(int field, Object value) {
+        if (buffer == null) {
+            buffer = new Object[dbf.getStructure().getFields().size()];
+        }
+        if (buffered == null) {
+            buffered = new BitSet();
+        }
+        buffer[field - 1] = value;
+        buffered.set(field);
+    }
+
+    /**
+     * Writes the buffered values to the current record, and empties the
+     * buffer. Only the fields whose value differs from the stored value are
+     * written, so that the driver does not rewrite the record or update the
+     * indexes for a field which did not change.
+     *
+     * @return the number of fields which were written
+     * @throws IOException if the record could not be read or written, or
+     * the table is opened read-only
+     */
+    public int writeBuffer() throws IOException {
+        if (buffered == null || buffered.isEmpty()) {
+            return 0;
+        }
+        checkWritable();
+        final BitSet fields = buffered;
+        buffered = null;
+        int written = 0;
+        try {
+            for (int field = fields.nextSetBit(0); field >= 0; field = fields.nextSetBit(field + 1)) {
+                final Object value = buffer[field - 1];
+                if (!sameValue(getFieldValue(field), value)) {
+                    if (written == 0) {
+                        detachIndex();
+                        invalidateReader();
+                    }
+                    fieldChanged(field);
+                    dbf.replace(dbf.getStructure().getFields().get(field - 1).getFieldName(), value);
+                    written++;
+                }
+            }
+            return written;
+        } finally {
+            Arrays.fill(buffer, null);
+            if (written > 0) {
+                recordChanged(dbf.recno());
+            }
+        }
+    }
+
+    /**
+     * Empties the buffer without writing it.
+     */
+    public void discardBuffer() {
+        if (buffered != null) {
+            buffered = null;
+            Arrays.fill(buffer, null);
+        }
+    }
+
+    /**
+     * Gets whether a stored value is the same as a new value, apart from
+     * the trailing spaces of strings and the scale of numbers.
+     */
+    private static boolean sameValue(Object stored, Object value) {
+        if (stored instanceof String && value instanceof String) {
+            return stripTrailing((String) stored).equals(stripTrailing((String) value));
+        } else if (stored instanceof BigDecimal && value instanceof BigDecimal) {
+            return ((BigDecimal) stored).compareTo((BigDecimal) value) == 0;
+        }
+        return stored != null && stored.equals(value);
+    }
+
+    private static String stripTrailing(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return s.substring(0, end);
+    }
+
+    /**
+     * Fails if the table is opened read-only.
+     */
+    private void checkWritable() throws AccessDeniedException {
+        if (readOnly) {
+            throw new AccessDeniedException(String.valueOf(dbf.getFile()), null,
+                    "Work area " + alias + " is opened read-only");
+        }
+    }
+
+    /**
+     * Appends a blank record, and moves the record pointer to it.
+     *
+     * @throws IOException if the record could not be written, or the table
+     * is opened read-only
+     */
+    public void appendBlank() throws IOException {
+        checkWritable();
+        detachIndex();
+        invalidateReader();
+        appended = true;
+        dbf.appendBlank();
+        recordChanged(dbf.recno());
+    }
+
+    /**
+     * Locks a record of the table in the {@link LockTable}, so that the work
+     * areas of other sessions and processes cannot lock it until it is
+     * released. Record 0 is the header of the table, which is locked while
+     * records are appended.
+     *
+     * @param recno the record number
+     * @param timeout the time to wait for the lock in milliseconds, or a
+     * negative number to wait for as long as it takes
+     * @return whether the record is locked
+     * @throws IOException if the lock could not be taken, or the table is
+     * opened read-only
+     */
+    public boolean lockRecord(int recno, long timeout) throws IOException {
+        checkWritable();
+        final File file = dbf.getFile();
+        return file == null || LockTable.getInstance().lockRecord(file, recno, this, timeout);
+    }
+
+    /**
+     * Locks the table in the {@link LockTable}, so that the work areas of
+     * other sessions and processes cannot lock it or its records until it is
+     * released. The record locks of this work area are released.
+     *
+     * @param timeout the time to wait for the lock in milliseconds, or a
+     * negative number to wait for as long as it takes
+     * @return whether the table is locked
+     * @throws IOException if the lock could not be taken, or the table is
+     * opened read-only
+     */
+    public boolean lockFile(long timeout) throws IOException {
+        checkWritable();
+        final File file = dbf.getFile();
+        return file == null || LockTable.getInstance().lockFile(file, this, timeout);
+    }
+
+    /**
+     * Gets whether this work area holds the lock of a record, or of the
+     * table.
+     *
+     * @param recno the record number
+     * @return whether the record is locked by this work area
+     */
+    public boolean isLocked(int recno) {
+        return LockTable.getInstance().isLocked(dbf.getFile(), recno, this);
+    }
+
+    /**
+     * Gets whether this work area holds the lock of the table.
+     */
+    public boolean isFileLocked() {
+        return LockTable.getInstance().isFileLocked(dbf.getFile(), this);
+    }
+
+    /**
+     * Releases the lock which this work area holds on a record.
+     *
+     * @param recno the record number
+     * @throws IOException if the lock could not be released
+     */
+    public void unlockRecord(int recno) throws IOException {
+        if (dbf.getFile() != null) {
+            LockTable.getInstance().unlockRecord(dbf.getFile(), recno, this);
+        }
+    }
+
+    /**
+     * Releases the record and file locks which this work area holds.
+     *
+     * @throws IOException if a lock could not be released
+     */
+    public void unlock() throws IOException {
+        if (dbf.getFile() != null) {
+            LockTable.getInstance().unlockAll(dbf.getFile(), this);
+        }
+    }
+
+    /**
+     * Reports a record which was written to the {@link TableRegistry}, so
+     * that the readers of the table in every session read it again.
+     */
+    private void recordChanged(int recno) {
+        TableRegistry.getInstance().recordChanged(tableKey, recno);
+        if (filterCandidates != null) {
+            filterCandidates.set(recno);
+        }
+    }
+
+    /**
+     * Defers the updates of the indexes of the table, so that records may be
+     * appended and changed without the driver updating the keys of every
+     * tag for each field that is written. The records are still written
+     * straight away, so that other sessions and readers see them, but the
+     * index is detached from the driver while they are written, and the
+     * fields which are changed are noted. {@link #updateIndexes()} then
+     * rebuilds each tag whose key depends on a changed field, or every tag
+     * if records were appended, in a single pass of the driver over the
+     * table, which evaluates the keys of the records and writes them in
+     * sorted order.
+     * <p>
+     * When the table is searched or moved through in order while the index
+     * is detached, the index is brought up to date first, and the driver
+     * updates it as records are written for the rest of the deferral, so
+     * that a loop which moves in order and writes does not rebuild it for
+     * each record.
+     * <p>
+     * Only the key expressions of the tags which were created in this work
+     * area are known, so the updates of an index which was opened with the
+     * table are not deferred, and the driver updates it as each record is
+     * written.
+     */
+    public void deferIndexUpdates() {
+        if (indexUpdateDeferred) {
+            return;
+        }
+        indexUpdateDeferred = true;
+        indexDetachable = !indexes.isEmpty();
+        changedFields = new BitSet();
+        appended = false;
+    }
+
+    /**
+     * Gets whether the updates of the indexes are deferred.
+     *
+     * @return whether {@link #deferIndexUpdates()} was called without a
+     * following call to {@link #updateIndexes()}
+     */
+    public boolean isIndexUpdateDeferred() {
+        return indexUpdateDeferred;
+    }
+
+    /**
+     * Ends the deferral of the updates of the indexes, by rebuilding the tags
+     * whose keys were changed while the index was detached. The active
+     * order is restored, and the record pointer stays on the same record.
+     *
+     * @throws IOException if a tag could not be rebuilt
+     */
+    public void updateIndexes() throws IOException {
+        if (!indexUpdateDeferred) {
+            return;
+        }
+        indexUpdateDeferred = false;
+        try {
+            attachIndex();
+        } finally {
+            changedFields = null;
+        }
+    }
+
+    /**
+     * Gets whether the table has an index which can be searched, including
+     * an index which is detached while its updates are deferred.
+     */
+    public boolean hasIndex() {
+        return dbf.getIndex() != null || detachedIndex != null;
+    }
+
+    /**
+     * Detaches the index from the driver before a record is written, if the
+     * updates of the indexes are deferred. The record pointer is preserved.
+     */
+    private void detachIndex() throws IOException {
+        if (!indexUpdateDeferred || !indexDetachable || detachedIndex != null
+                || dbf.getIndex() == null) {
+            return;
+        }
+        final int recno = dbf.recno();
+        final boolean eof = dbf.eof();
+        detachedIndex = dbf.getIndex();
+        if (order != null) {
+            dbf.setOrder(null);
+        }
+        dbf.setIndex(null);
+        if (eof) {
+            gotoEof();
+        } else {
+            dbf.gotoRecord(recno);
+        }
+    }
+
+    /**
+     * Brings a detached index up to date before it is searched or moved
+     * through, and keeps it attached for the rest of the deferral.
+     */
+    private void indexNeeded() throws IOException {
+        if (detachedIndex != null) {
+            indexDetachable = false;
+            attachIndex();
+        }
+    }
+
+    /**
+     * Attaches the detached index to the driver again, and rebuilds the tags
+     * whose keys were changed while it was detached. The active order and
+     * the record pointer are restored.
+     */
+    private void attachIndex() throws IOException {
+        if (detachedIndex == null) {
+            return;
+        }
+        final int recno = dbf.recno();
+        final boolean eof = dbf.eof();
+        dbf.setIndex(detachedIndex);
+        detachedIndex = null;
+        try {
+            for (IndexOptions options : indexes.values()) {
+                if (appended || dependsOnChangedField(options)) {
+                    if (options.getTagName() != null) {
+                        dbf.index(options.getTagName(), options.getExpressionSource(),
+                                options.isUnique(), options.isDescending());
+                    } else {
+                        dbf.indexTo(options.getFilename(), options.getExpressionSource(),
+                                options.isUnique(), options.isDescending());
+                    }
+                }
+            }
+        } finally {
+            changedFields.clear();
+            appended = false;
+            dbf.setOrder(order);
+            if (eof) {
+                gotoEof();
+            } else {
+                dbf.gotoRecord(recno);
+            }
+        }
+    }
+
+    /**
+     * Notes that a field is written while the updates of the indexes are
+     * deferred.
+     */
+    private void fieldChanged(int field) {
+        if (changedFields != null && field > 0) {
+            changedFields.set(field);
+        }
+    }
+
+    private boolean dependsOnChangedField(IndexOptions options) {
+        final String expression = options.getExpressionSource();
+        if (expression == null) {
+            return true;
+        }
+        final List<DBFField> fields = dbf.getStructure().getFields();
+        for (int field = changedFields.nextSetBit(0); field >= 0;
+                field = changedFields.nextSetBit(field + 1)) {
+            final Pattern name = Pattern.compile("\\b" + Pattern.quote(
+                    fields.get(field - 1).getFieldName().trim()) + "\\b", Pattern.CASE_INSENSITIVE);
+            if (name.matcher(expression).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the records of a source to the table, and moves the record
+     * pointer to the last record appended.
+     * <p>
+     * The records are appended through the open table, so that the driver
+     * adds only the keys of the new records to the indexes. Only the fields
+     * which have a value are written, and the records which are read ahead
+     * are discarded once, rather than for each record.
+     *
+     * @param source the source of the records
+     * @return the number of records appended
+     * @throws IOException if the records could not be read or written, or
+     * the table is opened read-only
+     * @throws SalinasException if the source could not select a record
+     */
+    public int appendRecords(RecordSource source) throws IOException, SalinasException {
+        checkWritable();
+        final List<DBFField> fields = dbf.getStructure().getFields();
+        final Object[] values = new Object[fields.size()];
+        int count = 0;
+        detachIndex();
+        invalidateReader();
+        while (source.next(values)) {
+            appended = true;
+            dbf.appendBlank();
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        dbf.replace(fields.get(i).getFieldName(), values[i]);
+                    }
+                }
+            } finally {
+                recordChanged(dbf.recno());
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Discards the records which have been read ahead, after the table was
+     * changed through the driver. The candidates of the filter are kept,
+     * since each record which is written becomes a candidate, and the
+     * filter itself is tested against the candidates.
+     */
+    public void invalidateReader() {
+        changeCount++;
+        if (reader != null) {
+            reader.invalidate();
+        }
+    }
+
+    /**
+     * Gets the number of changes to the records or the order of this work
+     * area, so that values which were derived from them can tell when they
+     * are out of date.
+     *
+     * @return a count which increases with each change
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Closes the table of this work area, after updating its indexes if
+     * their updates are deferred, and releases its locks.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void close() throws IOException {
+        try {
+            updateIndexes();
+        } finally {
+            try {
+                unlock();
+            } finally {
+                closeTable();
+            }
+        }
+    }
+
+    private void closeTable() throws IOException {
+        try {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        } finally {
+            dbf.close();
+        }
+    }
+
+    /**
+     * Positions the record pointer on the first record in the active order
+     * whose key matches the given key. The key is located with a single
+     * probe of the index, rather than by reading the table.
+     * <p>
+     * If no key matches and <code>near</code> is set, the record pointer is
+     * left on the record with the next higher key. Otherwise, the record
+     * pointer is moved past the last record.
+     *
+     * @param key the key to search for
+     * @param near whether to stop on the next higher key when the key is not
+     * found
+     * @return whether a matching key was found
+     * @throws SalinasException if there is no active order, or the index
+     * could not be read
+     */
+    public boolean seek(Object key, boolean near) throws SalinasException {
+        if (order == null || !hasIndex()) {
+            throw new SalinasException("No index order is active in work area " + alias);
+        }
+
+        try {
+            indexNeeded();
+            final MDX index = dbf.getIndex();
+            int recno = index.find(key);
+            found = recno != DBF.RECORD_NUMBER_EOF;
+            if (!found && near) {
+                recno = index.findNearest(key);
+            }
+
+            if (recno == DBF.RECORD_NUMBER_EOF) {
+                gotoEof();
+            } else {
+                dbf.gotoRecord(recno);
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error searching index of work area " + alias, ex);
+        }
+
+        return found;
+    }
+
+    /**
+     * Moves the record pointer past the last record, so that
+     * <code>EOF()</code> becomes true.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void gotoEof() throws IOException {
+        dbf.gotoRecord(dbf.getStructure().getNumberOfRecords() + 1);
+    }
+
+    /**
+     * Gets the name by which the order of the given index is selected, which
+     * is the tag name, or the file name of a single index file.
+     *
+     * @param options the index definition
+     * @return the name of the order
+     */
+    public static String getOrderName(IndexOptions options) {
+        return options.getTagName() != null ? options.getTagName() : options.getFilename();
+    }
+
+    private static String indexName(IndexOptions options) {
+        if (options.getTagName() != null) {
+            return options.getTagName().toUpperCase();
+        }
+
+        String name = new File(options.getFilename()).getName();
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return name.toUpperCase();
+    }
 }
@@ -1,20 +1,55 @@
 package com.idataconnect.salinas.data;
 
+import com.idataconnect.salinas.SalinasException;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Manages multiple work areas in a script execution context.
+ * <p>
+ * A work area which is the child of a {@link Relation} is positioned for
+ * the current record of its parent when it is got from the manager, if the
+ * parent has moved since.
  */
 public class WorkAreaManager {
+    private static final Logger LOGGER = Logger.getLogger(WorkAreaManager.class.getName());
+
+    /**
+     * The open work areas of a manager, with their order, filter and
+     * relations, as saved by {@link #saveState()}.
+     */
+    public static final class State {
+        private final Map<Integer, WorkArea> workAreas;
+        private final Map<WorkArea, Object> orders = new HashMap<>();
+        private final Map<WorkArea, RecordCondition> filters = new HashMap<>();
+        private final Map<WorkArea, Relation> relations;
+
+        private State(WorkAreaManager manager) {
+            workAreas = new HashMap<>(manager.workAreas);
+            for (WorkArea workArea : workAreas.values()) {
+                orders.put(workArea, workArea.getOrder());
+                filters.put(workArea, workArea.getFilter());
+            }
+            relations = new LinkedHashMap<>(manager.relations);
+        }
+    }
+
     private final Map<Integer, WorkArea> workAreas = new HashMap<>();
     private final Map<String, Integer> aliasToId = new HashMap<>();
+    private final Map<WorkArea, Relation> relations = new LinkedHashMap<>();
     private final List<WorkAreaListener> listeners = new ArrayList<>();
     private int currentWorkArea = 1;
+    private RecordMeter recordMeter;
 
     public void addListener(WorkAreaListener listener) {
         listeners.add(listener);
@@ -45,10 +80,12 @@ public class WorkAreaManager {
     public void use(int id, WorkArea workArea) throws IOException {
         WorkArea old = workAreas.get(id);
         if (old != null) {
-            old.getDbf().close();
+            removeRelations(old);
+            old.close();
             aliasToId.remove(old.getAlias().toUpperCase());
         }
         if (workArea != null) {
+            workArea.setRecordMeter(recordMeter);
             workAreas.put(id, workArea);
             aliasToId.put(workArea.getAlias().toUpperCase(), id);
         } else {
@@ -59,12 +96,26 @@ public class WorkAreaManager {
         notifyCurrentAreaChanged(id);
     }
 
+    /**
+     * Sets the meter which counts the records the work areas read while
+     * positioning their record pointers, for the work areas which are open
+     * and those opened later.
+     *
+     * @param recordMeter the meter, or <code>null</code> not to count
+     */
+    public void setRecordMeter(RecordMeter recordMeter) {
+        this.recordMeter = recordMeter;
+        for (WorkArea workArea : workAreas.values()) {
+            workArea.setRecordMeter(recordMeter);
+        }
+    }
+
     public Optional<WorkArea> getCurrentWorkArea() {
-        return Optional.ofNullable(workAreas.get(currentWorkArea));
+        return Optional.ofNullable(synchronize(workAreas.get(currentWorkArea)));
     }
 
     public Optional<WorkArea> getWorkArea(int id) {
-        return Optional.ofNullable(workAreas.get(id));
+        return Optional.ofNullable(synchronize(workAreas.get(id)));
     }
 
     public Optional<WorkArea> getWorkArea(String alias) {
@@ -74,6 +125,28 @@ public class WorkAreaManager {
             .flatMap(this::getWorkArea);
     }
 
+    /**
+     * Gets the number of the work area with the given alias.
+     *
+     * @param alias the alias, in any letter case
+     * @return the work area number, or empty if no table is open with the
+     * alias
+     */
+    public Optional<Integer> getWorkAreaId(String alias) {
+        return Optional.ofNullable(alias)
+            .map(String::toUpperCase)
+            .map(aliasToId::get);
+    }
+
+    /**
+     * Gets the work areas which have a table open.
+     *
+     * @return the open work areas
+     */
+    public Collection<WorkArea> getWorkAreas() {
+        return Collections.unmodifiableCollection(workAreas.values());
+    }
+
     public int getCurrentWorkAreaId() {
         return currentWorkArea;
     }
@@ -95,16 +168,167 @@ public class WorkAreaManager {
         IOException lastEx = null;
         for (WorkArea wa : workAreas.values()) {
             try {
-                wa.getDbf().close();
+                wa.close();
             } catch (IOException ex) {
                 lastEx = ex;
             }
         }
         workAreas.clear();
         aliasToId.clear();
+        relations.clear();
         notifyAllClosed();
         if (lastEx != null) {
             throw lastEx;
         }
     }
+
+    /**
+     * Saves the open work areas, with their order, filter and relations, so
+     * that they can be restored by {@link #restoreState(State)}.
+     *
+     * @return the saved state
+     */
+    public State saveState() {
+        return new State(this);
+    }
+
+    /**
+     * Returns to a saved state. The work areas which were opened since the
+     * state was saved are closed, and the order, filter and relations of the
+     * others are restored. The record pointers are not moved.
+     *
+     * @param state the saved state
+     * @throws IOException if a table could not be closed, or its order
+     * could not be restored
+     * @throws SalinasException if a work area of the saved state has been
+     * closed, or another table opened in it
+     */
+    public void restoreState(State state) throws IOException, SalinasException {
+        final int selected = currentWorkArea;
+        for (Integer id : new ArrayList<>(workAreas.keySet())) {
+            if (workAreas.get(id) != state.workAreas.get(id)) {
+                use(id, null);
+            }
+        }
+        for (Map.Entry<Integer, WorkArea> entry : state.workAreas.entrySet()) {
+            final WorkArea workArea = entry.getValue();
+            if (workAreas.get(entry.getKey()) != workArea) {
+                throw new SalinasException("Work area " + entry.getKey() + " ("
+                        + workArea.getAlias() + ") was closed, and cannot be restored");
+            }
+            final Object order = state.orders.get(workArea);
+            if (!Objects.equals(workArea.getOrder(), order)) {
+                workArea.setOrder(order);
+            }
+            if (workArea.getFilter() != state.filters.get(workArea)) {
+                workArea.setFilter(state.filters.get(workArea));
+            }
+        }
+        relations.clear();
+        relations.putAll(state.relations);
+        select(selected);
+    }
+
+    /**
+     * Updates the indexes of every work area whose index updates are
+     * deferred, such as when a script is aborted.
+     *
+     * @throws IOException if an index could not be updated, after the
+     * indexes of the other work areas were updated
+     */
+    public void updateDeferredIndexes() throws IOException {
+        IOException lastEx = null;
+        for (WorkArea wa : workAreas.values()) {
+            try {
+                wa.updateIndexes();
+            } catch (IOException ex) {
+                lastEx = ex;
+            }
+        }
+        if (lastEx != null) {
+            throw lastEx;
+        }
+    }
+
+    /**
+     * Sets a relation, which replaces any relation into the same child.
+     *
+     * @param relation the relation
+     * @throws SalinasException if the relation would make a work area its
+     * own ancestor
+     */
+    public void setRelation(Relation relation) throws SalinasException {
+        for (WorkArea ancestor = relation.getParent(); ancestor != null;
+                ancestor = relations.containsKey(ancestor)
+                        ? relations.get(ancestor).getParent() : null) {
+            if (ancestor == relation.getChild()) {
+                throw new SalinasException("Cyclic relation into work area "
+                        + relation.getChild().getAlias());
+            }
+        }
+        relations.put(relation.getChild(), relation);
+    }
+
+    /**
+     * Gets the relations from a work area into its children.
+     *
+     * @param parent the parent work area
+     * @return the relations, in the order they were set
+     */
+    public List<Relation> getRelations(WorkArea parent) {
+        final List<Relation> result = new ArrayList<>();
+        for (Relation relation : relations.values()) {
+            if (relation.getParent() == parent) {
+                result.add(relation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the relations from a work area into its children.
+     *
+     * @param parent the parent work area
+     */
+    public void clearRelations(WorkArea parent) {
+        relations.values().removeIf(relation -> relation.getParent() == parent);
+    }
+
+    private void removeRelations(WorkArea workArea) {
+        relations.remove(workArea);
+        clearRelations(workArea);
+    }
+
+    /**
+     * Positions a work area for the current record of its parent, if it is
+     * the child of a relation and the parent has moved. The key is evaluated
+     * with the parent as the current work area. When the child cannot be
+     * positioned, the error is logged, and the child is left at the end of
+     * the file until it can be.
+     */
+    private WorkArea synchronize(WorkArea workArea) {
+        if (workArea == null || relations.isEmpty()) {
+            return workArea;
+        }
+        final Relation relation = relations.get(workArea);
+        if (relation == null || relation.isSynchronized()) {
+            return workArea;
+        }
+
+        final Integer parentId = aliasToId.get(relation.getParent().getAlias().toUpperCase());
+        if (parentId == null) {
+            return workArea;
+        }
+        final int selected = currentWorkArea;
+        currentWorkArea = parentId;
+        try {
+            relation.synchronize();
+        } catch (SalinasException | IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Error positioning related work area "
+                    + workArea.getAlias(), ex);
+        } finally {
+            currentWorkArea = selected;
+        }
+        return workArea;
+    }
 }
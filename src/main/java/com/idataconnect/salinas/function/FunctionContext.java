@@ -20,6 +20,8 @@ import javax.script.ScriptContext;
  */
 public class FunctionContext {
 
+    // The internal functions are not changed once loaded, and keep the state
+    // of a run in its context, so they are shared by every context
     private static final InternalFunctionProvider internalProviderInstance
             = new InternalFunctionProvider();
 
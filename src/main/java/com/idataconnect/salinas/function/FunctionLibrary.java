@@ -0,0 +1,160 @@
+package com.idataconnect.salinas.function;
+
+import com.idataconnect.salinas.SalinasCompiledScript;
+import com.idataconnect.salinas.SalinasScriptEngine;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+/**
+ * A library of functions and constants which is compiled once, and is
+ * shared by every engine in the process once it is installed, so that an
+ * application's functions are not imported into the bindings of each
+ * session.
+ * <p>
+ * The functions of the installed library are found before the functions
+ * declared in the context of a script, and its constants are found after
+ * the variables of the context. A constant is copied into the context when
+ * it is first used, so that a script which changes it does not change the
+ * library. A library is never changed once it is compiled, and may be used
+ * by any number of threads.
+ * <p>
+ * A library is replaced by installing another, such as when an application
+ * is deployed again. Each library has a version, which increases with each
+ * library compiled, so that a host can tell which library is installed. A
+ * function call uses the library which is installed when the call is made.
+ */
+public final class FunctionLibrary {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final AtomicReference<FunctionLibrary> INSTALLED = new AtomicReference<>();
+
+    private final long version;
+    private final Map<String, Function> functions;
+    private final Map<String, SalinasValue> constants;
+
+    private FunctionLibrary(Map<String, Function> functions, Map<String, SalinasValue> constants) {
+        this.version = VERSIONS.incrementAndGet();
+        this.functions = Map.copyOf(functions);
+        this.constants = Map.copyOf(constants);
+    }
+
+    /**
+     * Compiles a library from scripts. The functions declared by the
+     * scripts are added to the library, and the scripts are run once, in
+     * order, against a context of their own. The variables they leave in
+     * that context become the constants of the library.
+     *
+     * @param sources the scripts
+     * @return the library
+     * @throws ScriptException if a script could not be compiled, or failed
+     */
+    public static FunctionLibrary compile(Reader... sources) throws ScriptException {
+        final SalinasScriptEngine engine = new SalinasScriptEngine();
+        final ScriptContext context = new SimpleScriptContext();
+        for (Reader source : sources) {
+            SalinasCompiledScript.compile(source, engine).eval(context);
+        }
+
+        final Map<String, Function> functions = new HashMap<>();
+        final Map<String, SalinasValue> constants = new HashMap<>();
+        for (Map.Entry<String, Object> entry
+                : context.getBindings(ScriptContext.ENGINE_SCOPE).entrySet()) {
+            if (entry.getKey().startsWith("salinas") || entry.getKey().equals("returning")
+                    || !(entry.getValue() instanceof SalinasValue)) {
+                continue;
+            }
+            final SalinasValue value = (SalinasValue) entry.getValue();
+            if (value.getCurrentType() == SalinasType.FUNCTION) {
+                functions.put(entry.getKey(), new UserDefinedFunction(value));
+            } else {
+                constants.put(entry.getKey(), value);
+            }
+        }
+        return new FunctionLibrary(functions, constants);
+    }
+
+    /**
+     * Installs a library, which replaces the library which was installed.
+     *
+     * @param library the library, or <code>null</code> to install none
+     * @return the library which was installed before, or <code>null</code>
+     */
+    public static FunctionLibrary install(FunctionLibrary library) {
+        return INSTALLED.getAndSet(library);
+    }
+
+    /**
+     * Installs a library, if the library which is installed is the expected
+     * one, so that two deployments do not replace each other's library.
+     *
+     * @param expected the library expected to be installed, or
+     * <code>null</code>
+     * @param library the library to install
+     * @return whether the library was installed
+     */
+    public static boolean replace(FunctionLibrary expected, FunctionLibrary library) {
+        return INSTALLED.compareAndSet(expected, library);
+    }
+
+    /**
+     * Gets the library which is installed.
+     *
+     * @return the library, or <code>null</code> if none is installed
+     */
+    public static FunctionLibrary getInstalled() {
+        return INSTALLED.get();
+    }
+
+    /**
+     * Gets the version of the library.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets a function of the library.
+     *
+     * @param name the name of the function, in upper case
+     * @return the function, or empty if the library has no such function
+     */
+    public Optional<Function> getFunction(String name) {
+        return Optional.ofNullable(functions.get(name));
+    }
+
+    /**
+     * Gets a copy of a constant of the library, which the caller may change.
+     *
+     * @param name the name of the constant, in upper case
+     * @return the value, or empty if the library has no such constant
+     */
+    public Optional<SalinasValue> getConstant(String name) {
+        final SalinasValue value = constants.get(name);
+        return value == null ? Optional.empty() : Optional.of(value.copy());
+    }
+
+    /**
+     * Gets whether the library has a constant with the given name.
+     *
+     * @param name the name of the constant, in upper case
+     */
+    public boolean hasConstant(String name) {
+        return constants.containsKey(name);
+    }
+
+    /**
+     * Gets the number of functions in the library.
+     */
+    public int getFunctionCount() {
+        return functions.size();
+    }
+}
@@ -5,16 +5,26 @@ package com.idataconnect.salinas.function;
 
 import com.idataconnect.salinas.SalinasConfig;
 import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.OptimizationLevel;
 import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.data.WorkAreaManager;
+import com.idataconnect.salinas.interpreter.JobTable;
 import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
+import com.idataconnect.salinas.interpreter.ScriptJob;
+import com.idataconnect.salinas.interpreter.SeekInterpreter;
 import com.idataconnect.salinas.parser.SalinasNode;
 import java.math.BigDecimal;
+import java.io.IOException;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -168,7 +178,7 @@ public class InternalFunctionProvider extends FunctionProvider {
             com.idataconnect.salinas.data.WorkAreaManager wam = context.getWorkAreaManager();
             java.util.Optional<com.idataconnect.salinas.data.WorkArea> wa = wam.getCurrentWorkArea();
             if (wa.isPresent()) {
-                return new SalinasValue(wa.get().getDbf().bof(), SalinasType.BOOLEAN);
+                return new SalinasValue(wa.get().bof(), SalinasType.BOOLEAN);
             }
             return SalinasValue.TRUE;
         }
@@ -198,6 +208,15 @@ public class InternalFunctionProvider extends FunctionProvider {
         }
     };
 
+    public static final Function ISREADONLY = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            WorkAreaManager wam = context.getWorkAreaManager();
+            Optional<WorkArea> wa = wam.getCurrentWorkArea();
+            return new SalinasValue(wa.isPresent() && wa.get().isReadOnly(), SalinasType.BOOLEAN);
+        }
+    };
+
     public static final Function SKIP = new Function() {
         @Override
         public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
@@ -208,8 +227,9 @@ public class InternalFunctionProvider extends FunctionProvider {
                 if (parameters.length > 0) {
                     skipCount = ((BigDecimal) parameters[0].asType(SalinasType.NUMBER)).intValue();
                 }
+                context.recordsAccessed(Math.max(1, Math.abs(skipCount)), null);
                 try {
-                    wa.get().getDbf().skip(skipCount);
+                    wa.get().skip(skipCount);
                 } catch (java.io.IOException ex) {
                     throw new SalinasException("Error during SKIP", ex);
                 }
@@ -226,6 +246,7 @@ public class InternalFunctionProvider extends FunctionProvider {
             java.util.Optional<com.idataconnect.salinas.data.WorkArea> wa = wam.getCurrentWorkArea();
             if (wa.isPresent()) {
                 int record = ((BigDecimal) parameters[0].asType(SalinasType.NUMBER)).intValue();
+                context.recordsAccessed(1, null);
                 try {
                     wa.get().getDbf().gotoRecord(record);
                 } catch (java.io.IOException ex) {
@@ -248,6 +269,61 @@ public class InternalFunctionProvider extends FunctionProvider {
         }
     };
 
+    /**
+     * Search the active order of the current work area for the given key,
+     * and return whether it was found.
+     */
+    public static final Function SEEK = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            checkParameterCount("SEEK", 1, parameters);
+            WorkAreaManager wam = context.getWorkAreaManager();
+            Optional<WorkArea> wa = wam.getCurrentWorkArea();
+            if (wa.isEmpty()) {
+                throw new FunctionCallException("No table is open in the current work area.");
+            }
+            boolean found = SeekInterpreter.seek(wa.get(), parameters[0].getValue(), context);
+            return found ? SalinasValue.TRUE : SalinasValue.FALSE;
+        }
+    };
+
+    /**
+     * Return whether the last search in the current work area, or the work
+     * area with the given number or alias, found a record.
+     */
+    public static final Function FOUND = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            checkParameterCount("FOUND", 0, 1, parameters);
+            WorkAreaManager wam = context.getWorkAreaManager();
+            Optional<WorkArea> wa;
+            if (parameters.length == 0) {
+                wa = wam.getCurrentWorkArea();
+            } else if (parameters[0].getCurrentType() == SalinasType.STRING) {
+                wa = wam.getWorkArea((String) parameters[0].getValue());
+            } else {
+                int id = ((BigDecimal) parameters[0].asType(SalinasType.NUMBER)).intValue();
+                wa = wam.getWorkArea(id);
+            }
+            return wa.isPresent() && wa.get().isFound() ? SalinasValue.TRUE : SalinasValue.FALSE;
+        }
+    };
+
+    /**
+     * Return how much of the last condition planned in the current work
+     * area could be resolved through indexes, as "FULL", "PARTIAL" or
+     * "NONE".
+     */
+    public static final Function OPTLEVEL = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            checkParameterCount("OPTLEVEL", 0, parameters);
+            Optional<WorkArea> wa = context.getWorkAreaManager().getCurrentWorkArea();
+            return new SalinasValue(wa.isPresent() ? wa.get().getOptimizationLevel().name()
+                    : OptimizationLevel.NONE.name(), SalinasType.STRING);
+        }
+    };
+
     /**
      * Return the ASCII ordinal of the first character in the given string
      * parameter.
@@ -568,6 +644,7 @@ public class InternalFunctionProvider extends FunctionProvider {
             } else {
                 columns = 20;
             }
+            context.checkStringLength(columns, null);
             final String padWith;
             if (parameters.length >= 3) {
                 padWith = new String(new int[] {
@@ -681,6 +758,174 @@ public class InternalFunctionProvider extends FunctionProvider {
         }
     };
 
+    /**
+     * Waits for a background job to stop, for at most the number of
+     * milliseconds given, if any, and returns its status. The wait fails
+     * if the calling script is cancelled or passes its deadline first.
+     */
+    public static final Function WAITJOB = new Function() {
+
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters)
+                throws SalinasException {
+            checkParameterCount("WAITJOB", 1, 2, parameters);
+            final ScriptJob job = getJob("WAITJOB", context, parameters[0]);
+            final long timeout = parameters.length > 1
+                    ? parameters[1].asNumber().longValue() : -1;
+            try {
+                context.await(job.whenEnded(), timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new FunctionCallException("Interrupted while waiting for job "
+                        + job.getHandle(), ex);
+            }
+            return new SalinasValue(job.getStatus(), SalinasType.STRING);
+        }
+    };
+
+    /**
+     * Returns the status of a background job: RUNNING, DONE, FAILED or
+     * CANCELLED.
+     */
+    public static final Function JOBSTATUS = new Function() {
+
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters)
+                throws SalinasException {
+            checkParameterCount("JOBSTATUS", 1, parameters);
+            return new SalinasValue(getJob("JOBSTATUS", context, parameters[0]).getStatus(),
+                    SalinasType.STRING);
+        }
+    };
+
+    /**
+     * Cancels a background job, and returns whether it had not ended.
+     */
+    public static final Function CANCELJOB = new Function() {
+
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters)
+                throws SalinasException {
+            checkParameterCount("CANCELJOB", 1, parameters);
+            return getJob("CANCELJOB", context, parameters[0]).cancel()
+                    ? SalinasValue.TRUE : SalinasValue.FALSE;
+        }
+    };
+
+    /**
+     * Returns the output which a background job has written so far.
+     */
+    public static final Function JOBOUTPUT = new Function() {
+
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters)
+                throws SalinasException {
+            checkParameterCount("JOBOUTPUT", 1, parameters);
+            return new SalinasValue(getJob("JOBOUTPUT", context, parameters[0]).getOutput(),
+                    SalinasType.STRING);
+        }
+    };
+
+    /**
+     * Locks the current record, or the records given as a number or as a
+     * list of numbers separated by commas, of the current work area or the
+     * work area with the given number or alias. Returns whether all of the
+     * records were locked; if any is locked by another session, the records
+     * locked by the call are released.
+     */
+    public static final Function RLOCK = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            checkParameterCount("RLOCK", 0, 2, parameters);
+            final Optional<WorkArea> wa = getWorkArea(context, parameters, 1);
+            if (wa.isEmpty()) {
+                return SalinasValue.FALSE;
+            }
+
+            final List<Integer> records = new ArrayList<>();
+            if (parameters.length == 0 || parameters[0].getValue() == null) {
+                if (wa.get().getDbf().eof()) {
+                    return SalinasValue.FALSE;
+                }
+                records.add(wa.get().getDbf().recno());
+            } else if (parameters[0].getCurrentType() == SalinasType.STRING) {
+                for (String recno : ((String) parameters[0].getValue()).split(",")) {
+                    try {
+                        records.add(Integer.valueOf(recno.trim()));
+                    } catch (NumberFormatException ex) {
+                        throw new FunctionCallException("Function RLOCK was called with an invalid record number: "
+                                + recno.trim());
+                    }
+                }
+            } else {
+                records.add(parameters[0].asNumber().intValue());
+            }
+
+            final long timeout = context.getConfig().getLockTimeout();
+            final List<Integer> locked = new ArrayList<>();
+            try {
+                for (int recno : records) {
+                    if (wa.get().isLocked(recno)) {
+                        continue;
+                    }
+                    if (!wa.get().lockRecord(recno, timeout)) {
+                        for (int taken : locked) {
+                            wa.get().unlockRecord(taken);
+                        }
+                        return SalinasValue.FALSE;
+                    }
+                    locked.add(recno);
+                }
+            } catch (IOException ex) {
+                throw new SalinasException("Error during RLOCK: " + ex.getMessage(), ex);
+            }
+            return SalinasValue.TRUE;
+        }
+    };
+
+    /**
+     * Locks the table of the current work area, or of the work area with the
+     * given number or alias, and returns whether it was locked.
+     */
+    public static final Function FLOCK = new Function() {
+        @Override
+        public SalinasValue call(SalinasExecutionContext context, SalinasValue... parameters) throws SalinasException {
+            checkParameterCount("FLOCK", 0, 1, parameters);
+            final Optional<WorkArea> wa = getWorkArea(context, parameters, 0);
+            if (wa.isEmpty()) {
+                return SalinasValue.FALSE;
+            }
+            try {
+                return wa.get().lockFile(context.getConfig().getLockTimeout())
+                        ? SalinasValue.TRUE : SalinasValue.FALSE;
+            } catch (IOException ex) {
+                throw new SalinasException("Error during FLOCK: " + ex.getMessage(), ex);
+            }
+        }
+    };
+
+    /**
+     * Gets the work area with the number or alias given by a parameter, or
+     * the current work area if the parameter is not given.
+     */
+    private static Optional<WorkArea> getWorkArea(SalinasExecutionContext context,
+            SalinasValue[] parameters, int index) throws SalinasException {
+        if (parameters.length <= index) {
+            return context.getWorkAreaManager().getCurrentWorkArea();
+        } else if (parameters[index].getCurrentType() == SalinasType.STRING) {
+            return context.getWorkAreaManager().getWorkArea((String) parameters[index].getValue());
+        }
+        return context.getWorkAreaManager().getWorkArea(parameters[index].asNumber().intValue());
+    }
+
+    private static ScriptJob getJob(String functionName, SalinasExecutionContext context,
+            SalinasValue handle) throws SalinasException {
+        final int number = handle.asNumber().intValue();
+        return JobTable.get(context.getScriptContext()).getJob(number).orElseThrow(
+                () -> new FunctionCallException("Function " + functionName
+                        + " was called with an unknown job: " + number));
+    }
+
     private static void checkParameterCount(String functionName, int length,
             SalinasValue... parameters) throws FunctionCallException {
         if (length != parameters.length) {
@@ -727,15 +972,28 @@ public class InternalFunctionProvider extends FunctionProvider {
         functionMap.put("BOF", BOF);
         functionMap.put("RECNO", RECNO);
         functionMap.put("RECCOUNT", RECCOUNT);
+        functionMap.put("ISREADONLY", ISREADONLY);
         functionMap.put("SKIP", SKIP);
         functionMap.put("GOTO", GOTO);
         functionMap.put("DELETED", DELETED);
+        functionMap.put("SEEK", SEEK);
+        functionMap.put("FOUND", FOUND);
+        functionMap.put("OPTLEVEL", OPTLEVEL);
         functionMap.put("SELECT", SELECT);
         functionMap.put("ALIAS", ALIAS);
         functionMap.put("CURDIR", CURDIR);
         functionMap.put("PWD", CURDIR);
         functionMap.put("FULLPATH", FULLPATH);
         functionMap.put("TYPE", TYPE);
+        functionMap.put("RLOCK", RLOCK);
+        functionMap.put("LOCK", RLOCK);
+        functionMap.put("FLOCK", FLOCK);
+
+        // Background jobs
+        functionMap.put("WAITJOB", WAITJOB);
+        functionMap.put("JOBSTATUS", JOBSTATUS);
+        functionMap.put("CANCELJOB", CANCELJOB);
+        functionMap.put("JOBOUTPUT", JOBOUTPUT);
     }
 
     @Override
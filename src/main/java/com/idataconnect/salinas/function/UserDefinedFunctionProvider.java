@@ -12,6 +12,8 @@ import javax.script.ScriptContext;
 
 /**
  * A function provider implementation which calls user defined functions.
+ * The functions of the installed {@link FunctionLibrary} are found before
+ * the functions of the script context.
  */
 public class UserDefinedFunctionProvider extends FunctionProvider {
 
@@ -29,7 +31,14 @@ public class UserDefinedFunctionProvider extends FunctionProvider {
     @Override
     public Optional<Function> getFunction(String name, SalinasNode node)
             throws ConversionException {
-        
+        final FunctionLibrary library = FunctionLibrary.getInstalled();
+        if (library != null) {
+            final Optional<Function> function = library.getFunction(name.toUpperCase());
+            if (function.isPresent()) {
+                return function;
+            }
+        }
+
         // Functions are stored as global variables in ENGINE_SCOPE
         Object attr = functionContext.getScriptContext().getAttribute(name.toUpperCase(), ScriptContext.ENGINE_SCOPE);
         if (attr == null) {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.ComparativeOp;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The running value of an aggregate function over some records. Sums are
+ * kept as <code>BigDecimal</code>, so that accumulators of different records
+ * can be merged without changing the result.
+ */
+final class Accumulator {
+    private long count;
+    private BigDecimal sum = BigDecimal.ZERO;
+    private SalinasValue extreme;
+
+    void add(AggregateFunction function, SalinasValue value) throws SalinasException {
+        switch (function) {
+            case CNT:
+                count++;
+                break;
+            case SUM:
+            case AVG: {
+                final BigDecimal number = value.asNumber();
+                if (number != null) {
+                    sum = sum.add(number);
+                    count++;
+                }
+                break;
+            }
+            case MAX:
+            case MIN:
+                if (value.getValue() != null && (extreme == null
+                        || ExpressionInterpreter.compare(value, function == AggregateFunction.MAX
+                                ? ComparativeOp.GREATER_THAN : ComparativeOp.LESS_THAN,
+                                extreme))) {
+                    extreme = value;
+                }
+                break;
+        }
+    }
+
+    void merge(AggregateFunction function, Accumulator other) throws SalinasException {
+        count += other.count;
+        sum = sum.add(other.sum);
+        if (other.extreme != null && (extreme == null
+                || ExpressionInterpreter.compare(other.extreme, function == AggregateFunction.MAX
+                        ? ComparativeOp.GREATER_THAN : ComparativeOp.LESS_THAN, extreme))) {
+            extreme = other.extreme;
+        }
+    }
+
+    /**
+     * Writes the running value, so that it can be read again by
+     * {@link #read(ObjectInputStream)}.
+     */
+    void write(ObjectOutputStream out) throws IOException {
+        out.writeLong(count);
+        out.writeObject(sum);
+        out.writeBoolean(extreme != null);
+        if (extreme != null) {
+            out.writeObject(extreme.getValue());
+        }
+    }
+
+    static Accumulator read(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final Accumulator accumulator = new Accumulator();
+        accumulator.count = in.readLong();
+        accumulator.sum = (BigDecimal) in.readObject();
+        if (in.readBoolean()) {
+            accumulator.extreme = new SalinasValue(in.readObject());
+        }
+        return accumulator;
+    }
+
+    SalinasValue result(AggregateFunction function, int precision) {
+        switch (function) {
+            case CNT:
+                return new SalinasValue(BigDecimal.valueOf(count), SalinasType.NUMBER);
+            case SUM:
+                return new SalinasValue(sum, SalinasType.NUMBER);
+            case AVG:
+                return new SalinasValue(count == 0 ? BigDecimal.ZERO
+                        : sum.divide(BigDecimal.valueOf(count), precision,
+                                RoundingMode.HALF_EVEN), SalinasType.NUMBER);
+            default:
+                return extreme == null ? SalinasValue.NULL : extreme;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+/**
+ * The aggregate functions of <code>CALCULATE</code>, which are also used
+ * by the other commands which aggregate records.
+ */
+public enum AggregateFunction {
+    CNT, SUM, AVG, MAX, MIN
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.RecordFields;
+import com.idataconnect.salinas.data.RecordReader;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Interpreter for the COUNT, SUM, AVERAGE and CALCULATE commands.
+ * <p>
+ * When every record in the table is visited, and the <code>FOR</code>
+ * condition and the expressions can be compiled, the records are split
+ * into ranges which are aggregated in parallel on the common fork-join
+ * pool. Each range is read by its own {@link RecordReader}, and the partial
+ * results are merged exactly, since sums are kept as
+ * <code>BigDecimal</code>. The records a worker visits are counted against
+ * the {@link ResourceMeter meter} of the script. Otherwise, the records are visited through the
+ * work area, and the expressions are evaluated by the interpreter.
+ */
+public class AggregateInterpreter implements InterpreterDelegate {
+
+    private static final AggregateInterpreter INSTANCE = new AggregateInterpreter();
+
+    /**
+     * The least number of records which is worth giving to a worker.
+     */
+    private static final int MIN_RANGE_RECORDS = 8192;
+
+    /**
+     * The number of records a worker visits between counting them against
+     * the meter of the script.
+     */
+    private static final int METERED_RECORDS = 1024;
+
+    public static AggregateInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private AggregateInterpreter() {}
+
+    /**
+     * One of the values being computed: a function, and the expression or
+     * field which it is applied to.
+     */
+    private static final class Aggregate {
+        final AggregateFunction function;
+        final SalinasNode expression;
+        final int field;
+
+        Aggregate(AggregateFunction function, SalinasNode expression, int field) {
+            this.function = function;
+            this.expression = expression;
+            this.field = field;
+        }
+    }
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final Optional<WorkArea> current = context.getWorkAreaManager().getCurrentWorkArea();
+        if (current.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final WorkArea workArea = current.get();
+        final String command = (String) node.jjtGetValue();
+
+        final List<SalinasNode> expressions = new ArrayList<>();
+        final List<String> targets = new ArrayList<>();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            switch (child.getId()) {
+                case JJTSCOPE:
+                case JJTFORCONDITION:
+                case JJTWHILECONDITION:
+                    break;
+                case JJTTOVARIABLES:
+                    for (int v = 0; v < child.jjtGetNumChildren(); v++) {
+                        targets.add((String) child.getChild(v).jjtGetValue());
+                    }
+                    break;
+                default:
+                    expressions.add(child);
+            }
+        }
+
+        final List<Aggregate> aggregates = aggregates(command, expressions, workArea);
+        if (!targets.isEmpty() && targets.size() != aggregates.size()) {
+            throw new SalinasException(command + " has " + aggregates.size()
+                    + " values, but " + targets.size() + " variables",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        final RecordScope scope = RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context);
+        Totals totals = null;
+        try {
+            if (scope.getKind() == RecordScope.Kind.ALL && scope.getWhileCondition() == null
+                    && workArea.getFilter() == null) {
+                totals = aggregateInParallel(scope, aggregates, workArea, context);
+            }
+            if (totals == null) {
+                totals = aggregate(scope, aggregates, workArea, context);
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error reading records of work area "
+                    + workArea.getAlias(), ex);
+        }
+
+        final int precision = context.getConfig().getPrecision();
+        final SalinasValue[] results = new SalinasValue[aggregates.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = totals.accumulators[i].result(aggregates.get(i).function, precision);
+            if (!targets.isEmpty()) {
+                context.setVariable(targets.get(i), results[i]);
+            }
+        }
+
+        if (targets.isEmpty()) {
+            print(command, results, context);
+        }
+        return results.length > 0 ? results[0] : SalinasValue.NULL;
+    }
+
+    /**
+     * Gets the values which a command computes.
+     */
+    private static List<Aggregate> aggregates(String command,
+            List<SalinasNode> expressions, WorkArea workArea) throws SalinasException {
+        final List<Aggregate> aggregates = new ArrayList<>();
+        switch (command) {
+            case "COUNT":
+                aggregates.add(new Aggregate(AggregateFunction.CNT, null, 0));
+                break;
+            case "SUM":
+            case "AVERAGE": {
+                final AggregateFunction function = command.equals("SUM")
+                        ? AggregateFunction.SUM : AggregateFunction.AVG;
+                if (expressions.isEmpty()) {
+                    // Every numeric field
+                    final List<DBFField> fields = workArea.getDbf().getStructure().getFields();
+                    for (int i = 0; i < fields.size(); i++) {
+                        final DBFField.FieldType type = fields.get(i).getFieldType();
+                        if (type == DBFField.FieldType.N || type == DBFField.FieldType.F) {
+                            aggregates.add(new Aggregate(function, null, i + 1));
+                        }
+                    }
+                } else {
+                    for (SalinasNode expression : expressions) {
+                        aggregates.add(new Aggregate(function, expression, 0));
+                    }
+                }
+                break;
+            }
+            default:
+                for (SalinasNode expression : expressions) {
+                    aggregates.add(calculation(expression));
+                }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Reads one of the functions of <code>CALCULATE</code>, such as
+     * <code>SUM(QTY)</code>.
+     */
+    private static Aggregate calculation(SalinasNode expression) throws SalinasException {
+        if (expression.getId() == JJTFUNCTIONCALL && expression.jjtGetNumChildren() == 2
+                && expression.getChild(0).getId() == JJTIDENTIFIER
+                && expression.getChild(1).getId() == JJTFUNCTIONCALLSEGMENT) {
+            final String name = ((String) expression.getChild(0).jjtGetValue()).toUpperCase();
+            final SalinasNode arguments = expression.getChild(1);
+            for (AggregateFunction function : AggregateFunction.values()) {
+                if (function.name().equals(name)) {
+                    final int expected = function == AggregateFunction.CNT ? 0 : 1;
+                    if (arguments.jjtGetNumChildren() == expected) {
+                        return new Aggregate(function,
+                                expected == 0 ? null : arguments.getChild(0), 0);
+                    }
+                }
+            }
+        }
+        throw new SalinasException("Invalid CALCULATE function",
+                expression.getFilename(), expression.getBeginLine(),
+                expression.getBeginColumn());
+    }
+
+    /**
+     * Aggregates the selected records by moving the record pointer of the
+     * work area through them.
+     */
+    private static Totals aggregate(RecordScope scope, List<Aggregate> aggregates,
+            WorkArea workArea, SalinasExecutionContext context)
+            throws SalinasException, IOException {
+        final Totals totals = new Totals(aggregates.size());
+        final SalinasValue[] values = new SalinasValue[aggregates.size()];
+        final RecordCursor cursor = scope.open(workArea, context);
+        while (cursor.next()) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = evaluate(aggregates.get(i), workArea, context);
+            }
+            totals.add(aggregates, values);
+        }
+        return totals;
+    }
+
+    private static SalinasValue evaluate(Aggregate aggregate, WorkArea workArea,
+            SalinasExecutionContext context) throws SalinasException, IOException {
+        if (aggregate.expression != null) {
+            return SalinasInterpreter.interpret(aggregate.expression, context);
+        } else if (aggregate.field > 0) {
+            return SalinasValue.valueOf(workArea.getFieldValue(aggregate.field));
+        }
+        return SalinasValue.NULL;
+    }
+
+    /**
+     * Aggregates every record of the table, by ranges of records which are
+     * read and aggregated in parallel.
+     *
+     * @return the totals, or <code>null</code> if the condition or the
+     * expressions cannot be compiled, or the table cannot be read directly
+     */
+    private static Totals aggregateInParallel(RecordScope scope, List<Aggregate> aggregates,
+            WorkArea workArea, SalinasExecutionContext context)
+            throws SalinasException, IOException {
+        final DBF dbf = workArea.getDbf();
+        final int count = dbf.getStructure().getNumberOfRecords();
+        final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        final int rangeCount = Math.max(1, Math.min(parallelism, count / MIN_RANGE_RECORDS));
+
+        final List<RangeTask> tasks = new ArrayList<>(rangeCount);
+        try {
+            final RecordReader reader = workArea.openReader();
+            if (reader == null) {
+                return null;
+            }
+            for (int i = 0; i < rangeCount; i++) {
+                final WorkerFields fields = new WorkerFields(i == 0 ? reader : reader.copy());
+                final RangeTask task = new RangeTask(fields,
+                        1 + (int) ((long) count * i / rangeCount),
+                        (int) ((long) count * (i + 1) / rangeCount),
+                        workArea.isDeletedHidden(), aggregates, context.getResourceMeter());
+                tasks.add(task);
+                if (!task.compile(scope.getForCondition(), aggregates, workArea, context)) {
+                    return null;
+                }
+            }
+
+            BitSet candidates = null;
+            if (scope.getForCondition() != null) {
+                candidates = IndexPlanner.plan(scope.getForCondition(), workArea, context, true)
+                        .getCandidates();
+            }
+            for (RangeTask task : tasks) {
+                task.candidates = candidates;
+            }
+
+            final List<Totals> partials = new ArrayList<>(rangeCount);
+            try {
+                if (tasks.size() == 1) {
+                    partials.add(tasks.get(0).invoke());
+                } else {
+                    for (RangeTask task : tasks) {
+                        task.fork();
+                    }
+                    for (RangeTask task : tasks) {
+                        partials.add(task.join());
+                    }
+                }
+            } catch (WorkerException ex) {
+                throw (SalinasException) ex.getCause();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            final Totals totals = new Totals(aggregates.size());
+            for (Totals partial : partials) {
+                totals.merge(aggregates, partial);
+            }
+
+            // Records whose fields could not be decoded by a worker are
+            // aggregated through the driver
+            final RecordPredicate predicate = scope.getForCondition() == null ? null
+                    : RecordPredicate.compile(scope.getForCondition(), workArea, context);
+            final SalinasValue[] values = new SalinasValue[aggregates.size()];
+            for (RangeTask task : tasks) {
+                for (int recno : task.deferred) {
+                    dbf.gotoRecord(recno);
+                    context.recordsAccessed(1, null);
+                    if (predicate == null || predicate.test()) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = evaluate(aggregates.get(i), workArea, context);
+                        }
+                        totals.add(aggregates, values);
+                    }
+                }
+            }
+
+            workArea.gotoEof();
+            return totals;
+        } finally {
+            for (RangeTask task : tasks) {
+                task.fields.reader.close();
+            }
+        }
+    }
+
+    private static void print(String command, SalinasValue[] results,
+            SalinasExecutionContext context) throws SalinasException {
+        final StringBuilder sb = new StringBuilder();
+        if (command.equals("COUNT")) {
+            sb.append(results[0]).append(" records");
+        } else {
+            for (int i = 0; i < results.length; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(results[i]);
+            }
+        }
+        sb.append('\n');
+        try {
+            context.getWriter().write(sb.toString());
+            context.getWriter().flush();
+        } catch (IOException ex) {
+            throw ResourceMeter.outputError(ex);
+        }
+    }
+
+    /**
+     * The running values of the aggregates over some records.
+     */
+    private static final class Totals {
+        final Accumulator[] accumulators;
+
+        Totals(int size) {
+            accumulators = new Accumulator[size];
+            for (int i = 0; i < size; i++) {
+                accumulators[i] = new Accumulator();
+            }
+        }
+
+        void add(List<Aggregate> aggregates, SalinasValue[] values) throws SalinasException {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].add(aggregates.get(i).function, values[i]);
+            }
+        }
+
+        void merge(List<Aggregate> aggregates, Totals other) throws SalinasException {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].merge(aggregates.get(i).function, other.accumulators[i]);
+            }
+        }
+    }
+
+    /**
+     * The fields of the record a worker's reader is positioned on. A field
+     * which the reader cannot decode is recorded, so that the record can be
+     * read through the driver instead.
+     */
+    private static final class WorkerFields implements RecordFields {
+        final RecordReader reader;
+        boolean undecodable;
+
+        WorkerFields(RecordReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Object getFieldValue(int field) {
+            if (reader.canDecode(field)) {
+                return reader.getValue(field);
+            }
+            undecodable = true;
+            return null;
+        }
+    }
+
+    /**
+     * Wraps an exception thrown by a worker, so that it can be rethrown by
+     * the thread which waits for the worker.
+     */
+    private static final class WorkerException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WorkerException(SalinasException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Aggregates a range of records, with its own reader, condition and
+     * expressions.
+     */
+    private static final class RangeTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        final WorkerFields fields;
+        final int first;
+        final int last;
+        final boolean deletedHidden;
+        final List<Aggregate> aggregates;
+        final ResourceMeter meter;
+        final List<Integer> deferred = new ArrayList<>();
+        RecordPredicate predicate;
+        RecordExpression[] expressions;
+        BitSet candidates;
+
+        RangeTask(WorkerFields fields, int first, int last, boolean deletedHidden,
+                List<Aggregate> aggregates, ResourceMeter meter) {
+            this.fields = fields;
+            this.first = first;
+            this.last = last;
+            this.deletedHidden = deletedHidden;
+            this.aggregates = aggregates;
+            this.meter = meter;
+        }
+
+        /**
+         * Compiles the condition and expressions of this task, which must be
+         * done by the thread that owns the execution context.
+         *
+         * @return <code>false</code> if they cannot be compiled
+         */
+        boolean compile(SalinasNode condition, List<Aggregate> aggregates, WorkArea workArea,
+                SalinasExecutionContext context) throws SalinasException {
+            if (condition != null) {
+                predicate = RecordPredicate.compile(condition, workArea, fields, context, true);
+                if (predicate.usesInterpreter()) {
+                    return false;
+                }
+            }
+            expressions = new RecordExpression[aggregates.size()];
+            for (int i = 0; i < expressions.length; i++) {
+                final Aggregate aggregate = aggregates.get(i);
+                if (aggregate.expression != null) {
+                    expressions[i] = RecordExpression.compile(aggregate.expression, workArea,
+                            fields, context);
+                    if (expressions[i] == null) {
+                        return false;
+                    }
+                } else if (aggregate.field > 0) {
+                    expressions[i] = RecordExpression.field(workArea, fields, aggregate.field);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected Totals compute() {
+            final Totals totals = new Totals(aggregates.size());
+            final SalinasValue[] values = new SalinasValue[aggregates.size()];
+            final RecordReader reader = fields.reader;
+            int visited = 0;
+            try {
+                for (int recno = next(first); recno > 0 && recno <= last; recno = next(recno + 1)) {
+                    if (!reader.position(recno, false)) {
+                        // Appended records which are not in the file yet
+                        for (; recno > 0 && recno <= last; recno = next(recno + 1)) {
+                            deferred.add(recno);
+                        }
+                        break;
+                    }
+                    if (++visited == METERED_RECORDS) {
+                        count(visited);
+                        visited = 0;
+                    }
+                    if (deletedHidden && reader.isDeleted()) {
+                        continue;
+                    }
+
+                    fields.undecodable = false;
+                    boolean selected;
+                    try {
+                        selected = predicate == null || predicate.test();
+                        if (selected) {
+                            for (int i = 0; i < values.length; i++) {
+                                values[i] = expressions[i] == null ? SalinasValue.NULL
+                                        : expressions[i].evaluate();
+                            }
+                        }
+                    } catch (SalinasException ex) {
+                        if (!fields.undecodable) {
+                            throw ex;
+                        }
+                        selected = false;
+                    }
+                    if (fields.undecodable) {
+                        deferred.add(recno);
+                    } else if (selected) {
+                        totals.add(aggregates, values);
+                    }
+                }
+                count(visited);
+            } catch (SalinasException ex) {
+                throw new WorkerException(ex);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return totals;
+        }
+
+        private void count(int visited) throws SalinasException {
+            if (meter != null && visited > 0) {
+                meter.recordsAccessed(visited, null);
+            }
+        }
+
+        private int next(int recno) {
+            return candidates == null ? recno : candidates.nextSetBit(recno);
+        }
+    }
+}
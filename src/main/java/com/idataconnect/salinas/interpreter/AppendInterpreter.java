@@ -1,12 +1,40 @@
 package com.idataconnect.salinas.interpreter;
 
+import com.idataconnect.jdbfdriver.DBFField;
 import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.DbfLayout;
+import com.idataconnect.salinas.data.RecordFields;
+import com.idataconnect.salinas.data.RecordReader;
+import com.idataconnect.salinas.data.RecordSource;
+import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.TextFormat;
+import com.idataconnect.salinas.data.WorkArea;
 import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Interpreter delegate implementation for APPEND command.
+ * <p>
+ * <code>APPEND FROM</code> appends the records of another table, or of a
+ * text file in one of the {@link TextFormat formats}. The fields of a table
+ * are matched by name, once, and the lines of a text file are matched to
+ * the fields in order. The source is read as a stream, and the records are
+ * written through {@link WorkArea#appendRecords}, which appends them to the
+ * open table so that only their keys are added to the indexes.
+ * <p>
+ * The header of the table is locked while records are appended, unless the
+ * work area has locked the table by <code>FLOCK()</code>, so that sessions
+ * appending to the same table take turns.
  */
 public class AppendInterpreter implements InterpreterDelegate {
 
@@ -20,26 +48,290 @@ public class AppendInterpreter implements InterpreterDelegate {
 
     @Override
     public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context) throws SalinasException {
-        context.getWorkAreaManager().getCurrentWorkArea().ifPresentOrElse(wa -> {
+        if (node.jjtGetNumChildren() > 0) {
+            return appendFrom(node, context);
+        }
+
+        final Optional<WorkArea> current = context.getWorkAreaManager().getCurrentWorkArea();
+        if (current.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final WorkArea wa = current.get();
+        try {
+            final boolean locked = lockHeader(wa, node, context);
             try {
-                wa.getDbf().appendBlank();
+                wa.appendBlank();
                 wa.getDbf().gotoRecord(wa.getDbf().getStructure().getNumberOfRecords());
-                
-                // If it was just APPEND (not APPEND BLANK), trigger a browse
-                if (node.jjtGetValue() == null) {
-                    com.idataconnect.salinas.SalinasUI ui = (com.idataconnect.salinas.SalinasUI) 
-                            context.getScriptContext().getAttribute("salinasUI");
-                    if (ui != null) {
-                        ui.browse(wa.getAlias());
-                    }
+            } finally {
+                if (locked) {
+                    wa.unlockRecord(0);
                 }
-            } catch (IOException e) {
-                throw new RuntimeException("Error performing APPEND", e);
             }
-        }, () -> {
-             throw new RuntimeException("No database in use.");
-        });
-        
+        } catch (IOException ex) {
+            throw new SalinasException("Error performing APPEND", ex,
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        // If it was just APPEND (not APPEND BLANK), trigger a browse
+        if (node.jjtGetValue() == null) {
+            com.idataconnect.salinas.SalinasUI ui = (com.idataconnect.salinas.SalinasUI)
+                    context.getScriptContext().getAttribute("salinasUI");
+            if (ui != null) {
+                ui.browse(wa.getAlias());
+            }
+        }
+
         return SalinasValue.NULL;
     }
+
+    private SalinasValue appendFrom(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final Optional<WorkArea> current = context.getWorkAreaManager().getCurrentWorkArea();
+        if (current.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final WorkArea workArea = current.get();
+
+        TextFormat format = null;
+        SalinasNode fileNode = null;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() == JJTFROM) {
+                fileNode = child.getChild(0);
+            } else if (child.getId() == JJTTYPE) {
+                format = fileType(child);
+                if (format == TextFormat.JSONL) {
+                    throw new SalinasException("Cannot APPEND FROM a file of type " + format,
+                            child.getFilename(), child.getBeginLine(), child.getBeginColumn());
+                }
+            }
+        }
+        final File file = TotalInterpreter.dataFile(fileNode, format == null ? ".dbf" : ".txt",
+                context);
+        if (!file.isFile()) {
+            throw new SalinasException("File not found: " + file,
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        if (workArea.getDbf().getFile() != null
+                && file.getAbsoluteFile().equals(workArea.getDbf().getFile().getAbsoluteFile())) {
+            throw new SalinasException("Cannot APPEND a table from itself",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        final RecordScope scope = RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context);
+        if (scope.getKind() != RecordScope.Kind.ALL && scope.getKind() != RecordScope.Kind.REST) {
+            throw new SalinasException("APPEND FROM only accepts FOR and WHILE clauses",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final List<DBFField> fields = workArea.getDbf().getStructure().getFields();
+        final Row row = new Row();
+        final RecordPredicate forPredicate = scope.getForCondition() == null ? null
+                : RecordPredicate.compile(scope.getForCondition(), workArea, row, context, true);
+        final RecordPredicate whilePredicate = scope.getWhileCondition() == null ? null
+                : RecordPredicate.compile(scope.getWhileCondition(), workArea, row, context, true);
+
+        final int count;
+        boolean locked = false;
+        try (Source source = format == null
+                ? new TableSource(file, fields, context.getConfig().isDeleted())
+                : new TextSource(file, fields, format)) {
+            locked = lockHeader(workArea, node, context);
+            count = workArea.appendRecords(values -> {
+                row.values = values;
+                while (source.next(values)) {
+                    if (whilePredicate != null && !test(whilePredicate, workArea, values)) {
+                        return false;
+                    }
+                    if (forPredicate == null || test(forPredicate, workArea, values)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        } catch (IOException ex) {
+            throw new SalinasException("Error appending from " + file + " to work area "
+                    + workArea.getAlias(), ex);
+        } finally {
+            if (locked) {
+                try {
+                    workArea.unlockRecord(0);
+                } catch (IOException ex) {
+                    throw new SalinasException("Error unlocking work area " + workArea.getAlias(), ex);
+                }
+            }
+        }
+
+        return new SalinasValue(BigDecimal.valueOf(count), SalinasType.NUMBER);
+    }
+
+    /**
+     * Locks the header of the table of a work area for an append, unless the
+     * work area holds the lock already.
+     *
+     * @return whether the lock was taken, and must be released once the
+     * records are appended
+     * @throws SalinasException if the header is still locked by another
+     * session when the lock timeout runs out
+     */
+    private static boolean lockHeader(WorkArea workArea, SalinasNode node,
+            SalinasExecutionContext context) throws SalinasException, IOException {
+        if (workArea.isReadOnly() || workArea.isLocked(0)) {
+            return false;
+        }
+        if (!workArea.lockRecord(0, context.getConfig().getLockTimeout())) {
+            throw new SalinasException("Work area " + workArea.getAlias()
+                    + " is locked by another user",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        return true;
+    }
+
+    /**
+     * Gets the format named by a <code>TYPE</code> clause.
+     *
+     * @param node the type node
+     * @return the text format, or <code>null</code> for a table
+     * @throws SalinasException if the type is not known
+     */
+    static TextFormat fileType(SalinasNode node) throws SalinasException {
+        final String name = ((String) node.getChild(0).jjtGetValue()).toUpperCase();
+        if (name.equals("DBF") || name.equals("DBASE")) {
+            return null;
+        }
+        try {
+            return TextFormat.valueOf(name);
+        } catch (IllegalArgumentException ex) {
+            throw new SalinasException("Unknown file type: " + name,
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+    }
+
+    /**
+     * Tests a condition against a record which has not been appended yet.
+     * Parts of the condition which are evaluated by the interpreter read the
+     * fields of the record from the buffer of the work area.
+     */
+    private static boolean test(RecordPredicate predicate, WorkArea workArea, Object[] values)
+            throws SalinasException {
+        if (!predicate.usesInterpreter()) {
+            return predicate.test();
+        }
+        for (int i = 0; i < values.length; i++) {
+            workArea.bufferValue(i + 1, values[i]);
+        }
+        try {
+            return predicate.test();
+        } finally {
+            workArea.discardBuffer();
+        }
+    }
+
+    /**
+     * The fields of the record being appended.
+     */
+    private static final class Row implements RecordFields {
+        Object[] values;
+
+        @Override
+        public Object getFieldValue(int field) {
+            return values[field - 1];
+        }
+    }
+
+    private interface Source extends RecordSource, Closeable {}
+
+    /**
+     * Reads the records of a table directly, matching its fields to the
+     * fields of the work area by name.
+     */
+    private static final class TableSource implements Source {
+        private final RecordReader reader;
+        private final List<DBFField> fields;
+        private final int[] sourceFields;
+        private final boolean skipDeleted;
+        private int recno;
+
+        TableSource(File file, List<DBFField> fields, boolean skipDeleted) throws IOException {
+            this.reader = new RecordReader(file);
+            this.fields = fields;
+            this.skipDeleted = skipDeleted;
+            final DbfLayout layout = reader.getLayout();
+            sourceFields = new int[fields.size()];
+            for (int i = 0; i < sourceFields.length; i++) {
+                sourceFields[i] = layout.getFieldNumber(fields.get(i).getFieldName().trim());
+            }
+        }
+
+        @Override
+        public boolean next(Object[] values) throws IOException {
+            do {
+                if (!reader.position(++recno, false)) {
+                    return false;
+                }
+            } while (skipDeleted && reader.isDeleted());
+
+            for (int i = 0; i < values.length; i++) {
+                final int field = sourceFields[i];
+                Object value = field > 0 && isDecoded(reader.getLayout().getFieldType(field))
+                        ? reader.getValue(field) : null;
+                if (value instanceof String && fields.get(i).getFieldType() != DBFField.FieldType.C) {
+                    value = TextFormat.convert((String) value, fields.get(i));
+                }
+                values[i] = value;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        /**
+         * Gets whether the reader decodes fields of the given type. The
+         * values are not compared with the driver, so any of the reader's
+         * decodings will do.
+         */
+        private static boolean isDecoded(char type) {
+            return type == 'C' || type == 'N' || type == 'F' || type == 'L' || type == 'D';
+        }
+    }
+
+    /**
+     * Reads the lines of a text file, one record per line.
+     */
+    private static final class TextSource implements Source {
+        private static final String END_OF_FILE = "\u001A";
+
+        private final BufferedReader reader;
+        private final List<DBFField> fields;
+        private final TextFormat format;
+
+        TextSource(File file, List<DBFField> fields, TextFormat format) throws IOException {
+            this.reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1);
+            this.fields = fields;
+            this.format = format;
+        }
+
+        @Override
+        public boolean next(Object[] values) throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+            } while (line.isEmpty() || line.equals(END_OF_FILE));
+
+            format.parse(line, fields, values);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
 }
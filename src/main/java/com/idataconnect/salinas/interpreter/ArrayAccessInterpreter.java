@@ -17,7 +17,7 @@ import java.util.Optional;
  */
 public class ArrayAccessInterpreter implements InterpreterDelegate {
     
-    private static ArrayAccessInterpreter instance;
+    private static final ArrayAccessInterpreter INSTANCE = new ArrayAccessInterpreter();
 
     /**
      * Gets a singleton instance of the array access interpreter delegate.
@@ -25,11 +25,7 @@ public class ArrayAccessInterpreter implements InterpreterDelegate {
      * @return a singleton instance
      */
     public static ArrayAccessInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ArrayAccessInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
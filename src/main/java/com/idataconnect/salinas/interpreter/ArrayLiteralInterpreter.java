@@ -15,18 +15,15 @@ import java.math.BigDecimal;
  */
 public class ArrayLiteralInterpreter implements InterpreterDelegate {
     
-    private static ArrayLiteralInterpreter instance;
+    private static final ArrayLiteralInterpreter INSTANCE = new ArrayLiteralInterpreter();
 
     public static ArrayLiteralInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ArrayLiteralInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
     
     @Override
     public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context) throws SalinasException {
+        context.arrayElementsAdded(node.jjtGetNumChildren(), node);
         SalinasArrayMap arrayMap = new SalinasArrayMap(Math.max((int) (node.jjtGetNumChildren() * 1.5), 16));
         SalinasValue array = new SalinasValue(arrayMap, SalinasType.ARRAY);
         SalinasNode n;
@@ -18,18 +18,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
 
 public class AssignInterpreter implements InterpreterDelegate {
 
-    private static AssignInterpreter instance;
+    private static final AssignInterpreter INSTANCE = new AssignInterpreter();
 
     /**
      * Gets a singleton instance of the assign interpreter.
      * @return a singleton instance
      */
     public static AssignInterpreter getInstance() {
-        if (instance == null) {
-            instance = new AssignInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -93,6 +89,9 @@ public class AssignInterpreter implements InterpreterDelegate {
                             .interpret(childNode, context)
                             .getValue();
 
+                    if (!arrayMap.containsKey(indexValue)) {
+                        context.arrayElementsAdded(1, variableNode);
+                    }
                     if (count == variableNode.jjtGetNumChildren() - 1) {
                         // Store the expression value to the last array index
                         arrayMap.put(indexValue, expressionValue);
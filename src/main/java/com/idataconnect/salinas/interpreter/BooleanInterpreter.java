@@ -14,18 +14,14 @@ import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
  */
 public class BooleanInterpreter implements InterpreterDelegate {
 
-    private static BooleanInterpreter instance;
+    private static final BooleanInterpreter INSTANCE = new BooleanInterpreter();
 
     /**
      * Gets a singleton instance of the boolean interpreter.
      * @return a singleton instance
      */
     public static BooleanInterpreter getInstance() {
-        if (instance == null) {
-            instance = new BooleanInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
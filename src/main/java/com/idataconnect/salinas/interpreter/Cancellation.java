@@ -0,0 +1,91 @@
+package com.idataconnect.salinas.interpreter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A request to stop a running script, which the script sees the next time
+ * one of its loops goes round. A script is stopped this way, rather than by
+ * interrupting its thread, since an interrupt closes the channels of the
+ * tables the thread is reading, which are shared by other sessions.
+ * <p>
+ * A cancellation may also have a deadline, after which the script stops as
+ * though it had been cancelled, so that a host can bound the time a script
+ * runs for.
+ * <p>
+ * The cancellation of a run is held by its script context, under the
+ * attribute <code>salinasCancellation</code>, where it is put when the first
+ * execution context of the script context is created, so that it may be
+ * changed by any thread without changing the bindings.
+ */
+public final class Cancellation {
+
+    private volatile boolean cancelled;
+    private volatile boolean hasDeadline;
+    private volatile long deadline;
+    private volatile CompletableFuture<Void> signal = new CompletableFuture<>();
+
+    /**
+     * Asks the script to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+        signal.complete(null);
+    }
+
+    /**
+     * Gets whether the script has been asked to stop.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Sets the time after which the script is stopped.
+     *
+     * @param nanoTime the deadline, as given by {@link System#nanoTime()}
+     */
+    public void setDeadline(long nanoTime) {
+        deadline = nanoTime;
+        hasDeadline = true;
+    }
+
+    /**
+     * Withdraws the request to stop, and removes the deadline, if any.
+     */
+    public void reset() {
+        cancelled = false;
+        hasDeadline = false;
+        if (signal.isDone()) {
+            signal = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Gets a future which is completed when the script is asked to stop, so
+     * that a script which waits can stop waiting.
+     */
+    CompletableFuture<Void> whenCancelled() {
+        final CompletableFuture<Void> current = signal;
+        if (cancelled) {
+            current.complete(null);
+        }
+        return current;
+    }
+
+    /**
+     * Gets the time left until the deadline.
+     *
+     * @return the time in nanoseconds, which is negative if the deadline
+     * has passed, or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    long getRemainingNanos() {
+        return hasDeadline ? deadline - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets whether the deadline has passed.
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+}
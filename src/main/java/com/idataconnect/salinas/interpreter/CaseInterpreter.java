@@ -16,18 +16,14 @@ import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTOTHE
  */
 public class CaseInterpreter implements InterpreterDelegate {
 
-    private static CaseInterpreter instance;
+    private static final CaseInterpreter INSTANCE = new CaseInterpreter();
 
     /**
      * Gets a singleton instance of the case interpreter.
      * @return a singleton instance
      */
     public static CaseInterpreter getInstance() {
-        if (instance == null) {
-            instance = new CaseInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
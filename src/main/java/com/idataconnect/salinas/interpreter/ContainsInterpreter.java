@@ -13,18 +13,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
  */
 public class ContainsInterpreter implements InterpreterDelegate {
 
-    private static ContainsInterpreter instance;
+    private static final ContainsInterpreter INSTANCE = new ContainsInterpreter();
 
     /**
      * Gets a singleton instance of the contains interpreter.
      * @return a singleton instance
      */
     public static ContainsInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ContainsInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
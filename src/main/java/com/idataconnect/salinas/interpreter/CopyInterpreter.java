@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.RecordWriter;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.TextFormat;
+import com.idataconnect.salinas.data.TextRecordWriter;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Interpreter for the COPY TO command, which writes the selected records of
+ * the current table to a new table, or to a text file in one of the
+ * {@link TextFormat formats}.
+ * <p>
+ * The fields are those of the <code>FIELDS</code> clause, or every field
+ * which is not a memo field. The records are visited by the scope, and each
+ * is read into a row which is reused for every record, and passed to a
+ * writer which appends it to the file a block at a time. The bytes of each
+ * record are counted as output of the script, so a copy stops at the output
+ * limit of its settings.
+ */
+public class CopyInterpreter implements InterpreterDelegate {
+
+    private static final CopyInterpreter INSTANCE = new CopyInterpreter();
+
+    public static CopyInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private CopyInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final Optional<WorkArea> current = context.getWorkAreaManager().getCurrentWorkArea();
+        if (current.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final WorkArea workArea = current.get();
+        final DBF dbf = workArea.getDbf();
+
+        TextFormat format = null;
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            if (node.getChild(i).getId() == JJTTYPE) {
+                format = AppendInterpreter.fileType(node.getChild(i));
+            }
+        }
+        final File file = TotalInterpreter.dataFile(node.getChild(0),
+                format == null ? ".dbf" : format == TextFormat.JSONL ? ".jsonl" : ".txt", context);
+        if (dbf.getFile() != null && file.getAbsoluteFile().equals(dbf.getFile().getAbsoluteFile())) {
+            throw new SalinasException("Cannot COPY a table to itself",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        final List<Integer> copied = fieldNumbers(node, workArea, false);
+        final List<DBFField> fields = new ArrayList<>();
+        for (int field : copied) {
+            final DBFField source = dbf.getStructure().getFields().get(field - 1);
+            if (format == null && source.getFieldType() == DBFField.FieldType.M) {
+                throw new SalinasException("Memo field " + source.getFieldName()
+                        + " cannot be copied to a table",
+                        node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+            }
+            fields.add(new DBFField(source.getFieldName(), source.getFieldType(),
+                    source.getFieldLength(), source.getDecimalLength()));
+        }
+
+        final RecordScope scope = RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context);
+        final Object[] row = new Object[copied.size()];
+        int count = 0;
+        try (Output output = open(file, format, fields)) {
+            final RecordCursor cursor = scope.open(workArea, context);
+            while (cursor.next()) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = workArea.getFieldValue(copied.get(i));
+                }
+                context.outputWritten(output.write(row), node);
+                count++;
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error copying work area " + workArea.getAlias()
+                    + " to " + file, ex);
+        }
+
+        return new SalinasValue(BigDecimal.valueOf(count), SalinasType.NUMBER);
+    }
+
+    /**
+     * Gets the numbers of the fields named by the <code>FIELDS</code> clause
+     * of a command, or of every field if the command has no such clause.
+     *
+     * @param node the command node
+     * @param workArea the work area of the fields
+     * @param memos whether memo fields are included when every field is
+     * @return the field numbers, starting from 1, in order
+     * @throws SalinasException if a named field is not a field of the table
+     */
+    static List<Integer> fieldNumbers(SalinasNode node, WorkArea workArea, boolean memos)
+            throws SalinasException {
+        final DBF dbf = workArea.getDbf();
+        final List<Integer> copied = new ArrayList<>();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() != JJTFIELDS) {
+                continue;
+            }
+            for (int f = 0; f < child.jjtGetNumChildren(); f++) {
+                final String name = (String) child.getChild(f).jjtGetValue();
+                final int field = dbf.getFieldNumberByName(name);
+                if (field < 1) {
+                    throw new SalinasException("Field " + name + " is not a field of work area "
+                            + workArea.getAlias(),
+                            child.getFilename(), child.getBeginLine(), child.getBeginColumn());
+                }
+                copied.add(field);
+            }
+            return copied;
+        }
+
+        final List<DBFField> fields = dbf.getStructure().getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            if (memos || fields.get(i).getFieldType() != DBFField.FieldType.M) {
+                copied.add(i + 1);
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Creates the file, and opens a writer of its records.
+     */
+    private static Output open(File file, TextFormat format, List<DBFField> fields)
+            throws IOException {
+        if (format != null) {
+            final TextRecordWriter writer = new TextRecordWriter(file, format, fields);
+            return new Output() {
+                @Override
+                public int write(Object[] row) throws IOException {
+                    final long written = writer.getByteCount();
+                    writer.write(row);
+                    return (int) (writer.getByteCount() - written);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+
+        DBF.create(file, fields).close();
+        final RecordWriter writer = new RecordWriter(file);
+        return new Output() {
+            @Override
+            public int write(Object[] row) throws IOException {
+                writer.append(row);
+                return writer.getLayout().getRecordLength();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * Writes the rows of the copied records.
+     */
+    private interface Output extends Closeable {
+        /**
+         * Writes a row, and gets the number of bytes it takes in the file.
+         */
+        int write(Object[] row) throws IOException;
+    }
+}
@@ -68,22 +68,12 @@ public class DisplayInterpreter implements InterpreterDelegate {
                 }
                 context.getWriter().write("\n");
             } else {
-                // DISPLAY (current record)
-                if (currentAreaOpt.isEmpty()) {
-                    throw new SalinasException("No table is open in the current work area.");
-                }
-                WorkArea wa = currentAreaOpt.get();
-                DBF dbf = wa.getDbf();
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.format("Record# %d\n", dbf.recno()));
-                for (DBFField field : dbf.getStructure().getFields()) {
-                    sb.append(String.format("%-11s: %s\n", field.getFieldName(), dbf.getValue(field.getFieldName()).getString()));
-                }
-                context.getWriter().write(sb.toString() + "\n");
+                // DISPLAY of records lists the current record by default
+                return ListInterpreter.getInstance().interpret(node, context);
             }
             context.getWriter().flush();
         } catch (IOException ex) {
-            throw new SalinasException("I/O error during output", ex);
+            throw ResourceMeter.outputError(ex);
         }
 
         return null;
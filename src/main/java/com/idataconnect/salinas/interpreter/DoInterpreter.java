@@ -1,16 +1,25 @@
 package com.idataconnect.salinas.interpreter;
 
+import com.idataconnect.salinas.SalinasCompiledScript;
 import com.idataconnect.salinas.SalinasException;
 import com.idataconnect.salinas.SalinasScriptEngine;
+import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
 import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTASYNC;
 import java.io.File;
 import java.io.FileReader;
+import java.math.BigDecimal;
+import java.util.Optional;
 import javax.script.ScriptContext;
 
 /**
  * Interpreter delegate implementation for DO command.
  * Executes another Salinas program file.
+ * <p>
+ * With <code>ASYNC TO &lt;handle&gt;</code>, the program is started as a
+ * background {@link ScriptJob job} in a fork of the context, and the handle
+ * of the job is assigned to the variable, for the job functions.
  */
 public class DoInterpreter implements InterpreterDelegate {
 
@@ -43,6 +52,23 @@ public class DoInterpreter implements InterpreterDelegate {
                 engine = new SalinasScriptEngine();
             }
 
+            if (node.jjtGetNumChildren() > 1 && node.getChild(1).getId() == JJTASYNC) {
+                // Compiled here, so that a program which does not parse
+                // fails the DO rather than the job
+                final ScriptJob job = JobTable.get(context.getScriptContext()).start(filename,
+                        SalinasCompiledScript.compile(reader, engine), context);
+                final String handleName = (String) node.getChild(1).getChild(0).jjtGetValue();
+                final SalinasValue handle = new SalinasValue(
+                        BigDecimal.valueOf(job.getHandle()), SalinasType.NUMBER);
+                final Optional<SalinasValue> existing = context.getVariable(handleName);
+                if (existing.isPresent()) {
+                    existing.get().setValue(handle);
+                } else {
+                    context.setVariable(handleName, handle);
+                }
+                return handle;
+            }
+
             engine.eval(reader, context.getScriptContext());
         } catch (Exception e) {
             throw new SalinasException("Error executing program " + filename + ": " + e.getMessage(), e);
@@ -26,18 +26,14 @@ import java.util.Optional;
  */
 public class ExpressionInterpreter implements InterpreterDelegate {
 
-    private static ExpressionInterpreter instance;
+    private static final ExpressionInterpreter INSTANCE = new ExpressionInterpreter();
 
     /**
      * Gets a singleton instance of the expression interpreter.
      * @return a singleton instance
      */
     public static ExpressionInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ExpressionInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -91,6 +87,10 @@ public class ExpressionInterpreter implements InterpreterDelegate {
                             spacesToAdd += currentLength - stringValue.length();
                         }
 
+                        // Checked before appending, so that the limit
+                        // bounds the memory the string takes
+                        context.checkStringLength(sb.length() + spacesToAdd
+                                + stringValue.length(), node);
                         sb.append(stringValue);
                     }
 
@@ -99,6 +99,7 @@ public class ExpressionInterpreter implements InterpreterDelegate {
                             sb.append(' ');
                         }
                     }
+                    context.checkStringLength(sb.length(), node);
 
                     returnValue = new SalinasValue(sb.toString(), SalinasType.STRING);
                 } else {
@@ -259,6 +260,28 @@ public class ExpressionInterpreter implements InterpreterDelegate {
         return currentValue;
     }
 
+    /**
+     * Compares two values with a single operator, converting them in the
+     * same way as a comparison expression does.
+     *
+     * @param left the left operand
+     * @param op the comparative operator
+     * @param right the right operand
+     * @return the result of the comparison
+     * @throws SalinasException if the values could not be compared
+     */
+    static boolean compare(SalinasValue left, ComparativeOp op, SalinasValue right)
+            throws SalinasException {
+        if ((left.getCurrentType() == SalinasType.STRING
+                || right.getCurrentType() == SalinasType.STRING)
+                && op != ComparativeOp.EQUAL_TO_EXACT
+                && op != ComparativeOp.NOT_EQUAL_TO_EXACT) {
+            left = new SalinasValue(left.asType(SalinasType.STRING), SalinasType.STRING);
+            right = new SalinasValue(right.asType(SalinasType.STRING), SalinasType.STRING);
+        }
+        return op.apply(left, right);
+    }
+
     public static void applyDecimals(SalinasValue numericValue, SalinasConfig config)
             throws ConversionException {
         numericValue.setValue(numericValue.asNumber().setScale(config.getPrecision()));
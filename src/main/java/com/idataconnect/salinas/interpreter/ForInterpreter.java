@@ -18,18 +18,14 @@ import java.math.BigDecimal;
  */
 public class ForInterpreter implements InterpreterDelegate {
 
-    private static ForInterpreter instance;
+    private static final ForInterpreter INSTANCE = new ForInterpreter();
 
     /**
      * Gets a singleton instance of the FOR interpreter delegate.
      * @return a singleton instance
      */
     public static ForInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ForInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -73,6 +69,8 @@ public class ForInterpreter implements InterpreterDelegate {
                 }
             }
 
+            context.checkCancelled(node);
+
             // Update index variable
             indexValue.setValue(((BigDecimal) indexValue.getValue()).add(
                     (BigDecimal) step.getValue()));
@@ -0,0 +1,168 @@
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.script.Bindings;
+
+/**
+ * Bindings which are layered over bindings that are no longer changed,
+ * which are shared by every context forked from them. Changes are kept in
+ * this layer, so that creating the bindings takes constant time, and they
+ * take memory in proportion to what is changed.
+ * <p>
+ * Since the interpreter changes variables in place, a variable of the
+ * shared bindings is copied into this layer when it is first got, other
+ * than a function, which is never changed. The shared bindings are made by
+ * {@link #freeze(Map)}, which copies them so that nothing can change them,
+ * and may be read by several threads at once.
+ */
+final class ForkedBindings extends AbstractMap<String, Object> implements Bindings {
+
+    private final Map<String, Object> base;
+    private final Map<String, Object> changed = new HashMap<>();
+    private final Set<String> removed = new HashSet<>();
+
+    ForkedBindings(Map<String, Object> base) {
+        this.base = base;
+    }
+
+    /**
+     * Copies bindings into a map which cannot be changed, to be shared by
+     * layers. The variables are copied too, so that a variable which is
+     * changed in place through the bindings, or through a reference to
+     * them which a host kept, is not changed in the copy.
+     *
+     * @param bindings the bindings, which may be a layer
+     * @return the copy
+     */
+    static Map<String, Object> freeze(Map<String, Object> bindings) {
+        final Map<String, Object> frozen = new HashMap<>();
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            final Object value = entry.getValue();
+            frozen.put(entry.getKey(), value instanceof SalinasValue
+                    && ((SalinasValue) value).getCurrentType() != SalinasType.FUNCTION
+                    ? ((SalinasValue) value).copy() : value);
+        }
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    /**
+     * Gets the bindings which this layer is over.
+     */
+    Map<String, Object> getBase() {
+        return base;
+    }
+
+    /**
+     * Gets whether nothing has been changed in this layer.
+     */
+    boolean isUnchanged() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public Object get(Object key) {
+        final Object value = changed.get(key);
+        if (value != null || changed.containsKey(key) || removed.contains(key)) {
+            return value;
+        }
+        final Object shared = peek(base, key);
+        if (shared instanceof SalinasValue
+                && ((SalinasValue) shared).getCurrentType() != SalinasType.FUNCTION) {
+            final SalinasValue copy = ((SalinasValue) shared).copy();
+            changed.put((String) key, copy);
+            return copy;
+        }
+        return shared;
+    }
+
+    /**
+     * Gets a value without copying it, from bindings which are not changed.
+     * A layer which is shared is itself read this way.
+     */
+    private static Object peek(Map<String, Object> bindings, Object key) {
+        if (!(bindings instanceof ForkedBindings)) {
+            return bindings.get(key);
+        }
+        final ForkedBindings layer = (ForkedBindings) bindings;
+        if (layer.changed.containsKey(key)) {
+            return layer.changed.get(key);
+        }
+        return layer.removed.contains(key) ? null : peek(layer.base, key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return changed.containsKey(key) || (!removed.contains(key) && base.containsKey(key));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        final Object old = get(key);
+        changed.put(key, value);
+        removed.remove(key);
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final Object old = get(key);
+        changed.remove(key);
+        if (base.containsKey(key)) {
+            removed.add((String) key);
+        }
+        return old;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                final Map<String, Object> merged = new HashMap<>(base);
+                merged.keySet().removeAll(removed);
+                merged.putAll(changed);
+                final Iterator<Entry<String, Object>> entries = merged.entrySet().iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    private Entry<String, Object> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        last = entries.next();
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                        ForkedBindings.this.remove(last.getKey());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = changed.size();
+                for (String key : base.keySet()) {
+                    if (!changed.containsKey(key) && !removed.contains(key)) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+}
@@ -20,18 +20,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
  */
 public class FunctionCallInterpreter implements InterpreterDelegate {
 
-    private static FunctionCallInterpreter instance;
+    private static final FunctionCallInterpreter INSTANCE = new FunctionCallInterpreter();
 
     /**
      * Gets a singleton instance of the function call interpreter delegate.
      * @return a singleton instance
      */
     public static FunctionCallInterpreter getInstance() {
-        if (instance == null) {
-            instance = new FunctionCallInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -61,15 +57,22 @@ public class FunctionCallInterpreter implements InterpreterDelegate {
                         (SalinasNode) segmentNode.jjtGetChild(count), context);
             }
 
+            // A script which recurses without looping is stopped here
+            context.checkCancelled(node);
+
             // Push the calling node onto the call stack
             final CallStack callStack = context.getCallStack();
             callStack.push(node);
             
             // Note: UserDefinedFunction.call will push/pop its own scope
-            returnValue = function.call(context, parameters);
-            
-            final StackFrame pushedFrame = callStack.pop();
-            assert pushedFrame.getNode() == node : "Call stack unbalanced";
+            try {
+                returnValue = function.call(context, parameters);
+            } finally {
+                // Also when the call fails, such as while positioning the
+                // child of a relation, whose error does not end the script
+                final StackFrame pushedFrame = callStack.pop();
+                assert pushedFrame.getNode() == node : "Call stack unbalanced";
+            }
 
             if (node.jjtGetNumChildren() > ++segmentCount) {
                 // Chained function call
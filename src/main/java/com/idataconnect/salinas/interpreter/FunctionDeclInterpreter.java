@@ -16,7 +16,7 @@ import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTIDEN
  */
 public class FunctionDeclInterpreter implements InterpreterDelegate {
 
-    private static FunctionDeclInterpreter instance;
+    private static final FunctionDeclInterpreter INSTANCE = new FunctionDeclInterpreter();
 
     /**
      * Gets a singleton instance of the function declaration interpreter
@@ -24,11 +24,7 @@ public class FunctionDeclInterpreter implements InterpreterDelegate {
      * @return a singleton instance
      */
     public static FunctionDeclInterpreter getInstance() {
-        if (instance == null) {
-            instance = new FunctionDeclInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -31,12 +31,13 @@ public class GotoInterpreter implements InterpreterDelegate {
         WorkArea currentArea = currentAreaOpt.get();
         DBF dbf = currentArea.getDbf();
         Object value = node.jjtGetValue();
+        context.recordsAccessed(1, node);
 
         try {
             if ("TOP".equals(value)) {
-                dbf.gotoRecord(1);
+                currentArea.goTop();
             } else if ("BOTTOM".equals(value)) {
-                dbf.gotoRecord(dbf.getStructure().getNumberOfRecords());
+                currentArea.goBottom();
             } else {
                 // Should be an Expression
                 SalinasNode exprNode = (SalinasNode) node.jjtGetChild(0);
@@ -46,6 +47,8 @@ public class GotoInterpreter implements InterpreterDelegate {
             }
         } catch (IOException ex) {
             throw new SalinasException("Error moving record pointer", ex);
+        } catch (SalinasException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new SalinasException("Invalid record number", ex);
         }
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.SalinasValue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Aggregates records by group, such as for <code>TOTAL ON</code>. The
+ * records are added one at a time with the key of their group, and each
+ * group is passed to a {@link GroupConsumer} with the results of its
+ * aggregates and the row of its first record.
+ * <p>
+ * When the records arrive ordered by key, the {@link Strategy#STREAM}
+ * strategy keeps only the current group, and passes it on as soon as the
+ * key changes. Otherwise, the {@link Strategy#HASH} strategy keeps every
+ * group in a hash table until {@link #finish()} is called, and passes them
+ * on in the order their keys first appeared.
+ * <p>
+ * When the hash table is full, its groups are sorted by key and written to
+ * a temporary file, and the table starts again empty. The files are then
+ * merged by key when the aggregation is finished, so that the partial
+ * groups of each key are combined and passed on in the order of their keys.
+ * The rows must be serializable for the groups to be written.
+ *
+ * @param <R> the type of the row kept for each group
+ */
+public final class GroupedAggregation<R> {
+
+    /**
+     * How the records are grouped.
+     */
+    public enum Strategy {
+        /**
+         * The records are ordered by key, so a group ends when the key
+         * changes.
+         */
+        STREAM,
+        /**
+         * The records are in any order, so the groups are kept until the
+         * last record is added.
+         */
+        HASH
+    }
+
+    /**
+     * Reads the row of the first record of a group. It is only called once
+     * for each group.
+     *
+     * @param <R> the type of the row
+     */
+    @FunctionalInterface
+    public interface RowSource<R> {
+        R read() throws SalinasException;
+    }
+
+    /**
+     * Receives the groups as they are completed.
+     *
+     * @param <R> the type of the row
+     */
+    @FunctionalInterface
+    public interface GroupConsumer<R> {
+        /**
+         * Receives a group.
+         *
+         * @param key the key of the group
+         * @param row the row of the first record of the group
+         * @param results the results of the aggregates, in the order of the
+         * functions
+         * @throws SalinasException if the group could not be processed
+         */
+        void accept(SalinasValue key, R row, SalinasValue[] results) throws SalinasException;
+    }
+
+    private final List<AggregateFunction> functions;
+    private final Strategy strategy;
+    private final int maxGroups;
+    private final int precision;
+    private final GroupConsumer<R> consumer;
+    private final Map<Object, Group<R>> groups = new LinkedHashMap<>();
+    private final List<File> runs = new ArrayList<>();
+    private Group<R> current;
+    private int groupCount;
+
+    /**
+     * Creates a grouped aggregation.
+     *
+     * @param functions the aggregate functions which are computed for each
+     * group
+     * @param strategy how the records are grouped
+     * @param maxGroups the most groups which are kept in memory by the
+     * {@link Strategy#HASH} strategy before they are written to a file
+     * @param precision the number of decimal places of averages
+     * @param consumer receives the groups
+     */
+    public GroupedAggregation(List<AggregateFunction> functions, Strategy strategy,
+            int maxGroups, int precision, GroupConsumer<R> consumer) {
+        this.functions = List.copyOf(functions);
+        this.strategy = strategy;
+        this.maxGroups = maxGroups;
+        this.precision = precision;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param key the key of the record's group
+     * @param values the values of the record to aggregate, in the order of
+     * the functions
+     * @param row reads the row of the record, if it is the first record of
+     * its group
+     * @throws SalinasException if the values could not be aggregated, a
+     * completed group could not be processed, or the groups could not be
+     * written to a file
+     */
+    public void add(SalinasValue key, SalinasValue[] values, RowSource<R> row)
+            throws SalinasException {
+        final Object groupKey = groupKey(key);
+        Group<R> group;
+        if (strategy == Strategy.STREAM) {
+            if (current == null || !Objects.equals(current.key, groupKey)) {
+                complete(current);
+                current = new Group<>(groupKey, key, row.read(), functions.size());
+            }
+            group = current;
+        } else {
+            group = groups.get(groupKey);
+            if (group == null) {
+                if (groups.size() >= maxGroups) {
+                    spill();
+                }
+                group = new Group<>(groupKey, key, row.read(), functions.size());
+                groups.put(groupKey, group);
+            }
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            group.accumulators[i].add(functions.get(i), values[i]);
+        }
+    }
+
+    /**
+     * Passes the remaining groups to the consumer. No more records may be
+     * added.
+     *
+     * @throws SalinasException if a group could not be processed
+     */
+    public void finish() throws SalinasException {
+        complete(current);
+        current = null;
+        if (runs.isEmpty()) {
+            for (Group<R> group : groups.values()) {
+                complete(group);
+            }
+            groups.clear();
+            return;
+        }
+
+        try {
+            spill();
+            merge();
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Gets the number of groups which have been passed to the consumer.
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Writes the groups of the hash table to a new file, in the order of
+     * their keys, and empties the table.
+     */
+    private void spill() throws SalinasException {
+        final List<Group<R>> sorted = new ArrayList<>(groups.values());
+        sorted.sort(Comparator.comparing(group -> group.key, GroupedAggregation::compareKeys));
+        File file = null;
+        try {
+            file = File.createTempFile("salinas-groups", ".tmp");
+            file.deleteOnExit();
+            runs.add(file);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                for (Group<R> group : sorted) {
+                    group.write(out);
+                    // Forget the objects written, which the stream would keep
+                    out.reset();
+                }
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error writing groups to " + file, ex);
+        }
+        groups.clear();
+    }
+
+    /**
+     * Merges the files of groups by key, and passes each key on as a single
+     * group. Of the partial groups of a key, the one from the earliest file
+     * has the row of the first record.
+     */
+    private void merge() throws SalinasException {
+        final List<ObjectInputStream> inputs = new ArrayList<>();
+        final PriorityQueue<Run<R>> heads = new PriorityQueue<>(
+                Comparator.<Run<R>, Object>comparing(run -> run.group.key,
+                        GroupedAggregation::compareKeys)
+                .thenComparingInt(run -> run.index));
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                final ObjectInputStream in = new ObjectInputStream(
+                        new BufferedInputStream(new FileInputStream(runs.get(i))));
+                inputs.add(in);
+                final Run<R> run = new Run<>(i, in);
+                if (run.next(functions.size())) {
+                    heads.add(run);
+                }
+            }
+
+            Group<R> merged = null;
+            while (!heads.isEmpty()) {
+                final Run<R> run = heads.poll();
+                final Group<R> group = run.group;
+                if (merged != null && Objects.equals(merged.key, group.key)) {
+                    for (int i = 0; i < functions.size(); i++) {
+                        merged.accumulators[i].merge(functions.get(i), group.accumulators[i]);
+                    }
+                } else {
+                    complete(merged);
+                    merged = group;
+                }
+                if (run.next(functions.size())) {
+                    heads.add(run);
+                }
+            }
+            complete(merged);
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new SalinasException("Error reading groups", ex);
+        } finally {
+            for (ObjectInputStream in : inputs) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // Deleted next
+                }
+            }
+        }
+    }
+
+    /**
+     * Orders the keys of groups. Keys of the same type are compared by
+     * value, and keys of different types by the name of their type, with
+     * a blank key first.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        } else if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    private void complete(Group<R> group) throws SalinasException {
+        if (group == null) {
+            return;
+        }
+        groupCount++;
+        final SalinasValue[] results = new SalinasValue[functions.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = group.accumulators[i].result(functions.get(i), precision);
+        }
+        consumer.accept(group.value, group.row, results);
+    }
+
+    /**
+     * Gets the value by which keys are compared. Numbers which only differ
+     * in scale are in the same group.
+     */
+    private static Object groupKey(SalinasValue key) {
+        final Object value = key.getValue();
+        if (value instanceof BigDecimal) {
+            final BigDecimal number = (BigDecimal) value;
+            return number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+        }
+        return value;
+    }
+
+    private static final class Group<R> {
+        final Object key;
+        final SalinasValue value;
+        final R row;
+        final Accumulator[] accumulators;
+
+        Group(Object key, SalinasValue value, R row, int size) {
+            this.key = key;
+            this.value = value;
+            this.row = row;
+            accumulators = new Accumulator[size];
+            for (int i = 0; i < size; i++) {
+                accumulators[i] = new Accumulator();
+            }
+        }
+
+        private Group(Object key, SalinasValue value, R row, Accumulator[] accumulators) {
+            this.key = key;
+            this.value = value;
+            this.row = row;
+            this.accumulators = accumulators;
+        }
+
+        void write(ObjectOutputStream out) throws IOException {
+            out.writeObject(key);
+            out.writeObject(value.getValue());
+            out.writeObject(row);
+            for (Accumulator accumulator : accumulators) {
+                accumulator.write(out);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static <R> Group<R> read(ObjectInputStream in, int size)
+                throws IOException, ClassNotFoundException {
+            final Object key = in.readObject();
+            final SalinasValue value = SalinasValue.valueOf(in.readObject());
+            final R row = (R) in.readObject();
+            final Accumulator[] accumulators = new Accumulator[size];
+            for (int i = 0; i < size; i++) {
+                accumulators[i] = Accumulator.read(in);
+            }
+            return new Group<>(key, value, row, accumulators);
+        }
+    }
+
+    /**
+     * A file of groups being merged, and the group read from it last.
+     */
+    private static final class Run<R> {
+        final int index;
+        final ObjectInputStream in;
+        Group<R> group;
+
+        Run(int index, ObjectInputStream in) {
+            this.index = index;
+            this.in = in;
+        }
+
+        boolean next(int size) throws IOException, ClassNotFoundException {
+            try {
+                group = Group.read(in, size);
+                return true;
+            } catch (EOFException ex) {
+                group = null;
+                return false;
+            }
+        }
+    }
+}
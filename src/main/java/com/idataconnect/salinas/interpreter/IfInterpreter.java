@@ -14,18 +14,14 @@ import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTSTAT
  */
 public class IfInterpreter implements InterpreterDelegate {
 
-    private static IfInterpreter instance;
+    private static final IfInterpreter INSTANCE = new IfInterpreter();
 
     /**
      * Gets a singleton instance of the IF statement interpreter delegate.
      * @return a singleton instance
      */
     public static IfInterpreter getInstance() {
-        if (instance == null) {
-            instance = new IfInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
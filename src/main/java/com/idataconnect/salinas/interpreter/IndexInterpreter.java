@@ -30,14 +30,23 @@ public class IndexInterpreter implements InterpreterDelegate {
         }
 
         WorkArea currentArea = currentAreaOpt.get();
+        if (currentArea.isIndexUpdateDeferred()) {
+            throw new SalinasException("Cannot create an index while index updates are deferred (SET INDEXUPDATE ON first)");
+        }
         DBF dbf = currentArea.getDbf();
         IndexOptions options = (IndexOptions) node.jjtGetValue();
+        if (currentArea.isReadOnly() && options.getTagName() != null) {
+            // The tag would be written to the production index of the table
+            throw new SalinasException("Cannot create an index tag for a table opened read-only (use INDEX ON ... TO instead)");
+        }
         SalinasNode expressionNode = (SalinasNode) node.jjtGetChild(0);
         
         try {
             if (options.getTagName() != null) {
                 // INDEX ON ... TAG <name> (MDX)
                 dbf.index(options.getTagName(), options.getExpressionSource(), options.isUnique(), options.isDescending());
+                currentArea.addIndex(options);
+                currentArea.setOrder(options.getTagName());
             } else {
                 // INDEX ON ... TO <filename> (NDX)
                 SalinasNode filenameNode = (SalinasNode) node.jjtGetChild(1);
@@ -50,6 +59,9 @@ public class IndexInterpreter implements InterpreterDelegate {
                 }
                 
                 dbf.indexTo(file.getAbsolutePath(), options.getExpressionSource(), options.isUnique(), options.isDescending());
+                options.setFilename(file.getAbsolutePath());
+                currentArea.addIndex(options);
+                currentArea.setOrder(file.getAbsolutePath());
             }
         } catch (IOException ex) {
             String target = options.getTagName() != null ? options.getTagName() : "file";
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.index.MDX;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.ComparativeOp;
+import com.idataconnect.salinas.data.OptimizationLevel;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.IndexOptions;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Uses the indexes of a work area to find the records which may satisfy a
+ * condition, so that the records which cannot satisfy it do not have to be
+ * read.
+ * <p>
+ * A comparison between an expression and a constant, where the expression
+ * is the same as the key expression of an index that was created in the
+ * work area, is turned into a range scan of that index, which produces a
+ * bitmap of record numbers. The bitmaps of the operands of
+ * <code>AND</code> are intersected, and the bitmaps of the operands of
+ * <code>OR</code> are combined, so that only the records in the final
+ * bitmap are read. The records in the bitmap are only candidates, and must
+ * still be tested against the whole condition.
+ */
+final class IndexPlanner {
+
+    /**
+     * The candidate records for a condition, and how much of the condition
+     * the indexes covered.
+     */
+    static final class Plan {
+        static final Plan NONE = new Plan(null, OptimizationLevel.NONE);
+
+        private final BitSet candidates;
+        private final OptimizationLevel level;
+
+        Plan(BitSet candidates, OptimizationLevel level) {
+            this.candidates = candidates;
+            this.level = level;
+        }
+
+        /**
+         * Gets the record numbers of the candidates.
+         *
+         * @return the candidates, or <code>null</code> if every record is a
+         * candidate
+         */
+        BitSet getCandidates() {
+            return candidates;
+        }
+
+        OptimizationLevel getLevel() {
+            return level;
+        }
+    }
+
+    private IndexPlanner() {}
+
+    /**
+     * Finds the candidate records for the given condition. The current
+     * record of the work area is not preserved. The level of the plan is
+     * recorded in the work area, for diagnostics.
+     *
+     * @param condition the condition
+     * @param workArea the work area, which must be the current work area
+     * @param context the execution context
+     * @param bindVariables whether memory variables may be evaluated once,
+     * when the condition is planned
+     * @return the plan
+     * @throws SalinasException if an index could not be read
+     */
+    static Plan plan(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context, boolean bindVariables) throws SalinasException {
+        final Plan plan = planCondition(condition, workArea, context, bindVariables);
+        workArea.setOptimizationLevel(plan.getLevel());
+        return plan;
+    }
+
+    private static Plan planCondition(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context, boolean bindVariables) throws SalinasException {
+        switch (condition.getId()) {
+            case JJTAND: {
+                // Every operand must be satisfied, so the candidates are the
+                // records which are candidates of all of the operands which
+                // could be optimized
+                BitSet candidates = null;
+                boolean full = true;
+                for (int count = 0; count < condition.jjtGetNumChildren(); count++) {
+                    final Plan operand = planCondition(condition.getChild(count), workArea,
+                            context, bindVariables);
+                    if (operand.getCandidates() == null) {
+                        full = false;
+                        continue;
+                    }
+                    full &= operand.getLevel() == OptimizationLevel.FULL;
+                    if (candidates == null) {
+                        candidates = operand.getCandidates();
+                    } else {
+                        candidates.and(operand.getCandidates());
+                    }
+                }
+                return candidates == null ? Plan.NONE : new Plan(candidates,
+                        full ? OptimizationLevel.FULL : OptimizationLevel.PARTIAL);
+            }
+            case JJTOR: {
+                // Any operand may be satisfied, so every operand must be
+                // optimized for the union to cover the matching records
+                final BitSet candidates = new BitSet();
+                boolean full = true;
+                for (int count = 0; count < condition.jjtGetNumChildren(); count++) {
+                    final Plan operand = planCondition(condition.getChild(count), workArea,
+                            context, bindVariables);
+                    if (operand.getCandidates() == null) {
+                        return Plan.NONE;
+                    }
+                    full &= operand.getLevel() == OptimizationLevel.FULL;
+                    candidates.or(operand.getCandidates());
+                }
+                return new Plan(candidates,
+                        full ? OptimizationLevel.FULL : OptimizationLevel.PARTIAL);
+            }
+            case JJTCOMPARE:
+            case JJTEQUALITY: {
+                final BitSet candidates = comparison(condition, workArea, context, bindVariables);
+                return candidates == null ? Plan.NONE
+                        : new Plan(candidates, OptimizationLevel.FULL);
+            }
+            default:
+                return Plan.NONE;
+        }
+    }
+
+    /**
+     * Finds the candidate records of a single comparison.
+     *
+     * @return the candidates, or <code>null</code> if no index can be used
+     */
+    private static BitSet comparison(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context, boolean bindVariables) throws SalinasException {
+        final List<?> ops = (List<?>) condition.jjtGetValue();
+        if (ops.size() != 1 || condition.jjtGetNumChildren() != 2) {
+            return null;
+        }
+        final ComparativeOp op = (ComparativeOp) ops.get(0);
+        if (op != ComparativeOp.EQUAL_TO && op != ComparativeOp.EQUAL_TO_EXACT
+                && op != ComparativeOp.STARTS_WITH && !isRange(op)) {
+            return null;
+        }
+
+        final SalinasNode left = condition.getChild(0);
+        final SalinasNode right = condition.getChild(1);
+        IndexOptions index = null;
+        SalinasNode constant = null;
+        boolean keyOnLeft = false;
+        if (RecordPredicate.isConstant(right, context, bindVariables)) {
+            index = findIndex(left, workArea);
+            constant = right;
+            keyOnLeft = true;
+        }
+        if (index == null && RecordPredicate.isConstant(left, context, bindVariables)) {
+            index = findIndex(right, workArea);
+            constant = left;
+        }
+        if (index == null || index.isDescending()) {
+            return null;
+        }
+
+        final Object value = SalinasInterpreter.interpret(constant, context).getValue();
+        final Object previousOrder = workArea.getOrder();
+        try {
+            workArea.setOrder(WorkArea.getOrderName(index));
+            return scan(index, op, keyOnLeft, value, workArea, context);
+        } catch (IOException ex) {
+            throw new SalinasException("Error reading index of work area "
+                    + workArea.getAlias(), ex);
+        } finally {
+            try {
+                workArea.setOrder(previousOrder);
+            } catch (IOException ex) {
+                throw new SalinasException("Error restoring order of work area "
+                        + workArea.getAlias(), ex);
+            }
+        }
+    }
+
+    private static boolean isRange(ComparativeOp op) {
+        return op == ComparativeOp.LESS_THAN || op == ComparativeOp.LESS_THAN_OR_EQUAL_TO
+                || op == ComparativeOp.GREATER_THAN
+                || op == ComparativeOp.GREATER_THAN_OR_EQUAL_TO;
+    }
+
+    /**
+     * Finds the index whose key expression is the same as the given
+     * expression.
+     */
+    private static IndexOptions findIndex(SalinasNode expression, WorkArea workArea)
+            throws SalinasException {
+        for (IndexOptions index : workArea.getIndexes()) {
+            if (KeyExpressions.sameExpression(expression,
+                    KeyExpressions.parse(index.getExpressionSource()))) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static BitSet scan(IndexOptions index, ComparativeOp op, boolean keyOnLeft,
+            Object value, WorkArea workArea, SalinasExecutionContext context)
+            throws SalinasException, IOException {
+        final DBF dbf = workArea.getDbf();
+        final MDX mdx = dbf.getIndex();
+        if (mdx == null) {
+            return null;
+        }
+
+        final BitSet candidates = new BitSet(dbf.getStructure().getNumberOfRecords() + 1);
+        if (isRange(op)) {
+            // Ranges are only scanned for numeric keys, whose order in the
+            // index is the same as the order of the comparison
+            if (!(value instanceof BigDecimal)) {
+                return null;
+            }
+            final boolean lower = (op == ComparativeOp.GREATER_THAN
+                    || op == ComparativeOp.GREATER_THAN_OR_EQUAL_TO) == keyOnLeft;
+            if (!scanBound(mdx, (BigDecimal) value, lower, index, candidates, workArea,
+                    context)) {
+                return null;
+            }
+        } else if (value instanceof String) {
+            final String s = (String) value;
+            if (keyOnLeft && op == ComparativeOp.STARTS_WITH) {
+                // "key = constant" is true when the constant starts with the
+                // key, so the candidates are the keys which are equal to one
+                // of the prefixes of the constant. Each prefix is probed.
+                final Set<String> prefixes = new LinkedHashSet<>();
+                for (int length = 0; length <= s.length(); length++) {
+                    prefixes.add(KeyExpressions.stripTrailing(s.substring(0, length)));
+                }
+                for (String prefix : prefixes) {
+                    if (!scanRange(mdx, prefix, index, candidates, workArea, context, true)) {
+                        return null;
+                    }
+                }
+            } else if (!scanRange(mdx, s, index, candidates, workArea, context, false)) {
+                // Otherwise the key must start with the constant
+                return null;
+            }
+        } else if (value instanceof BigDecimal || value instanceof Boolean
+                || value instanceof java.util.Date) {
+            if (!scanRange(mdx, value, index, candidates, workArea, context, false)) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds the records of the keys matching the given key to the candidates.
+     * Character keys match when they start with the given key, or when
+     * <code>whole</code> is set, when they are equal to it apart from
+     * trailing spaces. Other keys match when they are equal.
+     *
+     * @return <code>false</code> if the type of the index key does not match
+     * the type of the given key, so the index cannot be used
+     */
+    private static boolean scanRange(MDX mdx, Object key, IndexOptions index,
+            BitSet candidates, WorkArea workArea, SalinasExecutionContext context,
+            boolean whole) throws SalinasException, IOException {
+        final DBF dbf = workArea.getDbf();
+        final int recno = mdx.find(key);
+        if (recno == DBF.RECORD_NUMBER_EOF) {
+            return true;
+        }
+
+        dbf.gotoRecord(recno);
+        while (!dbf.eof()) {
+            final SalinasValue keyValue = KeyExpressions.evaluate(
+                    index.getExpressionSource(), context);
+            final Object k = keyValue.getValue();
+            if (key instanceof String) {
+                if (keyValue.getCurrentType() != SalinasType.STRING) {
+                    return false;
+                }
+                final String s = (String) k;
+                if (whole ? !KeyExpressions.stripTrailing(s).equals(key) : !s.startsWith((String) key)) {
+                    break;
+                }
+            } else if (key instanceof BigDecimal) {
+                if (!(k instanceof BigDecimal)) {
+                    return false;
+                }
+                if (((BigDecimal) k).compareTo((BigDecimal) key) != 0) {
+                    break;
+                }
+            } else {
+                if (k == null || k.getClass() != key.getClass()) {
+                    return false;
+                }
+                if (!Objects.equals(k, key)) {
+                    break;
+                }
+            }
+            candidates.set(dbf.recno());
+            context.recordsAccessed(1, null);
+            dbf.skip();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the records of the keys at or above the given key, or at or below
+     * it, to the candidates. Keys equal to the bound are always included,
+     * and are left to the condition to decide.
+     *
+     * @return <code>false</code> if the index key is not numeric, so the
+     * index cannot be used
+     */
+    private static boolean scanBound(MDX mdx, BigDecimal bound, boolean lower,
+            IndexOptions index, BitSet candidates, WorkArea workArea,
+            SalinasExecutionContext context) throws SalinasException, IOException {
+        final DBF dbf = workArea.getDbf();
+        if (lower) {
+            int recno = mdx.find(bound);
+            if (recno == DBF.RECORD_NUMBER_EOF) {
+                recno = mdx.findNearest(bound);
+            }
+            if (recno == DBF.RECORD_NUMBER_EOF) {
+                return true;
+            }
+            dbf.gotoRecord(recno);
+        }
+        // Otherwise, selecting the order left the driver on the first key
+
+        while (!dbf.eof()) {
+            final Object k = KeyExpressions.evaluate(index.getExpressionSource(), context)
+                    .getValue();
+            if (!(k instanceof BigDecimal)) {
+                return false;
+            }
+            if (!lower && ((BigDecimal) k).compareTo(bound) > 0) {
+                break;
+            }
+            candidates.set(dbf.recno());
+            context.recordsAccessed(1, null);
+            dbf.skip();
+        }
+        return true;
+    }
+}
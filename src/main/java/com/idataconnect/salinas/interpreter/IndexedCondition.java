@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCondition;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import java.util.BitSet;
+
+/**
+ * A compiled condition whose candidate records can be found through the
+ * indexes of its work area, such as the filter of a work area.
+ */
+final class IndexedCondition implements RecordCondition {
+
+    private final SalinasNode condition;
+    private final RecordPredicate predicate;
+    private final WorkArea workArea;
+    private final SalinasExecutionContext context;
+
+    /**
+     * Compiles a condition which is tested for as long as the work area is
+     * open, so memory variables in it are read each time it is tested.
+     *
+     * @param condition the expression node of the condition
+     * @param workArea the work area whose records will be tested
+     * @param context the execution context
+     * @throws SalinasException if a constant in the condition could not be
+     * evaluated
+     */
+    IndexedCondition(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context) throws SalinasException {
+        this.condition = condition;
+        this.predicate = RecordPredicate.compile(condition, workArea, context, false);
+        this.workArea = workArea;
+        this.context = context;
+    }
+
+    @Override
+    public boolean test() throws SalinasException {
+        return predicate.test();
+    }
+
+    @Override
+    public boolean readsOnlyFields() {
+        return predicate.readsOnlyFields();
+    }
+
+    @Override
+    public BitSet candidates() throws SalinasException {
+        return IndexPlanner.plan(condition, workArea, context, false).getCandidates();
+    }
+}
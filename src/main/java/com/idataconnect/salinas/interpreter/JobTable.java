@@ -0,0 +1,172 @@
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasExecutor;
+import com.idataconnect.salinas.data.WorkAreaManager;
+import com.idataconnect.salinas.SalinasConfig;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * The background jobs started by the scripts of a context, by their handle.
+ * The table of a context is held by its script context, under the attribute
+ * <code>salinasJobs</code>, and is not shared with its forks.
+ * <p>
+ * The jobs which have ended are kept, so that their status and output can
+ * be got, up to the last {@value #ENDED_JOBS} of them. The older ones are
+ * dropped when another job is started.
+ * <p>
+ * The jobs of every context run on one shared {@link SalinasExecutor}, so
+ * on a runtime which has virtual threads, each job runs on a virtual thread.
+ */
+public final class JobTable {
+    private static final Logger LOGGER = Logger.getLogger(JobTable.class.getName());
+
+    private static final SalinasExecutor EXECUTOR = new SalinasExecutor(1);
+
+    /**
+     * The number of jobs which have ended that are kept.
+     */
+    static final int ENDED_JOBS = 100;
+
+    private final ConcurrentNavigableMap<Integer, ScriptJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger();
+
+    /**
+     * Gets the job table of a context, which is created when it is first
+     * needed.
+     *
+     * @param context the script context
+     * @return the job table
+     */
+    public static JobTable get(ScriptContext context) {
+        JobTable table = (JobTable) context.getAttribute("salinasJobs");
+        if (table == null) {
+            table = new JobTable();
+            context.setAttribute("salinasJobs", table, ScriptContext.ENGINE_SCOPE);
+        }
+        return table;
+    }
+
+    /**
+     * Cancels the jobs of a context which have not ended, and drops its job
+     * table.
+     *
+     * @param context the script context
+     */
+    public static void cancelAll(ScriptContext context) {
+        final JobTable table = (JobTable) context.getAttribute("salinasJobs",
+                ScriptContext.ENGINE_SCOPE);
+        if (table != null) {
+            for (ScriptJob job : table.jobs.values()) {
+                job.cancel();
+            }
+            context.removeAttribute("salinasJobs", ScriptContext.ENGINE_SCOPE);
+        }
+    }
+
+    /**
+     * Starts a compiled program in the background, in a fork of the given
+     * context.
+     *
+     * @param program the name of the program
+     * @param script the compiled program
+     * @param context the context which starts the program
+     * @return the job
+     * @throws IOException if the job could not be submitted
+     */
+    ScriptJob start(String program, CompiledScript script, SalinasExecutionContext context)
+            throws IOException {
+        prune();
+        final SalinasConfig config = context.getConfig();
+        final ScriptJob job = new ScriptJob(nextHandle.incrementAndGet(), program,
+                config == null ? 0 : config.getMaxJobOutputChars());
+        final ScriptContext child = context.fork().getScriptContext();
+        child.setWriter(job.getWriter());
+
+        // Set once the program starts, or once it is cancelled before it
+        // could start, so that the job ends exactly once
+        final AtomicBoolean started = new AtomicBoolean();
+        final CompiledScript closing = new CompiledScript() {
+            @Override
+            public Object eval(ScriptContext scriptContext) throws ScriptException {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                Throwable failure = null;
+                try {
+                    return script.eval(scriptContext);
+                } catch (ScriptException | RuntimeException | Error ex) {
+                    failure = ex;
+                    throw ex;
+                } finally {
+                    try {
+                        ((WorkAreaManager) scriptContext.getAttribute("salinasWorkAreaManager"))
+                                .closeAll();
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.WARNING, "Work areas of job " + job.getHandle()
+                                + " could not be closed", ex);
+                    }
+                    job.ended(failure);
+                }
+            }
+
+            @Override
+            public ScriptEngine getEngine() {
+                return script.getEngine();
+            }
+        };
+        final CompletableFuture<Object> future = EXECUTOR.submit(closing, child);
+        job.start(future);
+        future.whenComplete((value, ex) -> {
+            if (future.isCancelled() && started.compareAndSet(false, true)) {
+                job.ended(null);
+            }
+        });
+        jobs.put(job.getHandle(), job);
+        return job;
+    }
+
+    /**
+     * Drops the oldest of the jobs which have ended, beyond the number which
+     * are kept.
+     */
+    private void prune() {
+        int ended = 0;
+        for (Iterator<ScriptJob> it = jobs.descendingMap().values().iterator(); it.hasNext(); ) {
+            final ScriptJob job = it.next();
+            if (job.isEnded() && ++ended > ENDED_JOBS) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets a job by its handle.
+     *
+     * @param handle the handle of the job
+     * @return the job, or empty if no job has the handle
+     */
+    public Optional<ScriptJob> getJob(int handle) {
+        return Optional.ofNullable(jobs.get(handle));
+    }
+
+    /**
+     * Gets the number of jobs which are kept, including those which have
+     * ended.
+     */
+    public int size() {
+        return jobs.size();
+    }
+}
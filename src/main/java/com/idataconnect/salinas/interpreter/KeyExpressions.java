@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.parser.ParseException;
+import com.idataconnect.salinas.parser.SalinasNode;
+import com.idataconnect.salinas.parser.SalinasParser;
+import com.idataconnect.salinas.parser.TokenMgrError;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parses the key expressions of indexes, and caches the result so that
+ * keys can be evaluated repeatedly without parsing the expression source
+ * each time. The {@value #CACHED_EXPRESSIONS} expressions which were used
+ * most recently are kept.
+ */
+public final class KeyExpressions {
+
+    private static final int CACHED_EXPRESSIONS = 256;
+
+    private static final Map<String, SalinasNode> expressions
+            = new LinkedHashMap<String, SalinasNode>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SalinasNode> eldest) {
+            return size() > CACHED_EXPRESSIONS;
+        }
+    };
+
+    private KeyExpressions() {}
+
+    /**
+     * Gets the expression node for the given key expression source.
+     *
+     * @param source the source of the key expression, as it was written in
+     * the <code>INDEX ON</code> statement
+     * @return the root node of the expression
+     * @throws SalinasException if the expression could not be parsed
+     */
+    public static SalinasNode parse(String source) throws SalinasException {
+        final String key = source.trim();
+        SalinasNode expression;
+        synchronized (expressions) {
+            expression = expressions.get(key);
+        }
+        if (expression == null) {
+            try {
+                final SalinasNode script = new SalinasParser(new StringReader(source)).buildAst();
+                // SalinasScript -> Statement -> expression
+                expression = script.getChild(0).getChild(0);
+            } catch (ParseException | TokenMgrError ex) {
+                throw new SalinasException("Invalid key expression: " + source, ex);
+            }
+            synchronized (expressions) {
+                expressions.put(key, expression);
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * Evaluates the given key expression against the current record of the
+     * current work area.
+     *
+     * @param source the source of the key expression
+     * @param context the execution context
+     * @return the key value of the current record
+     * @throws SalinasException if the expression could not be parsed or
+     * evaluated
+     */
+    public static SalinasValue evaluate(String source, SalinasExecutionContext context)
+            throws SalinasException {
+        return SalinasInterpreter.interpret(parse(source), context);
+    }
+
+    /**
+     * Gets whether two expressions are the same, apart from differences in
+     * letter case of names and in white space, so that a condition can be
+     * matched against the key expression of an index.
+     *
+     * @param a the first expression
+     * @param b the second expression
+     * @return whether the expressions are the same
+     */
+    public static boolean sameExpression(SalinasNode a, SalinasNode b) {
+        if (a.getId() != b.getId() || a.jjtGetNumChildren() != b.jjtGetNumChildren()) {
+            return false;
+        }
+        if (a.getId() == JJTIDENTIFIER) {
+            if (!((String) a.jjtGetValue()).equalsIgnoreCase((String) b.jjtGetValue())) {
+                return false;
+            }
+        } else if (!Objects.equals(a.jjtGetValue(), b.jjtGetValue())) {
+            return false;
+        }
+        for (int count = 0; count < a.jjtGetNumChildren(); count++) {
+            if (!sameExpression(a.getChild(count), b.getChild(count))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String stripTrailing(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return s.substring(0, end);
+    }
+}
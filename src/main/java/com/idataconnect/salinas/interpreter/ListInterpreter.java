@@ -3,30 +3,57 @@ package com.idataconnect.salinas.interpreter;
 import com.idataconnect.jdbfdriver.DBF;
 import com.idataconnect.jdbfdriver.DBFField;
 import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
 import com.idataconnect.salinas.data.WorkArea;
 import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
- * Interpreter for LIST statement.
+ * Interpreter for LIST statement, and for DISPLAY of records.
+ * <p>
+ * The fields of the records selected by the scope are written as a table,
+ * one record per line, after a line of field names. LIST visits every record
+ * by default, and DISPLAY only the current record. The width of each column
+ * is computed once from its field, so each line is built in a buffer of the
+ * same size, and lines are written through a chunk of fixed size which is
+ * passed to the writer whenever it fills. A listing of any number of records
+ * takes the same memory.
  */
 public class ListInterpreter implements InterpreterDelegate {
 
     private static final ListInterpreter INSTANCE = new ListInterpreter();
 
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final String RECORD_HEADING = "Record#";
+    private static final int RECORD_WIDTH = RECORD_HEADING.length();
+    private static final String MEMO = "memo";
+
     public static ListInterpreter getInstance() {
         return INSTANCE;
     }
 
+    private ListInterpreter() {}
+
     @Override
     public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
             throws SalinasException {
-        
-        // LIST is often just DISPLAY with all records.
-        // For STATUS/STRUCTURE it's identical to DISPLAY.
+
+        // For STATUS/STRUCTURE LIST is identical to DISPLAY.
         Object value = node.jjtGetValue();
         if ("STRUCTURE".equals(value) || "STATUS".equals(value)) {
             return DisplayInterpreter.getInstance().interpret(node, context);
@@ -34,44 +61,283 @@ public class ListInterpreter implements InterpreterDelegate {
 
         Optional<WorkArea> currentAreaOpt = context.getWorkAreaManager().getCurrentWorkArea();
         if (currentAreaOpt.isEmpty()) {
-            throw new SalinasException("No table is open in the current work area.");
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
         }
+        final WorkArea workArea = currentAreaOpt.get();
 
-        WorkArea wa = currentAreaOpt.get();
-        DBF dbf = wa.getDbf();
+        boolean recordNumbers = true;
+        File file = null;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() == JJTOFF) {
+                recordNumbers = false;
+            } else if (child.getId() == JJTTOFILE) {
+                file = TotalInterpreter.dataFile(child.getChild(0), ".txt", context);
+            }
+        }
+
+        final List<DBFField> structure = workArea.getDbf().getStructure().getFields();
+        final List<Integer> listed = CopyInterpreter.fieldNumbers(node, workArea, true);
+        final Column[] columns = new Column[listed.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(listed.get(i), structure.get(listed.get(i) - 1));
+        }
 
+        final RecordScope scope = node.getId() == JJTDISPLAY
+                ? RecordScope.fromNode(node, RecordScope.Kind.NEXT, 1, context)
+                : RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context);
+        int count = 0;
         try {
-            StringBuilder sb = new StringBuilder();
-            List<DBFField> fields = dbf.getStructure().getFields();
-            
-            // Header
-            sb.append(String.format("%7s ", "Record#"));
-            for (DBFField f : fields) {
-                sb.append(String.format("%-15s ", f.getFieldName()));
-            }
-            sb.append("\n");
-            sb.append("-".repeat(7 + 1 + fields.size() * 16)).append("\n");
-
-            // Records (cap at 100 for now to prevent terminal bloat)
-            int count = 0;
-            dbf.gotoRecord(1);
-            while (!dbf.eof() && count < 100) {
-                sb.append(String.format("%7d ", dbf.recno()));
-                for (DBFField f : fields) {
-                    String val = dbf.getValue(f.getFieldName()).getString();
-                    if (val.length() > 15) val = val.substring(0, 12) + "...";
-                    sb.append(String.format("%-15s ", val));
+            final Writer writer = file == null ? context.getWriter()
+                    : context.meter(new OutputStreamWriter(new FileOutputStream(file),
+                            StandardCharsets.ISO_8859_1));
+            try {
+                final Listing listing = new Listing(writer, columns, recordNumbers);
+                listing.heading();
+                final RecordCursor cursor = scope.open(workArea, context);
+                while (cursor.next()) {
+                    listing.record(workArea);
+                    count++;
+                }
+                listing.flush();
+            } finally {
+                if (file != null) {
+                    writer.close();
                 }
-                sb.append("\n");
-                dbf.skip();
-                count++;
             }
-            context.getWriter().write(sb.toString() + "\n");
-            context.getWriter().flush();
         } catch (IOException ex) {
-            throw new SalinasException("I/O error during output", ex);
+            throw ResourceMeter.outputError(ex);
+        }
+
+        return new SalinasValue(BigDecimal.valueOf(count), SalinasType.NUMBER);
+    }
+
+    /**
+     * A column of the listing, whose width is the larger of the width of
+     * the values of its field and the length of the field name.
+     */
+    private static final class Column {
+        final int field;
+        final DBFField.FieldType type;
+        final int decimals;
+        final String name;
+        final int width;
+
+        Column(int field, DBFField definition) {
+            this.field = field;
+            this.type = definition.getFieldType();
+            this.decimals = definition.getDecimalLength();
+            this.name = definition.getFieldName().trim();
+            final int valueWidth;
+            switch (type) {
+                case L:
+                    valueWidth = 3;
+                    break;
+                case D:
+                    valueWidth = 8;
+                    break;
+                case M:
+                    valueWidth = MEMO.length();
+                    break;
+                default:
+                    valueWidth = definition.getFieldLength();
+            }
+            this.width = Math.max(valueWidth, name.length());
+        }
+
+        boolean isNumeric() {
+            return type == DBFField.FieldType.N || type == DBFField.FieldType.F;
+        }
+    }
+
+    /**
+     * Writes the lines of a listing. Each line is built in a buffer which
+     * holds the widest line, and is copied without its trailing spaces to a
+     * chunk which is written whenever it fills.
+     */
+    private static final class Listing {
+        private final Writer writer;
+        private final Column[] columns;
+        private final boolean recordNumbers;
+        private final char[] line;
+        private final char[] chunk = new char[CHUNK_SIZE];
+        private int length;
+        private int position;
+
+        Listing(Writer writer, Column[] columns, boolean recordNumbers) {
+            this.writer = writer;
+            this.columns = columns;
+            this.recordNumbers = recordNumbers;
+            // The record number and deletion mark, then each column after a space
+            int width = recordNumbers ? RECORD_WIDTH + 2 : 0;
+            for (Column column : columns) {
+                width += column.width + 1;
+            }
+            this.line = new char[width];
+        }
+
+        void heading() throws IOException {
+            length = 0;
+            if (recordNumbers) {
+                text(RECORD_HEADING, RECORD_WIDTH, false);
+                line[length++] = ' ';
+                line[length++] = ' ';
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    line[length++] = ' ';
+                }
+                text(columns[i].name, columns[i].width, columns[i].isNumeric());
+            }
+            endLine();
+        }
+
+        void record(WorkArea workArea) throws IOException {
+            final DBF dbf = workArea.getDbf();
+            length = 0;
+            if (recordNumbers) {
+                digits(dbf.recno(), RECORD_WIDTH);
+                line[length++] = ' ';
+                line[length++] = dbf.deleted() ? '*' : ' ';
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    line[length++] = ' ';
+                }
+                final Column column = columns[i];
+                final Object value = workArea.getFieldValue(column.field);
+                switch (column.type) {
+                    case N:
+                    case F:
+                        number(value, column);
+                        break;
+                    case L:
+                        text(value instanceof Boolean ? (Boolean) value ? ".T." : ".F." : "",
+                                column.width, false);
+                        break;
+                    case D:
+                        date(value, column.width);
+                        break;
+                    case M:
+                        text(MEMO, column.width, false);
+                        break;
+                    default:
+                        text(value == null ? "" : value.toString(), column.width, false);
+                }
+            }
+            endLine();
+        }
+
+        void flush() throws IOException {
+            writer.write(chunk, 0, position);
+            position = 0;
+            writer.flush();
         }
 
-        return null;
+        private void number(Object value, Column column) {
+            final BigDecimal number;
+            if (value instanceof BigDecimal) {
+                number = (BigDecimal) value;
+            } else if (value instanceof Number) {
+                number = new BigDecimal(value.toString());
+            } else {
+                text("", column.width, false);
+                return;
+            }
+            final String s = number.setScale(column.decimals, RoundingMode.HALF_UP)
+                    .toPlainString();
+            if (s.length() > column.width) {
+                // Too wide for the column, as dBASE shows it
+                Arrays.fill(line, length, length + column.width, '*');
+                length += column.width;
+            } else {
+                text(s, column.width, true);
+            }
+        }
+
+        private void date(Object value, int width) {
+            final LocalDate date;
+            if (value instanceof LocalDate) {
+                date = (LocalDate) value;
+            } else if (value instanceof java.sql.Date) {
+                date = ((java.sql.Date) value).toLocalDate();
+            } else if (value instanceof java.util.Date) {
+                date = ((java.util.Date) value).toInstant()
+                        .atZone(ZoneId.systemDefault()).toLocalDate();
+            } else {
+                text("", width, false);
+                return;
+            }
+
+            // MM/DD/YY, the American format of dBASE
+            final int start = length;
+            digits(date.getMonthValue(), 2);
+            line[length++] = '/';
+            digits(date.getDayOfMonth(), 2);
+            line[length++] = '/';
+            digits(date.getYear() % 100, 2);
+            Arrays.fill(line, length, start + width, ' ');
+            length = start + width;
+        }
+
+        /**
+         * Puts text into the line, cut or padded with spaces to a width.
+         */
+        private void text(String s, int width, boolean right) {
+            final int count = Math.min(s.length(), width);
+            final int padding = width - count;
+            if (right) {
+                Arrays.fill(line, length, length + padding, ' ');
+                length += padding;
+            }
+            s.getChars(0, count, line, length);
+            length += count;
+            if (!right) {
+                Arrays.fill(line, length, length + padding, ' ');
+                length += padding;
+            }
+        }
+
+        /**
+         * Puts a number which is not negative into the line, right aligned
+         * within a width. Leading places are zeros if the width is two, as
+         * for the parts of dates, and spaces otherwise.
+         */
+        private void digits(int value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                line[length + i] = value == 0 && i < width - 1 && width != 2
+                        ? ' ' : (char) ('0' + value % 10);
+                value /= 10;
+            }
+            length += width;
+        }
+
+        /**
+         * Copies the line without its trailing spaces into the chunk,
+         * followed by a line separator.
+         */
+        private void endLine() throws IOException {
+            int end = length;
+            while (end > 0 && line[end - 1] == ' ') {
+                end--;
+            }
+            int offset = 0;
+            while (offset < end) {
+                if (position == chunk.length) {
+                    writer.write(chunk, 0, position);
+                    position = 0;
+                }
+                final int count = Math.min(end - offset, chunk.length - position);
+                System.arraycopy(line, offset, chunk, position, count);
+                position += count;
+                offset += count;
+            }
+            if (position == chunk.length) {
+                writer.write(chunk, 0, position);
+                position = 0;
+            }
+            chunk[position++] = '\n';
+        }
     }
 }
@@ -16,18 +16,14 @@ import java.math.BigInteger;
  */
 public class LiteralInterpreter implements InterpreterDelegate {
 
-    private static LiteralInterpreter instance;
+    private static final LiteralInterpreter INSTANCE = new LiteralInterpreter();
 
     /**
      * Gets a singleton instance of the literal interpreter.
      * @return a singleton instance
      */
     public static LiteralInterpreter getInstance() {
-        if (instance == null) {
-            instance = new LiteralInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
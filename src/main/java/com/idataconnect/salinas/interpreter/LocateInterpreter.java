@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Interpreter delegate implementation for the LOCATE and CONTINUE
+ * statements.
+ * <p>
+ * <code>CONTINUE</code> searches from the record after the current one to
+ * the end of the table, for the conditions of the last <code>LOCATE</code>
+ * in the work area. The conditions are evaluated again, in the context of
+ * the <code>CONTINUE</code>, so that they see the variables as they are
+ * then.
+ */
+public class LocateInterpreter implements InterpreterDelegate {
+
+    private static final LocateInterpreter INSTANCE = new LocateInterpreter();
+
+    public static LocateInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private LocateInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        Optional<WorkArea> currentAreaOpt = context.getWorkAreaManager().getCurrentWorkArea();
+        if (currentAreaOpt.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.");
+        }
+
+        final WorkArea workArea = currentAreaOpt.get();
+        final RecordCursor cursor;
+        if (node.getId() == JJTLOCATE) {
+            cursor = RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context)
+                    .open(workArea, context);
+            workArea.setLocateStatement(node);
+        } else {
+            final SalinasNode locate = workArea.getLocateStatement();
+            if (locate == null) {
+                throw new SalinasException("CONTINUE without LOCATE",
+                        node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+            }
+            if (workArea.eof()) {
+                workArea.setFound(false);
+                return SalinasValue.FALSE;
+            }
+            try {
+                workArea.skip(1);
+            } catch (IOException ex) {
+                throw new SalinasException("Error during CONTINUE", ex);
+            }
+            cursor = RecordScope.fromNode(locate, RecordScope.Kind.ALL, 0, context).rest()
+                    .open(workArea, context);
+        }
+
+        final boolean found = cursor.next();
+        workArea.setFound(found);
+        return found ? SalinasValue.TRUE : SalinasValue.FALSE;
+    }
+}
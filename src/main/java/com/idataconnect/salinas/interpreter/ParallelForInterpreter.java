@@ -0,0 +1,348 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasConfig;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.ComparativeOp;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTIDENTIFIER;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTREDUCTION;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.JJTSTEP;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Interpreter delegate implementation for PARALLEL FOR loop nodes.
+ * <p>
+ * The iterations of the loop are split over a fork-join pool of daemon
+ * threads, with as many threads as the {@link SalinasConfig#setParallelism
+ * parallelism} of the context. The pool is kept for the next loop with the
+ * same parallelism, and is not shared with other users of fork-join pools.
+ * Each thread which runs iterations does so in its own {@link
+ * SalinasExecutionContext#fork() fork} of the context, with copies of the
+ * local variables, so that the values it changes are not seen by the other
+ * threads. Those changes are dropped when the loop ends, other than to the
+ * reduction variables named by <code>REDUCE</code>, which start at the
+ * identity of their operator in each thread, and whose results are combined
+ * into the variables of the context. The operators are <code>SUM</code>,
+ * which is the default, <code>MIN</code> and <code>MAX</code>.
+ * <p>
+ * The iterations run in no particular order. Statements which use work
+ * areas are not allowed in the loop, since the tables of the context are
+ * not shared with its forks. A PARALLEL FOR loop inside another runs on the
+ * thread of the outer iteration.
+ */
+public class ParallelForInterpreter implements InterpreterDelegate {
+
+    private static final ParallelForInterpreter INSTANCE = new ParallelForInterpreter();
+
+    /** The number of pieces for each thread of the pool, for balance. */
+    private static final int PIECES_PER_THREAD = 8;
+
+    /** The pools which run the loops, by their parallelism. */
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Gets a singleton instance of the PARALLEL FOR interpreter delegate.
+     * @return a singleton instance
+     */
+    public static ParallelForInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A variable whose values in each thread are combined when the loop
+     * ends.
+     */
+    private static final class Reduction {
+        private final String name;
+        private final String operator;
+        private final SalinasValue initial;
+
+        private Reduction(String name, String operator, SalinasValue initial) {
+            this.name = name;
+            this.operator = operator;
+            this.initial = initial;
+        }
+
+        private SalinasValue identity() {
+            return "SUM".equals(operator)
+                    ? new SalinasValue(BigDecimal.ZERO, SalinasType.NUMBER)
+                    : initial.copy();
+        }
+
+        private SalinasValue combine(SalinasValue result, SalinasValue value)
+                throws SalinasException {
+            switch (operator) {
+                case "MIN":
+                    return ComparativeOp.LESS_THAN.apply(value, result) ? value : result;
+                case "MAX":
+                    return ComparativeOp.GREATER_THAN.apply(value, result) ? value : result;
+                default:
+                    return new SalinasValue(result.asNumber().add(value.asNumber()),
+                            SalinasType.NUMBER);
+            }
+        }
+    }
+
+    /**
+     * The state of the loop in one thread.
+     */
+    private static final class Worker {
+        private final SalinasExecutionContext context;
+        private final SalinasValue index;
+
+        private Worker(SalinasExecutionContext context, SalinasValue index) {
+            this.context = context;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The state of one run of the loop, which is shared by its threads.
+     */
+    private static final class Loop {
+        private final SalinasNode node;
+        private final SalinasExecutionContext context;
+        private final String indexName;
+        private final BigDecimal start;
+        private final BigDecimal step;
+        private final int bodyIndex;
+        private final List<Reduction> reductions;
+        private final Map<String, SalinasValue> locals;
+        private final ConcurrentHashMap<Thread, Worker> workers = new ConcurrentHashMap<>();
+        private final AtomicReference<SalinasException> failure = new AtomicReference<>();
+
+        private Loop(SalinasNode node, SalinasExecutionContext context, String indexName,
+                BigDecimal start, BigDecimal step, int bodyIndex,
+                List<Reduction> reductions, Map<String, SalinasValue> locals) {
+            this.node = node;
+            this.context = context;
+            this.indexName = indexName;
+            this.start = start;
+            this.step = step;
+            this.bodyIndex = bodyIndex;
+            this.reductions = reductions;
+            this.locals = locals;
+        }
+
+        private Worker worker() {
+            // Only the current thread adds its own worker, so the fork is
+            // made outside of the map, without holding up the other threads
+            final Thread thread = Thread.currentThread();
+            final Worker existing = workers.get(thread);
+            if (existing != null) {
+                return existing;
+            }
+            final SalinasExecutionContext forked;
+            synchronized (context) {
+                forked = context.forkParallel();
+            }
+            forked.pushScope();
+            final SalinasScope scope = forked.getCurrentScope();
+            for (Map.Entry<String, SalinasValue> local : locals.entrySet()) {
+                scope.setVariable(local.getKey(), local.getValue().copy());
+            }
+            for (Reduction reduction : reductions) {
+                scope.setVariable(reduction.name, reduction.identity());
+            }
+            final SalinasValue index = new SalinasValue(start, SalinasType.NUMBER, true);
+            scope.setVariable(indexName, index);
+            final Worker worker = new Worker(forked, index);
+            workers.put(thread, worker);
+            return worker;
+        }
+
+        /**
+         * Runs the iterations from <code>from</code>, inclusive, to
+         * <code>to</code>, exclusive, on the current thread.
+         */
+        private void run(long from, long to) {
+            final Worker worker = worker();
+            try {
+                for (long i = from; i < to && failure.get() == null; i++) {
+                    worker.index.setValue(start.add(step.multiply(BigDecimal.valueOf(i))));
+                    for (int count = bodyIndex; count < node.jjtGetNumChildren(); count++) {
+                        SalinasInterpreter.interpret((SalinasNode) node.jjtGetChild(count),
+                                worker.context);
+                        if (worker.context.getReturning() != null) {
+                            throw new SalinasException("RETURN is not allowed in PARALLEL FOR",
+                                    node.getFilename(), node.getBeginLine(),
+                                    node.getBeginColumn());
+                        }
+                    }
+                    worker.context.checkCancelled(node);
+                }
+            } catch (SalinasException ex) {
+                failure.compareAndSet(null, ex);
+            }
+        }
+    }
+
+    /**
+     * A range of iterations, which is split until it is small enough to be
+     * run by one thread.
+     */
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Loop loop;
+        private final long from;
+        private final long to;
+        private final long grain;
+
+        private Range(Loop loop, long from, long to, long grain) {
+            this.loop = loop;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                loop.run(from, to);
+                return;
+            }
+            final long middle = from + (to - from) / 2;
+            invokeAll(new Range(loop, from, middle, grain), new Range(loop, middle, to, grain));
+        }
+    }
+
+    /**
+     * Gets the pool with the given parallelism, creating it the first time.
+     *
+     * @param parallelism the number of threads, or zero or less for one for
+     * each processor
+     * @return the pool
+     */
+    private static ForkJoinPool pool(int parallelism) {
+        final int threads = parallelism > 0
+                ? parallelism : Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool pool = POOLS.get(threads);
+        if (pool != null) {
+            return pool;
+        }
+        final ForkJoinPool created = new ForkJoinPool(threads, forkJoinPool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool
+                    .defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("salinas-parallel-" + threads + "-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        final ForkJoinPool raced = POOLS.putIfAbsent(threads, created);
+        if (raced != null) {
+            created.shutdown();
+            return raced;
+        }
+        return created;
+    }
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        assert ((SalinasNode) node.jjtGetChild(0)).getId() == JJTIDENTIFIER;
+        final String indexName = (String) ((SalinasNode) node.jjtGetChild(0)).jjtGetValue();
+        final BigDecimal start = SalinasInterpreter.interpret(
+                (SalinasNode) node.jjtGetChild(1), context).asNumber();
+        final BigDecimal stop = SalinasInterpreter.interpret(
+                (SalinasNode) node.jjtGetChild(2), context).asNumber();
+
+        int bodyIndex = 3;
+        BigDecimal step = BigDecimal.ONE;
+        if (bodyIndex < node.jjtGetNumChildren()
+                && ((SalinasNode) node.jjtGetChild(bodyIndex)).getId() == JJTSTEP) {
+            step = SalinasInterpreter.interpret((SalinasNode) ((SalinasNode) node
+                    .jjtGetChild(bodyIndex)).jjtGetChild(0), context).asNumber();
+            bodyIndex++;
+        }
+        if (step.signum() == 0) {
+            throw new SalinasException("The STEP of PARALLEL FOR must not be zero",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        final List<Reduction> reductions = new ArrayList<>();
+        while (bodyIndex < node.jjtGetNumChildren()
+                && ((SalinasNode) node.jjtGetChild(bodyIndex)).getId() == JJTREDUCTION) {
+            final SalinasNode reductionNode = (SalinasNode) node.jjtGetChild(bodyIndex++);
+            final String name = (String) ((SalinasNode) reductionNode.jjtGetChild(0))
+                    .jjtGetValue();
+            final String operator = reductionNode.jjtGetValue() == null
+                    ? "SUM" : (String) reductionNode.jjtGetValue();
+            if (!operator.equals("SUM") && !operator.equals("MIN") && !operator.equals("MAX")) {
+                throw new SalinasException("Unknown reduction operator: " + operator,
+                        reductionNode.getFilename(), reductionNode.getBeginLine(),
+                        reductionNode.getBeginColumn());
+            }
+            final SalinasValue initial = context.getVariable(name).orElseThrow(
+                    () -> new SalinasException("Reduction variable " + name
+                            + " must be assigned before PARALLEL FOR",
+                            reductionNode.getFilename(), reductionNode.getBeginLine(),
+                            reductionNode.getBeginColumn()));
+            reductions.add(new Reduction(name, operator, initial));
+        }
+
+        final long iterations = stop.subtract(start).divide(step, 0, RoundingMode.FLOOR)
+                .longValue() + 1;
+        if (iterations <= 0) {
+            return SalinasValue.NULL;
+        }
+
+        // The local variables are copied into each thread, the innermost
+        // scope winning
+        final Map<String, SalinasValue> locals = new LinkedHashMap<>();
+        final List<SalinasScope> scopes = new ArrayList<>();
+        for (SalinasScope scope = context.getCurrentScope(); scope != null;
+                scope = scope.getParent()) {
+            scopes.add(0, scope);
+        }
+        for (SalinasScope scope : scopes) {
+            locals.putAll(scope.getVariables());
+        }
+
+        // Freeze the variables of the context once, so that the threads
+        // share them rather than forking each other's changes
+        context.freeze();
+
+        final Loop loop = new Loop(node, context, indexName, start, step, bodyIndex,
+                reductions, locals);
+        if (context.isParallel()) {
+            loop.run(0, iterations);
+        } else {
+            final SalinasConfig config = context.getConfig();
+            final ForkJoinPool pool = pool(config == null ? 0 : config.getParallelism());
+            final long grain = Math.max(1,
+                    iterations / ((long) pool.getParallelism() * PIECES_PER_THREAD));
+            pool.invoke(new Range(loop, 0, iterations, grain));
+        }
+        if (loop.failure.get() != null) {
+            throw loop.failure.get();
+        }
+
+        for (Reduction reduction : reductions) {
+            SalinasValue result = "SUM".equals(reduction.operator)
+                    ? reduction.initial : reduction.identity();
+            for (Worker worker : loop.workers.values()) {
+                result = reduction.combine(result,
+                        worker.context.getVariable(reduction.name).get());
+            }
+            // The value is looked up again, since the value found before
+            // the loop is now shared with the forks of the context
+            context.getVariable(reduction.name).get().setValue(result);
+        }
+        return SalinasValue.NULL;
+    }
+}
@@ -17,18 +17,14 @@ import java.io.IOException;
  */
 public class PrintInterpreter implements InterpreterDelegate {
 
-    private static PrintInterpreter instance;
+    private static final PrintInterpreter INSTANCE = new PrintInterpreter();
 
     /**
      * Gets a singleton instance of the print interpreter.
      * @return a singleton instance
      */
     public static PrintInterpreter getInstance() {
-        if (instance == null) {
-            instance = new PrintInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -54,7 +50,7 @@ public class PrintInterpreter implements InterpreterDelegate {
 
             return value;
         } catch (IOException ex) {
-            throw new SalinasException("I/O error during output", ex);
+            throw ResourceMeter.outputError(ex);
         }
     }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordFields;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import com.idataconnect.salinas.parser.SalinasParserConstants;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * An expression which is evaluated against a record, compiled so that it
+ * does not need the interpreter or the execution context. Only fields,
+ * constants and arithmetic on numbers are compiled, which gives the same
+ * results as the interpreter. Since a compiled expression only reads the
+ * record through its {@link RecordFields}, it can be evaluated by any
+ * thread which owns the source of the fields.
+ */
+abstract class RecordExpression {
+
+    /**
+     * Evaluates the expression against the current record of the source of
+     * the fields.
+     *
+     * @return the value of the expression
+     * @throws SalinasException if the record could not be read, or the
+     * arithmetic failed
+     */
+    abstract SalinasValue evaluate() throws SalinasException;
+
+    /**
+     * Gets whether the expression always has a numeric value.
+     */
+    abstract boolean isNumeric();
+
+    /**
+     * Compiles an expression.
+     *
+     * @param expression the expression node
+     * @param workArea the work area whose records will be read
+     * @param fields the source of the field values
+     * @param context the execution context, which is used to evaluate the
+     * constants
+     * @return the compiled expression, or <code>null</code> if the
+     * expression cannot be compiled and must be evaluated by the interpreter
+     * @throws SalinasException if a constant could not be evaluated
+     */
+    static RecordExpression compile(SalinasNode expression, WorkArea workArea,
+            RecordFields fields, SalinasExecutionContext context) throws SalinasException {
+        final int field = RecordPredicate.fieldNumber(expression, workArea, context);
+        if (field > 0) {
+            return field(workArea, fields, field);
+        }
+
+        if (RecordPredicate.isConstant(expression, context, true)) {
+            return new Constant(SalinasInterpreter.interpret(expression, context));
+        }
+
+        switch (expression.getId()) {
+            case JJTADDITIVE:
+            case JJTMULTIPLICATIVE:
+            case JJTEXPONENT: {
+                final List<?> ops = (List<?>) expression.jjtGetValue();
+                final int count = expression.jjtGetNumChildren();
+                if (ops == null || ops.size() != count - 1) {
+                    // Unary operators are left to the interpreter
+                    return null;
+                }
+                final RecordExpression[] operands = new RecordExpression[count];
+                for (int i = 0; i < count; i++) {
+                    operands[i] = compile(expression.getChild(i), workArea, fields, context);
+                    if (operands[i] == null || !operands[i].isNumeric()) {
+                        return null;
+                    }
+                }
+                final int[] opTypes = new int[ops.size()];
+                for (int i = 0; i < opTypes.length; i++) {
+                    opTypes[i] = (Integer) ops.get(i);
+                }
+                return new Arithmetic(operands, opTypes, context.getConfig().getPrecision());
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Compiles a reference to a field.
+     *
+     * @param workArea the work area whose records will be read
+     * @param fields the source of the field values
+     * @param field the field number
+     * @return the compiled expression
+     */
+    static RecordExpression field(WorkArea workArea, RecordFields fields, int field) {
+        final DBFField.FieldType type = workArea.getDbf().getStructure().getFields()
+                .get(field - 1).getFieldType();
+        return new Field(fields, field,
+                type == DBFField.FieldType.N || type == DBFField.FieldType.F);
+    }
+
+    private static final class Field extends RecordExpression {
+        private final RecordFields fields;
+        private final int field;
+        private final boolean numeric;
+
+        Field(RecordFields fields, int field, boolean numeric) {
+            this.fields = fields;
+            this.field = field;
+            this.numeric = numeric;
+        }
+
+        @Override
+        SalinasValue evaluate() throws SalinasException {
+            try {
+                return SalinasValue.valueOf(fields.getFieldValue(field));
+            } catch (IOException ex) {
+                throw new SalinasException("Error reading field " + field, ex);
+            }
+        }
+
+        @Override
+        boolean isNumeric() {
+            return numeric;
+        }
+    }
+
+    private static final class Constant extends RecordExpression {
+        private final SalinasValue value;
+
+        Constant(SalinasValue value) {
+            this.value = value;
+        }
+
+        @Override
+        SalinasValue evaluate() {
+            return value;
+        }
+
+        @Override
+        boolean isNumeric() {
+            return value.getCurrentType() == SalinasType.NUMBER;
+        }
+    }
+
+    /**
+     * Arithmetic on numbers, with the same rounding as the interpreter.
+     */
+    private static final class Arithmetic extends RecordExpression {
+        private final RecordExpression[] operands;
+        private final int[] opTypes;
+        private final int precision;
+
+        Arithmetic(RecordExpression[] operands, int[] opTypes, int precision) {
+            this.operands = operands;
+            this.opTypes = opTypes;
+            this.precision = precision;
+        }
+
+        @Override
+        SalinasValue evaluate() throws SalinasException {
+            BigDecimal result = operands[0].evaluate().asNumber();
+            for (int i = 0; i < opTypes.length && result != null; i++) {
+                final BigDecimal operand = operands[i + 1].evaluate().asNumber();
+                if (operand == null) {
+                    result = null;
+                    break;
+                }
+                try {
+                    switch (opTypes[i]) {
+                        case SalinasParserConstants.PLUS:
+                            result = result.add(operand);
+                            break;
+                        case SalinasParserConstants.MINUS:
+                            result = result.subtract(operand);
+                            break;
+                        case SalinasParserConstants.MULT:
+                            result = result.multiply(operand);
+                            break;
+                        case SalinasParserConstants.DIV:
+                            result = result.divide(operand, precision, RoundingMode.HALF_EVEN);
+                            break;
+                        case SalinasParserConstants.MOD:
+                            result = result.remainder(operand);
+                            break;
+                        case SalinasParserConstants.EXP:
+                            result = result.pow(operand.intValue());
+                            break;
+                    }
+                } catch (ArithmeticException ex) {
+                    throw new SalinasException("Arithmetic error: " + ex.getMessage(), ex);
+                }
+            }
+            return result == null ? SalinasValue.NULL : new SalinasValue(result, SalinasType.NUMBER);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+    }
+}
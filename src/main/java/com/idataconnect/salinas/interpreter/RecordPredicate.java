@@ -0,0 +1,401 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.ComparativeOp;
+import com.idataconnect.salinas.data.RecordCondition;
+import com.idataconnect.salinas.data.RecordFields;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A condition which is tested against the current record of a work area,
+ * such as the <code>FOR</code> condition of a command.
+ * <p>
+ * Conditions are compiled once, before the records are visited. Comparisons
+ * between a field and a constant are bound to the field's ordinal, and the
+ * constant is evaluated up front, so testing them does not need to walk
+ * the expression tree or look up names. <code>AND</code>, <code>OR</code>
+ * and <code>NOT</code> are compiled into their operands, and anything else
+ * is evaluated by the interpreter, with the same result as it would have in
+ * an expression.
+ */
+public abstract class RecordPredicate implements RecordCondition {
+
+    /**
+     * Tests the condition against the current record.
+     *
+     * @return whether the current record satisfies the condition
+     * @throws SalinasException if the condition could not be evaluated
+     */
+    @Override
+    public abstract boolean test() throws SalinasException;
+
+    @Override
+    public boolean readsOnlyFields() {
+        return true;
+    }
+
+    /**
+     * Gets whether any part of the condition is evaluated by the
+     * interpreter, rather than compiled.
+     */
+    boolean usesInterpreter() {
+        return false;
+    }
+
+    /**
+     * Compiles a condition for the given work area.
+     *
+     * @param condition the expression node of the condition
+     * @param workArea the work area whose records will be tested, which must
+     * be the current work area while the predicate is used
+     * @param context the execution context
+     * @return the compiled condition
+     * @throws SalinasException if a constant in the condition could not be
+     * evaluated
+     */
+    public static RecordPredicate compile(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context) throws SalinasException {
+        return compile(condition, workArea, context, true);
+    }
+
+    /**
+     * Compiles a condition for the given work area.
+     *
+     * @param condition the expression node of the condition
+     * @param workArea the work area whose records will be tested
+     * @param context the execution context
+     * @param bindVariables whether memory variables are evaluated once, when
+     * the condition is compiled. A condition which outlives the command
+     * that compiled it, such as a filter, must see the current values of
+     * the variables.
+     * @return the compiled condition
+     * @throws SalinasException if a constant in the condition could not be
+     * evaluated
+     */
+    public static RecordPredicate compile(SalinasNode condition, WorkArea workArea,
+            SalinasExecutionContext context, boolean bindVariables)
+            throws SalinasException {
+        return compile(condition, workArea, workArea, context, bindVariables);
+    }
+
+    /**
+     * Compiles a condition whose field comparisons read the fields from the
+     * given source, rather than from the current record of the work area.
+     * Parts of the condition which are evaluated by the interpreter still
+     * read the current record, so a condition which is tested against
+     * records the work area is not positioned on must not have such parts.
+     *
+     * @param condition the expression node of the condition
+     * @param workArea the work area whose records will be tested
+     * @param fields the source of the field values
+     * @param context the execution context
+     * @param bindVariables whether memory variables are evaluated once
+     * @return the compiled condition
+     * @throws SalinasException if a constant in the condition could not be
+     * evaluated
+     * @see #usesInterpreter()
+     */
+    static RecordPredicate compile(SalinasNode condition, WorkArea workArea,
+            RecordFields fields, SalinasExecutionContext context, boolean bindVariables)
+            throws SalinasException {
+        switch (condition.getId()) {
+            case JJTAND:
+            case JJTOR: {
+                final RecordPredicate[] operands = new RecordPredicate[condition.jjtGetNumChildren()];
+                for (int count = 0; count < operands.length; count++) {
+                    operands[count] = compile(condition.getChild(count), workArea, fields,
+                            context, bindVariables);
+                }
+                return condition.getId() == JJTAND ? new And(operands) : new Or(operands);
+            }
+            case JJTBOOLEANNOT:
+                return new Not(compile(condition.getChild(0), workArea, fields, context,
+                        bindVariables));
+            case JJTCOMPARE:
+            case JJTEQUALITY: {
+                final List<?> ops = (List<?>) condition.jjtGetValue();
+                if (ops.size() == 1 && condition.jjtGetNumChildren() == 2) {
+                    final ComparativeOp op = (ComparativeOp) ops.get(0);
+                    final SalinasNode left = condition.getChild(0);
+                    final SalinasNode right = condition.getChild(1);
+                    int field = fieldNumber(left, workArea, context);
+                    if (field > 0 && isConstant(right, context, bindVariables)) {
+                        return new FieldComparison(fields, field, op,
+                                SalinasInterpreter.interpret(right, context), true);
+                    }
+                    field = fieldNumber(right, workArea, context);
+                    if (field > 0 && isConstant(left, context, bindVariables)) {
+                        return new FieldComparison(fields, field, op,
+                                SalinasInterpreter.interpret(left, context), false);
+                    }
+                }
+                break;
+            }
+            case JJTBOOLEAN:
+                return Boolean.TRUE.equals(condition.jjtGetValue()) ? TRUE : FALSE;
+        }
+
+        return new Evaluated(condition, context);
+    }
+
+    /**
+     * A predicate which accepts every record.
+     */
+    public static final RecordPredicate TRUE = new RecordPredicate() {
+        @Override
+        public boolean test() {
+            return true;
+        }
+    };
+
+    /**
+     * A predicate which rejects every record.
+     */
+    public static final RecordPredicate FALSE = new RecordPredicate() {
+        @Override
+        public boolean test() {
+            return false;
+        }
+    };
+
+    /**
+     * Gets the number of the field which the given node refers to.
+     *
+     * @return the field number, or zero if the node is not a reference to a
+     * field of the work area
+     */
+    static int fieldNumber(SalinasNode node, WorkArea workArea, SalinasExecutionContext context) {
+        if (node.getId() != JJTIDENTIFIER || node.jjtGetNumChildren() > 0) {
+            return 0;
+        }
+        final String name = (String) node.jjtGetValue();
+        if (context.isMemoryVariable(name)) {
+            return 0;
+        }
+        return Math.max(workArea.getDbf().getFieldNumberByName(name), 0);
+    }
+
+    /**
+     * Gets whether the given expression has the same value for every record,
+     * so that it can be evaluated once. Only literals, arithmetic and, when
+     * <code>bindVariables</code> is set, memory variables are considered to
+     * be constant, since functions may have side effects or depend on the
+     * record.
+     */
+    static boolean isConstant(SalinasNode node, SalinasExecutionContext context,
+            boolean bindVariables) {
+        switch (node.getId()) {
+            case JJTSTRING:
+            case JJTNUMBER:
+            case JJTBOOLEAN:
+            case JJTDATE:
+            case JJTNULL:
+                return true;
+            case JJTIDENTIFIER:
+                return bindVariables && node.jjtGetNumChildren() == 0
+                        && context.isMemoryVariable((String) node.jjtGetValue());
+            case JJTADDITIVE:
+            case JJTMULTIPLICATIVE:
+            case JJTEXPONENT:
+                for (int count = 0; count < node.jjtGetNumChildren(); count++) {
+                    if (!isConstant(node.getChild(count), context, bindVariables)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class And extends RecordPredicate {
+        private final RecordPredicate[] operands;
+
+        And(RecordPredicate[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean readsOnlyFields() {
+            for (RecordPredicate operand : operands) {
+                if (!operand.readsOnlyFields()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean usesInterpreter() {
+            for (RecordPredicate operand : operands) {
+                if (operand.usesInterpreter()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean test() throws SalinasException {
+            for (RecordPredicate operand : operands) {
+                if (!operand.test()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or extends RecordPredicate {
+        private final RecordPredicate[] operands;
+
+        Or(RecordPredicate[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean readsOnlyFields() {
+            for (RecordPredicate operand : operands) {
+                if (!operand.readsOnlyFields()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean usesInterpreter() {
+            for (RecordPredicate operand : operands) {
+                if (operand.usesInterpreter()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean test() throws SalinasException {
+            for (RecordPredicate operand : operands) {
+                if (operand.test()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Not extends RecordPredicate {
+        private final RecordPredicate operand;
+
+        Not(RecordPredicate operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean readsOnlyFields() {
+            return operand.readsOnlyFields();
+        }
+
+        @Override
+        boolean usesInterpreter() {
+            return operand.usesInterpreter();
+        }
+
+        @Override
+        public boolean test() throws SalinasException {
+            return !operand.test();
+        }
+    }
+
+    /**
+     * A comparison between a field and a constant.
+     */
+    static final class FieldComparison extends RecordPredicate {
+        private final RecordFields fields;
+        private final int field;
+        private final ComparativeOp op;
+        private final SalinasValue constant;
+        private final boolean fieldOnLeft;
+
+        FieldComparison(RecordFields fields, int field, ComparativeOp op,
+                SalinasValue constant, boolean fieldOnLeft) {
+            this.fields = fields;
+            this.field = field;
+            this.op = op;
+            this.constant = constant;
+            this.fieldOnLeft = fieldOnLeft;
+        }
+
+        @Override
+        public boolean test() throws SalinasException {
+            final SalinasValue value;
+            try {
+                value = SalinasValue.valueOf(fields.getFieldValue(field));
+            } catch (IOException ex) {
+                throw new SalinasException("Error reading field " + field, ex);
+            }
+            return fieldOnLeft
+                    ? ExpressionInterpreter.compare(value, op, constant)
+                    : ExpressionInterpreter.compare(constant, op, value);
+        }
+    }
+
+    /**
+     * A condition which is evaluated by the interpreter.
+     */
+    private static final class Evaluated extends RecordPredicate {
+        private final SalinasNode condition;
+        private final SalinasExecutionContext context;
+
+        private final boolean readsOnlyFields;
+
+        Evaluated(SalinasNode condition, SalinasExecutionContext context) {
+            this.condition = condition;
+            this.context = context;
+            this.readsOnlyFields = readsOnlyFields(condition);
+        }
+
+        /**
+         * Gets whether an expression only reads fields and variables. A
+         * function may move the record pointer, or read the record through
+         * the driver, so it needs the driver to be on the record.
+         */
+        private static boolean readsOnlyFields(SalinasNode node) {
+            if (node.getId() == JJTFUNCTIONCALL || node.getId() == JJTASSIGN
+                    || node.getId() == JJTSETEXPRESSION) {
+                return false;
+            }
+            for (int count = 0; count < node.jjtGetNumChildren(); count++) {
+                if (!readsOnlyFields(node.getChild(count))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean readsOnlyFields() {
+            return readsOnlyFields;
+        }
+
+        @Override
+        boolean usesInterpreter() {
+            return true;
+        }
+
+        @Override
+        public boolean test() throws SalinasException {
+            return SalinasInterpreter.interpret(condition, context)
+                    .asType(SalinasType.BOOLEAN).equals(Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.BitSet;
+
+/**
+ * The records selected by the scope, <code>FOR</code> and <code>WHILE</code>
+ * clauses of a command.
+ * <p>
+ * The scope is one of <code>ALL</code>, <code>REST</code>,
+ * <code>NEXT &lt;n&gt;</code> or <code>RECORD &lt;n&gt;</code>. When no
+ * scope is given, a <code>WHILE</code> clause implies <code>REST</code>, a
+ * <code>FOR</code> clause implies <code>ALL</code>, and otherwise the default
+ * of the command applies.
+ */
+public final class RecordScope {
+
+    public enum Kind {
+        ALL, REST, NEXT, RECORD
+    }
+
+    private final SalinasNode node;
+    private final Kind kind;
+    private final int count;
+    private final SalinasNode forCondition;
+    private final SalinasNode whileCondition;
+
+    private RecordScope(SalinasNode node, Kind kind, int count, SalinasNode forCondition,
+            SalinasNode whileCondition) {
+        this.node = node;
+        this.kind = kind;
+        this.count = count;
+        this.forCondition = forCondition;
+        this.whileCondition = whileCondition;
+    }
+
+    /**
+     * Reads the scope clauses from the children of a command node. Children
+     * which are not scope clauses are ignored.
+     *
+     * @param node the command node
+     * @param defaultKind the scope when no clause implies one
+     * @param defaultCount the number of records for a default scope of
+     * <code>NEXT</code>
+     * @param context the execution context
+     * @return the scope
+     * @throws SalinasException if the record count could not be evaluated
+     */
+    public static RecordScope fromNode(SalinasNode node, Kind defaultKind, int defaultCount,
+            SalinasExecutionContext context) throws SalinasException {
+        Kind kind = null;
+        int count = defaultCount;
+        SalinasNode forCondition = null;
+        SalinasNode whileCondition = null;
+
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            switch (child.getId()) {
+                case JJTSCOPE:
+                    kind = Kind.valueOf((String) child.jjtGetValue());
+                    if (child.jjtGetNumChildren() > 0) {
+                        count = ((BigDecimal) SalinasInterpreter.interpret(
+                                child.getChild(0), context).asType(SalinasType.NUMBER)).intValue();
+                    }
+                    break;
+                case JJTFORCONDITION:
+                    forCondition = child.getChild(0);
+                    break;
+                case JJTWHILECONDITION:
+                    whileCondition = child.getChild(0);
+                    break;
+            }
+        }
+
+        if (kind == null) {
+            if (whileCondition != null) {
+                kind = Kind.REST;
+            } else if (forCondition != null) {
+                kind = Kind.ALL;
+            } else {
+                kind = defaultKind;
+            }
+        }
+
+        return new RecordScope(node, kind, count, forCondition, whileCondition);
+    }
+
+    /**
+     * Gets a scope with the same conditions, which selects the records from
+     * the current record to the end of the table, such as for
+     * <code>CONTINUE</code>.
+     *
+     * @return the scope
+     */
+    public RecordScope rest() {
+        return new RecordScope(node, Kind.REST, 0, forCondition, whileCondition);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public SalinasNode getForCondition() {
+        return forCondition;
+    }
+
+    public SalinasNode getWhileCondition() {
+        return whileCondition;
+    }
+
+    /**
+     * Opens a cursor over the selected records of the given work area. The
+     * record pointer is not moved until the first call to
+     * {@link Cursor#next()}.
+     *
+     * @param workArea the work area, which must be the current work area
+     * while the cursor is used
+     * @param context the execution context
+     * @return the cursor
+     * @throws SalinasException if the conditions could not be compiled
+     */
+    public Cursor open(WorkArea workArea, SalinasExecutionContext context)
+            throws SalinasException {
+        return new Cursor(workArea, context);
+    }
+
+    /**
+     * Moves the record pointer of a work area through the selected records.
+     */
+    public final class Cursor implements RecordCursor {
+        private final WorkArea workArea;
+        private final SalinasExecutionContext context;
+        private final DBF dbf;
+        private final RecordPredicate forPredicate;
+        private final RecordPredicate whilePredicate;
+        private BitSet candidates;
+        private boolean candidatesInOrder;
+        private int remaining;
+        private boolean started;
+        private boolean done;
+
+        private Cursor(WorkArea workArea, SalinasExecutionContext context)
+                throws SalinasException {
+            this.workArea = workArea;
+            this.context = context;
+            this.dbf = workArea.getDbf();
+            this.forPredicate = forCondition == null ? null
+                    : RecordPredicate.compile(forCondition, workArea, context);
+            this.whilePredicate = whileCondition == null ? null
+                    : RecordPredicate.compile(whileCondition, workArea, context);
+            this.remaining = kind == Kind.NEXT ? count : kind == Kind.RECORD ? 1 : -1;
+
+            // Without a WHILE condition, the records of ALL and REST can be
+            // visited in any order, so an index may be used to skip the
+            // records which cannot satisfy the FOR condition
+            if (forCondition != null && whileCondition == null
+                    && (kind == Kind.ALL || kind == Kind.REST)) {
+                final int recno = dbf.recno();
+                candidates = IndexPlanner.plan(forCondition, workArea, context, true)
+                        .getCandidates();
+                candidatesInOrder = workArea.getOrder() == null;
+                move(() -> dbf.gotoRecord(recno));
+            }
+        }
+
+        @Override
+        public boolean next() throws SalinasException {
+            if (done) {
+                return false;
+            }
+
+            if (!started) {
+                started = true;
+                start();
+            } else if (remaining == 0) {
+                done = true;
+                return false;
+            } else {
+                advance();
+            }
+
+            while (!dbf.eof()) {
+                context.recordsAccessed(1, node);
+                if (whilePredicate != null && !whilePredicate.test()) {
+                    break;
+                }
+                if (remaining > 0) {
+                    remaining--;
+                }
+                if (isCandidate() && (forPredicate == null || forPredicate.test())) {
+                    return true;
+                }
+                if (remaining == 0) {
+                    break;
+                }
+                advance();
+            }
+
+            done = true;
+            return false;
+        }
+
+        /**
+         * Gets whether the current record is one of the candidates. Records
+         * which are visited by candidate, rather than by skipping, must also
+         * be checked against the filter of the work area.
+         */
+        private boolean isCandidate() throws SalinasException {
+            if (candidates == null) {
+                return true;
+            } else if (candidatesInOrder) {
+                return workArea.isVisible();
+            }
+            return candidates.get(dbf.recno());
+        }
+
+        private void start() throws SalinasException {
+            if (candidates != null && candidatesInOrder) {
+                gotoCandidate(kind == Kind.ALL ? 1 : dbf.recno());
+            } else if (kind == Kind.ALL) {
+                move(workArea::goTop);
+            } else if (kind == Kind.RECORD) {
+                move(() -> dbf.gotoRecord(count));
+            }
+        }
+
+        private void advance() throws SalinasException {
+            if (candidates != null && candidatesInOrder) {
+                gotoCandidate(dbf.recno() + 1);
+            } else {
+                move(() -> workArea.skip(1));
+            }
+        }
+
+        /**
+         * Moves to the first candidate at or after the given record number.
+         */
+        private void gotoCandidate(int recno) throws SalinasException {
+            final int candidate = candidates.nextSetBit(recno);
+            move(() -> {
+                if (candidate < 0) {
+                    workArea.gotoEof();
+                } else {
+                    dbf.gotoRecord(candidate);
+                }
+            });
+        }
+
+        private void move(Move move) throws SalinasException {
+            try {
+                move.run();
+            } catch (IOException ex) {
+                throw new SalinasException("Error moving record pointer", ex);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Move {
+        void run() throws IOException, SalinasException;
+    }
+}
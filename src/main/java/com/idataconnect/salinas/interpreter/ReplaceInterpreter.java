@@ -1,7 +1,7 @@
 package com.idataconnect.salinas.interpreter;
 
-import com.idataconnect.jdbfdriver.DBF;
 import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
 import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
 import com.idataconnect.salinas.data.WorkArea;
@@ -10,15 +10,49 @@ import com.idataconnect.salinas.parser.SalinasNode;
 import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Interpreter delegate implementation for REPLACE statement.
+ * <p>
+ * Any number of fields may be replaced, in the current record or in each
+ * record selected by the scope clauses. The new values of a record are
+ * evaluated in order, and each expression sees the values before it, but
+ * the record is only written once all of them have been evaluated. Fields
+ * whose value does not change are not written.
+ * <p>
+ * The selected records are found before any of them are changed, so that
+ * replacing a key of the active order does not move a record ahead of the
+ * scan or behind it.
+ * <p>
+ * A record which the work area has not locked, by <code>RLOCK()</code> or
+ * <code>FLOCK()</code>, is locked while its values are evaluated and
+ * written, and released once it is written. REPLACE fails if the record is
+ * still locked by another session when <code>SET REPROCESS</code> runs
+ * out.
+ * <p>
+ * When at least one record in {@value #REBUILD_SHARE} of an indexed table
+ * is selected, the updates of the indexes are deferred until the last
+ * record is written, and the tags whose keys changed are then rebuilt in
+ * one pass over the table, rather than updated for each record.
+ * <p>
+ * The value of the statement is the number of records which were written,
+ * which leaves out the selected records whose values did not change.
  */
 public class ReplaceInterpreter implements InterpreterDelegate {
 
     private static final ReplaceInterpreter INSTANCE = new ReplaceInterpreter();
 
+    /**
+     * The share of the records of a table, as one in this many, which must
+     * be selected for the indexes to be rebuilt rather than updated for
+     * each record.
+     */
+    static final int REBUILD_SHARE = 8;
+
     public static ReplaceInterpreter getInstance() {
         return INSTANCE;
     }
@@ -26,50 +60,126 @@ public class ReplaceInterpreter implements InterpreterDelegate {
     @Override
     public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
             throws SalinasException {
-        
+
         WorkAreaManager wam = context.getWorkAreaManager();
         if (wam == null) {
             throw new SalinasException("No work area manager available");
         }
 
         // ReplaceStatement
-        // L Identifier (field)
-        // L Expression (value)
+        // L ReplaceField+ (field, value)
+        // L scope clauses
         // L (optional) In (alias/id)
 
-        assert node.jjtGetNumChildren() >= 2;
-        
-        SalinasNode fieldNode = (SalinasNode) node.jjtGetChild(0);
-        String fieldName = (String) fieldNode.jjtGetValue();
-        
-        SalinasNode valueNode = (SalinasNode) node.jjtGetChild(1);
-        SalinasValue newValue = SalinasInterpreter.interpret(valueNode, context);
-        
-        Optional<WorkArea> targetWa = Optional.empty();
-        
-        if (node.jjtGetNumChildren() > 2) {
-            SalinasNode inNode = (SalinasNode) node.jjtGetChild(2);
-            SalinasValue inValue = SalinasInterpreter.interpret((SalinasNode) inNode.jjtGetChild(0), context);
-            if (inValue.getCurrentType() == SalinasType.NUMBER) {
-                targetWa = wam.getWorkArea(((BigDecimal) inValue.getValue()).intValue());
-            } else {
-                targetWa = wam.getWorkArea(inValue.toString());
+        final int selected = wam.getCurrentWorkAreaId();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() == JJTIN) {
+                wam.select(SelectInterpreter.workAreaId(child.getChild(0), context));
+            }
+        }
+
+        try {
+            Optional<WorkArea> targetWa = wam.getCurrentWorkArea();
+            if (targetWa.isEmpty()) {
+                throw new SalinasException("Target work area not found for REPLACE",
+                        node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+            }
+            return replace(node, targetWa.get(), context);
+        } finally {
+            wam.select(selected);
+        }
+    }
+
+    private SalinasValue replace(SalinasNode node, WorkArea workArea,
+            SalinasExecutionContext context) throws SalinasException {
+        final List<Integer> fields = new ArrayList<>();
+        final List<SalinasNode> values = new ArrayList<>();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() != JJTREPLACEFIELD) {
+                continue;
             }
-        } else {
-            targetWa = wam.getCurrentWorkArea();
+            final String fieldName = (String) child.getChild(0).jjtGetValue();
+            final int field = workArea.getDbf().getFieldNumberByName(fieldName);
+            if (field < 1) {
+                throw new SalinasException("Field not found: " + fieldName,
+                        child.getFilename(), child.getBeginLine(), child.getBeginColumn());
+            }
+            fields.add(field);
+            values.add(child.getChild(1));
         }
 
-        if (targetWa.isEmpty()) {
-            throw new SalinasException("Target work area not found for REPLACE");
+        final RecordScope scope = RecordScope.fromNode(node, RecordScope.Kind.NEXT, 1, context);
+        final BitSet records = new BitSet();
+        final RecordCursor cursor = scope.open(workArea, context);
+        while (cursor.next()) {
+            records.set(workArea.getDbf().recno());
         }
+        // The record pointer is left where the scope left it
+        final boolean eof = workArea.getDbf().eof();
+        final int position = workArea.getDbf().recno();
 
+        // Rebuilding the indexes is only worth it when the driver maintains
+        // them, and is left out when the script has already deferred them
+        final boolean deferred = records.cardinality() > 1 && workArea.hasIndex()
+                && !workArea.isIndexUpdateDeferred()
+                && (long) records.cardinality() * REBUILD_SHARE
+                        >= workArea.getDbf().getStructure().getNumberOfRecords();
+        final long timeout = context.getConfig().getLockTimeout();
+        int written = 0;
         try {
-            DBF dbf = targetWa.get().getDbf();
-            dbf.replace(fieldName, newValue.getValue());
+            if (deferred) {
+                workArea.deferIndexUpdates();
+            }
+            for (int recno = records.nextSetBit(0); recno >= 0; recno = records.nextSetBit(recno + 1)) {
+                boolean locked = false;
+                if (!workArea.isReadOnly() && !workArea.isLocked(recno)) {
+                    if (!workArea.lockRecord(recno, timeout)) {
+                        throw new SalinasException("Record " + recno + " of work area "
+                                + workArea.getAlias() + " is locked by another user",
+                                node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+                    }
+                    locked = true;
+                }
+                try {
+                    // The record is read again once it is locked
+                    workArea.getDbf().gotoRecord(recno);
+                    for (int i = 0; i < fields.size(); i++) {
+                        workArea.bufferValue(fields.get(i),
+                                SalinasInterpreter.interpret(values.get(i), context).getValue());
+                    }
+                    if (workArea.writeBuffer() > 0) {
+                        written++;
+                    }
+                } finally {
+                    workArea.discardBuffer();
+                    if (locked) {
+                        workArea.unlockRecord(recno);
+                    }
+                }
+            }
+            if (deferred) {
+                workArea.updateIndexes();
+            }
+            if (eof) {
+                workArea.gotoEof();
+            } else if (workArea.getDbf().recno() != position) {
+                workArea.getDbf().gotoRecord(position);
+            }
         } catch (IOException ex) {
             throw new SalinasException("Error during REPLACE operation", ex);
+        } finally {
+            // The records written before a failure are still indexed
+            if (deferred && workArea.isIndexUpdateDeferred()) {
+                try {
+                    workArea.updateIndexes();
+                } catch (IOException ex) {
+                    throw new SalinasException("Error during REPLACE operation", ex);
+                }
+            }
         }
 
-        return SalinasValue.NULL;
+        return new SalinasValue(BigDecimal.valueOf(written), SalinasType.NUMBER);
     }
 }
@@ -0,0 +1,189 @@
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.ResourceLimitException;
+import com.idataconnect.salinas.SalinasConfig;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordMeter;
+import com.idataconnect.salinas.parser.SalinasNode;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the output, array elements and record accesses of a script, and
+ * stops the script when it goes past the limits of its
+ * {@link SalinasConfig settings}, or builds a string longer than they
+ * allow, so that one script
+ * cannot take the heap or the tables of a process which runs the scripts
+ * of others. A limit of zero is no limit. A script which goes past a limit
+ * is stopped with a {@link ResourceLimitException}.
+ * <p>
+ * The meter of a script context is held under the attribute
+ * <code>salinasResourceMeter</code>, and counts from zero each time a script
+ * is run in the context, other than by <code>DO</code>. The limits are read
+ * from the settings when the script starts. The threads of a
+ * <code>PARALLEL FOR</code> loop, and of a parallel aggregate, count against
+ * the meter of the script. The output of a script includes the files it
+ * writes, such as by <code>COPY TO</code>.
+ * <p>
+ * The array elements of a script are the elements it adds to any of its
+ * arrays, so that many small arrays are limited as one large array is.
+ * The records of a script include the records which its work areas read
+ * while positioning the record pointer, which the meter counts as the
+ * {@link RecordMeter} of the work areas.
+ */
+public final class ResourceMeter implements RecordMeter {
+
+    private final AtomicLong output = new AtomicLong();
+    private final AtomicLong arrayElements = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private int depth;
+    private int maxArrayElements;
+    private int maxStringLength;
+    private long maxOutputChars;
+    private long maxRecordAccesses;
+
+    /**
+     * Called when a script starts in the context. The counts are cleared
+     * unless another script, which ran this one by <code>DO</code>, is
+     * running.
+     *
+     * @param config the settings, whose limits are used
+     */
+    public void start(SalinasConfig config) {
+        if (depth++ > 0) {
+            return;
+        }
+        output.set(0);
+        arrayElements.set(0);
+        records.set(0);
+        maxArrayElements = config.getMaxArrayElements();
+        maxStringLength = config.getMaxStringLength();
+        maxOutputChars = config.getMaxOutputChars();
+        maxRecordAccesses = config.getMaxRecordAccesses();
+    }
+
+    /**
+     * Called when a script which was started ends.
+     */
+    public void finish() {
+        depth--;
+    }
+
+    /**
+     * Gets the number of characters the script has written.
+     */
+    public long getOutputChars() {
+        return output.get();
+    }
+
+    /**
+     * Gets the number of records the script has moved the record pointer
+     * to.
+     */
+    public long getRecordAccesses() {
+        return records.get();
+    }
+
+    void arrayElementsAdded(int count, SalinasNode node) throws SalinasException {
+        if (maxArrayElements > 0 && arrayElements.addAndGet(count) > maxArrayElements) {
+            throw error("Array element limit of " + maxArrayElements
+                    + " elements exceeded", node);
+        }
+    }
+
+    void checkStringLength(int length, SalinasNode node) throws SalinasException {
+        if (maxStringLength > 0 && length > maxStringLength) {
+            throw error("String length limit of " + maxStringLength
+                    + " characters exceeded", node);
+        }
+    }
+
+    void recordsAccessed(int count, SalinasNode node) throws SalinasException {
+        if (records.addAndGet(count) > maxRecordAccesses && maxRecordAccesses > 0) {
+            throw error("Record access limit of " + maxRecordAccesses
+                    + " records exceeded", node);
+        }
+    }
+
+    @Override
+    public void recordsAccessed(int count) throws SalinasException {
+        recordsAccessed(count, null);
+    }
+
+    /**
+     * Counts characters which the script wrote without a metered writer,
+     * such as the records of a file it copied to.
+     */
+    void outputWritten(long count, SalinasNode node) throws SalinasException {
+        if (maxOutputChars > 0 && output.addAndGet(count) > maxOutputChars) {
+            throw error(outputLimitMessage(), node);
+        }
+    }
+
+    /**
+     * Gets whether output is limited, so that writers must be metered.
+     */
+    boolean limitsOutput() {
+        return maxOutputChars > 0;
+    }
+
+    /**
+     * Wraps a writer, so that the characters written through it are counted
+     * against the limit. A write which would pass the limit fails with an
+     * <code>IOException</code>, whose cause is the
+     * {@link ResourceLimitException}, and is not passed on.
+     *
+     * @param writer the writer
+     * @return the metered writer
+     */
+    Writer meter(Writer writer) {
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                if (output.addAndGet(length) > maxOutputChars) {
+                    output.addAndGet(-length);
+                    final ResourceLimitException limit
+                            = new ResourceLimitException(outputLimitMessage());
+                    throw new IOException(limit.getMessage(), limit);
+                }
+                writer.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * Makes the exception for an error while writing the output of a
+     * script, which is the resource limit exception if the output limit was
+     * passed.
+     *
+     * @param ex the error
+     * @return the exception to throw
+     */
+    static SalinasException outputError(IOException ex) {
+        if (ex.getCause() instanceof ResourceLimitException) {
+            return (ResourceLimitException) ex.getCause();
+        }
+        return new SalinasException("I/O error during output: " + ex.getMessage(), ex);
+    }
+
+    private String outputLimitMessage() {
+        return "Output limit of " + maxOutputChars + " characters exceeded";
+    }
+
+    private static ResourceLimitException error(String message, SalinasNode node) {
+        return node == null ? new ResourceLimitException(message)
+                : new ResourceLimitException(message, node.getFilename(), node.getBeginLine(),
+                        node.getBeginColumn());
+    }
+}
@@ -13,18 +13,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
  */
 public class ReturnInterpreter implements InterpreterDelegate {
 
-    private static ReturnInterpreter instance;
+    private static final ReturnInterpreter INSTANCE = new ReturnInterpreter();
 
     /**
      * Gets a singleton instance of the return interpreter.
      * @return a singleton instance
      */
     public static ReturnInterpreter getInstance() {
-        if (instance == null) {
-            instance = new ReturnInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
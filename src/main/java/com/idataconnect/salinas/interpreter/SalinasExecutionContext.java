@@ -1,27 +1,58 @@
 package com.idataconnect.salinas.interpreter;
 
 import com.idataconnect.salinas.SalinasConfig;
+import com.idataconnect.salinas.SalinasException;
 import com.idataconnect.salinas.data.SalinasValue;
 import com.idataconnect.salinas.data.WorkArea;
 import com.idataconnect.salinas.data.WorkAreaManager;
 import com.idataconnect.salinas.function.CallStack;
 import com.idataconnect.salinas.function.FunctionContext;
+import com.idataconnect.salinas.function.FunctionLibrary;
+import com.idataconnect.salinas.parser.SalinasNode;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.script.Bindings;
 import javax.script.ScriptContext;
+import javax.script.SimpleScriptContext;
 
 /**
  * A context for the execution of a Salinas script.
  */
 public class SalinasExecutionContext {
     private static final Logger LOGGER = Logger.getLogger(SalinasExecutionContext.class.getName());
+
+    /**
+     * The number of loop iterations and function calls between checks for
+     * cancellation, which is a power of two.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
     private final ScriptContext scriptContext;
+    private final Cancellation cancellation;
+    private final ResourceMeter meter;
+    private int steps;
+    private java.io.Writer meteredTarget;
+    private java.io.Writer metered;
     private SalinasScope globalScope;
     private SalinasScope currentScope;
+    private boolean parallel;
 
     public SalinasExecutionContext(ScriptContext scriptContext) {
         this.scriptContext = scriptContext;
+        Cancellation existing = (Cancellation) scriptContext.getAttribute("salinasCancellation");
+        if (existing == null) {
+            existing = new Cancellation();
+            scriptContext.setAttribute("salinasCancellation", existing, ScriptContext.ENGINE_SCOPE);
+        }
+        this.cancellation = existing;
+        this.meter = (ResourceMeter) scriptContext.getAttribute("salinasResourceMeter");
         // Start with a scope that delegates to the ScriptContext's bindings
         this.globalScope = new SalinasScope(null) {
             @Override
@@ -31,6 +62,16 @@ public class SalinasExecutionContext {
                     value = scriptContext.getAttribute(name.toUpperCase(), ScriptContext.GLOBAL_SCOPE);
                 }
                 if (value == null) {
+                    // A constant of the library is copied into the context,
+                    // so that changes to it are kept there
+                    final FunctionLibrary library = FunctionLibrary.getInstalled();
+                    final Optional<SalinasValue> constant = library == null
+                            ? Optional.empty() : library.getConstant(name.toUpperCase());
+                    if (constant.isPresent()) {
+                        setVariable(name, constant.get());
+                        return constant;
+                    }
+
                     // Check WorkAreaManager for fields
                     WorkAreaManager wam = getWorkAreaManager();
                     if (wam != null) {
@@ -40,7 +81,7 @@ public class SalinasExecutionContext {
                             int fieldNum = dbf.getFieldNumberByName(name);
                             if (fieldNum > 0) {
                                 try {
-                                    Object val = dbf.getValue(fieldNum).getValue();
+                                    Object val = wa.get().getFieldValue(fieldNum);
                                     return Optional.of(SalinasValue.valueOf(val));
                                 } catch (Exception ex) {
                                     LOGGER.log(Level.WARNING, "Error retrieving value for field: " + name, ex);
@@ -75,12 +116,204 @@ public class SalinasExecutionContext {
         }
     }
 
+    /**
+     * Creates a child context, which starts with the variables, functions
+     * and settings of this context, and whose changes are not seen by this
+     * context, nor by the other children. The global variables of this
+     * context are frozen when it is forked, into a copy which cannot be
+     * changed, and which is shared with the child. Both contexts keep their
+     * changes in their own layer over the frozen variables. The variables
+     * are only copied again when this context has changed them since it was
+     * last forked, so thousands of children of a prepared context are forked
+     * in constant time, and take memory in proportion to what each of them
+     * changes.
+     * <p>
+     * The bindings of this context are replaced when it is forked, so a
+     * host which kept a reference to the old bindings changes neither
+     * context through it.
+     * <p>
+     * The child has no tables open and no background jobs, its own call
+     * stack and a copy of the settings, and starts in the global scope. It
+     * may be used by another thread.
+     *
+     * @return the child context
+     */
+    public SalinasExecutionContext fork() {
+        return new SalinasExecutionContext(forkScriptContext());
+    }
+
+    /**
+     * Creates the script context of a child context.
+     */
+    private ScriptContext forkScriptContext() {
+        final Map<String, Object> frozen = freeze();
+        final ScriptContext child = new SimpleScriptContext();
+        child.setBindings(new ForkedBindings(frozen), ScriptContext.ENGINE_SCOPE);
+        child.setBindings(scriptContext.getBindings(ScriptContext.GLOBAL_SCOPE),
+                ScriptContext.GLOBAL_SCOPE);
+        child.setReader(scriptContext.getReader());
+        child.setWriter(scriptContext.getWriter());
+        child.setErrorWriter(scriptContext.getErrorWriter());
+        final SalinasConfig config = getConfig();
+        if (config != null) {
+            child.setAttribute("salinasConfig", config.copy(), ScriptContext.ENGINE_SCOPE);
+        }
+        child.setAttribute("salinasCallStack", new CallStack(), ScriptContext.ENGINE_SCOPE);
+        child.setAttribute("salinasFunctionContext", new FunctionContext(child),
+                ScriptContext.ENGINE_SCOPE);
+        child.setAttribute("salinasWorkAreaManager", new WorkAreaManager(),
+                ScriptContext.ENGINE_SCOPE);
+        child.removeAttribute("salinasCancellation", ScriptContext.ENGINE_SCOPE);
+        child.removeAttribute("salinasJobs", ScriptContext.ENGINE_SCOPE);
+        child.removeAttribute("salinasResourceMeter", ScriptContext.ENGINE_SCOPE);
+        child.removeAttribute("returning", ScriptContext.ENGINE_SCOPE);
+        return child;
+    }
+
+    /**
+     * Freezes the global variables of this context, so that they may be
+     * shared. Frozen variables which this context has not changed since are
+     * reused, and otherwise the layer of this context is collapsed with the
+     * variables under it into a new frozen copy, so that the layers do not
+     * pile up.
+     *
+     * @return the frozen variables
+     */
+    Map<String, Object> freeze() {
+        final Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (bindings instanceof ForkedBindings && ((ForkedBindings) bindings).isUnchanged()) {
+            return ((ForkedBindings) bindings).getBase();
+        }
+        final Map<String, Object> frozen = ForkedBindings.freeze(bindings);
+        scriptContext.setBindings(new ForkedBindings(frozen), ScriptContext.ENGINE_SCOPE);
+        return frozen;
+    }
+
+    /**
+     * Creates a child context for a thread of a <code>PARALLEL FOR</code>
+     * loop. The child is cancelled with this context, and may not use work
+     * areas.
+     *
+     * @return the child context
+     */
+    SalinasExecutionContext forkParallel() {
+        final ScriptContext child = forkScriptContext();
+        child.setAttribute("salinasCancellation", cancellation, ScriptContext.ENGINE_SCOPE);
+        if (meter != null) {
+            child.setAttribute("salinasResourceMeter", meter, ScriptContext.ENGINE_SCOPE);
+        }
+        final SalinasExecutionContext worker = new SalinasExecutionContext(child);
+        worker.parallel = true;
+        return worker;
+    }
+
+    /**
+     * Gets whether this context runs part of a <code>PARALLEL FOR</code>
+     * loop, in which statements which use work areas are not allowed.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
     public ScriptContext getScriptContext() {
         return scriptContext;
     }
 
+    /**
+     * Gets the writer which the script writes its output to, through which
+     * the output is counted when it is limited.
+     *
+     * @return the writer
+     */
     public java.io.Writer getWriter() {
-        return scriptContext.getWriter();
+        final java.io.Writer writer = scriptContext.getWriter();
+        return meter == null || !meter.limitsOutput() ? writer : meter(writer);
+    }
+
+    /**
+     * Wraps a writer which the script writes output to, such as a file, so
+     * that the output is counted when it is limited.
+     *
+     * @param writer the writer
+     * @return the writer, or a writer which counts what is written to it
+     */
+    public java.io.Writer meter(java.io.Writer writer) {
+        if (meter == null || !meter.limitsOutput()) {
+            return writer;
+        }
+        if (writer != meteredTarget) {
+            meteredTarget = writer;
+            metered = meter.meter(writer);
+        }
+        return metered;
+    }
+
+    /**
+     * Gets the meter which counts the resources used by the script.
+     *
+     * @return the meter, or <code>null</code> if the context is not running
+     * a script
+     */
+    public ResourceMeter getResourceMeter() {
+        return meter;
+    }
+
+    /**
+     * Counts elements which the script added to its arrays, and stops the
+     * script if it has added more than the settings allow.
+     *
+     * @param count the number of elements
+     * @param node the node which adds to the array
+     * @throws SalinasException if the script has added too many elements
+     */
+    public void arrayElementsAdded(int count, SalinasNode node) throws SalinasException {
+        if (meter != null) {
+            meter.arrayElementsAdded(count, node);
+        }
+    }
+
+    /**
+     * Stops the script if a string would be longer than the settings
+     * allow.
+     *
+     * @param length the length of the string
+     * @param node the node which builds the string
+     * @throws SalinasException if the string would be too long
+     */
+    public void checkStringLength(int length, SalinasNode node) throws SalinasException {
+        if (meter != null) {
+            meter.checkStringLength(length, node);
+        }
+    }
+
+    /**
+     * Counts records which the script moved the record pointer to, and stops
+     * the script if it has visited more than the settings allow.
+     *
+     * @param count the number of records
+     * @param node the node which moved the record pointer, or
+     * <code>null</code>
+     * @throws SalinasException if the script has visited too many records
+     */
+    public void recordsAccessed(int count, SalinasNode node) throws SalinasException {
+        if (meter != null) {
+            meter.recordsAccessed(count, node);
+        }
+    }
+
+    /**
+     * Counts characters which the script wrote to a file without a metered
+     * writer, and stops the script if it has written more than the settings
+     * allow.
+     *
+     * @param count the number of characters
+     * @param node the node which wrote them
+     * @throws SalinasException if the script has written too much
+     */
+    public void outputWritten(long count, SalinasNode node) throws SalinasException {
+        if (meter != null) {
+            meter.outputWritten(count, node);
+        }
     }
 
     public SalinasConfig getConfig() {
@@ -99,10 +332,118 @@ public class SalinasExecutionContext {
         return (WorkAreaManager) scriptContext.getAttribute("salinasWorkAreaManager");
     }
 
+    /**
+     * Stops the script if it has been asked to stop, or its deadline has
+     * passed. This is called each time a loop goes round, and each time a
+     * function is called, and checks once in every {@value #CHECK_INTERVAL}
+     * calls, so that it costs little.
+     *
+     * @param node the node of the loop or function call
+     * @throws SalinasException if the script has been cancelled, or its
+     * deadline has passed
+     */
+    public void checkCancelled(SalinasNode node) throws SalinasException {
+        if ((++steps & (CHECK_INTERVAL - 1)) != 0) {
+            return;
+        }
+        if (cancellation.isCancelled()) {
+            throw new SalinasException("Script cancelled", node.getFilename(),
+                    node.getBeginLine(), node.getBeginColumn());
+        } else if (cancellation.isExpired()) {
+            throw new SalinasException("Script deadline exceeded", node.getFilename(),
+                    node.getBeginLine(), node.getBeginColumn());
+        }
+    }
+
+    /**
+     * Waits for a future to complete, such as the end of a background job.
+     * The wait ends early, with an error, when this context is cancelled or
+     * its deadline passes.
+     *
+     * @param future the future
+     * @param timeout the time to wait, or a negative number to wait for as
+     * long as it takes
+     * @param unit the unit of the timeout
+     * @return whether the future has completed
+     * @throws SalinasException if the context was cancelled, or its deadline
+     * passed, before the future completed
+     * @throws InterruptedException if the thread was interrupted
+     */
+    public boolean await(CompletableFuture<?> future, long timeout, TimeUnit unit)
+            throws SalinasException, InterruptedException {
+        final long wait = timeout < 0 ? Long.MAX_VALUE : unit.toNanos(timeout);
+        final long remaining = cancellation.getRemainingNanos();
+        try {
+            CompletableFuture.anyOf(future, cancellation.whenCancelled())
+                    .get(Math.max(0, Math.min(wait, remaining)), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | CancellationException | TimeoutException ex) {
+            // The future ended, one way or another, or the time is up
+        }
+        if (!future.isDone()) {
+            if (cancellation.isCancelled()) {
+                throw new SalinasException("Script cancelled");
+            } else if (cancellation.isExpired()) {
+                throw new SalinasException("Script deadline exceeded");
+            }
+        }
+        return future.isDone();
+    }
+
+    /**
+     * Asks the scripts which run in this context to stop, which they do
+     * within {@value #CHECK_INTERVAL} loop iterations or function calls. The
+     * context stays cancelled until {@link #clearCancellation()} is called.
+     * This may be called by any thread.
+     */
+    public void cancel() {
+        cancellation.cancel();
+    }
+
+    /**
+     * Sets the time after which the scripts which run in this context are
+     * stopped, as though they had been cancelled. This may be called by any
+     * thread.
+     *
+     * @param timeout the time from now
+     * @param unit the unit of the timeout
+     */
+    public void setDeadline(long timeout, TimeUnit unit) {
+        cancellation.setDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Removes the cancellation and deadline of this context, so that scripts
+     * may run in it again.
+     */
+    public void clearCancellation() {
+        cancellation.reset();
+    }
+
     public Optional<SalinasValue> getVariable(String name) {
         return currentScope.getVariable(name);
     }
 
+    /**
+     * Gets whether the given name refers to a memory variable. Memory
+     * variables hide the fields of the current work area which have the
+     * same name.
+     *
+     * @param name the name to check
+     * @return whether a memory variable with the given name is defined
+     */
+    public boolean isMemoryVariable(String name) {
+        for (SalinasScope scope = currentScope; scope != null && scope != globalScope;
+                scope = scope.getParent()) {
+            if (scope.hasVariable(name)) {
+                return true;
+            }
+        }
+        final FunctionLibrary library = FunctionLibrary.getInstalled();
+        return scriptContext.getAttribute(name.toUpperCase(), ScriptContext.ENGINE_SCOPE) != null
+                || scriptContext.getAttribute(name.toUpperCase(), ScriptContext.GLOBAL_SCOPE) != null
+                || (library != null && library.hasConstant(name.toUpperCase()));
+    }
+
     public void setVariable(String name, SalinasValue value) {
         currentScope.setVariable(name, value);
     }
@@ -30,6 +30,12 @@ public class SalinasInterpreter {
      */
     private static final InterpreterDelegate[] delegates = new InterpreterDelegate[SalinasParserTreeConstants.jjtNodeName.length];
 
+    /**
+     * The statements which use work areas, which are not allowed in the
+     * body of a <code>PARALLEL FOR</code> loop.
+     */
+    private static final boolean[] workAreaStatements = new boolean[SalinasParserTreeConstants.jjtNodeName.length];
+
     static {
         delegates[JJTSALINASSCRIPT] = StatementInterpreter.getInstance();
         delegates[JJTSTATEMENT] = StatementInterpreter.getInstance();
@@ -53,6 +59,7 @@ public class SalinasInterpreter {
         delegates[JJTBOOLEANNOT] = BooleanInterpreter.getInstance();
         delegates[JJTIFBLOCK] = IfInterpreter.getInstance();
         delegates[JJTFORLOOP] = ForInterpreter.getInstance();
+        delegates[JJTPARALLELFORLOOP] = ParallelForInterpreter.getInstance();
         delegates[JJTCASEBLOCK] = CaseInterpreter.getInstance();
         delegates[JJTWHILELOOP] = WhileInterpreter.getInstance();
         delegates[JJTFUNCTIONDECLARATION] = FunctionDeclInterpreter.getInstance();
@@ -67,11 +74,26 @@ public class SalinasInterpreter {
         delegates[JJTREPLACE] = ReplaceInterpreter.getInstance();
         delegates[JJTAPPEND] = AppendInterpreter.getInstance();
         delegates[JJTINDEX] = IndexInterpreter.getInstance();
+        delegates[JJTSEEK] = SeekInterpreter.getInstance();
+        delegates[JJTFIND] = SeekInterpreter.getInstance();
+        delegates[JJTLOCATE] = LocateInterpreter.getInstance();
+        delegates[JJTCONTINUE] = LocateInterpreter.getInstance();
+        delegates[JJTAGGREGATE] = AggregateInterpreter.getInstance();
+        delegates[JJTTOTAL] = TotalInterpreter.getInstance();
+        delegates[JJTCOPY] = CopyInterpreter.getInstance();
+        delegates[JJTSELECT] = SelectInterpreter.getInstance();
+        delegates[JJTUNLOCK] = UnlockInterpreter.getInstance();
         delegates[JJTGOTO] = GotoInterpreter.getInstance();
         delegates[JJTDISPLAY] = DisplayInterpreter.getInstance();
         delegates[JJTLIST] = ListInterpreter.getInstance();
         delegates[JJTDO] = DoInterpreter.getInstance();
         delegates[JJTATSAY] = AtSayInterpreter.getInstance();
+
+        for (int nodeId : new int[] {JJTUSE, JJTREPLACE, JJTAPPEND, JJTINDEX, JJTSEEK,
+                JJTFIND, JJTLOCATE, JJTCONTINUE, JJTAGGREGATE, JJTTOTAL, JJTCOPY,
+                JJTSELECT, JJTGOTO, JJTDISPLAY, JJTLIST, JJTUNLOCK}) {
+            workAreaStatements[nodeId] = true;
+        }
     }
 
     private SalinasInterpreter() {}
@@ -92,6 +114,12 @@ public class SalinasInterpreter {
             return returning;
         }
 
+        if (context.isParallel() && workAreaStatements[node.getId()]) {
+            throw new SalinasException(SalinasParserTreeConstants.jjtNodeName[node.getId()]
+                    .toUpperCase() + " is not allowed in PARALLEL FOR",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
         InterpreterDelegate delegate = getDelegate(node.getId());
         assert delegate != null : "No interpreter delegate for " + SalinasParserTreeConstants.jjtNodeName[node.getId()];
 
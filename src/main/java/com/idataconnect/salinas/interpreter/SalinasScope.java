@@ -1,6 +1,7 @@
 package com.idataconnect.salinas.interpreter;
 
 import com.idataconnect.salinas.data.SalinasValue;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -32,6 +33,27 @@ public class SalinasScope {
         return Optional.empty();
     }
 
+    /**
+     * Gets whether the variable is defined in this scope, without checking
+     * the parent scopes.
+     *
+     * @param name the name of the variable
+     * @return whether the variable is defined in this scope
+     */
+    public boolean hasVariable(String name) {
+        return variables.containsKey(name.toUpperCase());
+    }
+
+    /**
+     * Gets the variables defined in this scope, without the variables of the
+     * parent scopes.
+     *
+     * @return the variables, by upper case name
+     */
+    Map<String, SalinasValue> getVariables() {
+        return Collections.unmodifiableMap(variables);
+    }
+
     public SalinasValue unsetVariable(String name) {
         return variables.remove(name.toUpperCase());
     }
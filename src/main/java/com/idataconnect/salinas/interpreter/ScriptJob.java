@@ -0,0 +1,184 @@
+package com.idataconnect.salinas.interpreter;
+
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A program which was started by <code>DO ... ASYNC</code>, and runs in the
+ * background in a fork of the context which started it. The job has its own
+ * work areas, which are closed when it ends, and writes its output to a
+ * buffer of its own rather than to the writer of the context. The buffer
+ * keeps the last of the output, up to a number of characters.
+ */
+public final class ScriptJob {
+
+    /** The status of a job which has not ended. */
+    public static final String RUNNING = "RUNNING";
+    /** The status of a job which ended normally. */
+    public static final String DONE = "DONE";
+    /** The status of a job which ended with an error. */
+    public static final String FAILED = "FAILED";
+    /** The status of a job which was cancelled. */
+    public static final String CANCELLED = "CANCELLED";
+
+    private final int handle;
+    private final String program;
+    /**
+     * The output of a job, of which only the last characters are kept.
+     */
+    private static final class Output extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private final int limit;
+
+        private Output(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+            // Trimmed in steps, so that the buffer is not shifted for each
+            // write
+            if (limit > 0 && buffer.length() > limit + limit / 4) {
+                buffer.delete(0, buffer.length() - limit);
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+
+        @Override
+        public synchronized String toString() {
+            final int start = limit > 0 ? Math.max(0, buffer.length() - limit) : 0;
+            return buffer.substring(start);
+        }
+    }
+
+    private final Output output;
+    private final CompletableFuture<Void> ended = new CompletableFuture<>();
+    private volatile CompletableFuture<Object> future;
+    private volatile String status = RUNNING;
+    private volatile String error;
+
+    ScriptJob(int handle, String program, int maxOutputChars) {
+        this.handle = handle;
+        this.program = program;
+        this.output = new Output(maxOutputChars);
+    }
+
+    void start(CompletableFuture<Object> future) {
+        this.future = future;
+    }
+
+    /**
+     * Called by the thread of the job when the program has stopped, once its
+     * work areas are closed.
+     *
+     * @param failure the error the program failed with, or <code>null</code>
+     */
+    void ended(Throwable failure) {
+        if (failure != null) {
+            error = failure.getMessage();
+            status = FAILED;
+        } else {
+            status = DONE;
+        }
+        ended.complete(null);
+    }
+
+    Writer getWriter() {
+        return output;
+    }
+
+    /**
+     * Gets whether the program has stopped.
+     */
+    public boolean isEnded() {
+        return ended.isDone();
+    }
+
+    /**
+     * Gets a future which is completed when the program has stopped.
+     */
+    public CompletableFuture<Void> whenEnded() {
+        return ended.thenApply(v -> v);
+    }
+
+    /**
+     * Gets the handle of the job, which is given to the job functions.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Gets the name of the program, as it was given to <code>DO</code>.
+     */
+    public String getProgram() {
+        return program;
+    }
+
+    /**
+     * Gets the output which the program has written so far, or the last of
+     * it if it wrote more than is kept.
+     */
+    public String getOutput() {
+        return output.toString();
+    }
+
+    /**
+     * Gets the status of the job, which is one of {@link #RUNNING},
+     * {@link #DONE}, {@link #FAILED} or {@link #CANCELLED}.
+     */
+    public String getStatus() {
+        return future.isCancelled() ? CANCELLED : status;
+    }
+
+    /**
+     * Gets the message of the error which the job failed with.
+     *
+     * @return the message, or <code>null</code> if the job has not failed
+     */
+    public String getError() {
+        return future.isCancelled() ? null : error;
+    }
+
+    /**
+     * Waits for the program to stop. A job which was cancelled is waited for
+     * until its program has seen the cancellation.
+     *
+     * @param timeout the time to wait, or a negative number to wait for as
+     * long as it takes
+     * @param unit the unit of the timeout
+     * @return whether the program has stopped
+     * @throws InterruptedException if the thread was interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            if (timeout < 0) {
+                ended.get();
+            } else {
+                ended.get(timeout, unit);
+            }
+        } catch (ExecutionException | TimeoutException ex) {
+            // The future is only ever completed normally
+        }
+        return ended.isDone();
+    }
+
+    /**
+     * Cancels the job, which stops the program the next time one of its loops
+     * goes round.
+     *
+     * @return whether the job was cancelled, which it is not if it had ended
+     */
+    public boolean cancel() {
+        return future.cancel(false);
+    }
+}
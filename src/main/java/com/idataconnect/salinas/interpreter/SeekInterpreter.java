@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasConfig;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.IndexOptions;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Interpreter delegate implementation for the SEEK and FIND statements.
+ */
+public class SeekInterpreter implements InterpreterDelegate {
+
+    private static final SeekInterpreter INSTANCE = new SeekInterpreter();
+
+    public static SeekInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private SeekInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        Optional<WorkArea> currentAreaOpt = context.getWorkAreaManager().getCurrentWorkArea();
+        if (currentAreaOpt.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.");
+        }
+
+        // FIND takes its key as a raw word, which is stored on the node
+        final Object key;
+        if (node.getId() == JJTFIND && node.jjtGetNumChildren() == 0) {
+            key = node.jjtGetValue();
+        } else {
+            key = SalinasInterpreter.interpret(node.getChild(0), context).getValue();
+        }
+
+        return seek(currentAreaOpt.get(), key, context)
+                ? SalinasValue.TRUE : SalinasValue.FALSE;
+    }
+
+    /**
+     * Seeks the given key in the active order of the given work area,
+     * honoring the <code>SET NEAR</code> and <code>SET EXACT</code>
+     * settings. The work area must be the current work area, since the key
+     * expression of the order is evaluated against it when an exact match
+     * is required.
+     *
+     * @param workArea the work area to position
+     * @param key the key, which has already been evaluated
+     * @param context the execution context
+     * @return whether a matching key was found
+     * @throws SalinasException if the work area has no active order, or an
+     * error occurs while reading the index
+     */
+    public static boolean seek(WorkArea workArea, Object key, SalinasExecutionContext context)
+            throws SalinasException {
+        final SalinasConfig config = context.getConfig();
+        context.recordsAccessed(1, null);
+        boolean found = workArea.seek(key, config.isNear());
+
+        if (found && config.isExact() && key instanceof String) {
+            // The index matches on the leading characters of character keys,
+            // so the whole key of the record that was found must be checked.
+            // Since that is the first key with the given prefix, no other
+            // record can be an exact match if this one is not.
+            final Optional<IndexOptions> activeIndex = workArea.getActiveIndex();
+            if (activeIndex.isPresent()) {
+                final String recordKey = (String) KeyExpressions.evaluate(
+                        activeIndex.get().getExpressionSource(), context)
+                        .asType(SalinasType.STRING);
+                if (!KeyExpressions.stripTrailing(recordKey)
+                        .equals(KeyExpressions.stripTrailing((String) key))) {
+                    found = false;
+                    workArea.setFound(false);
+                    if (!config.isNear()) {
+                        try {
+                            workArea.gotoEof();
+                        } catch (IOException ex) {
+                            throw new SalinasException("Error moving record pointer", ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+}
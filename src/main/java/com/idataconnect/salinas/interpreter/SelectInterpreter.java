@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkAreaManager;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Interpreter delegate for the SELECT statement, which makes a work area
+ * the current work area.
+ */
+public class SelectInterpreter implements InterpreterDelegate {
+
+    private static final SelectInterpreter INSTANCE = new SelectInterpreter();
+
+    public static SelectInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private SelectInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final WorkAreaManager wam = context.getWorkAreaManager();
+        final int id = workAreaId(node.getChild(0), context);
+        wam.select(id);
+        return new SalinasValue(BigDecimal.valueOf(id), SalinasType.NUMBER);
+    }
+
+    /**
+     * Gets the number of the work area named by a node, which is either an
+     * alias written as a plain word, or an expression whose value is an
+     * alias or a work area number. A number of zero is the first unused work
+     * area, and the letters <code>A</code> to <code>J</code> are the work
+     * areas 1 to 10 when they are not the alias of an open table.
+     *
+     * @param node the node naming the work area
+     * @param context the execution context
+     * @return the work area number
+     * @throws SalinasException if no work area has the alias
+     */
+    static int workAreaId(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final WorkAreaManager wam = context.getWorkAreaManager();
+        final Object value = node.getId() == JJTIDENTIFIER ? node.jjtGetValue()
+                : SalinasInterpreter.interpret(node, context).getValue();
+        if (value instanceof BigDecimal) {
+            final int id = ((BigDecimal) value).intValue();
+            return id == 0 ? wam.getNextAvailableId() : id;
+        }
+
+        final String alias = String.valueOf(value).trim();
+        final Optional<Integer> id = wam.getWorkAreaId(alias);
+        if (id.isPresent()) {
+            return id.get();
+        }
+        if (alias.length() == 1) {
+            final char letter = Character.toUpperCase(alias.charAt(0));
+            if (letter >= 'A' && letter <= 'J') {
+                return letter - 'A' + 1;
+            }
+        }
+        throw new SalinasException("Alias not found: " + alias,
+                node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+    }
+}
@@ -4,30 +4,30 @@
 package com.idataconnect.salinas.interpreter;
 
 import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.Relation;
 import com.idataconnect.salinas.data.SalinasType;
 import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.data.WorkAreaManager;
 import com.idataconnect.salinas.parser.SalinasNode;
 import com.idataconnect.salinas.parser.SalinasParserTreeConstants;
 import java.math.BigDecimal;
 import java.io.File;
+import java.util.Optional;
 
 /**
  * Interpreter delegate for SET statements and expressions.
  */
 public class SetInterpreter implements InterpreterDelegate {
 
-    private static SetInterpreter instance;
+    private static final SetInterpreter INSTANCE = new SetInterpreter();
 
     /**
      * Gets a singleton instance of the set interpreter.
      * @return a singleton instance
      */
     public static SetInterpreter getInstance() {
-        if (instance == null) {
-            instance = new SetInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -45,6 +45,20 @@ public class SetInterpreter implements InterpreterDelegate {
                 return new SalinasValue(BigDecimal.valueOf(context.getConfig().getDecimals()), SalinasType.NUMBER);
             } else if (setting.equals("PRECISION")) {
                 return new SalinasValue(BigDecimal.valueOf(context.getConfig().getPrecision()), SalinasType.NUMBER);
+            } else if (setting.equals("NEAR")) {
+                return new SalinasValue(context.getConfig().isNear() ? "ON" : "OFF", SalinasType.STRING);
+            } else if (setting.equals("EXACT")) {
+                return new SalinasValue(context.getConfig().isExact() ? "ON" : "OFF", SalinasType.STRING);
+            } else if (setting.equals("DELETED")) {
+                return new SalinasValue(context.getConfig().isDeleted() ? "ON" : "OFF", SalinasType.STRING);
+            } else if (setting.equals("REPROCESS")) {
+                final long timeout = context.getConfig().getLockTimeout();
+                return new SalinasValue(timeout < 0 ? BigDecimal.valueOf(-1)
+                        : BigDecimal.valueOf(timeout, 3), SalinasType.NUMBER);
+            } else if (setting.equals("INDEXUPDATE")) {
+                final Optional<WorkArea> wa = context.getWorkAreaManager().getCurrentWorkArea();
+                return new SalinasValue(wa.isPresent() && wa.get().isIndexUpdateDeferred()
+                        ? "OFF" : "ON", SalinasType.STRING);
             }
             return SalinasValue.NULL;
         }
@@ -81,6 +95,118 @@ public class SetInterpreter implements InterpreterDelegate {
             return v;
         }
 
+        // Handle SET NEAR ON|OFF
+        if (identifierName.equalsIgnoreCase("near")) {
+            if (!(node.jjtGetValue() instanceof Boolean)) {
+                throw new SalinasException("Invalid usage of SET NEAR");
+            }
+
+            context.getConfig().setNear((Boolean) node.jjtGetValue());
+            return SalinasValue.valueOf(node.jjtGetValue());
+        }
+
+        // Handle SET EXACT ON|OFF
+        if (identifierName.equalsIgnoreCase("exact")) {
+            if (!(node.jjtGetValue() instanceof Boolean)) {
+                throw new SalinasException("Invalid usage of SET EXACT");
+            }
+
+            context.getConfig().setExact((Boolean) node.jjtGetValue());
+            return SalinasValue.valueOf(node.jjtGetValue());
+        }
+
+        // Handle SET REPROCESS TO <seconds>, the time to wait for a lock,
+        // where a negative number waits for as long as it takes
+        if (identifierName.equalsIgnoreCase("reprocess")) {
+            if (node.jjtGetNumChildren() == 1) {
+                throw new SalinasException("Invalid usage of SET REPROCESS");
+            }
+
+            final SalinasValue v = SalinasInterpreter.interpret(
+                    node.getChild(1), context);
+            final BigDecimal seconds = (BigDecimal) v.asType(SalinasType.NUMBER);
+            context.getConfig().setLockTimeout(seconds.signum() < 0 ? -1
+                    : seconds.movePointRight(3).longValue());
+            return v;
+        }
+
+        if (identifierName.equalsIgnoreCase("deleted")) {
+            if (!(node.jjtGetValue() instanceof Boolean)) {
+                throw new SalinasException("Invalid usage of SET DELETED");
+            }
+
+            final boolean deleted = (Boolean) node.jjtGetValue();
+            context.getConfig().setDeleted(deleted);
+            for (WorkArea wa : context.getWorkAreaManager().getWorkAreas()) {
+                wa.setDeletedHidden(deleted);
+            }
+            return SalinasValue.valueOf(node.jjtGetValue());
+        }
+
+        // Handle SET INDEXUPDATE ON|OFF, which defers the index updates of
+        // the current work area while it is OFF
+        if (identifierName.equalsIgnoreCase("indexupdate")) {
+            if (!(node.jjtGetValue() instanceof Boolean)) {
+                throw new SalinasException("Invalid usage of SET INDEXUPDATE");
+            }
+            final Optional<WorkArea> wa = context.getWorkAreaManager().getCurrentWorkArea();
+            if (wa.isEmpty()) {
+                throw new SalinasException("No table is open in the current work area.");
+            }
+
+            try {
+                if ((Boolean) node.jjtGetValue()) {
+                    wa.get().updateIndexes();
+                } else {
+                    wa.get().deferIndexUpdates();
+                }
+            } catch (java.io.IOException ex) {
+                throw new SalinasException("Error updating indexes of work area "
+                        + wa.get().getAlias(), ex);
+            }
+            return SalinasValue.valueOf(node.jjtGetValue());
+        }
+
+        // Handle SET FILTER TO [<condition>]
+        if (identifierName.equalsIgnoreCase("filter")) {
+            final Optional<WorkArea> wa = context.getWorkAreaManager().getCurrentWorkArea();
+            if (wa.isEmpty()) {
+                throw new SalinasException("No table is open in the current work area.");
+            }
+
+            if (node.jjtGetNumChildren() == 1) {
+                wa.get().setFilter(null);
+            } else {
+                wa.get().setFilter(new IndexedCondition(node.getChild(1), wa.get(), context));
+            }
+            return SalinasValue.NULL;
+        }
+
+        // Handle SET RELATION TO [<key> INTO <alias> [, <key> INTO <alias> ...]]
+        if (identifierName.equalsIgnoreCase("relation")) {
+            final WorkAreaManager wam = context.getWorkAreaManager();
+            final Optional<WorkArea> wa = wam.getCurrentWorkArea();
+            if (wa.isEmpty()) {
+                throw new SalinasException("No table is open in the current work area.");
+            }
+            if (node.jjtGetNumChildren() % 2 == 0) {
+                throw new SalinasException("Invalid usage of SET RELATION");
+            }
+
+            wam.clearRelations(wa.get());
+            for (int i = 1; i < node.jjtGetNumChildren(); i += 2) {
+                final SalinasNode key = node.getChild(i);
+                final int id = SelectInterpreter.workAreaId(node.getChild(i + 1).getChild(0), context);
+                final Optional<WorkArea> child = wam.getWorkArea(id);
+                if (child.isEmpty()) {
+                    throw new SalinasException("No table is open in work area " + id);
+                }
+                wam.setRelation(new Relation(wa.get(), child.get(),
+                        () -> SalinasInterpreter.interpret(key, context).getValue()));
+            }
+            return SalinasValue.NULL;
+        }
+
         // Handle SET DIRECTORY TO <path> or SET DEFAULT TO <path>
         if (identifierName.equalsIgnoreCase("directory") || identifierName.equalsIgnoreCase("default")) {
             File dir = null;
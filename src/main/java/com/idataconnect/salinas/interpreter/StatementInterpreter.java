@@ -12,18 +12,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
  */
 public class StatementInterpreter implements InterpreterDelegate {
 
-    private static StatementInterpreter instance;
+    private static final StatementInterpreter INSTANCE = new StatementInterpreter();
 
     /**
      * Gets a singleton instance of the statement interpreter.
      * @return a singleton instance
      */
     public static StatementInterpreter getInstance() {
-        if (instance == null) {
-            instance = new StatementInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.RecordCursor;
+import com.idataconnect.salinas.data.RecordWriter;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.parser.IndexOptions;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Interpreter for the TOTAL command, which writes a table with one record
+ * for each key of the current table. Each record has the fields of the
+ * first record with its key, and the sums of the numeric fields of all of
+ * the records with its key. Memo fields are not copied.
+ * <p>
+ * When the active order has the same key expression, the records are
+ * grouped as they are visited, and each group is written as soon as the key
+ * changes. Otherwise, the groups are kept in memory until every record has
+ * been visited, and when there are too many of them, they are sorted and
+ * written to temporary files, which are merged by key at the end. The
+ * records are appended to the new table in blocks, rather than one field at
+ * a time through the driver.
+ */
+public class TotalInterpreter implements InterpreterDelegate {
+
+    private static final TotalInterpreter INSTANCE = new TotalInterpreter();
+
+    /**
+     * The most groups which are kept in memory when the records are not
+     * ordered by the key, before they are written to a temporary file.
+     */
+    private static final int MAX_GROUPS = 1_000_000;
+
+    public static TotalInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private TotalInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final Optional<WorkArea> current = context.getWorkAreaManager().getCurrentWorkArea();
+        if (current.isEmpty()) {
+            throw new SalinasException("No table is open in the current work area.",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+        final WorkArea workArea = current.get();
+        final DBF dbf = workArea.getDbf();
+        final String keySource = (String) node.jjtGetValue();
+        final SalinasNode key = node.getChild(0);
+        final File file = dataFile(node.getChild(1), ".dbf", context);
+        if (dbf.getFile() != null && file.getAbsoluteFile().equals(dbf.getFile().getAbsoluteFile())) {
+            throw new SalinasException("Cannot TOTAL a table into itself",
+                    node.getFilename(), node.getBeginLine(), node.getBeginColumn());
+        }
+
+        // The fields of the new table, and the fields which are summed
+        final List<DBFField> sourceFields = dbf.getStructure().getFields();
+        final List<DBFField> fields = new ArrayList<>();
+        final List<Integer> copied = new ArrayList<>();
+        for (int i = 0; i < sourceFields.size(); i++) {
+            final DBFField field = sourceFields.get(i);
+            if (field.getFieldType() != DBFField.FieldType.M) {
+                fields.add(new DBFField(field.getFieldName(), field.getFieldType(),
+                        field.getFieldLength(), field.getDecimalLength()));
+                copied.add(i + 1);
+            }
+        }
+        final List<Integer> totaled = totaledFields(node, workArea);
+        final int[] targets = new int[totaled.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = copied.indexOf(totaled.get(i));
+        }
+
+        final GroupedAggregation.Strategy strategy = isOrderedBy(workArea, keySource)
+                ? GroupedAggregation.Strategy.STREAM : GroupedAggregation.Strategy.HASH;
+        final RecordScope scope = RecordScope.fromNode(node, RecordScope.Kind.ALL, 0, context);
+        final int groups;
+        try {
+            DBF.create(file, fields).close();
+            try (RecordWriter writer = new RecordWriter(file)) {
+                final GroupedAggregation<Object[]> grouping = new GroupedAggregation<>(
+                        Collections.nCopies(targets.length, AggregateFunction.SUM), strategy,
+                        MAX_GROUPS, context.getConfig().getPrecision(),
+                        (value, row, results) -> {
+                            for (int i = 0; i < targets.length; i++) {
+                                row[targets[i]] = results[i].getValue();
+                            }
+                            try {
+                                writer.append(row);
+                            } catch (IOException ex) {
+                                throw new SalinasException("Error writing " + file, ex);
+                            }
+                        });
+
+                final SalinasValue[] values = new SalinasValue[targets.length];
+                final RecordCursor cursor = scope.open(workArea, context);
+                while (cursor.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = SalinasValue.valueOf(workArea.getFieldValue(totaled.get(i)));
+                    }
+                    grouping.add(SalinasInterpreter.interpret(key, context), values,
+                            () -> readRow(workArea, copied));
+                }
+                grouping.finish();
+                groups = grouping.getGroupCount();
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error totaling work area " + workArea.getAlias()
+                    + " to " + file, ex);
+        }
+
+        return new SalinasValue(BigDecimal.valueOf(groups), SalinasType.NUMBER);
+    }
+
+    /**
+     * Gets the numbers of the fields which are summed, which are the fields
+     * of the <code>FIELDS</code> clause, or every numeric field.
+     */
+    private static List<Integer> totaledFields(SalinasNode node, WorkArea workArea)
+            throws SalinasException {
+        final DBF dbf = workArea.getDbf();
+        final List<DBFField> fields = dbf.getStructure().getFields();
+        final List<Integer> totaled = new ArrayList<>();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() != JJTFIELDS) {
+                continue;
+            }
+            for (int f = 0; f < child.jjtGetNumChildren(); f++) {
+                final String name = (String) child.getChild(f).jjtGetValue();
+                final int field = dbf.getFieldNumberByName(name);
+                if (field < 1 || !isNumeric(fields.get(field - 1))) {
+                    throw new SalinasException("Field " + name
+                            + " is not a numeric field of work area " + workArea.getAlias(),
+                            child.getFilename(), child.getBeginLine(), child.getBeginColumn());
+                }
+                totaled.add(field);
+            }
+            return totaled;
+        }
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (isNumeric(fields.get(i))) {
+                totaled.add(i + 1);
+            }
+        }
+        return totaled;
+    }
+
+    private static boolean isNumeric(DBFField field) {
+        return field.getFieldType() == DBFField.FieldType.N
+                || field.getFieldType() == DBFField.FieldType.F;
+    }
+
+    /**
+     * Gets whether the records of a work area are visited in the order of
+     * the given key expression, so that the records of each key are
+     * adjacent. A unique index does not qualify, since it only has the first
+     * record of each key.
+     */
+    private static boolean isOrderedBy(WorkArea workArea, String keySource) {
+        final Optional<IndexOptions> index = workArea.getActiveIndex();
+        return index.isPresent() && !index.get().isUnique()
+                && index.get().getExpressionSource() != null
+                && index.get().getExpressionSource().trim()
+                        .equalsIgnoreCase(keySource.trim());
+    }
+
+    private static Object[] readRow(WorkArea workArea, List<Integer> fields)
+            throws SalinasException {
+        final Object[] row = new Object[fields.size()];
+        try {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = workArea.getFieldValue(fields.get(i));
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error reading record of work area "
+                    + workArea.getAlias(), ex);
+        }
+        return row;
+    }
+
+    /**
+     * Gets the file named by a node, which is either a name written as a
+     * plain word, or an expression whose value is the name. A name without
+     * an extension is given the default extension, and a relative name is
+     * resolved against the current directory.
+     *
+     * @param node the node naming the file
+     * @param extension the default extension, including the dot
+     * @param context the execution context
+     * @return the file
+     * @throws SalinasException if the name could not be evaluated
+     */
+    static File dataFile(SalinasNode node, String extension, SalinasExecutionContext context)
+            throws SalinasException {
+        String filename;
+        if (node.getId() == JJTIDENTIFIER) {
+            filename = (String) node.jjtGetValue();
+        } else {
+            filename = (String) SalinasInterpreter.interpret(node, context)
+                    .asType(SalinasType.STRING);
+        }
+        if (!new File(filename).getName().contains(".")) {
+            filename = filename + extension;
+        }
+        File file = new File(filename);
+        if (!file.isAbsolute() && context.getConfig().getCurrentDirectory() != null) {
+            file = new File(context.getConfig().getCurrentDirectory(), filename);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011-2026 i Data Connect!
+ */
+package com.idataconnect.salinas.interpreter;
+
+import com.idataconnect.salinas.SalinasException;
+import com.idataconnect.salinas.data.SalinasType;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.data.WorkAreaManager;
+import com.idataconnect.salinas.parser.SalinasNode;
+import static com.idataconnect.salinas.parser.SalinasParserTreeConstants.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Interpreter delegate for the UNLOCK statement, which releases the locks
+ * taken by <code>RLOCK()</code> and <code>FLOCK()</code>.
+ * <p>
+ * <code>UNLOCK</code> releases the record and file locks of the current
+ * work area, or of the work area given by <code>IN</code>, and
+ * <code>UNLOCK RECORD &lt;recno&gt;</code> releases the lock of a single
+ * record. <code>UNLOCK ALL</code> releases the locks of every work area.
+ */
+public class UnlockInterpreter implements InterpreterDelegate {
+
+    private static final UnlockInterpreter INSTANCE = new UnlockInterpreter();
+
+    public static UnlockInterpreter getInstance() {
+        return INSTANCE;
+    }
+
+    private UnlockInterpreter() {}
+
+    @Override
+    public SalinasValue interpret(SalinasNode node, SalinasExecutionContext context)
+            throws SalinasException {
+        final WorkAreaManager wam = context.getWorkAreaManager();
+        int id = wam.getCurrentWorkAreaId();
+        Integer recno = null;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final SalinasNode child = node.getChild(i);
+            if (child.getId() == JJTIN) {
+                id = SelectInterpreter.workAreaId(child.getChild(0), context);
+            } else if (child.getId() == JJTSCOPE) {
+                recno = ((BigDecimal) SalinasInterpreter.interpret(child.getChild(0), context)
+                        .asType(SalinasType.NUMBER)).intValue();
+            }
+        }
+
+        try {
+            if (Boolean.TRUE.equals(node.jjtGetValue())) {
+                for (WorkArea workArea : wam.getWorkAreas()) {
+                    workArea.unlock();
+                }
+                return SalinasValue.NULL;
+            }
+
+            final Optional<WorkArea> workArea = wam.getWorkArea(id);
+            if (workArea.isPresent()) {
+                if (recno != null) {
+                    workArea.get().unlockRecord(recno);
+                } else {
+                    workArea.get().unlock();
+                }
+            }
+        } catch (IOException ex) {
+            throw new SalinasException("Error during UNLOCK: " + ex.getMessage(), ex);
+        }
+        return SalinasValue.NULL;
+    }
+}
@@ -15,7 +15,9 @@ import java.math.BigDecimal;
 import java.util.Optional;
 
 /**
- * Interpreter delegate implementation for USE statement.
+ * Interpreter delegate implementation for USE statement. A table opened
+ * with <code>NOUPDATE</code> or <code>READONLY</code> cannot be changed, and
+ * its records are read from the mapped file.
  */
 public class UseInterpreter implements InterpreterDelegate {
 
@@ -65,8 +67,9 @@ public class UseInterpreter implements InterpreterDelegate {
         }
 
         SalinasValue orderValue = null;
+        boolean readOnly = false;
 
-        // Process remaining children (IN, ALIAS, ORDER)
+        // Process remaining children (IN, ALIAS, ORDER, NOUPDATE)
         for (int i = nextChild; i < node.jjtGetNumChildren(); i++) {
             SalinasNode child = (SalinasNode) node.jjtGetChild(i);
             if (child.getId() == JJTIN) {
@@ -79,6 +82,8 @@ public class UseInterpreter implements InterpreterDelegate {
                 alias = (String) child.jjtGetValue();
             } else if (child.getId() == JJTORDER) {
                 orderValue = SalinasInterpreter.interpret((SalinasNode) child.jjtGetChild(0), context);
+            } else if (child.getId() == JJTNOUPDATE) {
+                readOnly = true;
             }
         }
 
@@ -98,13 +103,15 @@ public class UseInterpreter implements InterpreterDelegate {
                 dbfFile = new File(config.getCurrentDirectory(), filename);
             }
             DBF dbf = DBF.use(dbfFile);
+            WorkArea workArea = new WorkArea(alias, dbf, readOnly);
+            workArea.setDeletedHidden(config.isDeleted());
             
             if (orderValue != null) {
                 Object order = orderValue.getValue();
-                dbf.setOrder(order);
+                workArea.setOrder(order);
             }
 
-            wam.use(workAreaId, new WorkArea(alias, dbf));
+            wam.use(workAreaId, workArea);
         } catch (IOException ex) {
             throw new SalinasException("Error opening DBF: " + filename, ex);
         }
@@ -14,18 +14,14 @@ import com.idataconnect.salinas.parser.SalinasNode;
  */
 public class WhileInterpreter implements InterpreterDelegate {
 
-    private static WhileInterpreter instance;
+    private static final WhileInterpreter INSTANCE = new WhileInterpreter();
 
     /**
      * Gets a singleton instance of the WHILE loop interpreter.
      * @return a singleton instance
      */
     public static WhileInterpreter getInstance() {
-        if (instance == null) {
-            instance = new WhileInterpreter();
-        }
-
-        return instance;
+        return INSTANCE;
     }
 
     @Override
@@ -44,6 +40,7 @@ public class WhileInterpreter implements InterpreterDelegate {
                     return returning;
                 }
             }
+            context.checkCancelled(node);
         }
 
         return returnValue;
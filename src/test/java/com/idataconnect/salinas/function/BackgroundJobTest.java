@@ -0,0 +1,130 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.idataconnect.salinas.SalinasConfig;
+import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
+
+/**
+ * Tests for programs run in the background with DO ... ASYNC.
+ */
+public class BackgroundJobTest {
+
+    @TempDir
+    Path dir;
+
+    private ScriptEngine salinas;
+    private StringWriter output;
+
+    @BeforeEach
+    public void setup() {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+        output = new StringWriter();
+        salinas.getContext().setWriter(output);
+    }
+
+    private String program(String name, String source) throws Exception {
+        final File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file.getAbsolutePath();
+    }
+
+    @Test
+    public void testJobRunsInFork() throws Exception {
+        final String report = program("report.prg",
+                "FOR i = 1 TO 3\n? 'line'\nNEXT\nresult = 42\n");
+        salinas.eval("DO '" + report + "' ASYNC TO h");
+
+        assertEquals("DONE", salinas.eval("WAITJOB(h)"));
+        assertEquals("DONE", salinas.eval("JOBSTATUS(h)"));
+        final String jobOutput = (String) salinas.eval("JOBOUTPUT(h)");
+        assertEquals(3, jobOutput.split("line", -1).length - 1, jobOutput);
+
+        // The output and variables of the job stay in the job
+        assertFalse(output.toString().contains("line"));
+        assertNull(salinas.eval("result"));
+        assertEquals(Boolean.FALSE, salinas.eval("CANCELJOB(h)"));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final String forever = program("forever.prg", "DO WHILE .T.\nx = 1\nENDDO\n");
+        salinas.eval("DO '" + forever + "' ASYNC TO h");
+
+        assertEquals("RUNNING", salinas.eval("JOBSTATUS(h)"));
+        assertEquals(Boolean.TRUE, salinas.eval("CANCELJOB(h)"));
+        assertEquals("CANCELLED", salinas.eval("WAITJOB(h, 10000)"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final String failing = program("failing.prg", "USE 'missing.dbf'\n");
+        salinas.eval("DO '" + failing + "' ASYNC TO h");
+        assertEquals("FAILED", salinas.eval("WAITJOB(h)"));
+        assertTrue(salinas.eval("JOBOUTPUT(h)").toString().isEmpty());
+    }
+
+    @Test
+    public void testOutputKept() throws Exception {
+        final SalinasConfig config = new SalinasConfig();
+        config.setMaxJobOutputChars(100);
+        salinas.getContext().setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        final String chatty = program("chatty.prg", "FOR i = 1 TO 1000\n? 'line'\nNEXT\n? 'last'\n");
+        salinas.eval("DO '" + chatty + "' ASYNC TO h");
+        assertEquals("DONE", salinas.eval("WAITJOB(h)"));
+
+        // Only the last of the output is kept
+        final String jobOutput = (String) salinas.eval("JOBOUTPUT(h)");
+        assertTrue(jobOutput.length() <= 100, jobOutput);
+        assertTrue(jobOutput.endsWith("last\n"), jobOutput);
+    }
+
+    @Test
+    public void testEndedJobsDropped() throws Exception {
+        final String quick = program("quick.prg", "x = 1\n");
+        salinas.eval("DO '" + quick + "' ASYNC TO first\nWAITJOB(first)");
+        salinas.eval("FOR i = 1 TO 100\nDO '" + quick + "' ASYNC TO h\nWAITJOB(h)\nNEXT");
+        assertEquals("DONE", salinas.eval("JOBSTATUS(h)"));
+        assertEquals("DONE", salinas.eval("JOBSTATUS(first + 1)"));
+        salinas.eval("DO '" + quick + "' ASYNC TO h\nWAITJOB(h)");
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("JOBSTATUS(first)"));
+        assertTrue(ex.getMessage().contains("unknown job"), ex.getMessage());
+    }
+
+    @Test
+    public void testWaitStopsAtDeadline() throws Exception {
+        final String forever = program("forever.prg", "DO WHILE .T.\nx = 1\nENDDO\n");
+        salinas.eval("DO '" + forever + "' ASYNC TO h");
+        final SalinasExecutionContext context = new SalinasExecutionContext(salinas.getContext());
+        context.setDeadline(200, TimeUnit.MILLISECONDS);
+
+        // WAITJOB without a timeout still stops at the deadline of the caller
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("WAITJOB(h)"));
+        assertTrue(ex.getMessage().contains("Script deadline exceeded"), ex.getMessage());
+
+        context.clearCancellation();
+        assertEquals(Boolean.TRUE, salinas.eval("CANCELJOB(h)"));
+        assertEquals("CANCELLED", salinas.eval("WAITJOB(h)"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.salinas.SalinasSession;
+import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
+
+/**
+ * Tests for stopping scripts by cancellation and deadlines.
+ */
+public class CancellationTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        final SalinasExecutionContext context = new SalinasExecutionContext(salinas.getContext());
+        context.setDeadline(100, TimeUnit.MILLISECONDS);
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("DO WHILE .T.\nx = 1\nENDDO"));
+        assertTrue(ex.getMessage().contains("Script deadline exceeded"), ex.getMessage());
+
+        context.clearCancellation();
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("x = 2\nx"));
+    }
+
+    @Test
+    public void testCancelledInFunctionCalls() throws Exception {
+        new SalinasExecutionContext(salinas.getContext()).cancel();
+        final ScriptException ex = assertThrows(ScriptException.class, () -> salinas.eval(
+                "FUNCTION twice(n)\nRETURN n * 2\nENDFUNC\n"
+                + "FOR i = 1 TO 100000\ny = twice(i)\nNEXT"));
+        assertTrue(ex.getMessage().contains("Script cancelled"), ex.getMessage());
+    }
+
+    @Test
+    public void testCancelSessionFromAnotherThread() throws Exception {
+        final SalinasSession session = new SalinasSession();
+        final CompletableFuture<Object> run = CompletableFuture.supplyAsync(() -> {
+            try {
+                return session.eval("DO WHILE .T.\nx = 1\nENDDO");
+            } catch (ScriptException ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        });
+        Thread.sleep(50);
+        session.getExecContext().cancel();
+
+        final ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> run.get(10, TimeUnit.SECONDS));
+        assertTrue(ex.getCause().getMessage().contains("Script cancelled"),
+                ex.getCause().getMessage());
+
+        // A reset session runs scripts again
+        session.reset(false);
+        assertEquals(BigDecimal.ONE, session.eval("x = 1\nx"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.salinas.SalinasExecutor;
+import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
+
+/**
+ * Tests for scripts which are run by an executor.
+ */
+public class ExecutorTest {
+
+    private Compilable salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("salinas");
+        salinas = (Compilable) engine;
+    }
+
+    @Test
+    public void testManyScripts() throws Exception {
+        final CompiledScript script = salinas.compile("t = 0\nFOR i = 1 TO n\nt = t + i\nNEXT\nt");
+        try (SalinasExecutor executor = new SalinasExecutor(1)) {
+            final List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 1; i <= 200; i++) {
+                final ScriptContext context = new SimpleScriptContext();
+                context.setAttribute("N", BigDecimal.valueOf(i), ScriptContext.ENGINE_SCOPE);
+                results.add(executor.submit(script, context));
+            }
+            for (int i = 1; i <= results.size(); i++) {
+                assertEquals(BigDecimal.valueOf(i * (i + 1) / 2), results.get(i - 1).get());
+            }
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        try (SalinasExecutor executor = new SalinasExecutor(1)) {
+            final CompletableFuture<Object> result = executor.submit(
+                    salinas.compile("x = UNKNOWNFUNC()"), new SimpleScriptContext());
+            final ExecutionException ex = assertThrows(ExecutionException.class, result::get);
+            assertTrue(ex.getCause() instanceof ScriptException);
+        }
+    }
+
+    @Test
+    public void testContextCancellation() throws Exception {
+        final CompiledScript forever = salinas.compile("DO WHILE .T.\nx = 1\nENDDO");
+        final ScriptContext context = new SimpleScriptContext();
+        final SalinasExecutionContext execContext = new SalinasExecutionContext(context);
+        try (SalinasExecutor executor = new SalinasExecutor(1)) {
+            // The deadline of the context is kept
+            execContext.setDeadline(100, TimeUnit.MILLISECONDS);
+            final ExecutionException ex = assertThrows(ExecutionException.class,
+                    () -> executor.submit(forever, context).get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause().getMessage().contains("Script deadline exceeded"),
+                    ex.getCause().getMessage());
+
+            // Cancelling the future cancels the context
+            execContext.clearCancellation();
+            executor.submit(forever, context).cancel(true);
+        }
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.compile("FOR i = 1 TO 5000\nx = i\nNEXT").eval(context));
+        assertTrue(ex.getMessage().contains("Script cancelled"), ex.getMessage());
+    }
+
+    @Test
+    public void testCancelAndFileLimit() throws Exception {
+        final File table = File.createTempFile("executor", ".dbf");
+        table.deleteOnExit();
+        final CompiledScript forever = salinas.compile("? 'started'\nDO WHILE .T.\nx = 1\nENDDO");
+        final CountDownLatch started = new CountDownLatch(1);
+        final ScriptContext context = new SimpleScriptContext();
+        context.setWriter(new StringWriter() {
+            @Override
+            public void flush() {
+                started.countDown();
+            }
+        });
+        try (SalinasExecutor executor = new SalinasExecutor(1)) {
+            final CompletableFuture<Object> first = executor.submit(forever, context, table);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // A script which is cancelled while it waits leaves the queue
+            final CompletableFuture<Object> dropped = executor.submit(salinas.compile("1"),
+                    new SimpleScriptContext(), table);
+            final CompletableFuture<Object> second = executor.submit(salinas.compile("2"),
+                    new SimpleScriptContext(), table);
+
+            // The second script waits for the first to let go of the table
+            assertThrows(TimeoutException.class,
+                    () -> second.get(200, TimeUnit.MILLISECONDS));
+            assertFalse(first.isDone());
+            dropped.cancel(true);
+            assertEquals(2, executor.getRunningCount());
+
+            first.cancel(true);
+            assertThrows(CancellationException.class, first::get);
+            assertEquals(BigDecimal.valueOf(2), second.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.interpreter.SalinasExecutionContext;
+
+/**
+ * Tests for contexts forked from a prepared context.
+ */
+public class ForkTest {
+
+    private ScriptEngine salinas;
+    private SalinasExecutionContext base;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+        salinas.eval("rate = 5\nitems[1] = 10\nitems[2] = 20\n"
+                + "FUNCTION price(qty)\nRETURN qty * rate\nENDFUNC");
+        base = new SalinasExecutionContext(salinas.getContext());
+    }
+
+    @Test
+    public void testChangesStayInFork() throws Exception {
+        final ScriptContext first = base.fork().getScriptContext();
+        final ScriptContext second = base.fork().getScriptContext();
+
+        assertEquals(BigDecimal.valueOf(15), salinas.eval("price(3)", first));
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("rate = 7\nitems[1] = 1\nrate", first));
+        assertEquals(BigDecimal.valueOf(21), salinas.eval("price(3)", first));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("extra = 3\nextra", first));
+        assertEquals(BigDecimal.valueOf(8), salinas.eval("FOR i = 1 TO 3\nrate = rate + 1\nNEXT\nrate", second));
+
+        // Neither fork sees the changes of the other, nor does the base
+        assertEquals(BigDecimal.ONE, salinas.eval("items[1]", first));
+        assertEquals(BigDecimal.valueOf(10), salinas.eval("items[1]", second));
+        assertNull(salinas.eval("extra", second));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate"));
+        assertEquals(BigDecimal.valueOf(10), salinas.eval("items[1]"));
+    }
+
+    @Test
+    public void testBaseChangedAfterFork() throws Exception {
+        final ScriptContext child = base.fork().getScriptContext();
+        salinas.eval("rate = 6\nSET DECIMALS TO 4");
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("rate"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate", child));
+
+        // A fork of a fork sees its parent as it was when it was forked
+        final ScriptContext grandchild = new SalinasExecutionContext(child).fork().getScriptContext();
+        salinas.eval("rate = 9", child);
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate", grandchild));
+        assertEquals(BigDecimal.valueOf(25), salinas.eval("price(5)", grandchild));
+    }
+
+    @Test
+    public void testOldBindingsKept() throws Exception {
+        // A host which kept the bindings from before the fork cannot change
+        // the variables the child was forked with
+        final Bindings old = salinas.getBindings(ScriptContext.ENGINE_SCOPE);
+        final ScriptContext child = base.fork().getScriptContext();
+        ((SalinasValue) old.get("RATE")).setValue(BigDecimal.valueOf(50));
+        old.put("ITEMS", new SalinasValue(BigDecimal.ONE));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate", child));
+        assertEquals(BigDecimal.valueOf(20), salinas.eval("items[2]", child));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate"));
+    }
+
+    @Test
+    public void testManyForks() throws Exception {
+        final CompiledScript script = ((Compilable) salinas).compile("rate = rate + n\nprice(1)");
+        for (int i = 1; i <= 1000; i++) {
+            final ScriptContext fork = base.fork().getScriptContext();
+            fork.setAttribute("N", BigDecimal.valueOf(i), ScriptContext.ENGINE_SCOPE);
+            assertEquals(BigDecimal.valueOf(5 + i), script.eval(fork));
+        }
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("rate"));
+    }
+}
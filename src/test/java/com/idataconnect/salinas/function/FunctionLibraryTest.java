@@ -0,0 +1,61 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the function library which is shared by every engine.
+ */
+public class FunctionLibraryTest {
+
+    @AfterEach
+    public void uninstall() {
+        FunctionLibrary.install(null);
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        final FunctionLibrary library = FunctionLibrary.compile(new StringReader(
+                "rate = 5\nFUNCTION price(qty)\nRETURN qty * rate\nENDFUNC"),
+                new StringReader("FUNCTION double(x)\nRETURN x * 2\nENDFUNC"));
+        assertEquals(2, library.getFunctionCount());
+        FunctionLibrary.install(library);
+
+        final ScriptEngine first = new ScriptEngineManager().getEngineByName("salinas");
+        final ScriptEngine second = new ScriptEngineManager().getEngineByName("salinas");
+        assertEquals(BigDecimal.valueOf(15), first.eval("price(3)"));
+        assertEquals(BigDecimal.valueOf(30), second.eval("double(price(3))"));
+
+        // A constant changed by one engine is not changed in the library
+        assertEquals(BigDecimal.valueOf(35), first.eval("rate = 7\nprice(5)"));
+        assertEquals(BigDecimal.valueOf(25), second.eval("price(5)"));
+        assertEquals(BigDecimal.valueOf(5), library.getConstant("RATE").get().getValue());
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        final FunctionLibrary v1 = FunctionLibrary.compile(new StringReader(
+                "FUNCTION greet()\nRETURN 'hello'\nENDFUNC"));
+        final FunctionLibrary v2 = FunctionLibrary.compile(new StringReader(
+                "FUNCTION greet()\nRETURN 'hi'\nENDFUNC"));
+        assertTrue(v2.getVersion() > v1.getVersion());
+
+        final ScriptEngine salinas = new ScriptEngineManager().getEngineByName("salinas");
+        assertTrue(FunctionLibrary.replace(null, v1));
+        assertEquals("hello", salinas.eval("greet()"));
+        assertFalse(FunctionLibrary.replace(null, v2));
+        assertTrue(FunctionLibrary.replace(v1, v2));
+        assertSame(v2, FunctionLibrary.getInstalled());
+        assertEquals("hi", salinas.eval("greet()"));
+    }
+}
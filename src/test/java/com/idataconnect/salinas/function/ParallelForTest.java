@@ -0,0 +1,106 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.salinas.SalinasConfig;
+
+/**
+ * Tests for PARALLEL FOR loops.
+ */
+public class ParallelForTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+    }
+
+    @Test
+    public void testSumReduction() throws Exception {
+        salinas.eval("FOR i = 1 TO 2000\nitems[i] = i * 1\nNEXT\ntotal = 5\nscratch = 0");
+        assertEquals(BigDecimal.valueOf(2001005), ((BigDecimal) salinas.eval(
+                "PARALLEL FOR i = 1 TO 2000 REDUCE total\n"
+                + "scratch = items[i]\n"
+                + "total = total + scratch\n"
+                + "NEXT\n"
+                + "total")).stripTrailingZeros());
+
+        // Variables which are not reduced are not changed
+        assertEquals(BigDecimal.ZERO, salinas.eval("scratch"));
+    }
+
+    @Test
+    public void testMinMaxWithStep() throws Exception {
+        salinas.eval("lo = 100\nhi = 0\n"
+                + "PARALLEL FOR i = 10 TO 1 STEP -3 REDUCE lo MIN, hi MAX\n"
+                + "IF i < lo\nlo = i\nENDIF\n"
+                + "IF i > hi\nhi = i\nENDIF\n"
+                + "NEXT");
+        assertEquals(BigDecimal.ONE, salinas.eval("lo"));
+        assertEquals(BigDecimal.TEN, salinas.eval("hi"));
+    }
+
+    @Test
+    public void testRepeatedLoops() throws Exception {
+        // Each loop freezes the variables again, rather than stacking them
+        assertEquals(0, BigDecimal.valueOf(1200).compareTo((BigDecimal) salinas.eval(
+                "t = 0\n"
+                + "FOR r = 1 TO 300\n"
+                + "PARALLEL FOR i = 1 TO 4 REDUCE t\n"
+                + "t = t + 1\n"
+                + "NEXT\n"
+                + "NEXT\n"
+                + "t")));
+    }
+
+    @Test
+    public void testLocalVariables() throws Exception {
+        assertEquals(0, BigDecimal.valueOf(550).compareTo((BigDecimal) salinas.eval(
+                "FUNCTION weighted(n)\n"
+                + "t = 0\n"
+                + "PARALLEL FOR i = 1 TO n REDUCE t\n"
+                + "t = t + i * n\n"
+                + "NEXT\n"
+                + "RETURN t\n"
+                + "ENDFUNC\n"
+                + "weighted(10)")));
+    }
+
+    @Test
+    public void testConfiguredParallelism() throws Exception {
+        final SalinasConfig config = new SalinasConfig();
+        config.setParallelism(3);
+        salinas.getContext().setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        salinas.eval("t = 0\n"
+                + "PARALLEL FOR i = 1 TO 500 REDUCE t\n"
+                + "t = t + 1\n"
+                + "NEXT");
+        assertEquals(0, BigDecimal.valueOf(500).compareTo((BigDecimal) salinas.eval("t")));
+
+        // The loop ran on its own pool, rather than the common pool
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("salinas-parallel-3-")));
+    }
+
+    @Test
+    public void testWorkAreaStatementRejected() {
+        final ScriptException ex = assertThrows(ScriptException.class, () -> salinas.eval(
+                "PARALLEL FOR i = 1 TO 3\n"
+                + "USE 'missing.dbf'\n"
+                + "NEXT"));
+        assertTrue(ex.getMessage().contains("USE is not allowed in PARALLEL FOR"),
+                ex.getMessage());
+    }
+}
@@ -0,0 +1,78 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.salinas.ResourceLimitException;
+import com.idataconnect.salinas.SalinasConfig;
+
+/**
+ * Tests for the limits on the resources a script may use.
+ */
+public class ResourceLimitTest {
+
+    private ScriptEngine salinas;
+    private SalinasConfig config;
+    private StringWriter output;
+
+    @BeforeEach
+    public void setup() {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+        config = new SalinasConfig();
+        salinas.getContext().setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        output = new StringWriter();
+        salinas.getContext().setWriter(output);
+    }
+
+    @Test
+    public void testArraySize() throws Exception {
+        config.setMaxArrayElements(100);
+        assertEquals(BigDecimal.valueOf(100),
+                salinas.eval("a = {}\nFOR i = 1 TO 100\na[i] = i * 1\nNEXT\na[100]"));
+
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("a = {}\nFOR i = 1 TO 1000\na[i] = i * 1\nNEXT"));
+        assertTrue(ex.getMessage().contains("Array element limit of 100 elements exceeded"),
+                ex.getMessage());
+
+        // The elements of every array of the script are counted together
+        assertThrows(ScriptException.class,
+                () -> salinas.eval("FOR i = 1 TO 100\na = {1, 2}\nNEXT"));
+    }
+
+    @Test
+    public void testStringLength() throws Exception {
+        config.setMaxStringLength(1000);
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("s = 'x'\nDO WHILE .T.\ns = s + s\nENDDO"));
+        assertTrue(ex.getMessage().contains("String length limit of 1000 characters exceeded"),
+                ex.getMessage());
+        assertThrows(ScriptException.class, () -> salinas.eval("CENTER('x', 100000)"));
+    }
+
+    @Test
+    public void testOutputCountedPerRun() throws Exception {
+        config.setMaxOutputChars(50);
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("FOR i = 1 TO 100\n? 'line'\nNEXT"));
+        assertTrue(ex.getMessage().contains("Output limit of 50 characters exceeded"),
+                ex.getMessage());
+        assertTrue(ex.getSuppressed()[0] instanceof ResourceLimitException);
+        assertTrue(output.toString().length() <= 50);
+
+        // The count starts again for the next script
+        salinas.eval("? 'again'");
+        assertTrue(output.toString().endsWith("again\n"), output.toString());
+    }
+}
@@ -0,0 +1,77 @@
+package com.idataconnect.salinas.function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleScriptContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for an engine which is shared by several threads.
+ */
+public class ThreadingTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+    }
+
+    @Test
+    public void testThreadIsolated() throws Exception {
+        assertEquals("THREAD-ISOLATED", salinas.getFactory().getParameter("THREADING"));
+
+        salinas.eval("x = 1");
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                final int n = i;
+                results.add(executor.submit(() -> salinas.eval("x = " + n + "\n"
+                        + "FOR i = 1 TO 200\nx = x + 1\nNEXT\nx")));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(BigDecimal.valueOf(i + 200), results.get(i).get());
+            }
+            assertNotSame(salinas.getContext(), executor.submit(salinas::getContext).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(BigDecimal.ONE, salinas.eval("x"));
+    }
+
+    @Test
+    public void testCompiledScriptShared() throws Exception {
+        final CompiledScript script = ((Compilable) salinas).compile(
+                "t = 0\nFOR i = 1 TO n\nt = t + i\nNEXT\nt");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Object>> results = new ArrayList<>();
+            for (int i = 1; i <= 16; i++) {
+                final ScriptContext context = new SimpleScriptContext();
+                context.setAttribute("N", BigDecimal.valueOf(i * 10), ScriptContext.ENGINE_SCOPE);
+                results.add(executor.submit(() -> script.eval(context)));
+            }
+            for (int i = 1; i <= results.size(); i++) {
+                final int n = i * 10;
+                assertEquals(BigDecimal.valueOf(n * (n + 1) / 2), results.get(i - 1).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
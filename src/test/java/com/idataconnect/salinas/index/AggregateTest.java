@@ -0,0 +1,123 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.ResourceLimitException;
+import com.idataconnect.salinas.SalinasConfig;
+
+/**
+ * Tests for COUNT, SUM, AVERAGE and CALCULATE.
+ */
+public class AggregateTest {
+
+    private static final int RECORDS = 20000;
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("CODE", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5),
+                new DBFField("PRICE", DBFField.FieldType.N, 8, 2)),
+                RECORDS, i -> new Object[] {i % 2 == 0 ? "EVEN" : "ODD",
+                        BigDecimal.valueOf(i % 10), new BigDecimal("0.25")});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        assertEquals(BigDecimal.valueOf(RECORDS), salinas.eval("COUNT TO n\nn"));
+        assertEquals(BigDecimal.valueOf(RECORDS / 2), salinas.eval("COUNT FOR 'ODD' = CODE TO n\nn"));
+        assertEquals(Boolean.TRUE, salinas.eval("EOF()"));
+    }
+
+    @Test
+    public void testSum() throws Exception {
+        // Each run of ten records has quantities 1 to 9 and 0
+        assertEquals(BigDecimal.valueOf(RECORDS / 10 * 45),
+                salinas.eval("SUM QTY, QTY * PRICE TO q, v\nq"));
+        assertEquals(0, new BigDecimal(RECORDS / 10 * 45).divide(BigDecimal.valueOf(4))
+                .compareTo((BigDecimal) salinas.eval("v")));
+        assertEquals(0, new BigDecimal("4.5").compareTo(
+                (BigDecimal) salinas.eval("AVERAGE QTY TO a\na")));
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        assertEquals(BigDecimal.valueOf(45), salinas.eval("GO 1\nSUM QTY NEXT 10 TO q\nq"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("GO 1\nSUM QTY WHILE QTY < 4 TO q\nq"));
+    }
+
+    @Test
+    public void testCalculate() throws Exception {
+        salinas.eval("CALCULATE CNT(), MAX(QTY), MIN(QTY), SUM(QTY) FOR QTY > 7 TO c, hi, lo, s");
+        assertEquals(BigDecimal.valueOf(RECORDS / 10 * 2), salinas.eval("c"));
+        assertEquals(BigDecimal.valueOf(9), salinas.eval("hi"));
+        assertEquals(BigDecimal.valueOf(8), salinas.eval("lo"));
+        assertEquals(BigDecimal.valueOf(RECORDS / 10 * 17), salinas.eval("s"));
+    }
+
+    @Test
+    public void testRecordLimit() throws Exception {
+        final SalinasConfig config = new SalinasConfig();
+        config.setMaxRecordAccesses(RECORDS);
+        salinas.getContext().setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        assertEquals(BigDecimal.valueOf(RECORDS / 2), salinas.eval("COUNT FOR 'ODD' = CODE TO n\nn"));
+
+        // The records visited by the workers are counted
+        config.setMaxRecordAccesses(RECORDS / 2);
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("SUM QTY TO q"));
+        assertTrue(ex.getSuppressed()[0] instanceof ResourceLimitException);
+        assertTrue(ex.getMessage().contains("Record access limit of " + RECORDS / 2
+                + " records exceeded"), ex.getMessage());
+
+        // So are the records which the filter passes over
+        final ScriptException filtered = assertThrows(ScriptException.class,
+                () -> salinas.eval("SET FILTER TO QTY = 9\nCOUNT TO n"));
+        assertTrue(filtered.getSuppressed()[0] instanceof ResourceLimitException);
+    }
+
+    @Test
+    public void testKeywordVariables() throws Exception {
+        // A lone COUNT is the command, even when a variable of the name exists
+        assertEquals(BigDecimal.valueOf(RECORDS), salinas.eval("count = 42\ncount"));
+        assertEquals(BigDecimal.valueOf(42), salinas.eval("count + 0"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("average := 3\naverage + 0"));
+
+        salinas.eval("count = 0\ntotal := 1\nsum = 2\nCOUNT FOR QTY > 7 TO count\nSUM QTY TO sum");
+        assertEquals(BigDecimal.valueOf(RECORDS / 10 * 2), salinas.eval("count + 0"));
+        assertEquals(BigDecimal.valueOf(RECORDS / 10 * 45 + 1), salinas.eval("sum + total"));
+    }
+
+    @Test
+    public void testCountField() throws Exception {
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("COUNT", DBFField.FieldType.N, 5)),
+                new Object[] {BigDecimal.ONE}, new Object[] {BigDecimal.valueOf(5)});
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("COUNT"));
+        assertEquals(BigDecimal.ONE, salinas.eval("COUNT FOR COUNT > 2 TO n\nn"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("GO 2\nx = COUNT\nx"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("SUM COUNT TO s\ns"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+
+/**
+ * Tests for APPEND FROM.
+ */
+public class AppendFromTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("CODE", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5),
+                new DBFField("PAID", DBFField.FieldType.L, 1)),
+                new Object[] {"M1", BigDecimal.ONE});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        salinas.eval("INDEX ON CODE TAG CODE");
+    }
+
+    @Test
+    public void testTable() throws Exception {
+        File source = TestTables.create(List.of(
+                new DBFField("NOTE", DBFField.FieldType.C, 10),
+                new DBFField("QTY", DBFField.FieldType.C, 5),
+                new DBFField("CODE", DBFField.FieldType.C, 6)),
+                100, i -> new Object[] {"NOTE" + i, String.valueOf(i), "S" + i});
+
+        // Fields are matched by name, and QTY is converted to a number
+        assertEquals(BigDecimal.valueOf(50), salinas.eval("APPEND FROM '"
+                + source.getAbsolutePath() + "' FOR QTY > 50"));
+        assertEquals(BigDecimal.valueOf(51), salinas.eval("RECCOUNT()"));
+        assertEquals(BigDecimal.valueOf(51), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(100), salinas.eval("QTY"));
+        assertEquals(BigDecimal.valueOf(11), salinas.eval("SEEK 'S60'\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(60), salinas.eval("QTY"));
+        assertEquals(Boolean.TRUE, salinas.eval("SEEK('M1')"));
+    }
+
+    @Test
+    public void testOpenTableKept() throws Exception {
+        File csv = File.createTempFile("appendfrom", ".csv");
+        csv.deleteOnExit();
+        Files.write(csv.toPath(), List.of("A1,10,T", "A2,20,F", "A3,30,T"),
+                StandardCharsets.ISO_8859_1);
+
+        // The planned filter and a record lock outlast the append
+        salinas.eval("SET FILTER TO PAID");
+        assertEquals(BigDecimal.ZERO, salinas.eval("COUNT"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 1\nRLOCK()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("APPEND FROM '" + csv.getAbsolutePath()
+                + "' TYPE DELIMITED"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("COUNT"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("SEEK 'A3'\nRECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 1\nREPLACE QTY WITH 2\n(2 = QTY)"));
+    }
+
+    @Test
+    public void testText() throws Exception {
+        File csv = File.createTempFile("appendfrom", ".csv");
+        csv.deleteOnExit();
+        Files.write(csv.toPath(), List.of("\"A,1\",10,T", "\"B\"\"2\",20,F", "C3,30,Y"),
+                StandardCharsets.ISO_8859_1);
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("APPEND FROM '" + csv.getAbsolutePath()
+                + "' TYPE DELIMITED WHILE QTY < 30"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 2\n('A,1' = CODE)"));
+        assertEquals(Boolean.TRUE, salinas.eval("PAID"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 3\n('B\"2' = CODE)"));
+
+        File sdf = File.createTempFile("appendfrom", ".txt");
+        sdf.deleteOnExit();
+        Files.write(sdf.toPath(), List.of("X1    " + "    5" + "T", "X2    " + "   15" + "F"),
+                StandardCharsets.ISO_8859_1);
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("APPEND FROM '" + sdf.getAbsolutePath()
+                + "' SDF FOR .NOT. PAID"));
+        assertEquals(BigDecimal.valueOf(15), salinas.eval("QTY"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("SEEK 'X2'\nRECNO()"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.ResourceLimitException;
+import com.idataconnect.salinas.SalinasConfig;
+
+/**
+ * Tests for COPY TO.
+ */
+public class CopyTest {
+
+    private ScriptEngine salinas;
+    private File output;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("NAME", DBFField.FieldType.C, 8),
+                new DBFField("AMOUNT", DBFField.FieldType.N, 7, 2),
+                new DBFField("PAID", DBFField.FieldType.L, 1),
+                new DBFField("DUE", DBFField.FieldType.D, 8)),
+                new Object[] {"ANN", new BigDecimal("1.5"), true, LocalDate.of(2026, 1, 1)},
+                new Object[] {"BO \"B\"", new BigDecimal("3.0"), false, LocalDate.of(2026, 1, 2)},
+                new Object[] {"CY", new BigDecimal("4.5"), true, LocalDate.of(2026, 1, 3)});
+        output = File.createTempFile("copied", ".out");
+        output.deleteOnExit();
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testTable() throws Exception {
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("COPY TO '" + output.getAbsolutePath()
+                + "' FIELDS AMOUNT, NAME FOR PAID TYPE DBF"));
+        DBF copy = DBF.use(output);
+        assertEquals(2, copy.getStructure().getFields().size());
+        copy.close();
+        salinas.eval("USE '" + output.getAbsolutePath() + "'");
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("RECCOUNT()"));
+        assertEquals(0, new BigDecimal("4.5").compareTo((BigDecimal) salinas.eval("GO 2\nAMOUNT")));
+        assertEquals(Boolean.TRUE, salinas.eval("('CY' = NAME)"));
+    }
+
+    @Test
+    public void testText() throws Exception {
+        salinas.eval("COPY TO '" + output.getAbsolutePath() + "' TYPE DELIMITED");
+        assertEquals(List.of("\"ANN\",1.50,T,20260101", "\"BO \"\"B\"\"\",3.00,F,20260102",
+                "\"CY\",4.50,T,20260103"), read());
+
+        salinas.eval("GO 2\nCOPY TO '" + output.getAbsolutePath() + "' NEXT 2 SDF");
+        assertEquals(List.of("BO \"B\"     3.00F20260102", "CY         4.50T20260103"), read());
+
+        salinas.eval("COPY TO '" + output.getAbsolutePath()
+                + "' FIELDS NAME, PAID, DUE RECORD 2 TYPE JSONL");
+        assertEquals(List.of("{\"NAME\":\"BO \\\"B\\\"\",\"PAID\":false,\"DUE\":\"2026-01-02\"}"),
+                read());
+    }
+
+    @Test
+    public void testOutputLimit() throws Exception {
+        final SalinasConfig config = new SalinasConfig();
+        config.setMaxOutputChars(30);
+        salinas.getContext().setAttribute("salinasConfig", config, ScriptContext.ENGINE_SCOPE);
+        salinas.eval("COPY TO '" + output.getAbsolutePath() + "' RECORD 1 TYPE DELIMITED");
+
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> salinas.eval("COPY TO '" + output.getAbsolutePath() + "' TYPE DELIMITED"));
+        assertTrue(ex.getSuppressed()[0] instanceof ResourceLimitException);
+        assertTrue(ex.getMessage().contains("Output limit of 30 characters exceeded"),
+                ex.getMessage());
+    }
+
+    private List<String> read() throws Exception {
+        return Files.readAllLines(output.toPath(), StandardCharsets.ISO_8859_1);
+    }
+}
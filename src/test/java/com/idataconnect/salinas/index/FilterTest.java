@@ -0,0 +1,72 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for SET FILTER, and the movement of the record pointer through the
+ * visible records.
+ */
+public class FilterTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.codes("C200", "C100", "D100", "C100", "C300", "D200");
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        salinas.eval("SET FILTER TO QTY > 2 .AND. QTY < 6\nGO TOP");
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("SKIP(2)\nRECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("SKIP()\nEOF()"));
+
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("GO BOTTOM\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("SKIP(-5)\nRECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("BOF()"));
+
+        assertEquals(BigDecimal.ONE, salinas.eval("SET FILTER TO\nGO TOP\nRECNO()"));
+    }
+
+    @Test
+    public void testVariable() throws Exception {
+        salinas.eval("lo = 5\nSET FILTER TO QTY >= lo");
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("GO TOP\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("lo = 2\nGO TOP\nRECNO()"));
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        salinas.eval("INDEX ON CODE TAG CODE\nSET FILTER TO 'D' = CODE");
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("GO TOP\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("SKIP()\nRECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR QTY > 3"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testReplaceInOrder() throws Exception {
+        salinas.eval("INDEX ON CODE TAG CODE\nSET FILTER TO 'D' = CODE");
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("GO TOP\nRECNO()"));
+        salinas.eval("REPLACE CODE WITH 'C999'\nGO 2\nREPLACE CODE WITH 'D050'");
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("GO TOP\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("SKIP()\nRECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("SKIP()\nEOF()"));
+
+        salinas.eval("APPEND BLANK\nREPLACE CODE WITH 'D300'");
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("GO BOTTOM\nRECNO()"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for SET INDEXUPDATE, which defers index updates.
+ */
+public class IndexUpdateTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.codes(20, recno -> "C" + (100 + recno));
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        salinas.eval("INDEX ON CODE TAG CODE");
+    }
+
+    @Test
+    public void testDeferred() throws Exception {
+        salinas.eval("SET INDEXUPDATE OFF");
+        assertEquals("OFF", salinas.eval("SET('INDEXUPDATE')"));
+        salinas.eval("REPLACE ALL CODE WITH 'X' + CODE FOR QTY > 10");
+        salinas.eval("APPEND BLANK\nREPLACE CODE WITH 'A999', QTY WITH 99");
+        salinas.eval("SET INDEXUPDATE ON");
+
+        assertEquals("ON", salinas.eval("SET('INDEXUPDATE')"));
+        assertEquals(BigDecimal.valueOf(21), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(21), salinas.eval("SEEK 'A999'\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(15), salinas.eval("SEEK 'XC115'\nQTY"));
+        assertEquals(Boolean.FALSE, salinas.eval("SEEK('C115')"));
+    }
+
+    @Test
+    public void testSearchWhileDeferred() throws Exception {
+        salinas.eval("SET INDEXUPDATE OFF");
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("SEEK 'C105'\nQTY"));
+        assertEquals(BigDecimal.valueOf(60), salinas.eval("SEEK 'C106'\nREPLACE QTY WITH 60\nQTY"));
+        assertEquals(BigDecimal.valueOf(107), salinas.eval("SKIP()\nRECNO() + 100"));
+        assertEquals(BigDecimal.valueOf(60), salinas.eval("SKIP(-1)\nQTY"));
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR QTY = 60"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("RECNO()"));
+
+        salinas.eval("SET INDEXUPDATE ON");
+        assertEquals(BigDecimal.valueOf(60), salinas.eval("GO 6\nQTY"));
+    }
+
+    @Test
+    public void testChangedKeyWhileDeferred() throws Exception {
+        salinas.eval("SET INDEXUPDATE OFF");
+        salinas.eval("REPLACE ALL CODE WITH 'X' + CODE FOR QTY > 10");
+
+        // The index is brought up to date when it is searched
+        assertEquals(Boolean.FALSE, salinas.eval("SEEK('C115')"));
+        assertEquals(BigDecimal.valueOf(15), salinas.eval("SEEK 'XC115'\nQTY"));
+        salinas.eval("REPLACE CODE WITH 'B115'");
+        assertEquals(BigDecimal.valueOf(15), salinas.eval("SEEK 'B115'\nQTY"));
+        assertEquals(Boolean.FALSE, salinas.eval("SEEK('XC115')"));
+        salinas.eval("SET INDEXUPDATE ON");
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        assertThrows(ScriptException.class, () -> salinas.eval(
+                "SET INDEXUPDATE OFF\nREPLACE ALL CODE WITH 'Z' + CODE\nx = UNDEFINEDFUNC()"));
+
+        // The index is updated when the script is aborted
+        assertEquals("ON", salinas.eval("SET('INDEXUPDATE')"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("SEEK 'ZC103'\nRECNO()"));
+    }
+}
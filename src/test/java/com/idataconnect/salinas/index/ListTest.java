@@ -0,0 +1,79 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+
+/**
+ * Tests for LIST and DISPLAY of records.
+ */
+public class ListTest {
+
+    private ScriptEngine salinas;
+    private StringWriter output;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+        output = new StringWriter();
+        salinas.getContext().setWriter(output);
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("NAME", DBFField.FieldType.C, 6),
+                new DBFField("AMOUNT", DBFField.FieldType.N, 7, 2),
+                new DBFField("PAID", DBFField.FieldType.L, 1),
+                new DBFField("DUE", DBFField.FieldType.D, 8)),
+                500, i -> new Object[] {"N" + i, BigDecimal.valueOf(i), i % 2 == 0,
+                        LocalDate.of(2026, 1, 1).plusDays(i)});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testList() throws Exception {
+        // Every record, beyond any fixed limit
+        assertEquals(BigDecimal.valueOf(500), salinas.eval("LIST"));
+        String[] lines = output.toString().split("\n");
+        assertEquals(501, lines.length);
+        assertEquals("Record#  NAME    AMOUNT PAID DUE", lines[0]);
+        assertEquals("      1  N1        1.00 .F.  01/02/26", lines[1]);
+        assertEquals("    500  N500    500.00 .T.  05/16/27", lines[500]);
+
+        output.getBuffer().setLength(0);
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("LIST FIELDS DUE, NAME OFF FOR AMOUNT >= 499"));
+        assertEquals("DUE      NAME\n05/15/27 N499\n05/16/27 N500\n", output.toString());
+    }
+
+    @Test
+    public void testDisplay() throws Exception {
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("GO 3\nDISPLAY FIELDS NAME"));
+        assertEquals("Record#  NAME\n      3  N3\n", output.toString());
+
+        output.getBuffer().setLength(0);
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("DISPLAY NEXT 2 FIELDS AMOUNT OFF"));
+        assertEquals(" AMOUNT\n   3.00\n   4.00\n", output.toString());
+    }
+
+    @Test
+    public void testToFile() throws Exception {
+        File file = File.createTempFile("listing", ".txt");
+        file.deleteOnExit();
+        salinas.eval("LIST FIELDS NAME, PAID WHILE AMOUNT < 3 TO FILE '" + file.getAbsolutePath() + "'");
+        assertEquals("", output.toString());
+        assertEquals(List.of("Record#  NAME   PAID", "      1  N1     .F.", "      2  N2     .T."),
+                Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for LOCATE and CONTINUE, with and without an index on the
+ * condition.
+ */
+public class LocateTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.codes("C200", "C100", "D100", "C100", "C300");
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testLocate() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR QTY > 2"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("CONTINUE\nFOUND()"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+
+        assertEquals(Boolean.FALSE, salinas.eval("LOCATE FOR QTY > 10"));
+        assertEquals(Boolean.TRUE, salinas.eval("EOF()"));
+    }
+
+    @Test
+    public void testContinueSeesVariables() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("least = 2\nLOCATE FOR QTY > least"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+
+        // The condition is evaluated again, with the variables as they are
+        assertEquals(Boolean.TRUE, salinas.eval("least = 4\nCONTINUE"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("RECNO()"));
+        assertEquals(Boolean.FALSE, salinas.eval("CONTINUE"));
+        assertEquals(Boolean.FALSE, salinas.eval("CONTINUE"));
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        assertEquals(Boolean.FALSE, salinas.eval("GO 2\nLOCATE NEXT 2 FOR QTY > 3"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(Boolean.FALSE, salinas.eval("GO 1\nLOCATE WHILE QTY < 3 FOR QTY = 4"));
+    }
+
+    @Test
+    public void testIndexedLocate() throws Exception {
+        salinas.eval("INDEX ON CODE TAG CODE");
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR 'C100' = CODE"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("RECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("CONTINUE"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+        assertEquals(Boolean.FALSE, salinas.eval("CONTINUE"));
+
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR 'C' = CODE .AND. QTY > 4"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testKeywordVariables() throws Exception {
+        assertEquals(BigDecimal.valueOf(15), salinas.eval(
+                "locate = 1\ncontinue = 2\nall = 3\nrest = 4\nrecord := 5\n"
+                + "locate + continue + all + rest + record"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("cont = 3\ncont * 1"));
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("y = 7\nreco := 1\ny"));
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE ALL FOR QTY > 2"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 4\nLOCATE REST FOR QTY > 2"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testContinueVariable() throws Exception {
+        // A lone CONTINUE is the command, even when a variable of the name
+        // exists
+        salinas.eval("continue = 2");
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR QTY > 2"));
+        assertEquals(Boolean.TRUE, salinas.eval("CONTINUE"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("continue + 1"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("x := continue\nx"));
+    }
+
+    @Test
+    public void testContinueWithoutLocate() {
+        assertThrows(ScriptException.class, () -> salinas.eval("CONTINUE"));
+    }
+}
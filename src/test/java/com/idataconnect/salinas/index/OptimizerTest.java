@@ -0,0 +1,61 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the use of index bitmaps to select the candidate records of a
+ * condition, and the optimization level which is reported.
+ */
+public class OptimizerTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.codes("C200", "C100", "D100", "C100", "C300", "D200");
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'\n"
+                + "INDEX ON CODE TAG CODE\n"
+                + "INDEX ON QTY TAG QTY");
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR 'D' = CODE .OR. QTY >= 5"));
+        assertEquals("FULL", salinas.eval("OPTLEVEL()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(Boolean.TRUE, salinas.eval("CONTINUE"));
+        assertEquals(BigDecimal.valueOf(5), salinas.eval("RECNO()"));
+
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR 'C1' = CODE .AND. QTY > 2"));
+        assertEquals("FULL", salinas.eval("OPTLEVEL()"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testPartial() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR QTY < 3 .AND. RECNO() > 1"));
+        assertEquals("PARTIAL", salinas.eval("OPTLEVEL()"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("RECNO()"));
+
+        assertEquals(Boolean.FALSE, salinas.eval("LOCATE FOR 'E' = CODE .OR. RECNO() > 10"));
+        assertEquals("NONE", salinas.eval("OPTLEVEL()"));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        salinas.eval("SET FILTER TO 'C' = CODE .AND. QTY < 5\nGO TOP");
+        assertEquals("FULL", salinas.eval("OPTLEVEL()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("c = 0\nDO WHILE .NOT. EOF()\nc = c + 1\nSKIP()\nENDDO\nc"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.data.TableRegistry;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.data.WorkAreaManager;
+
+/**
+ * Tests for records read ahead of a loop of SKIP.
+ */
+public class ReadAheadTest {
+
+    private static final String SCAN = "t = 0\nGO TOP\nDO WHILE .NOT. EOF()\nt = t + QTY\nSKIP()\nENDDO\nt";
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("CODE", DBFField.FieldType.C, 60),
+                new DBFField("QTY", DBFField.FieldType.N, 5)),
+                5000, i -> new Object[] {"C" + i, BigDecimal.valueOf(i % 10)});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testSequentialScan() throws Exception {
+        final TableRegistry registry = TableRegistry.getInstance();
+        final long pages = registry.getReadAheadPages();
+        final long hits = registry.getReadAheadHits();
+
+        assertEquals(BigDecimal.valueOf(22500), salinas.eval(SCAN));
+        final WorkArea workArea = workArea();
+        assertTrue(workArea.getReadAheadHits() > 4900);
+        assertTrue(workArea.getReadAheadMisses() < 100);
+        assertTrue(registry.getReadAheadPages() > pages);
+        assertTrue(registry.getReadAheadHits() > hits);
+    }
+
+    @Test
+    public void testRandomAccess() throws Exception {
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("GO 4000\nq = QTY\nGO 17\nq + QTY"));
+        assertEquals(0, workArea().getReadAheadHits());
+        assertEquals(2, workArea().getReadAheadMisses());
+    }
+
+    @Test
+    public void testChangeDuringScan() throws Exception {
+        assertEquals(BigDecimal.valueOf(22509), salinas.eval("t = 0\nDO WHILE .NOT. EOF()\n"
+                + "IF RECNO() = 10\nGO 3000\nREPLACE QTY WITH 9\nGO 10\nENDIF\n"
+                + "t = t + QTY\nSKIP()\nENDDO\nt"));
+        assertEquals(BigDecimal.valueOf(22509), salinas.eval(SCAN));
+    }
+
+    @Test
+    public void testCodePage() throws Exception {
+        File dbfFile = TestTables.create(List.of(new DBFField("NAME", DBFField.FieldType.C, 20)),
+                2000, i -> new Object[] {i == 1500 ? "M\u00fcller" : "N" + i});
+
+        // Mark the table as Windows-1251, which the driver does not use
+        try (RandomAccessFile raf = new RandomAccessFile(dbfFile, "rw")) {
+            raf.seek(29);
+            raf.write(0xC9);
+        }
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        assertEquals(Boolean.TRUE, salinas.eval("LOCATE FOR 'M\u00fcller' = NAME"));
+        assertEquals(BigDecimal.valueOf(1500), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(1500), salinas.eval("r = 0\nGO TOP\nDO WHILE .NOT. EOF()\n"
+                + "IF 'M\u00fcller' = NAME\nr = RECNO()\nENDIF\nSKIP()\nENDDO\nr"));
+    }
+
+    private WorkArea workArea() {
+        return ((WorkAreaManager) salinas.getContext().getAttribute("salinasWorkAreaManager"))
+                .getCurrentWorkArea().orElseThrow();
+    }
+}
@@ -0,0 +1,66 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.math.BigDecimal;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for tables opened with USE ... NOUPDATE.
+ */
+public class ReadOnlyTest {
+
+    private ScriptEngine salinas;
+    private File dbfFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        dbfFile = TestTables.codes(300, recno -> "C" + recno);
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "' NOUPDATE");
+        assertEquals(Boolean.TRUE, salinas.eval("ISREADONLY()"));
+        assertEquals(BigDecimal.valueOf(150), salinas.eval("GO 150\nQTY"));
+        assertEquals(Boolean.TRUE, salinas.eval("('C150' = CODE)"));
+        assertEquals(BigDecimal.valueOf(51), salinas.eval("COUNT FOR QTY >= 250"));
+        assertEquals(BigDecimal.valueOf(275), salinas.eval("LOCATE FOR QTY >= 275\nRECNO()"));
+        File copy = File.createTempFile("readonly", ".txt");
+        copy.deleteOnExit();
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("COPY TO '" + copy.getAbsolutePath()
+                + "' NEXT 3 SDF"));
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "' SHARED");
+        assertEquals(Boolean.FALSE, salinas.eval("ISREADONLY()"));
+    }
+
+    @Test
+    public void testWordsAsNames() throws Exception {
+        // The words of USE are only recognized within USE
+        assertEquals(BigDecimal.valueOf(6),
+                salinas.eval("shared = 1\nreadonly = 2\nnoup = 3\nshared + readonly + noup"));
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "' shar noup");
+        assertEquals(Boolean.TRUE, salinas.eval("ISREADONLY()"));
+        assertEquals(BigDecimal.ONE, salinas.eval("shared"));
+    }
+
+    @Test
+    public void testNoChanges() throws Exception {
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "' SHARED READONLY");
+        assertThrows(ScriptException.class, () -> salinas.eval("REPLACE QTY WITH 0"));
+        assertThrows(ScriptException.class, () -> salinas.eval("APPEND BLANK"));
+        assertThrows(ScriptException.class, () -> salinas.eval("INDEX ON CODE TAG CODE"));
+        assertEquals(BigDecimal.valueOf(300), salinas.eval("RECCOUNT()"));
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("GO 1\nQTY"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.data.WorkAreaManager;
+
+/**
+ * Tests for record and file locks taken by sessions writing the same table.
+ */
+public class RecordLockTest {
+
+    private static final int WRITERS = 50;
+
+    private ScriptEngine first;
+    private ScriptEngine second;
+    private File dbfFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        first = new ScriptEngineManager().getEngineByName("salinas");
+        second = new ScriptEngineManager().getEngineByName("salinas");
+
+        dbfFile = TestTables.create(List.of(new DBFField("QTY", DBFField.FieldType.N, 6)),
+                100, i -> new Object[] {BigDecimal.ZERO});
+    }
+
+    @Test
+    public void testLocksExcludeOtherSessions() throws Exception {
+        first.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        second.eval("USE '" + dbfFile.getAbsolutePath() + "'\nSET REPROCESS TO 0");
+
+        assertEquals(Boolean.TRUE, first.eval("GO 5\nRLOCK()"));
+        assertEquals(Boolean.FALSE, second.eval("GO 5\nRLOCK()"));
+        assertEquals(Boolean.TRUE, second.eval("RLOCK('6, 7')"));
+        assertEquals(Boolean.FALSE, second.eval("FLOCK()"));
+
+        // REPLACE locks the record itself, and fails while another session
+        // holds it
+        final ScriptException ex = assertThrows(ScriptException.class,
+                () -> second.eval("GO 5\nREPLACE QTY WITH 1"));
+        assertTrue(ex.getMessage().contains("is locked by another user"), ex.getMessage());
+        assertEquals(BigDecimal.ONE, second.eval("GO 8\nREPLACE QTY WITH 1\nQTY"));
+
+        first.eval("UNLOCK");
+        assertEquals(BigDecimal.ONE, second.eval("GO 5\nREPLACE QTY WITH 1\nQTY"));
+        assertEquals(Boolean.TRUE, second.eval("FLOCK()"));
+        assertEquals(Boolean.FALSE, first.eval("SET REPROCESS TO 0\nRLOCK()"));
+        final ScriptException append = assertThrows(ScriptException.class,
+                () -> first.eval("APPEND BLANK"));
+        assertTrue(append.getMessage().contains("is locked by another user"),
+                append.getMessage());
+
+        // Closing the table releases its locks
+        close(second);
+        assertEquals(Boolean.TRUE, first.eval("FLOCK()"));
+        close(first);
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            final List<Future<Object>> writers = new ArrayList<>();
+            for (int i = 1; i <= WRITERS; i++) {
+                final int recno = i;
+                writers.add(executor.submit(() -> {
+                    final ScriptEngine salinas = new ScriptEngineManager().getEngineByName("salinas");
+                    salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'\nSET REPROCESS TO -1\n"
+                            + "FOR i = 1 TO 20\n"
+                            // Each writer has a record of its own, which
+                            // REPLACE locks as it writes
+                            + "GO " + recno + "\nREPLACE QTY WITH QTY + 1\n"
+                            // and shares the last record with the others
+                            + "GO 100\nRLOCK()\nREPLACE QTY WITH QTY + 1\nUNLOCK\n"
+                            + "NEXT");
+                    close(salinas);
+                    return null;
+                }));
+            }
+            for (Future<Object> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        first.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        assertEquals(BigDecimal.valueOf(WRITERS * 20), first.eval("SUM QTY FOR RECNO() <= "
+                + WRITERS));
+        assertEquals(BigDecimal.valueOf(WRITERS * 20), first.eval("GO 100\nQTY"));
+        close(first);
+    }
+
+    private static void close(ScriptEngine salinas) throws Exception {
+        ((WorkAreaManager) salinas.getContext().getAttribute("salinasWorkAreaManager")).closeAll();
+    }
+}
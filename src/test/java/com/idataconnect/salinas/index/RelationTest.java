@@ -0,0 +1,97 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.data.Relation;
+import com.idataconnect.salinas.data.WorkArea;
+import com.idataconnect.salinas.data.WorkAreaManager;
+
+/**
+ * Tests for SET RELATION and SELECT.
+ */
+public class RelationTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        final String[] customers = {"C2", "C2", "C9", "C1", "C2"};
+        File ordersFile = TestTables.create(List.of(
+                new DBFField("CUST", DBFField.FieldType.C, 4),
+                new DBFField("QTY", DBFField.FieldType.N, 5)),
+                customers.length, i -> new Object[] {customers[i - 1], BigDecimal.valueOf(i)});
+        File customersFile = TestTables.create(List.of(
+                new DBFField("CUST", DBFField.FieldType.C, 4),
+                new DBFField("LIMIT", DBFField.FieldType.N, 5)),
+                3, i -> new Object[] {"C" + i, BigDecimal.valueOf(i * 100)});
+
+        salinas.eval("USE '" + ordersFile.getAbsolutePath() + "' ALIAS orders\n"
+                + "USE '" + customersFile.getAbsolutePath() + "' IN 2 ALIAS customers\n"
+                + "INDEX ON CUST TAG CUST\n"
+                + "SELECT orders");
+    }
+
+    @Test
+    public void testRelation() throws Exception {
+        salinas.eval("SET RELATION TO CUST INTO customers");
+        assertEquals(BigDecimal.valueOf(200), salinas.eval("GO 1\nSELECT customers\nLIMIT"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("SELECT()"));
+
+        // The child follows the parent, but not until the child is used
+        assertEquals(BigDecimal.valueOf(100), salinas.eval("SELECT 1\nGO 4\nSELECT 2\nLIMIT"));
+        assertEquals(Boolean.TRUE, salinas.eval("SELECT 1\nGO 3\nSELECT 2\nEOF()"));
+        assertEquals(Boolean.FALSE, salinas.eval("FOUND()"));
+
+        // Moving the child does not move it back while the parent stays
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("GO TOP\nRECNO()"));
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("SELECT 1\nx = QTY\nSELECT 2\nRECNO()"));
+
+        assertEquals(Boolean.FALSE, salinas.eval("SELECT 1\nSET RELATION TO\nGO 5\nSELECT 2\nEOF()"));
+        assertEquals(BigDecimal.valueOf(1), salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testKeyError() throws Exception {
+        // The key of record 4 is SUBSTR() with a negative length
+        salinas.eval("SET RELATION TO SUBSTR(CUST, 1, 3 - QTY) INTO customers");
+        assertEquals(BigDecimal.valueOf(200), salinas.eval("GO 1\nSELECT customers\nLIMIT"));
+
+        // The child is not left on the record of the previous key
+        assertEquals(Boolean.TRUE, salinas.eval("SELECT 1\nGO 4\nSELECT 2\nEOF()"));
+        assertEquals(Boolean.FALSE, salinas.eval("FOUND()"));
+        assertEquals(BigDecimal.valueOf(200), salinas.eval("SELECT 1\nGO 1\nSELECT 2\nLIMIT"));
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        salinas.eval("SET RELATION TO CUST INTO customers\n"
+                + "total = 0\n"
+                + "GO TOP\n"
+                + "DO WHILE .NOT. EOF()\n"
+                + "SELECT customers\n"
+                + "total = total + LIMIT\n"
+                + "SELECT orders\n"
+                + "SKIP()\n"
+                + "ENDDO");
+        assertEquals(BigDecimal.valueOf(700), salinas.eval("total"));
+
+        WorkAreaManager wam = (WorkAreaManager) salinas.get("salinasWorkAreaManager");
+        WorkArea orders = wam.getWorkArea("orders").get();
+        Relation relation = wam.getRelations(orders).get(0);
+        assertEquals(3, relation.getCacheMisses());
+        assertTrue(relation.getCacheHits() >= 2);
+    }
+}
@@ -0,0 +1,94 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+
+/**
+ * Tests for REPLACE with several fields and scope clauses.
+ */
+public class ReplaceTest {
+
+    private ScriptEngine salinas;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("NAME", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5),
+                new DBFField("TOTAL", DBFField.FieldType.N, 6)),
+                10, i -> new Object[] {"N" + i, BigDecimal.valueOf(i), BigDecimal.ZERO});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testCurrentRecord() throws Exception {
+        // Each value sees the values replaced before it
+        assertEquals(BigDecimal.ONE, salinas.eval("GO 3\nREPLACE QTY WITH QTY + 1, TOTAL WITH QTY * 2"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("QTY"));
+        assertEquals(BigDecimal.valueOf(8), salinas.eval("TOTAL"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.ZERO, salinas.eval("GO 4\nTOTAL"));
+    }
+
+    @Test
+    public void testForCondition() throws Exception {
+        assertEquals(BigDecimal.valueOf(5),
+                salinas.eval("REPLACE ALL TOTAL WITH QTY * 10, NAME WITH 'BIG' FOR QTY > 5"));
+        assertEquals(Boolean.TRUE, salinas.eval("EOF()"));
+        assertEquals(BigDecimal.ZERO, salinas.eval("GO 5\nTOTAL"));
+        assertEquals(BigDecimal.valueOf(60), salinas.eval("GO 6\nTOTAL"));
+        assertEquals(Boolean.TRUE, salinas.eval("('BIG' = NAME)"));
+    }
+
+    @Test
+    public void testIndexedKey() throws Exception {
+        // Replacing the key of the active order visits each record once
+        salinas.eval("INDEX ON QTY TAG QTY");
+        assertEquals(BigDecimal.valueOf(10), salinas.eval("REPLACE ALL QTY WITH QTY + 100"));
+        assertEquals(BigDecimal.valueOf(103), salinas.eval("GO 3\nQTY"));
+    }
+
+    @Test
+    public void testWrittenCount() throws Exception {
+        // Records whose values do not change are not counted
+        assertEquals(BigDecimal.ZERO, salinas.eval("REPLACE ALL TOTAL WITH 0"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("REPLACE ALL TOTAL WITH 6 FOR QTY > 4"));
+        assertEquals(BigDecimal.valueOf(4),
+                salinas.eval("REPLACE ALL TOTAL WITH IIF(QTY > 8, 6, 7) FOR QTY > 4"));
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        salinas.eval("FOR i = 11 TO 1000\nAPPEND BLANK\nREPLACE QTY WITH i\nNEXT");
+        salinas.eval("INDEX ON QTY TAG QTY");
+        assertEquals(BigDecimal.valueOf(995),
+                salinas.eval("REPLACE ALL QTY WITH QTY + 2000 FOR QTY > 5"));
+        assertEquals(BigDecimal.valueOf(100), salinas.eval("SEEK 2100\nRECNO()"));
+        assertEquals(BigDecimal.ONE, salinas.eval("GO TOP\nQTY"));
+        assertEquals(BigDecimal.valueOf(2006), salinas.eval("SKIP(5)\nQTY"));
+    }
+
+    @Test
+    public void testWhile() throws Exception {
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("GO 2\nREPLACE TOTAL WITH 1 WHILE QTY < 5"));
+        assertEquals(BigDecimal.valueOf(2),
+                salinas.eval("GO TOP\nREPLACE NEXT 2 TOTAL WITH TOTAL + 1"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("RECNO()"));
+        assertEquals(BigDecimal.valueOf(2), salinas.eval("TOTAL"));
+        assertEquals(BigDecimal.ONE, salinas.eval("GO 4\nTOTAL"));
+        assertEquals(BigDecimal.ZERO, salinas.eval("GO 5\nTOTAL"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+
+/**
+ * Tests for SEEK, FIND and the related functions.
+ */
+public class SeekTest {
+
+    private ScriptEngine salinas;
+    private File dbfFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        dbfFile = TestTables.create(List.of(new DBFField("NAME", DBFField.FieldType.C, 10)),
+                new Object[] {"Carol"}, new Object[] {"Bobby"}, new Object[] {"Alice"},
+                new Object[] {"Bob"});
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'\n"
+                + "INDEX ON UPPER(NAME) TAG UNAME");
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("SEEK 'ALICE'\nFOUND()"));
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECNO()"));
+
+        assertEquals(Boolean.FALSE, salinas.eval("SEEK('ZED')"));
+        assertEquals(Boolean.TRUE, salinas.eval("EOF()"));
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        assertEquals(Boolean.TRUE, salinas.eval("FIND CAROL\nFOUND()"));
+        assertEquals(BigDecimal.ONE, salinas.eval("RECNO()"));
+    }
+
+    @Test
+    public void testExact() throws Exception {
+        // Without EXACT, the first key starting with BOB matches
+        assertEquals(Boolean.TRUE, salinas.eval("SEEK('BOB')"));
+        assertEquals(Boolean.TRUE, salinas.eval("SET EXACT ON\nSEEK('BOB')"));
+        assertEquals(BigDecimal.valueOf(4), salinas.eval("RECNO()"));
+        assertEquals(Boolean.FALSE, salinas.eval("SEEK('BO')"));
+    }
+
+    @Test
+    public void testNear() throws Exception {
+        assertEquals(Boolean.FALSE, salinas.eval("SET NEAR ON\nSEEK('BZ')"));
+        assertEquals(BigDecimal.ONE, salinas.eval("RECNO()"));
+        assertEquals("ON", salinas.eval("SET('NEAR')"));
+    }
+
+    @Test
+    public void testKeywordVariables() throws Exception {
+        assertEquals(BigDecimal.valueOf(9), salinas.eval("find = 4\nseek = 5\nfind + seek"));
+        assertEquals(BigDecimal.valueOf(6), salinas.eval("seek := seek + 1\nseek"));
+        assertEquals(Boolean.TRUE, salinas.eval("SEEK 'ALICE'\nFOUND()"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.SalinasSession;
+import com.idataconnect.salinas.SalinasSessionPool;
+
+/**
+ * Tests for sessions which are reused through a session pool.
+ */
+public class SessionPoolTest {
+
+    private File dbfFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dbfFile = TestTables.create(List.of(new DBFField("QTY", DBFField.FieldType.N, 5)),
+                10, i -> new Object[] {BigDecimal.valueOf(i)});
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        try (SalinasSessionPool pool = new SalinasSessionPool(2, 1, TimeUnit.MINUTES)) {
+            pool.setInitializer(session -> session.eval("USE '" + dbfFile.getAbsolutePath() + "'"));
+
+            final SalinasSession first = pool.borrow();
+            assertEquals(1, pool.getActiveCount());
+            assertEquals(BigDecimal.valueOf(5), first.eval("GO 5\nx = QTY\nx"));
+            pool.release(first);
+            assertEquals(1, pool.getIdleCount());
+
+            // The same session, with its table still open, but no variables
+            final SalinasSession second = pool.borrow();
+            assertSame(first, second);
+            assertNull(second.eval("x"));
+            assertEquals(BigDecimal.ONE, second.eval("RECNO()"));
+            assertEquals(BigDecimal.valueOf(10), second.eval("RECCOUNT()"));
+            pool.release(second);
+
+            assertEquals(1, pool.getCreatedCount());
+            assertEquals(2, pool.getBorrowedCount());
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    public void testInitializedState() throws Exception {
+        final File other = TestTables.create(List.of(new DBFField("CODE", DBFField.FieldType.C, 4)));
+
+        try (SalinasSessionPool pool = new SalinasSessionPool(1, 1, TimeUnit.MINUTES)) {
+            pool.setInitializer(session -> session.eval("USE '" + dbfFile.getAbsolutePath()
+                    + "'\nINDEX ON QTY TAG QTY DESCENDING"));
+
+            final SalinasSession first = pool.borrow();
+            first.eval("INDEX ON QTY TAG UP\nSET FILTER TO QTY > 8");
+            first.eval("USE '" + other.getAbsolutePath() + "' IN 2 ALIAS extra");
+            assertEquals(BigDecimal.valueOf(9), first.eval("SELECT 1\nGO TOP\nQTY"));
+            pool.release(first);
+
+            // The second table is closed, and the order and filter are those
+            // of the initializer
+            final SalinasSession second = pool.borrow();
+            assertSame(first, second);
+            assertFalse(second.getWorkAreaManager().getWorkArea(2).isPresent());
+            assertEquals(BigDecimal.valueOf(10), second.eval("QTY"));
+            assertEquals(BigDecimal.valueOf(10), second.eval("COUNT"));
+            assertEquals(BigDecimal.valueOf(9), second.eval("GO TOP\nSKIP(1)\nQTY"));
+            pool.release(second);
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final SalinasSessionPool pool = new SalinasSessionPool(1, 0, TimeUnit.MILLISECONDS);
+        final SalinasSession first = pool.borrow();
+        final SalinasSession second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        assertTrue(pool.getEvictedCount() >= 1);
+        assertTrue(pool.getIdleCount() <= 1);
+
+        Thread.sleep(5);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2, pool.getEvictedCount());
+    }
+}
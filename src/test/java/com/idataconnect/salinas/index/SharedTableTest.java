@@ -0,0 +1,77 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.data.TableRegistry;
+import com.idataconnect.salinas.data.WorkAreaManager;
+
+/**
+ * Tests for tables read by several sessions through the table registry.
+ */
+public class SharedTableTest {
+
+    private ScriptEngine first;
+    private ScriptEngine second;
+    private File dbfFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        first = new ScriptEngineManager().getEngineByName("salinas");
+        second = new ScriptEngineManager().getEngineByName("salinas");
+
+        dbfFile = TestTables.create(List.of(
+                new DBFField("CODE", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5)),
+                2000, i -> new Object[] {"C" + i, BigDecimal.valueOf(i % 100)});
+
+        first.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+        second.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testSharedBlocks() throws Exception {
+        final TableRegistry registry = TableRegistry.getInstance();
+        assertEquals(BigDecimal.valueOf(20), first.eval("COUNT FOR QTY = 7"));
+        assertTrue(registry.getReferences(dbfFile) > 0);
+
+        // The blocks read by the first session are found by the second
+        final long misses = registry.getCacheMisses();
+        final long hits = registry.getCacheHits();
+        assertEquals(BigDecimal.valueOf(20), second.eval("COUNT FOR QTY = 7"));
+        assertEquals(misses, registry.getCacheMisses());
+        assertTrue(registry.getCacheHits() > hits);
+
+        close(first);
+        close(second);
+        assertEquals(0, registry.getReferences(dbfFile));
+    }
+
+    @Test
+    public void testChangeSeenByOtherSession() throws Exception {
+        assertEquals(BigDecimal.valueOf(20), second.eval("COUNT FOR QTY = 7"));
+
+        first.eval("GO 1500\nREPLACE QTY WITH 7");
+        assertEquals(BigDecimal.valueOf(21), second.eval("COUNT FOR QTY = 7"));
+        first.eval("GO 3\nREPLACE QTY WITH 7");
+        assertEquals(BigDecimal.valueOf(22), second.eval("COUNT FOR QTY = 7"));
+        assertEquals(BigDecimal.valueOf(3), second.eval("LOCATE FOR QTY = 7\nRECNO()"));
+
+        first.eval("APPEND BLANK\nREPLACE QTY WITH 7");
+        assertEquals(BigDecimal.valueOf(23), second.eval("COUNT FOR QTY = 7"));
+    }
+
+    private static void close(ScriptEngine salinas) throws Exception {
+        ((WorkAreaManager) salinas.getContext().getAttribute("salinasWorkAreaManager")).closeAll();
+    }
+}
@@ -0,0 +1,96 @@
+package com.idataconnect.salinas.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.idataconnect.jdbfdriver.DBF;
+import com.idataconnect.jdbfdriver.DBFField;
+
+/**
+ * Creates the temporary tables which the tests run scripts against.
+ */
+final class TestTables {
+
+    private TestTables() {}
+
+    /**
+     * Creates a temporary table with the given records. The table, and the
+     * production index which a test may build for it, are deleted when the
+     * tests end.
+     *
+     * @param fields the fields of the table
+     * @param rows the values of each record, in the order of the fields. A
+     * <code>null</code> value leaves the field blank.
+     * @return the DBF file
+     * @throws IOException if the table could not be written
+     */
+    static File create(List<DBFField> fields, Object[]... rows) throws IOException {
+        return create(fields, rows.length, recno -> rows[recno - 1]);
+    }
+
+    /**
+     * Creates a temporary table of codes, with a character field CODE and a
+     * numeric field QTY which holds the record number.
+     *
+     * @param codes the code of each record
+     * @return the DBF file
+     * @throws IOException if the table could not be written
+     */
+    static File codes(String... codes) throws IOException {
+        return codes(codes.length, recno -> codes[recno - 1]);
+    }
+
+    /**
+     * Creates a temporary table of codes made by a function of the record
+     * numbers, with a character field CODE and a numeric field QTY which
+     * holds the record number.
+     *
+     * @param count the number of records
+     * @param code gets the code of a record from its number, starting from 1
+     * @return the DBF file
+     * @throws IOException if the table could not be written
+     */
+    static File codes(int count, IntFunction<String> code) throws IOException {
+        return create(List.of(
+                new DBFField("CODE", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5)),
+                count, recno -> new Object[] {code.apply(recno), BigDecimal.valueOf(recno)});
+    }
+
+    /**
+     * Creates a temporary table whose records are made by a function of
+     * their record numbers.
+     *
+     * @param fields the fields of the table
+     * @param count the number of records
+     * @param row gets the values of a record from its number, starting from
+     * 1, in the order of the fields
+     * @return the DBF file
+     * @throws IOException if the table could not be written
+     */
+    static File create(List<DBFField> fields, int count, IntFunction<Object[]> row)
+            throws IOException {
+        final File file = File.createTempFile("table", ".dbf");
+        file.deleteOnExit();
+        new File(file.getParent(), file.getName().replace(".dbf", ".mdx")).deleteOnExit();
+
+        final DBF dbf = DBF.create(file, fields);
+        try {
+            for (int recno = 1; recno <= count; recno++) {
+                final Object[] values = row.apply(recno);
+                dbf.appendBlank();
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        dbf.replace(fields.get(i).getFieldName(), values[i]);
+                    }
+                }
+            }
+        } finally {
+            dbf.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,102 @@
+package com.idataconnect.salinas.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.idataconnect.jdbfdriver.DBFField;
+import com.idataconnect.salinas.data.SalinasValue;
+import com.idataconnect.salinas.interpreter.AggregateFunction;
+import com.idataconnect.salinas.interpreter.GroupedAggregation;
+
+/**
+ * Tests for TOTAL ON.
+ */
+public class TotalTest {
+
+    private ScriptEngine salinas;
+    private File totalFile;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        salinas = new ScriptEngineManager().getEngineByName("salinas");
+
+        final String[] branches = {"WEST", "EAST", "WEST", "NORTH", "EAST", "WEST"};
+        File dbfFile = TestTables.create(List.of(
+                new DBFField("BRANCH", DBFField.FieldType.C, 6),
+                new DBFField("QTY", DBFField.FieldType.N, 5),
+                new DBFField("AMOUNT", DBFField.FieldType.N, 8, 2)),
+                branches.length, i -> new Object[] {branches[i - 1], BigDecimal.valueOf(i),
+                        new BigDecimal("1.25")});
+        totalFile = File.createTempFile("totals", ".dbf");
+        totalFile.deleteOnExit();
+
+        salinas.eval("USE '" + dbfFile.getAbsolutePath() + "'");
+    }
+
+    @Test
+    public void testHash() throws Exception {
+        salinas.eval("TOTAL ON BRANCH TO '" + totalFile.getAbsolutePath() + "'");
+        salinas.eval("USE '" + totalFile.getAbsolutePath() + "'");
+
+        // Groups are written in the order their keys first appear
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECCOUNT()"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 1\n('WEST' = BRANCH)"));
+        assertEquals(BigDecimal.valueOf(10), salinas.eval("QTY"));
+        assertEquals(0, new BigDecimal("3.75").compareTo((BigDecimal) salinas.eval("AMOUNT")));
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("GO 2\nQTY"));
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        salinas.eval("INDEX ON BRANCH TAG BRANCH");
+        salinas.eval("TOTAL ON BRANCH TO '" + totalFile.getAbsolutePath()
+                + "' FIELDS QTY FOR QTY > 1");
+        salinas.eval("USE '" + totalFile.getAbsolutePath() + "'");
+
+        assertEquals(BigDecimal.valueOf(3), salinas.eval("RECCOUNT()"));
+        assertEquals(Boolean.TRUE, salinas.eval("GO 1\n('EAST' = BRANCH)"));
+        assertEquals(BigDecimal.valueOf(7), salinas.eval("QTY"));
+        // AMOUNT is not totaled, so it is taken from the first record
+        assertEquals(0, new BigDecimal("1.25").compareTo((BigDecimal) salinas.eval("AMOUNT")));
+        assertEquals(BigDecimal.valueOf(9), salinas.eval("GO 3\nQTY"));
+    }
+
+    @Test
+    public void testSpilledGroups() throws Exception {
+        // More keys than are kept in memory, so the groups are merged from files
+        final Map<String, BigDecimal> totals = new LinkedHashMap<>();
+        final Map<String, String> rows = new LinkedHashMap<>();
+        final GroupedAggregation<String> grouping = new GroupedAggregation<>(
+                List.of(AggregateFunction.SUM, AggregateFunction.CNT),
+                GroupedAggregation.Strategy.HASH, 2, 2, (key, row, results) -> {
+                    totals.put((String) key.getValue(), (BigDecimal) results[0].getValue());
+                    rows.put((String) key.getValue(), row);
+                });
+        final String[] keys = {"C", "A", "B", "A", "D", "C", "B", "A"};
+        for (int i = 0; i < keys.length; i++) {
+            final String row = keys[i] + i;
+            grouping.add(SalinasValue.valueOf(keys[i]), new SalinasValue[] {
+                SalinasValue.valueOf(BigDecimal.valueOf(i + 1)), SalinasValue.NULL}, () -> row);
+        }
+        grouping.finish();
+
+        assertEquals(4, grouping.getGroupCount());
+        assertEquals(List.of("A", "B", "C", "D"), new ArrayList<>(totals.keySet()));
+        assertEquals(BigDecimal.valueOf(2 + 4 + 8), totals.get("A"));
+        assertEquals(BigDecimal.valueOf(3 + 7), totals.get("B"));
+        assertEquals(BigDecimal.valueOf(1 + 6), totals.get("C"));
+        assertEquals("A1", rows.get("A"));
+        assertEquals("C0", rows.get("C"));
+    }
+}